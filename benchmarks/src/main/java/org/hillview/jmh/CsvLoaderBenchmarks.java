@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.jmh;
+
+import org.hillview.storage.CsvFileLoader;
+import org.hillview.storage.CsvFileWriter;
+import org.hillview.table.LazySchema;
+import org.hillview.table.Table;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.ITable;
+import org.hillview.utils.TestTables;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing CSV files.  The file is generated once per trial
+ * in the temporary directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CsvLoaderBenchmarks {
+    @Param({"500000"})
+    public int rows;
+
+    private File file;
+    private ITable table;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        ITable ints = TestTables.getIntTable(this.rows, 4);
+        ITable strings = TestTables.randStringTable(this.rows, TestTables.randStringList(1000, 10));
+        List<IColumn> columns = new ArrayList<IColumn>(ints.getLoadedColumns(ints.getSchema().getColumnNames()));
+        columns.add(strings.getLoadedColumn("Name"));
+        this.table = new Table(columns, null, null);
+        this.file = File.createTempFile("hillview-benchmark", ".csv");
+        new CsvFileWriter(this.file.getPath()).writeTable(this.table);
+    }
+
+    @Benchmark
+    public ITable loadGuessSchema() {
+        CsvFileLoader.Config config = new CsvFileLoader.Config();
+        config.hasHeaderRow = true;
+        return new CsvFileLoader(this.file.getPath(), config, new LazySchema()).load();
+    }
+
+    @Benchmark
+    public ITable loadWithSchema() {
+        CsvFileLoader.Config config = new CsvFileLoader.Config();
+        config.hasHeaderRow = true;
+        return new CsvFileLoader(
+                this.file.getPath(), config, new LazySchema(this.table.getSchema())).load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (!this.file.delete())
+            throw new RuntimeException("Could not delete " + this.file);
+    }
+}
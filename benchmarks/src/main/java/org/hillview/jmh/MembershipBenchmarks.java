@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.jmh;
+
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.IMutableMembershipSet;
+import org.hillview.table.api.IRowIterator;
+import org.hillview.table.api.ISampledRowIterator;
+import org.hillview.table.membership.CompressedMembershipSet;
+import org.hillview.table.membership.DenseMembershipSet;
+import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.table.membership.SparseMembershipSet;
+import org.hillview.utils.Randomness;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the membership set implementations: iteration,
+ * filtering and set operations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MembershipBenchmarks {
+    @Param({"10000000"})
+    public int rows;
+    @Param({"dense", "sparse", "compressed"})
+    public String kind;
+    /**
+     * Fraction of the rows that are members of the sets.
+     */
+    @Param({"0.5", "0.01"})
+    public double density;
+
+    private IMembershipSet first;
+    private IMembershipSet second;
+    private IMembershipSet full;
+
+    private IMutableMembershipSet create() {
+        switch (this.kind) {
+            case "dense":
+                return new DenseMembershipSet(this.rows, this.rows);
+            case "sparse":
+                return new SparseMembershipSet(this.rows, (int)(this.rows * this.density));
+            case "compressed":
+                return new CompressedMembershipSet(this.rows);
+            default:
+                throw new RuntimeException("Unexpected membership set " + this.kind);
+        }
+    }
+
+    private IMembershipSet randomSet(long seed) {
+        Randomness random = new Randomness(seed);
+        IMutableMembershipSet set = this.create();
+        for (int i = 0; i < this.rows; i++)
+            if (random.nextDouble() < this.density)
+                set.add(i);
+        return set.seal();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.first = this.randomSet(1);
+        this.second = this.randomSet(2);
+        this.full = new FullMembershipSet(this.rows);
+    }
+
+    private static long sum(IRowIterator it) {
+        long sum = 0;
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+            sum += row;
+        return sum;
+    }
+
+    @Benchmark
+    public long iterate() {
+        return sum(this.first.getIterator());
+    }
+
+    @Benchmark
+    public long iterateSample() {
+        ISampledRowIterator it = this.first.getIteratorOverSample(0.01, 3, true);
+        return sum(it);
+    }
+
+    @Benchmark
+    public int isMember() {
+        int count = 0;
+        for (int i = 0; i < this.rows; i += 7)
+            if (this.first.isMember(i))
+                count++;
+        return count;
+    }
+
+    @Benchmark
+    public IMembershipSet filter() {
+        return this.first.filter(row -> (row & 3) != 0);
+    }
+
+    /**
+     * Filter over all rows of a table; the representation of the result
+     * is chosen by the MembershipSetFactory.
+     */
+    @Benchmark
+    public IMembershipSet filterFull() {
+        final double density = this.density;
+        return this.full.filter(row -> (row % 1000) < density * 1000);
+    }
+
+    @Benchmark
+    public IMembershipSet union() {
+        return this.first.union(this.second);
+    }
+
+    @Benchmark
+    public IMembershipSet intersection() {
+        return this.first.intersection(this.second);
+    }
+
+    @Benchmark
+    public IMembershipSet setMinus() {
+        return this.first.setMinus(this.second);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.jmh;
+
+import com.google.protobuf.ByteString;
+import org.apache.commons.lang3.SerializationUtils;
+import org.hillview.dataset.api.PartialResult;
+import org.hillview.dataset.remoting.WireFormat;
+import org.hillview.pb.PartialResponse;
+import org.hillview.sketches.*;
+import org.hillview.sketches.results.IHistogramBuckets;
+import org.hillview.sketches.results.DoubleHistogramBuckets;
+import org.hillview.table.api.ITable;
+import org.hillview.utils.TestTables;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for encoding and decoding the sketch results that are exchanged
+ * between workers and the root node, using both Java serialization and
+ * the codec negotiated by the WireFormat.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SerializationBenchmarks {
+    @Param({"histogram", "histogram2D", "nextK", "hyperLogLog", "heavyHitters"})
+    public String result;
+
+    private PartialResult<Serializable> partial;
+    private byte[] serialized;
+    private PartialResponse encoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final int rows = 100000;
+        ITable table = TestTables.getIntTable(rows, 2);
+        String col0 = table.getSchema().getColumnNames().get(0);
+        String col1 = table.getSchema().getColumnNames().get(1);
+        IHistogramBuckets b0 = new DoubleHistogramBuckets(col0, 0, 5 * rows, 100);
+        IHistogramBuckets b1 = new DoubleHistogramBuckets(col1, 0, 5 * rows, 40);
+        Serializable value;
+        switch (this.result) {
+            case "histogram":
+                value = new HistogramSketch(b0).create(table);
+                break;
+            case "histogram2D":
+                value = new Histogram2DSketch(b0, b1).create(table);
+                break;
+            case "nextK":
+                value = new NextKSketch(table.getRecordOrder(true), null, null, 100).create(table);
+                break;
+            case "hyperLogLog":
+                value = new HLogLogSketch(col0, 12, 1234, null).create(table);
+                break;
+            case "heavyHitters":
+                value = new MGFreqKSketch(table.getSchema().project(c -> c.equals(col0)), 0.01)
+                        .create(table);
+                break;
+            default:
+                throw new RuntimeException("Unexpected result " + this.result);
+        }
+        this.partial = new PartialResult<Serializable>(1.0, value);
+        this.serialized = SerializationUtils.serialize(this.partial);
+        this.encoded = WireFormat.encode(this.partial, WireFormat.CURRENT);
+    }
+
+    @Benchmark
+    public byte[] javaSerialize() {
+        return SerializationUtils.serialize(this.partial);
+    }
+
+    @Benchmark
+    public Object javaDeserialize() {
+        return SerializationUtils.deserialize(this.serialized);
+    }
+
+    @Benchmark
+    public ByteString wireEncode() {
+        return WireFormat.encode(this.partial, WireFormat.CURRENT).getSerializedOp();
+    }
+
+    @Benchmark
+    public PartialResult<?> wireDecode() {
+        return WireFormat.decode(this.encoded);
+    }
+}
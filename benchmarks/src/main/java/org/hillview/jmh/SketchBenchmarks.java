@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.jmh;
+
+import org.hillview.sketches.*;
+import org.hillview.sketches.results.*;
+import org.hillview.table.RecordOrder;
+import org.hillview.table.SortIndexCache;
+import org.hillview.table.api.ITable;
+import org.hillview.utils.TestTables;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the sketches that are computed on each partition of a table.
+ * The tables are synthetic, and are generated once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SketchBenchmarks {
+    @Param({"1000000"})
+    public int rows;
+
+    private ITable ints;
+    private ITable strings;
+    private String col0;
+    private String col1;
+    private IHistogramBuckets buckets0;
+    private IHistogramBuckets buckets1;
+    private RecordOrder order;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.ints = TestTables.getIntTable(this.rows, 2);
+        this.strings = TestTables.randStringTable(this.rows, TestTables.randStringList(1000, 10));
+        this.col0 = this.ints.getSchema().getColumnNames().get(0);
+        this.col1 = this.ints.getSchema().getColumnNames().get(1);
+        this.buckets0 = new DoubleHistogramBuckets(this.col0, 0, 5 * this.rows, 100);
+        this.buckets1 = new DoubleHistogramBuckets(this.col1, 0, 5 * this.rows, 40);
+        this.order = this.ints.getRecordOrder(true);
+    }
+
+    @Benchmark
+    public Groups<Count> histogram() {
+        return new HistogramSketch(this.buckets0).create(this.ints);
+    }
+
+    @Benchmark
+    public Groups<Groups<Count>> histogram2D() {
+        return new Histogram2DSketch(this.buckets0, this.buckets1).create(this.ints);
+    }
+
+    /**
+     * NextK on a table without a cached sort index; this scans the whole table.
+     */
+    @Benchmark
+    public NextKList nextKScan() {
+        return new NextKSketch(this.order, null, null, 20).createByScan(this.ints);
+    }
+
+    /**
+     * NextK using the cached sort index, as when paging through a spreadsheet.
+     */
+    @Benchmark
+    public NextKList nextKIndexed() {
+        return new NextKSketch(this.order, null, null, 20).create(this.ints);
+    }
+
+    @Benchmark
+    public HLogLog hyperLogLogInts() {
+        return new HLogLogSketch(this.col0, 12, 1234, null).create(this.ints);
+    }
+
+    @Benchmark
+    public HLogLog hyperLogLogStrings() {
+        return new HLogLogSketch("Name", 12, 1234, null).create(this.strings);
+    }
+
+    @Benchmark
+    public FreqKListMG heavyHittersInts() {
+        MGFreqKSketch sketch = new MGFreqKSketch(
+                this.ints.getSchema().project(c -> c.equals(this.col0)), 0.01);
+        return sketch.create(this.ints);
+    }
+
+    @Benchmark
+    public FreqKListMG heavyHittersStrings() {
+        return new MGFreqKSketch(this.strings.getSchema(), 0.01).create(this.strings);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SortIndexCache.purge();
+    }
+}
@@ -2,12 +2,13 @@
 # A small shell script which rebuilds both projects that compose Hillview
 
 usage() {
-    echo "rebuild.sh [-s][-h][-a]"
+    echo "rebuild.sh [-s][-h][-a][-b]"
     echo "Rebuild and the program"
     echo "-s: skip tests (default)"
     echo "-t: run tests"
     echo "-h: help"
     echo "-a: build all jars, including various tools"
+    echo "-b: also build the JMH benchmarks"
     exit 1
 }
 
@@ -21,7 +22,8 @@ set -ex
 
 TESTARGS="-DskipTests"
 TOOLSARGS=""
-while getopts shta FLAG; do
+BENCHMARKS=0
+while getopts shtab FLAG; do
    case ${FLAG} in
       s) TESTARGS="-DskipTests"
          echo "Skipping tests"
@@ -32,6 +34,9 @@ while getopts shta FLAG; do
       t) TESTARGS=""
          echo "Running tests"
          ;;
+      b) BENCHMARKS=1
+         echo "Building benchmarks"
+         ;;
       *) usage
          ;;
    esac
@@ -44,3 +49,8 @@ popd
 pushd ${mydir}/../web
 mvn ${TESTARGS} clean package
 popd
+if [ ${BENCHMARKS} -eq 1 ]; then
+    pushd ${mydir}/../benchmarks
+    mvn clean package
+    popd
+fi
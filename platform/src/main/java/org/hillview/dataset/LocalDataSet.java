@@ -18,7 +18,9 @@
 package org.hillview.dataset;
 
 import org.hillview.dataset.api.*;
+import org.hillview.table.api.ITable;
 import org.hillview.utils.*;
+import rx.Emitter;
 import rx.Observable;
 import rx.Scheduler;
 import rx.schedulers.Schedulers;
@@ -76,26 +78,56 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
 
     /**
      * Schedule the computation using the LocalDataSet.workScheduler.
-     * @param data  Data whose computation is scheduled
+     * @param operation  Operation performed; the time the computation waits
+     *                   for a thread is recorded in the OperationMetrics.
+     * @param data       Data whose computation is scheduled
      */
-    private <S> Observable<S> schedule(Observable<S> data) {
+    private <S> Observable<S> schedule(Object operation, Observable<S> data) {
         if (this.separateThread) {
-            return data.subscribeOn(LocalDataSet.workScheduler)
+            return Observable.defer(() -> {
+                final long scheduled = System.nanoTime();
+                return data.doOnSubscribe(() -> OperationMetrics.instance.recordInterval(
+                        OperationMetrics.operationName(operation),
+                        OperationMetrics.Metric.QUEUE_WAIT, scheduled, System.nanoTime(), 0))
+                    .subscribeOn(LocalDataSet.workScheduler)
                     .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler());
+            });
         }
         return data;
     }
 
+    /**
+     * Records the time spent computing an operation on the data of this dataset,
+     * and the number of rows scanned.
+     * @param operation  Operation performed.
+     * @param start      Time when the computation started, as given by System.nanoTime.
+     */
+    private void recordCompute(Object operation, long start) {
+        long end = System.nanoTime();
+        String name = OperationMetrics.operationName(operation);
+        long rows = 0;
+        if (this.data instanceof ITable) {
+            rows = ((ITable)this.data).getNumOfRows();
+            OperationMetrics.instance.record(name, OperationMetrics.Metric.ROWS, rows);
+        }
+        OperationMetrics.instance.recordInterval(
+                name, OperationMetrics.Metric.COMPUTE, start, end, rows);
+    }
+
     @Override
     public <S> Observable<PartialResult<IDataSet<S>>> map(final IMap<T, S> mapper) {
         // Actual map computation performed lazily when observable is subscribed to.
         final Callable<IDataSet<S>> callable = () -> {
             try {
-                HillviewLogger.instance.info("Starting map", "{0}:{1}",
+                boolean logged = HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                        "Starting map", "{0}:{1}",
                         this, mapper.asString());
+                long start = System.nanoTime();
                 S result = mapper.apply(LocalDataSet.this.data);
-                HillviewLogger.instance.info("Completed map", "{0}:{1}",
-                        this, mapper.asString());
+                this.recordCompute(mapper, start);
+                if (logged)
+                    HillviewLogger.instance.info("Completed map", "{0}:{1}",
+                            this, mapper.asString());
                 return new LocalDataSet<S>(result);
             } catch (final Throwable t) {
                 throw new Exception(t);
@@ -105,7 +137,7 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
         // Wrap the produced data in a PartialResult
         Observable<PartialResult<IDataSet<S>>> data = mapped
                 .map(PartialResult::new);
-        return this.schedule(data);
+        return this.schedule(mapper, data);
     }
 
     @Override
@@ -116,11 +148,13 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
                 List<S> list = mapper.apply(LocalDataSet.this.data);
                 List<IDataSet<S>> locals = new ArrayList<IDataSet<S>>();
                 for (S s : Converters.checkNull(list)) {
-                    HillviewLogger.instance.info("Starting flatMap", "{0}:{1}",
+                    boolean logged = HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                            "Starting flatMap", "{0}:{1}",
                             this, mapper.asString());
                     IDataSet<S> ds = new LocalDataSet<S>(s);
-                    HillviewLogger.instance.info("Completed flatMap", "{0}:{1}",
-                            this, mapper.asString());
+                    if (logged)
+                        HillviewLogger.instance.info("Completed flatMap", "{0}:{1}",
+                                this, mapper.asString());
                     locals.add(ds);
                 }
                 return (IDataSet<S>) new ParallelDataSet<S>(locals);
@@ -131,7 +165,7 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
         final Observable<IDataSet<S>> mapped = Observable.fromCallable(callable);
         // Wrap the produced data in a PartialResult
         Observable<PartialResult<IDataSet<S>>> data = mapped.map(PartialResult::new);
-        return this.schedule(data);
+        return this.schedule(mapper, data);
     }
 
     @Override
@@ -162,11 +196,13 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
     @Override
     public Observable<PartialResult<IDataSet<T>>> prune(IMap<T, Boolean> isEmpty) {
         final Callable<IDataSet<T>> callable = () -> {
-            HillviewLogger.instance.info("Starting prune", "{0}:{1}",
+            boolean logged = HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                    "Starting prune", "{0}:{1}",
                     this, isEmpty.asString());
             Boolean result = isEmpty.apply(LocalDataSet.this.data);
-            HillviewLogger.instance.info("Completed prune", "{0}:{1} result is {2}",
-                    this, isEmpty.asString(), result);
+            if (logged)
+                HillviewLogger.instance.info("Completed prune", "{0}:{1} result is {2}",
+                        this, isEmpty.asString(), result);
             assert result != null;
             return result ? null : this;
         };
@@ -174,14 +210,15 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
         // Wrap the produced data in a PartialResult
         Observable<PartialResult<IDataSet<T>>> data = result
                 .map(PartialResult::new);
-        return this.schedule(data);
+        return this.schedule(isEmpty, data);
     }
 
     @Override
     public Observable<PartialResult<ControlMessage.StatusList>> manage(ControlMessage message) {
         final Callable<ControlMessage.StatusList> callable = () -> {
-            HillviewLogger.instance.info("Starting manage", "{0}:{1}",
-                    this, message.toString());
+            boolean logged = HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                    "Starting manage", "{0}:{1}",
+                    this, message);
             ControlMessage.Status status;
             try {
                 status = message.localAction(this);
@@ -190,25 +227,56 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
                 HillviewLogger.instance.error("Exception during manage", t);
             }
             ControlMessage.StatusList result = new ControlMessage.StatusList(status);
-            HillviewLogger.instance.info("Completed manage", "{0}:{1}",
-                    this, message.toString());
+            if (logged)
+                HillviewLogger.instance.info("Completed manage", "{0}:{1}",
+                        this, message);
             return result;
         };
         final Observable<ControlMessage.StatusList> executed = Observable.fromCallable(callable);
         return executed.map(PartialResult::new);
     }
 
+    /**
+     * Runs a progressive sketch, emitting each delta as soon as it is reported.
+     */
+    private <R extends ISketchResult> Observable<PartialResult<R>> progressiveSketch(
+            final IProgressiveSketch<T, R> sketch) {
+        final Observable<PartialResult<R>> deltas = Observable.create(emitter -> {
+            try {
+                boolean logged = HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                        "Starting progressive sketch", "{0}:{1}",
+                        this, sketch.asString());
+                long start = System.nanoTime();
+                sketch.createProgressive(this.data, emitter::onNext);
+                this.recordCompute(sketch, start);
+                if (logged)
+                    HillviewLogger.instance.info("Completed progressive sketch", "{0}:{1}",
+                            this, sketch.asString());
+                emitter.onCompleted();
+            } catch (final Throwable t) {
+                emitter.onError(new Exception(t));
+            }
+        }, Emitter.BackpressureMode.BUFFER);
+        return this.schedule(sketch, deltas);
+    }
+
     @Override
     public <R extends ISketchResult> Observable<PartialResult<R>> sketch(final ISketch<T, R> sketch) {
+        if (sketch instanceof IProgressiveSketch)
+            return this.progressiveSketch((IProgressiveSketch<T, R>)sketch);
         // Immediately return a zero partial result
         // final Observable<PartialResult<R>> zero = this.zero(sketch::zero);
         final Callable<R> callable = () -> {
             try {
-                HillviewLogger.instance.info("Starting sketch", "{0}:{1}",
+                boolean logged = HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                        "Starting sketch", "{0}:{1}",
                         this, sketch.asString());
+                long start = System.nanoTime();
                 R result = sketch.create(this.data);
-                HillviewLogger.instance.info("Completed sketch", "{0}:{1}",
-                        this, sketch.asString());
+                this.recordCompute(sketch, start);
+                if (logged)
+                    HillviewLogger.instance.info("Completed sketch", "{0}:{1}",
+                            this, sketch.asString());
                 return result;
             } catch (final Throwable t) {
                 throw new Exception(t);
@@ -219,7 +287,7 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
         final Observable<PartialResult<R>> pro = sketched.map(PartialResult::new);
         // Concatenate with the zero.
         //Observable<PartialResult<R>> result = zero.concatWith(pro);
-        return this.schedule(pro);
+        return this.schedule(sketch, pro);
     }
 
     @Override
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.hillview.utils.HillviewLogger;
+
+import javax.annotation.Nullable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects metrics about the operations executed by the datasets in this process,
+ * aggregated by operation; the operation is usually the class of a sketch.
+ * Recording a value only updates a few striped counters, so the metrics can be
+ * always enabled.  In addition, the individual operations can be recorded in a
+ * trace, which can be written in the Chrome trace event format and viewed with
+ * chrome://tracing.
+ */
+public final class OperationMetrics {
+    /**
+     * Metrics that are recorded for each operation.
+     */
+    public enum Metric {
+        /**
+         * Nanoseconds between scheduling a partition computation and its start.
+         */
+        QUEUE_WAIT,
+        /**
+         * Nanoseconds spent computing on a partition.
+         */
+        COMPUTE,
+        /**
+         * Rows scanned in a partition.
+         */
+        ROWS,
+        /**
+         * Bytes of the serialized results sent to the network.
+         */
+        SERIALIZED_BYTES,
+        /**
+         * Nanoseconds spent serializing results.
+         */
+        SERIALIZATION,
+        /**
+         * Nanoseconds spent merging partial results.
+         */
+        MERGE
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+    /**
+     * Maximum number of events kept in a trace.
+     */
+    private static final int MAX_TRACE_EVENTS = 1000000;
+
+    public static final OperationMetrics instance = new OperationMetrics();
+
+    /**
+     * Aggregated metrics of one operation.
+     */
+    private static final class Aggregate {
+        final LongAdder[] count;
+        final LongAdder[] sum;
+        final LongAccumulator[] max;
+
+        Aggregate() {
+            this.count = new LongAdder[METRICS.length];
+            this.sum = new LongAdder[METRICS.length];
+            this.max = new LongAccumulator[METRICS.length];
+            for (int i = 0; i < METRICS.length; i++) {
+                this.count[i] = new LongAdder();
+                this.sum[i] = new LongAdder();
+                this.max[i] = new LongAccumulator(Math::max, 0);
+            }
+        }
+
+        void add(Metric metric, long value) {
+            int i = metric.ordinal();
+            this.count[i].increment();
+            this.sum[i].add(value);
+            this.max[i].accumulate(value);
+        }
+    }
+
+    /**
+     * An event in a trace: an operation that took place in an interval.
+     */
+    private static final class TraceEvent {
+        final String name;
+        final String category;
+        final long threadId;
+        final long start;
+        final long duration;
+        final long rows;
+
+        TraceEvent(String name, String category, long threadId,
+                   long start, long duration, long rows) {
+            this.name = name;
+            this.category = category;
+            this.threadId = threadId;
+            this.start = start;
+            this.duration = duration;
+            this.rows = rows;
+        }
+    }
+
+    private volatile boolean enabled;
+    private final ConcurrentHashMap<String, Aggregate> aggregates;
+    /**
+     * Events of the current trace; null when not tracing.
+     */
+    @Nullable
+    private volatile ConcurrentLinkedQueue<TraceEvent> trace;
+    private final AtomicInteger traceSize;
+    private long traceStart;
+
+    private OperationMetrics() {
+        this.enabled = true;
+        this.aggregates = new ConcurrentHashMap<String, Aggregate>();
+        this.trace = null;
+        this.traceSize = new AtomicInteger();
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Name of an operation performed by the specified object.
+     */
+    public static String operationName(Object operation) {
+        return operation.getClass().getName();
+    }
+
+    /**
+     * Records a value of a metric.
+     * @param operation  Operation that produced the value.
+     * @param metric     Metric measured.
+     * @param value      Measured value.
+     */
+    public void record(String operation, Metric metric, long value) {
+        if (!this.enabled)
+            return;
+        Aggregate aggregate = this.aggregates.get(operation);
+        if (aggregate == null)
+            aggregate = this.aggregates.computeIfAbsent(operation, o -> new Aggregate());
+        aggregate.add(metric, value);
+    }
+
+    /**
+     * Records a metric that measures a time interval, adding it to the trace if
+     * tracing is active.
+     * @param operation  Operation that was executed.
+     * @param metric     Metric measured; its value is the interval duration.
+     * @param start      Start of the interval, as given by System.nanoTime.
+     * @param end        End of the interval, as given by System.nanoTime.
+     * @param rows       Rows processed during the interval; 0 if unknown.
+     */
+    public void recordInterval(String operation, Metric metric, long start, long end, long rows) {
+        if (!this.enabled)
+            return;
+        this.record(operation, metric, end - start);
+        ConcurrentLinkedQueue<TraceEvent> events = this.trace;
+        if (events != null && this.traceSize.getAndIncrement() < MAX_TRACE_EVENTS)
+            events.add(new TraceEvent(operation, metric.name(),
+                    Thread.currentThread().getId(), start, end - start, rows));
+    }
+
+    /**
+     * Discards all metrics collected.
+     */
+    public void reset() {
+        this.aggregates.clear();
+    }
+
+    /**
+     * Starts recording a new trace; the events recorded previously are discarded.
+     */
+    public synchronized void startTrace() {
+        this.traceStart = System.nanoTime();
+        this.traceSize.set(0);
+        this.trace = new ConcurrentLinkedQueue<TraceEvent>();
+    }
+
+    /**
+     * Stops recording the trace and writes it in the Chrome trace event format.
+     * @param writer  Writer where the trace is written.
+     * @return        The number of events written.
+     */
+    public synchronized int stopTrace(Writer writer) throws IOException {
+        ConcurrentLinkedQueue<TraceEvent> events = this.trace;
+        this.trace = null;
+        if (events == null)
+            return 0;
+        JsonArray array = new JsonArray();
+        for (TraceEvent e : events) {
+            JsonObject o = new JsonObject();
+            o.addProperty("name", e.name);
+            o.addProperty("cat", e.category);
+            o.addProperty("ph", "X");
+            o.addProperty("ts", (e.start - this.traceStart) / 1000.0);
+            o.addProperty("dur", e.duration / 1000.0);
+            o.addProperty("pid", 0);
+            o.addProperty("tid", e.threadId);
+            if (e.rows > 0) {
+                JsonObject args = new JsonObject();
+                args.addProperty("rows", e.rows);
+                o.add("args", args);
+            }
+            array.add(o);
+        }
+        JsonObject result = new JsonObject();
+        result.add("traceEvents", array);
+        writer.write(result.toString());
+        return array.size();
+    }
+
+    /**
+     * Stops recording the trace and writes it to the specified file.
+     * @return A description of the result.
+     */
+    public String stopTrace(String file) {
+        try (Writer writer = new FileWriter(file)) {
+            int events = this.stopTrace(writer);
+            HillviewLogger.instance.info("Wrote trace", "{0} events to {1}", events, file);
+            return events + " events written to " + file;
+        } catch (IOException ex) {
+            HillviewLogger.instance.error("Error writing trace", ex);
+            return "Error writing trace: " + ex.getMessage();
+        }
+    }
+
+    /**
+     * A readable summary of the metrics of each operation.  Times are in milliseconds.
+     */
+    public String getSummary() {
+        List<String> lines = new ArrayList<String>();
+        Map<String, Aggregate> sorted = new TreeMap<String, Aggregate>(this.aggregates);
+        for (Map.Entry<String, Aggregate> e : sorted.entrySet()) {
+            Aggregate a = e.getValue();
+            StringBuilder builder = new StringBuilder();
+            String name = e.getKey();
+            builder.append(name.substring(name.lastIndexOf('.') + 1));
+            for (Metric m : METRICS) {
+                int i = m.ordinal();
+                long count = a.count[i].sum();
+                if (count == 0)
+                    continue;
+                long sum = a.sum[i].sum();
+                long max = a.max[i].get();
+                builder.append(" ").append(m.name().toLowerCase()).append(": ");
+                if (m == Metric.ROWS || m == Metric.SERIALIZED_BYTES)
+                    builder.append(String.format("count=%d total=%d max=%d", count, sum, max));
+                else
+                    builder.append(String.format("count=%d total=%.1f avg=%.3f max=%.3f",
+                            count, sum / 1e6, sum / 1e6 / count, max / 1e6));
+            }
+            lines.add(builder.toString());
+        }
+        if (lines.isEmpty())
+            return "No operations recorded";
+        return String.join("; ", lines);
+    }
+}
@@ -107,15 +107,25 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
      * time interval) and "adds" them up emitting a single value.
      * @param data  A stream of data.
      * @param adder A monoid that knows how to add the data.
+     * @param operation Operation that produced the data; the time spent adding
+     *                  is recorded in the OperationMetrics.
      * @return  A shorter stream, in which some of the values in the data stream have been
      * added together.
      */
-    private <R> Observable<R> bundle(final Observable<R> data, IMonoid<R> adder) {
+    private <R> Observable<R> bundle(final Observable<R> data, IMonoid<R> adder, Object operation) {
         if (this.bundleInterval > 0) {
             // If a time interval has no data we don't want to produce a zero.
             Observable<List<R>> bundled = data.buffer(this.bundleInterval, bundleTimeUnit)
                        .filter(e -> !e.isEmpty());
-            return bundled.map(adder::reduce);
+            return bundled.map(list -> {
+                if (list.size() == 1)
+                    return list.get(0);
+                long start = System.nanoTime();
+                R result = adder.reduce(list);
+                OperationMetrics.instance.recordInterval(OperationMetrics.operationName(operation),
+                        OperationMetrics.Metric.MERGE, start, System.nanoTime(), 0);
+                return result;
+            });
         } else {
             return data;
         }
@@ -181,7 +191,8 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
     @Override
     public <S> Observable<PartialResult<IDataSet<S>>> map(
              final IMap<T, S> mapper) {
-        HillviewLogger.instance.info("Invoked map", "target={0}", this);
+        HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                "Invoked map", "target={0}", this);
         final List<Observable<Pair<Integer, PartialResult<IDataSet<S>>>>> obs =
                 new ArrayList<Observable<Pair<Integer, PartialResult<IDataSet<S>>>>>(this.size());
         // We run the mapper over each child, and then we tag the results produced by
@@ -200,7 +211,8 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
     @Override
     public Observable<PartialResult<IDataSet<T>>> prune(
             final IMap<T, Boolean> mapper) {
-        HillviewLogger.instance.info("Invoked prune", "target={0}", this);
+        HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                "Invoked prune", "target={0}", this);
         final List<Observable<PartialResult<IDataSet<T>>>> obs =
                 new ArrayList<Observable<PartialResult<IDataSet<T>>>>(this.size());
         for (int i = 0; i < this.size(); i++) {
@@ -221,7 +233,8 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
 
     @Override
     public <S> Observable<PartialResult<IDataSet<S>>> flatMap(IMap<T, List<S>> mapper) {
-        HillviewLogger.instance.info("Invoked flatMap", "target={0}", this);
+        HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                "Invoked flatMap", "target={0}", this);
         final List<Observable<Pair<Integer, PartialResult<IDataSet<S>>>>> obs =
                 new ArrayList<Observable<Pair<Integer, PartialResult<IDataSet<S>>>>>(this.size());
         // We run the mapper over each child, and then we tag the results produced by
@@ -244,7 +257,8 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
     @Override
     public <S, R> Observable<PartialResult<IDataSet<R>>> zip(
             final IDataSet<S> other, IMap<Pair<T, S>, R> map) {
-        HillviewLogger.instance.info("Invoked zip", "target={0}", this);
+        HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                "Invoked zip", "target={0}", this);
         if (!(other instanceof ParallelDataSet<?>))
             throw new RuntimeException("Expected a ParallelDataSet " + other);
         final ParallelDataSet<S> os = (ParallelDataSet<S>)other;
@@ -268,7 +282,8 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
 
     @Override
     public <R> Observable<PartialResult<IDataSet<R>>> zipN(List<IDataSet<T>> other, IMap<List<T>, R> map) {
-        HillviewLogger.instance.info("Invoked zipN", "target={0}", this);
+        HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                "Invoked zipN", "target={0}", this);
         List<Observable<Pair<Integer, PartialResult<IDataSet<R>>>>> obs =
                 new ArrayList<Observable<Pair<Integer, PartialResult<IDataSet<R>>>>>();
         final int mySize = this.size();
@@ -293,7 +308,8 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
 
     @Override
     public Observable<PartialResult<ControlMessage.StatusList>> manage(ControlMessage message) {
-        HillviewLogger.instance.info("Invoked manage", "target={0}", this);
+        HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                "Invoked manage", "target={0}", this);
         List<Observable<PartialResult<ControlMessage.StatusList>>> obs =
                 new ArrayList<Observable<PartialResult<ControlMessage.StatusList>>>();
         final int mySize = this.size();
@@ -307,7 +323,8 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
         }
 
         final Callable<ControlMessage.StatusList> callable = () -> {
-            HillviewLogger.instance.info("Starting manage", "{0}", message.toString());
+            boolean logged = HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                    "Starting manage", "{0}", message);
             ControlMessage.Status status;
             try {
                 status = message.parallelAction(this);
@@ -317,7 +334,8 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
             ControlMessage.StatusList result = new ControlMessage.StatusList();
             if (status != null)
                 result.add(status);
-            HillviewLogger.instance.info("Completed manage", "{0}", message.toString());
+            if (logged)
+                HillviewLogger.instance.info("Completed manage", "{0}", message);
             return result;
         };
         final Observable<ControlMessage.StatusList> executed = Observable.fromCallable(callable);
@@ -327,13 +345,14 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
 
         Observable<PartialResult<ControlMessage.StatusList>> merged = Observable.merge(obs);
         merged = this.bundle(merged, new PartialResultMonoid<ControlMessage.StatusList>(new
-                ControlMessage.StatusListMonoid()));
+                ControlMessage.StatusListMonoid()), message);
         return merged;
     }
 
     @Override
     public <R extends ISketchResult> Observable<PartialResult<R>> sketch(final ISketch<T, R> sketch) {
-        HillviewLogger.instance.info("Invoked sketch", "target={0}", this);
+        HillviewLogger.instance.infoSampled(HillviewLogger.PARTITION,
+                "Invoked sketch", "target={0}", this);
         List<Observable<PartialResult<R>>> obs = new ArrayList<Observable<PartialResult<R>>>();
         final int mySize = this.size();
         Observable<PartialResult<R>> result;
@@ -350,7 +369,7 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
             // Just merge all sketch results
             result = Observable.merge(obs);
             PartialResultMonoid<R> prm = new PartialResultMonoid<R>(sketch);
-            result = this.bundle(result, prm);
+            result = this.bundle(result, prm, sketch);
         }
         result = result
             .doOnUnsubscribe(
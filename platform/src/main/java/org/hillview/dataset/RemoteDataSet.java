@@ -130,6 +130,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
                     .setSerializedOp(ByteString.copyFrom(serializedOp))
                     .setHighId(operationId.getMostSignificantBits())
                     .setLowId(operationId.getLeastSignificantBits())
+                    .setCodec(WireFormat.CURRENT)
                     .build();
             this.subject = RemoteDataSet.createSerializedSubject();
             this.responseObserver = null;
@@ -362,11 +363,10 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         @Override
         @SuppressWarnings("unchecked")
         public PartialResult<S> processResponse(final PartialResponse response) {
-            final OperationResponse<?> op = SerializationUtils.deserialize(response
-                    .getSerializedOp().toByteArray());
-            assert op.result != null;
-            HillviewLogger.instance.info("Receiving partial sketch result", "{0}", op.result);
-            return (PartialResult<S>)op.result;
+            final PartialResult<?> result = WireFormat.decode(response);
+            assert result != null;
+            HillviewLogger.instance.info("Receiving partial sketch result", "{0}", result);
+            return (PartialResult<S>)result;
         }
     }
 
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.api;
+
+import javax.annotation.Nullable;
+import java.util.function.Consumer;
+
+/**
+ * A sketch that can report partial results before it has processed all its input.
+ * @param <T> Input data type.
+ * @param <R> Output data type.
+ */
+public interface IProgressiveSketch<T, R extends ISketchResult> extends ISketch<T, R> {
+    /**
+     * Computes the sketch over the data, reporting the result as a sequence of deltas.
+     * Each delta is the sketch of a disjoint part of the data, so adding all deltas
+     * using the add method produces the same result as create(data).
+     * The deltaDone field of each delta is the fraction of the data it summarizes;
+     * these add up to 1.  Deltas may be reported from different threads, but
+     * never concurrently.
+     * @param data    Data to sketch.
+     * @param deltas  Invoked with each delta.
+     */
+    void createProgressive(@Nullable T data, Consumer<PartialResult<R>> deltas);
+}
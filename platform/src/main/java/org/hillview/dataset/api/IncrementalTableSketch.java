@@ -17,15 +17,20 @@
 
 package org.hillview.dataset.api;
 
+import org.hillview.sketches.highorder.MorselTableSketch;
 import org.hillview.sketches.highorder.QuantizedTableSketch;
 import org.hillview.sketches.highorder.SamplingTableSketch;
 import org.hillview.table.QuantizationSchema;
+import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.IRowIterator;
 import org.hillview.table.api.ISketchWorkspace;
 import org.hillview.table.api.ITable;
 import org.hillview.utils.Converters;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * An incremental table sketch can update the result for each table row.
@@ -34,7 +39,28 @@ import javax.annotation.Nullable;
 public abstract class IncrementalTableSketch<
         R extends ISketchResult & IScalable<R>,
         W extends ISketchWorkspace>
-        implements TableSketch<R> {
+        implements TableSketch<R>, IProgressiveSketch<ITable, R> {
+    /**
+     * Number of rows in a morsel when a table is processed in parallel.
+     * Tables with fewer than twice this number of rows are processed
+     * by a single thread.
+     */
+    public static final int MORSEL_SIZE = 1 << 20;
+    /**
+     * Number of rows handed at once to incrementBatch.
+     */
+    public static final int BATCH_SIZE = 1024;
+    /**
+     * A sketch computed progressively reports its pending results once
+     * this many milliseconds have passed since the previous report.
+     */
+    public static final long PROGRESS_INTERVAL_MS = 100;
+    /**
+     * A sketch computed progressively also reports its pending results
+     * once they summarize this many rows.
+     */
+    public static final int PROGRESS_ROWS = 16 * MORSEL_SIZE;
+
     /**
      * Add to the result the data in the specified row number.
      * @param result     Result to add to.
@@ -42,6 +68,36 @@ public abstract class IncrementalTableSketch<
      */
     public abstract void increment(W workspace, R result, int rowNumber);
 
+    /**
+     * Add to the result the data in a batch of rows: rows[from], ..., rows[to - 1].
+     * This must be equivalent to calling increment for each of these rows;
+     * sketches override it to process the batch one column at a time.
+     * @param rows  Row numbers in the table.
+     * @param from  First position in rows.
+     * @param to    Last position in rows (exclusive).
+     */
+    public void incrementBatch(W workspace, R result, int[] rows, int from, int to) {
+        for (int i = from; i < to; i++)
+            this.increment(workspace, result, rows[i]);
+    }
+
+    /**
+     * Add to the result all the rows produced by an iterator, in batches.
+     */
+    public void incrementAll(W workspace, R result, IRowIterator it) {
+        int[] batch = new int[BATCH_SIZE];
+        int count = 0;
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow()) {
+            batch[count++] = row;
+            if (count == BATCH_SIZE) {
+                this.incrementBatch(workspace, result, batch, 0, count);
+                count = 0;
+            }
+        }
+        if (count > 0)
+            this.incrementBatch(workspace, result, batch, 0, count);
+    }
+
     /**
      * Allocates a workspace for a sketch, that can later
      * be passed to add.
@@ -49,6 +105,16 @@ public abstract class IncrementalTableSketch<
      */
     public abstract W initialize(ITable data);
 
+    /**
+     * Names of the columns read by initialize, including the columns read
+     * by nested sketches.  Sketches that read several columns load them all
+     * with a single call to getLoadedColumns, so that lazy columns are loaded
+     * together.
+     */
+    public List<String> getColumnNames() {
+        return new ArrayList<String>();
+    }
+
     /**
      * This function is invoked after computing a sketch over a sampled data
      * source to adjust the estimated counts.
@@ -59,19 +125,50 @@ public abstract class IncrementalTableSketch<
         return result.rescale(samplingRate);
     }
 
+    /**
+     * True if this sketch can be computed by running increment over disjoint
+     * ranges of rows, each with its own workspace and result, and then combining
+     * the results with add.  Sketches whose workspace carries state that
+     * depends on all rows seen (e.g., a seeded reservoir sample) must return false.
+     */
+    public boolean supportsMorsels() {
+        return false;
+    }
+
+    /**
+     * True if the rows in this set are processed in parallel morsels.
+     */
+    private boolean useMorsels(IMembershipSet set) {
+        return this.supportsMorsels() &&
+                set.getSize() >= 2 * MORSEL_SIZE &&
+                !set.useSparseColumn();
+    }
+
     @Override
     public R create(@Nullable ITable data) {
+        IMembershipSet set = Converters.checkNull(data).getMembershipSet();
+        if (this.useMorsels(set))
+            return this.morsels(MORSEL_SIZE).create(data);
         R result = Converters.checkNull(this.zero());
         W workspace = this.initialize(Converters.checkNull(data));
-        IRowIterator it = data.getRowIterator();
-        int row = it.getNextRow();
-        while (row >= 0) {
-            this.increment(workspace, result, row);
-            row = it.getNextRow();
-        }
+        this.incrementAll(workspace, result, data.getRowIterator());
         return result;
     }
 
+    /**
+     * Tables that are processed in morsels report the results of completed morsels
+     * as they become available; smaller tables are processed fast enough that
+     * they produce a single result.
+     */
+    @Override
+    public void createProgressive(@Nullable ITable data, Consumer<PartialResult<R>> deltas) {
+        IMembershipSet set = Converters.checkNull(data).getMembershipSet();
+        if (this.useMorsels(set))
+            new MorselTableSketch<>(this, MORSEL_SIZE).createProgressive(data, deltas);
+        else
+            deltas.accept(new PartialResult<R>(this.create(data)));
+    }
+
     /**
      * A sampled version of this sketch.
      * @param samplingRate  Sampling rate.
@@ -82,6 +179,14 @@ public abstract class IncrementalTableSketch<
         return new SamplingTableSketch<>(Converters.checkRate(samplingRate), seed, this);
     }
 
+    /**
+     * A version of this sketch which processes ranges of rows in parallel.
+     * @param morselSize  Number of consecutive rows in a range.
+     */
+    public TableSketch<R> morsels(int morselSize) {
+        return new MorselTableSketch<>(this, morselSize);
+    }
+
     public TableSketch<R> quantized(QuantizationSchema qs) {
         return new QuantizedTableSketch<>(this, qs);
     }
@@ -0,0 +1,491 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.hillview.dataset.api.ISketchResult;
+import org.hillview.sketches.results.*;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Schema;
+import org.hillview.table.SmallTable;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.columns.DoubleArrayColumn;
+import org.hillview.table.columns.IntArrayColumn;
+import org.hillview.table.columns.StringArrayColumn;
+import org.hillview.utils.JsonList;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compact binary encoding for the most common sketch results.
+ * Each encoded value starts with the tag of its encoder; tag 0 denotes null.
+ * Values that have no encoder cannot be handled by this codec; callers
+ * should check canEncode and fall back to Java serialization.
+ */
+public class CompactCodec {
+    private static final int NULL_TAG = 0;
+    private static final ICompactEncoder<?>[] byTag = new ICompactEncoder<?>[128];
+    private static final HashMap<Class<?>, ICompactEncoder<?>> byClass = new HashMap<Class<?>, ICompactEncoder<?>>();
+
+    static {
+        register(new CountEncoder());
+        register(new GroupsEncoder());
+        register(new HLogLogEncoder());
+        register(new SampleSetEncoder());
+        register(new NextKListEncoder());
+    }
+
+    /**
+     * Register a new encoder.  This should be done on all machines in the
+     * cluster before any values are exchanged.
+     */
+    public static synchronized void register(ICompactEncoder<?> encoder) {
+        int tag = encoder.getTag();
+        if (tag <= NULL_TAG || tag >= byTag.length)
+            throw new IllegalArgumentException("Illegal encoder tag " + tag);
+        if (byTag[tag] != null)
+            throw new IllegalArgumentException("Duplicate encoder tag " + tag);
+        byTag[tag] = encoder;
+        byClass.put(encoder.getEncodedClass(), encoder);
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static synchronized <T> ICompactEncoder<T> getEncoder(Class<?> clazz) {
+        return (ICompactEncoder<T>)byClass.get(clazz);
+    }
+
+    private static synchronized ICompactEncoder<?> getEncoder(int tag) {
+        ICompactEncoder<?> result = null;
+        if (tag > NULL_TAG && tag < byTag.length)
+            result = byTag[tag];
+        if (result == null)
+            throw new RuntimeException("Unknown encoder tag " + tag);
+        return result;
+    }
+
+    /**
+     * True if the value can be encoded by this codec.
+     */
+    public static <T> boolean canEncode(@Nullable T value) {
+        if (value == null)
+            return true;
+        ICompactEncoder<T> encoder = getEncoder(value.getClass());
+        return encoder != null && encoder.canEncode(value);
+    }
+
+    public static <T> void encode(@Nullable T value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_TAG);
+            return;
+        }
+        ICompactEncoder<T> encoder = getEncoder(value.getClass());
+        if (encoder == null)
+            throw new RuntimeException("No compact encoder for " + value.getClass());
+        out.writeByte(encoder.getTag());
+        encoder.encode(value, out);
+    }
+
+    @Nullable
+    public static Object decode(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        if (tag == NULL_TAG)
+            return null;
+        return getEncoder(tag).decode(in);
+    }
+
+    public static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+
+    public static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return result;
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Writes a signed value using zig-zag encoding, so small negative values are short.
+     */
+    public static void writeSignedVarLong(DataOutputStream out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readSignedVarLong(DataInputStream in) throws IOException {
+        long raw = readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public static int readVarInt(DataInputStream in) throws IOException {
+        long result = readVarLong(in);
+        if (result < 0 || result > Integer.MAX_VALUE)
+            throw new IOException("Integer out of range: " + result);
+        return (int)result;
+    }
+
+    /**
+     * Unlike DataOutputStream.writeUTF this has no length limit.
+     */
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class CountEncoder implements ICompactEncoder<Count> {
+        @Override
+        public int getTag() { return 1; }
+
+        @Override
+        public Class<?> getEncodedClass() { return Count.class; }
+
+        @Override
+        public boolean canEncode(Count value) { return true; }
+
+        @Override
+        public void encode(Count value, DataOutputStream out) throws IOException {
+            writeSignedVarLong(out, value.count);
+        }
+
+        @Override
+        public Count decode(DataInputStream in) throws IOException {
+            return new Count(readSignedVarLong(in));
+        }
+    }
+
+    /**
+     * Encodes a Groups of values that all have the same encoder;
+     * the element tag is written only once.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static class GroupsEncoder implements ICompactEncoder<Groups> {
+        @Override
+        public int getTag() { return 2; }
+
+        @Override
+        public Class<?> getEncodedClass() { return Groups.class; }
+
+        @Override
+        public boolean canEncode(Groups value) {
+            Class<?> elementClass = value.perMissing.getClass();
+            ICompactEncoder encoder = getEncoder(elementClass);
+            if (encoder == null || !encoder.canEncode(value.perMissing))
+                return false;
+            for (Object o : value.perBucket) {
+                if (o.getClass() != elementClass || !encoder.canEncode(o))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void encode(Groups value, DataOutputStream out) throws IOException {
+            ICompactEncoder encoder = getEncoder(value.perMissing.getClass());
+            assert encoder != null;
+            writeVarLong(out, value.perBucket.size());
+            out.writeByte(encoder.getTag());
+            for (Object o : value.perBucket)
+                encoder.encode(o, out);
+            encoder.encode(value.perMissing, out);
+        }
+
+        @Override
+        public Groups decode(DataInputStream in) throws IOException {
+            int size = readVarInt(in);
+            ICompactEncoder encoder = getEncoder(in.readUnsignedByte());
+            JsonList perBucket = new JsonList(size);
+            for (int i = 0; i < size; i++)
+                perBucket.add(encoder.decode(in));
+            Object perMissing = encoder.decode(in);
+            return new Groups(perBucket, (ISketchResult)perMissing);
+        }
+    }
+
+    static class HLogLogEncoder implements ICompactEncoder<HLogLog> {
+        @Override
+        public int getTag() { return 3; }
+
+        @Override
+        public Class<?> getEncodedClass() { return HLogLog.class; }
+
+        @Override
+        public boolean canEncode(HLogLog value) { return true; }
+
+        @Override
+        public void encode(HLogLog value, DataOutputStream out) throws IOException {
+            out.writeByte(value.getLogRegNum());
+            out.writeLong(value.getSeed());
+            out.write(value.getRegisters());
+        }
+
+        @Override
+        public HLogLog decode(DataInputStream in) throws IOException {
+            int logRegNum = in.readUnsignedByte();
+            long seed = in.readLong();
+            HLogLog.checkSpaceValid(logRegNum);
+            byte[] registers = new byte[1 << logRegNum];
+            in.readFully(registers);
+            return new HLogLog(logRegNum, seed, registers);
+        }
+    }
+
+    static class SampleSetEncoder implements ICompactEncoder<SampleSet> {
+        @Override
+        public int getTag() { return 4; }
+
+        @Override
+        public Class<?> getEncodedClass() { return SampleSet.class; }
+
+        @Override
+        public boolean canEncode(SampleSet value) { return true; }
+
+        @Override
+        public void encode(SampleSet value, DataOutputStream out) throws IOException {
+            out.writeLong(value.seed);
+            writeVarLong(out, value.count);
+            writeVarLong(out, value.missing);
+            out.writeDouble(value.min);
+            out.writeDouble(value.max);
+            writeVarLong(out, value.samples.length);
+            for (double d : value.samples)
+                out.writeDouble(d);
+        }
+
+        @Override
+        public SampleSet decode(DataInputStream in) throws IOException {
+            long seed = in.readLong();
+            long count = readVarLong(in);
+            long missing = readVarLong(in);
+            double min = in.readDouble();
+            double max = in.readDouble();
+            int size = readVarInt(in);
+            SampleSet result = new SampleSet(size, seed);
+            result.count = count;
+            result.missing = missing;
+            result.min = min;
+            result.max = max;
+            for (int i = 0; i < size; i++)
+                result.samples[i] = in.readDouble();
+            return result;
+        }
+    }
+
+    static class NextKListEncoder implements ICompactEncoder<NextKList> {
+        @Override
+        public int getTag() { return 5; }
+
+        @Override
+        public Class<?> getEncodedClass() { return NextKList.class; }
+
+        @Override
+        public boolean canEncode(NextKList value) {
+            return canEncodeTable(value.rows) &&
+                    (value.aggregates == null || canEncodeTable(value.aggregates));
+        }
+
+        @Override
+        public void encode(NextKList value, DataOutputStream out) throws IOException {
+            writeTable(value.rows, out);
+            out.writeBoolean(value.aggregates != null);
+            if (value.aggregates != null)
+                writeTable(value.aggregates, out);
+            writeVarLong(out, value.count.size());
+            for (int i = 0; i < value.count.size(); i++)
+                writeVarLong(out, value.count.getInt(i));
+            writeSignedVarLong(out, value.startPosition);
+            writeSignedVarLong(out, value.rowsScanned);
+        }
+
+        @Override
+        public NextKList decode(DataInputStream in) throws IOException {
+            SmallTable rows = readTable(in);
+            SmallTable aggregates = null;
+            if (in.readBoolean())
+                aggregates = readTable(in);
+            int size = readVarInt(in);
+            IntArrayList count = new IntArrayList(size);
+            for (int i = 0; i < size; i++)
+                count.add(readVarInt(in));
+            long startPosition = readSignedVarLong(in);
+            long rowsScanned = readSignedVarLong(in);
+            return new NextKList(rows, aggregates, count, startPosition, rowsScanned);
+        }
+    }
+
+    private static boolean canEncodeKind(ContentsKind kind) {
+        switch (kind) {
+            case String:
+            case Json:
+            case Integer:
+            case Date:
+            case Double:
+            case Time:
+            case Duration:
+            case LocalDate:
+                return true;
+            case None:
+            case Interval:
+            default:
+                return false;
+        }
+    }
+
+    private static boolean canEncodeTable(SmallTable table) {
+        for (ColumnDescription cd : table.getSchema().getColumnDescriptions())
+            if (!canEncodeKind(cd.kind))
+                return false;
+        return true;
+    }
+
+    /**
+     * Writes the rows of a small table column by column.  String columns
+     * are dictionary-encoded, since the rows of a NextKList frequently
+     * repeat values.
+     */
+    private static void writeTable(SmallTable table, DataOutputStream out) throws IOException {
+        int rowCount = table.getNumOfRows();
+        List<ColumnDescription> columns = table.getSchema().getColumnDescriptions();
+        writeVarLong(out, columns.size());
+        writeVarLong(out, rowCount);
+        for (ColumnDescription cd : columns) {
+            writeString(out, cd.name);
+            out.writeByte(cd.kind.ordinal());
+            IColumn col = table.getColumn(cd.name);
+            if (cd.kind == ContentsKind.String || cd.kind == ContentsKind.Json) {
+                HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+                List<String> values = new ArrayList<String>();
+                int[] codes = new int[rowCount];
+                for (int i = 0; i < rowCount; i++) {
+                    String s = col.isMissing(i) ? null : col.getString(i);
+                    if (s == null)
+                        continue;
+                    Integer code = dictionary.get(s);
+                    if (code == null) {
+                        values.add(s);
+                        code = values.size();
+                        dictionary.put(s, code);
+                    }
+                    codes[i] = code;  // 0 denotes missing
+                }
+                writeVarLong(out, values.size());
+                for (String s : values)
+                    writeString(out, s);
+                for (int c : codes)
+                    writeVarLong(out, c);
+            } else {
+                BitSet missing = new BitSet(rowCount);
+                for (int i = 0; i < rowCount; i++)
+                    if (col.isMissing(i))
+                        missing.set(i);
+                byte[] bits = missing.toByteArray();
+                writeVarLong(out, bits.length);
+                out.write(bits);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing.get(i))
+                        continue;
+                    if (cd.kind == ContentsKind.Integer)
+                        writeSignedVarLong(out, col.getInt(i));
+                    else
+                        out.writeDouble(col.getDouble(i));
+                }
+            }
+        }
+    }
+
+    private static SmallTable readTable(DataInputStream in) throws IOException {
+        int columnCount = readVarInt(in);
+        int rowCount = readVarInt(in);
+        Schema schema = new Schema();
+        List<IColumn> columns = new ArrayList<IColumn>(columnCount);
+        ContentsKind[] kinds = ContentsKind.values();
+        for (int c = 0; c < columnCount; c++) {
+            String name = readString(in);
+            int kindIndex = in.readUnsignedByte();
+            if (kindIndex >= kinds.length)
+                throw new IOException("Unknown column kind " + kindIndex);
+            ColumnDescription cd = new ColumnDescription(name, kinds[kindIndex]);
+            schema.append(cd);
+            IColumn col;
+            if (cd.kind == ContentsKind.String || cd.kind == ContentsKind.Json) {
+                StringArrayColumn strings = new StringArrayColumn(cd, rowCount);
+                // Map the codes of the dictionary on the wire to codes of the column.
+                int dictionarySize = readVarInt(in);
+                int[] codes = new int[dictionarySize + 1];
+                codes[0] = strings.encode(null);
+                for (int i = 0; i < dictionarySize; i++)
+                    codes[i + 1] = strings.encode(readString(in));
+                for (int i = 0; i < rowCount; i++) {
+                    int code = readVarInt(in);
+                    if (code > dictionarySize)
+                        throw new IOException("Invalid dictionary code " + code);
+                    strings.setCode(i, codes[code]);
+                }
+                col = strings;
+            } else {
+                byte[] bits = new byte[readVarInt(in)];
+                in.readFully(bits);
+                BitSet missing = BitSet.valueOf(bits);
+                if (cd.kind == ContentsKind.Integer) {
+                    IntArrayColumn ints = new IntArrayColumn(cd, rowCount);
+                    for (int i = 0; i < rowCount; i++) {
+                        if (missing.get(i))
+                            ints.setMissing(i);
+                        else
+                            ints.set(i, (int)readSignedVarLong(in));
+                    }
+                    col = ints;
+                } else {
+                    DoubleArrayColumn doubles = new DoubleArrayColumn(cd, rowCount);
+                    for (int i = 0; i < rowCount; i++) {
+                        if (missing.get(i))
+                            doubles.setMissing(i);
+                        else
+                            doubles.set(i, in.readDouble());
+                    }
+                    col = doubles;
+                }
+            }
+            columns.add(col);
+        }
+        if (rowCount == 0)
+            return new SmallTable(schema);
+        return new SmallTable(columns);
+    }
+}
@@ -30,6 +30,7 @@ import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
 import io.grpc.stub.StreamObserver;
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.hillview.dataset.OperationMetrics;
 import org.hillview.dataset.api.*;
 import org.hillview.pb.Ack;
 import org.hillview.pb.Command;
@@ -238,6 +239,21 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
         this.MEMOIZE = to;
     }
 
+    /**
+     * Change the maximum total size of the memoized results; this purges the memoized results.
+     * @param bytes  Size in bytes.
+     */
+    public void setMemoizationLimit(long bytes) {
+        this.memoizedCommands.setMaximumSize(bytes);
+    }
+
+    /**
+     * A description of the contents of the memoization cache and of its hit rate.
+     */
+    public String getMemoizationStatistics() {
+        return this.memoizedCommands.getStatistics();
+    }
+
     /**
      * Subscriber that handles map, flatMap and zip.
      */
@@ -394,6 +410,7 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
     public void sketch(final Command command, final StreamObserver<PartialResponse> responseObserver) {
         try {
             boolean memoize = MEMOIZE;  // The value may change while we execute
+            final int codec = WireFormat.negotiate(command);
             final SketchOperation sketchOp = this.respondIfReplyIsMemoized(command, responseObserver, false);
             if (sketchOp == null)
                 return;
@@ -403,6 +420,7 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                 return;
             final Observable<PartialResult<?>> observable = dataset.sketch(sketchOp.sketch);
             final UUID commandId = this.getId(command);
+            final String operation = OperationMetrics.operationName(sketchOp.sketch);
             Subscriber<PartialResult<?>> subscriber = new Subscriber<PartialResult<?>>() {
                 @Nullable private Object sketchResultAccumulator =
                         memoize ? sketchOp.sketch.getZero(): null;
@@ -415,13 +433,8 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                         try {
                             responseObserver.onCompleted();
                             if (memoize && this.sketchResultAccumulator != null) {
-                                final OperationResponse<PartialResult<?>> res =
-                                        new OperationResponse<PartialResult<?>>(
-                                                new PartialResult<Object>(1.0, this.sketchResultAccumulator));
-                                final byte[] bytes = SerializationUtils.serialize(res);
-                                final PartialResponse memoizedResult = PartialResponse.newBuilder()
-                                        .setSerializedOp(ByteString.copyFrom(bytes))
-                                        .build();
+                                final PartialResponse memoizedResult = WireFormat.encode(
+                                        new PartialResult<Object>(1.0, this.sketchResultAccumulator), codec);
                                 HillviewServer.this.memoizedCommands.insert(command, memoizedResult, 0);
                             }
                         } catch (Throwable ex) {
@@ -446,15 +459,22 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                     HillviewLogger.instance.info("Partial sketch result", "{0}", pr);
                     queue = queue.thenRunAsync(() -> {
                         try {
-                            if (memoize && this.sketchResultAccumulator != null)
+                            long start = System.nanoTime();
+                            if (memoize && this.sketchResultAccumulator != null) {
                                 this.sketchResultAccumulator = sketchOp.sketch.add(this
                                         .sketchResultAccumulator, pr.deltaValue);
-                            final OperationResponse<PartialResult<?>> res =
-                                    new OperationResponse<PartialResult<?>>(pr);
-                            final byte[] bytes = SerializationUtils.serialize(res);
-                            responseObserver.onNext(PartialResponse.newBuilder()
-                                    .setSerializedOp(ByteString.copyFrom(bytes))
-                                    .build());
+                                long added = System.nanoTime();
+                                OperationMetrics.instance.recordInterval(operation,
+                                        OperationMetrics.Metric.MERGE, start, added, 0);
+                                start = added;
+                            }
+                            PartialResponse response = WireFormat.encode(pr, codec);
+                            OperationMetrics.instance.recordInterval(operation,
+                                    OperationMetrics.Metric.SERIALIZATION, start, System.nanoTime(), 0);
+                            OperationMetrics.instance.record(operation,
+                                    OperationMetrics.Metric.SERIALIZED_BYTES,
+                                    response.getSerializedSize());
+                            responseObserver.onNext(response);
                         } catch (Exception ex) {
                             HillviewLogger.instance.error("Async exception", ex);
                             this.onError(ex);
@@ -668,6 +688,10 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
         T result = SerializationUtils.deserialize(bytes);
         if (MEMOIZE) {
             MemoizedResults.ResponseAndId memoized = this.memoizedCommands.get(command);
+            if (memoized != null && memoized.response.getCodec() > WireFormat.negotiate(command)) {
+                // The caller cannot decode this response.
+                memoized = null;
+            }
             if (memoized != null) {
                 if (checkResult) {
                     int index = memoized.localDatasetIndex;
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A hand-written binary encoder for values of one class.
+ * Encoders are registered with the CompactCodec; each encoder
+ * has a unique tag that is written on the wire before the value.
+ * @param <T>  Type of value encoded.
+ */
+public interface ICompactEncoder<T> {
+    /**
+     * Unique tag identifying this encoder on the wire; must be between 1 and 127.
+     */
+    int getTag();
+
+    /**
+     * The exact class of the values handled by this encoder.
+     */
+    Class<?> getEncodedClass();
+
+    /**
+     * True if this encoder can represent the specified value.  Some values of
+     * the encoded class may contain data that this encoder does not handle.
+     */
+    boolean canEncode(T value);
+
+    void encode(T value, DataOutputStream out) throws IOException;
+
+    T decode(DataInputStream in) throws IOException;
+}
@@ -17,20 +17,32 @@
 
 package org.hillview.dataset.remoting;
 
-import com.google.protobuf.ByteString;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import net.openhft.hashing.LongHashFunction;
 import org.hillview.pb.Command;
 import org.hillview.pb.PartialResponse;
 
 import javax.annotation.Nullable;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.text.NumberFormat;
 
 /**
  * This class is used to hold memoized results from remote commands.
+ * The cache is bounded by the total size of the serialized responses;
+ * the least recently used results are evicted first.  Commands are identified
+ * by a 128-bit hash of their serialized form, so the serialized operations
+ * themselves are not retained.
  */
 public class MemoizedResults {
     /**
-     * This is used as a element in the memoizedCommands hashmap below.
+     * Approximate memory used by a cache entry in addition to the response.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * This is used as a element in the memoizedCommands cache below.
      */
     static class ResponseAndId {
         /**
@@ -47,45 +59,120 @@ public class MemoizedResults {
             this.response = response;
             this.localDatasetIndex = index;
         }
+
+        int getWeight() {
+            return this.response.getSerializedSize() + ENTRY_OVERHEAD;
+        }
+    }
+
+    /**
+     * Identifies a command applied to a dataset.
+     */
+    static final class CommandKey {
+        private final long hash0;
+        private final long hash1;
+        /**
+         * Index of the dataset the command is applied to.
+         */
+        private final int index;
+
+        CommandKey(final Command command) {
+            ByteBuffer op = command.getSerializedOp().asReadOnlyByteBuffer();
+            this.hash0 = LongHashFunction.xx(0).hashBytes(op);
+            this.hash1 = LongHashFunction.xx(1).hashBytes(op);
+            this.index = command.getIdsIndex();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || this.getClass() != o.getClass()) return false;
+            CommandKey that = (CommandKey) o;
+            return this.hash0 == that.hash0 && this.hash1 == that.hash1 && this.index == that.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(this.hash0) + this.index;
+        }
     }
 
     /**
      * Map each (command, dataset index) to a partial response obtained by
      * running the command on that respective dataset.
      */
-    private final ConcurrentHashMap<ByteString, Map<Integer, ResponseAndId>> memoizedCommands;
+    private volatile Cache<CommandKey, ResponseAndId> memoizedCommands;
+    /**
+     * Maximum total weight of the cached responses, in bytes.
+     */
+    private long maximumSize;
 
+    /**
+     * Creates a cache whose size is 1/8 of the maximum heap size.
+     */
     MemoizedResults() {
-        this.memoizedCommands = new ConcurrentHashMap<ByteString, Map<Integer, ResponseAndId>>();
+        this(Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    MemoizedResults(long maximumSize) {
+        this.maximumSize = maximumSize;
+        this.memoizedCommands = createCache(maximumSize);
+    }
+
+    private static Cache<CommandKey, ResponseAndId> createCache(long maximumSize) {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher((CommandKey k, ResponseAndId v) -> v.getWeight())
+                .recordStats()
+                .build();
     }
 
     /**
      * Purges all memoized results
      */
     public void clear() {
-        this.memoizedCommands.clear();
+        this.memoizedCommands.invalidateAll();
+    }
+
+    /**
+     * Changes the maximum total size of the memoized responses.
+     * This discards all the memoized results and the statistics.
+     * @param maximumSize  Size in bytes.
+     */
+    public synchronized void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+        this.memoizedCommands = createCache(maximumSize);
     }
 
     @Nullable
     public ResponseAndId get(final Command command) {
-        ByteString ser = command.getSerializedOp();
-        if (!this.memoizedCommands.containsKey(ser))
-            return null;
-        Map<Integer, ResponseAndId> map = this.memoizedCommands.get(ser);
-        int index = command.getIdsIndex();
-        if (!map.containsKey(index))
-            return null;
-        return map.get(index);
+        return this.memoizedCommands.getIfPresent(new CommandKey(command));
     }
 
     public void insert(final Command command, final PartialResponse response, Integer index) {
         ResponseAndId rid = new ResponseAndId(response, index);
-        this.memoizedCommands.computeIfAbsent(command.getSerializedOp(),
-                (k) -> new ConcurrentHashMap<Integer, ResponseAndId>()).put(command.getIdsIndex(), rid);
+        this.memoizedCommands.put(new CommandKey(command), rid);
     }
 
     public void remove(final Command command, final ResponseAndId resp) {
-        Map<Integer, ResponseAndId> map = this.memoizedCommands.get(command.getSerializedOp());
-        map.remove(command.getIdsIndex());
+        this.memoizedCommands.invalidate(new CommandKey(command));
+    }
+
+    /**
+     * A human-readable description of the cache contents and statistics.
+     */
+    public String getStatistics() {
+        Cache<CommandKey, ResponseAndId> cache = this.memoizedCommands;
+        long weight = 0;
+        for (ResponseAndId r : cache.asMap().values())
+            weight += r.getWeight();
+        CacheStats stats = cache.stats();
+        NumberFormat format = NumberFormat.getIntegerInstance();
+        return "entries=" + format.format(cache.size()) +
+                ", bytes=" + format.format(weight) +
+                ", limit=" + format.format(this.maximumSize) +
+                ", hits=" + format.format(stats.hitCount()) +
+                ", misses=" + format.format(stats.missCount()) +
+                ", evictions=" + format.format(stats.evictionCount());
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import com.google.protobuf.ByteString;
+import org.apache.commons.lang3.SerializationUtils;
+import org.hillview.dataset.api.PartialResult;
+import org.hillview.pb.Command;
+import org.hillview.pb.PartialResponse;
+
+import java.io.*;
+
+/**
+ * Encoding of sketch results exchanged between the root and the workers.
+ * The client advertises in each Command the highest codec it understands;
+ * the server picks, for each response, the best codec that both sides support
+ * and that can represent the result, and records its choice in the response.
+ * Java serialization is always available as a fallback.
+ */
+public class WireFormat {
+    /**
+     * Java serialization of an OperationResponse.  This is also what
+     * peers that predate codec negotiation send and expect.
+     */
+    public static final int JAVA_SERIALIZATION = 0;
+    /**
+     * A PartialResult encoded with the CompactCodec.
+     */
+    public static final int COMPACT = 1;
+    /**
+     * Highest codec supported by this version.
+     */
+    public static final int CURRENT = COMPACT;
+
+    /**
+     * The codec to use for replies to this command.
+     */
+    public static int negotiate(Command command) {
+        return Math.min(command.getCodec(), CURRENT);
+    }
+
+    /**
+     * Encode a partial sketch result.
+     * @param pr     Result to encode.
+     * @param codec  Highest codec that can be used.
+     */
+    public static PartialResponse encode(PartialResult<?> pr, int codec) {
+        if (codec >= COMPACT && CompactCodec.canEncode(pr.deltaValue)) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeDouble(pr.deltaDone);
+                CompactCodec.encode(pr.deltaValue, out);
+                out.flush();
+                return PartialResponse.newBuilder()
+                        .setSerializedOp(ByteString.copyFrom(bytes.toByteArray()))
+                        .setCodec(COMPACT)
+                        .build();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        final OperationResponse<PartialResult<?>> res = new OperationResponse<PartialResult<?>>(pr);
+        final byte[] bytes = SerializationUtils.serialize(res);
+        return PartialResponse.newBuilder()
+                .setSerializedOp(ByteString.copyFrom(bytes))
+                .setCodec(JAVA_SERIALIZATION)
+                .build();
+    }
+
+    /**
+     * Decode a partial sketch result encoded with encode.
+     */
+    public static PartialResult<?> decode(PartialResponse response) {
+        switch (response.getCodec()) {
+            case JAVA_SERIALIZATION: {
+                final OperationResponse<?> op = SerializationUtils.deserialize(
+                        response.getSerializedOp().toByteArray());
+                return (PartialResult<?>)op.result;
+            }
+            case COMPACT: {
+                try {
+                    DataInputStream in = new DataInputStream(response.getSerializedOp().newInput());
+                    double done = in.readDouble();
+                    Object value = CompactCodec.decode(in);
+                    return new PartialResult<Object>(done, value);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            default:
+                throw new RuntimeException("Unknown codec " + response.getCodec());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.management;
+
+import org.hillview.dataset.OperationMetrics;
+import org.hillview.dataset.api.ControlMessage;
+import org.hillview.dataset.remoting.HillviewServer;
+
+/**
+ * This control message returns the metrics of the operations executed by a
+ * specific HillviewServer, aggregated by sketch.
+ */
+public class OperationStatistics extends ControlMessage {
+    static final long serialVersionUID = 1;
+    /**
+     * If true the metrics are discarded after being reported.
+     */
+    private final boolean reset;
+
+    public OperationStatistics(boolean reset) {
+        this.reset = reset;
+    }
+
+    public Status remoteServerAction(HillviewServer server) {
+        String summary = OperationMetrics.instance.getSummary();
+        if (this.reset)
+            OperationMetrics.instance.reset();
+        return new Status(summary);
+    }
+}
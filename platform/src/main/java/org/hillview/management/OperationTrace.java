@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.management;
+
+import org.hillview.dataset.OperationMetrics;
+import org.hillview.dataset.api.ControlMessage;
+import org.hillview.dataset.remoting.HillviewServer;
+import org.hillview.utils.Utilities;
+
+/**
+ * This control message starts or stops recording a trace of the operations
+ * executed by a specific HillviewServer.  When stopped, the trace is written
+ * in the Chrome trace event format in the working directory of the server.
+ */
+public class OperationTrace extends ControlMessage {
+    static final long serialVersionUID = 1;
+    private final boolean start;
+
+    public OperationTrace(boolean start) {
+        this.start = start;
+    }
+
+    public Status remoteServerAction(HillviewServer server) {
+        if (this.start) {
+            OperationMetrics.instance.startTrace();
+            return new Status("OK");
+        }
+        String file = "hillview-trace-" + Utilities.getHostName() + "-" +
+                System.currentTimeMillis() + ".json";
+        return new Status(OperationMetrics.instance.stopTrace(file));
+    }
+}
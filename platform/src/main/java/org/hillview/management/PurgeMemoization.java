@@ -20,6 +20,7 @@ package org.hillview.management;
 import org.hillview.dataset.api.ControlMessage;
 import org.hillview.dataset.remoting.HillviewServer;
 import org.hillview.table.Schema;
+import org.hillview.table.SortIndexCache;
 
 /**
  * This control message causes the remote servers to remove everything from their
@@ -30,6 +31,7 @@ public class PurgeMemoization extends ControlMessage {
     public Status remoteServerAction(HillviewServer server) {
         server.purgeMemoized();
         Schema.purgeCache();
+        SortIndexCache.purge();
         return new Status("caches purged");
     }
 }
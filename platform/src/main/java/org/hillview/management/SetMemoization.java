@@ -27,13 +27,24 @@ import org.hillview.dataset.remoting.HillviewServer;
 public class SetMemoization extends ControlMessage {
     static final long serialVersionUID = 1;
     private final boolean state;
+    /**
+     * If positive, the new maximum size in bytes of the memoized results.
+     */
+    private final long limit;
 
     public SetMemoization(boolean state) {
+        this(state, 0);
+    }
+
+    public SetMemoization(boolean state, long limit) {
         this.state = state;
+        this.limit = limit;
     }
 
     public Status remoteServerAction(HillviewServer server) {
         server.setMemoization(this.state);
+        if (this.limit > 0)
+            server.setMemoizationLimit(this.limit);
         return new Status("OK");
     }
 }
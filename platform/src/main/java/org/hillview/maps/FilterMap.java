@@ -20,10 +20,9 @@ package org.hillview.maps;
 import org.hillview.dataset.api.IMap;
 import org.hillview.table.QuantizationSchema;
 import org.hillview.table.QuantizedTable;
-import org.hillview.table.api.ITableFilterDescription;
-import org.hillview.table.api.ITableFilter;
-import org.hillview.table.api.IMembershipSet;
-import org.hillview.table.api.ITable;
+import org.hillview.table.TableBlocks;
+import org.hillview.table.api.*;
+import org.hillview.table.membership.MembershipSetFactory;
 import org.hillview.utils.Converters;
 import org.hillview.utils.HillviewLogger;
 
@@ -58,12 +57,64 @@ public class FilterMap implements IMap<ITable, ITable> {
         Converters.checkNull(data);
         if (this.quantization != null)
             data = new QuantizedTable(data, this.quantization);
-        ITableFilter filter = this.rowFilterPredicate.getFilter(data);
-        HillviewLogger.instance.info("Filtering", "{0}", filter);
-        IMembershipSet result = data.getMembershipSet().filter(filter::test);
+        TableBlocks blocks = data.getBlocks();
+        IMembershipSet result;
+        if (blocks != null) {
+            result = this.filterBlocks(data, blocks);
+        } else {
+            ITableFilter filter = this.rowFilterPredicate.getFilter(data);
+            HillviewLogger.instance.info("Filtering", "{0}", filter);
+            result = data.getMembershipSet().filter(filter::test);
+        }
         return data.selectRowsFromFullTable(result);
     }
 
+    /**
+     * Filters a table one block at a time, using the block statistics to skip the
+     * blocks where no row matches and to accept all rows in the blocks where all rows
+     * match.  The column data (which may need to be loaded) is only read if
+     * some block needs to be tested row by row.
+     */
+    private IMembershipSet filterBlocks(ITable data, TableBlocks blocks) {
+        IMembershipSet members = data.getMembershipSet();
+        int blockCount = blocks.getBlockCount();
+        BlockMatch[] matches = new BlockMatch[blockCount];
+        int[] counts = new int[BlockMatch.values().length];
+        // Upper bound for the number of rows in the result
+        int estimated = 0;
+        for (int i = 0; i < blockCount; i++) {
+            matches[i] = this.rowFilterPredicate.matchBlock(blocks, i);
+            counts[matches[i].ordinal()]++;
+            if (matches[i] != BlockMatch.None)
+                estimated += blocks.getEnd(i) - blocks.getStart(i);
+        }
+        HillviewLogger.instance.info("Filtering blocks", "{0}: {1} none, {2} all, {3} some",
+                this.rowFilterPredicate, counts[BlockMatch.None.ordinal()],
+                counts[BlockMatch.All.ordinal()], counts[BlockMatch.Some.ordinal()]);
+        if (counts[BlockMatch.All.ordinal()] == blockCount)
+            return members;
+        ITableFilter filter = null;
+        if (counts[BlockMatch.Some.ordinal()] > 0)
+            filter = this.rowFilterPredicate.getFilter(data);
+        IMutableMembershipSet result = MembershipSetFactory.create(
+                members.getMax(), Math.min(estimated, members.getSize()));
+        for (int i = 0; i < blockCount; i++) {
+            if (matches[i] == BlockMatch.None)
+                continue;
+            IRowIterator it = members.getIterator(blocks.getStart(i), blocks.getEnd(i));
+            if (matches[i] == BlockMatch.All) {
+                for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+                    result.add(row);
+            } else {
+                assert filter != null;
+                for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+                    if (filter.test(row))
+                        result.add(row);
+            }
+        }
+        return result.seal();
+    }
+
     public String asString() {
         return this.rowFilterPredicate.toString();
     }
@@ -17,18 +17,19 @@
 
 package org.hillview.maps;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.hillview.dataset.api.IMap;
 import org.hillview.table.ColumnDescription;
 
 import org.hillview.table.api.*;
 import org.hillview.table.columns.DoubleArrayColumn;
 import org.hillview.utils.Converters;
+import org.hillview.utils.ExecutorUtils;
 import org.jblas.DoubleMatrix;
-import org.jblas.MatrixFunctions;
-import org.jblas.Singular;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -38,24 +39,62 @@ import java.util.List;
  *   Joia, Paulo, et al. "Local affine multidimensional projection."
  *   IEEE Transactions on Visualization and Computer Graphics 17.12 (2011): 2563-2571
  *   https://doi.org/10.1109/TVCG.2011.220
+ * The rows are processed in blocks; the blocks are processed in parallel, and each thread
+ * reuses the same scratch buffers for all the rows it maps.  The orthogonal mapping of each
+ * row is obtained from the eigenvectors of a small lowDims x lowDims matrix, so no matrices
+ * are allocated per row.
  */
 public class LAMPMap implements IMap<ITable, ITable> {
     static final long serialVersionUID = 1;
+    /**
+     * Number of rows in a block of work.
+     */
+    static final int BLOCK_SIZE = 256;
     private final String[] numColNames;
     private final DoubleMatrix highDimControlPoints;
     private final DoubleMatrix lowDimControlPoints;
     private final int highDims;
     private final int lowDims;
     private final String[] newColNames;
+    /**
+     * Number of nearest control points used to map each row; 0 means all of them.
+     */
+    private final int neighbors;
 
     public LAMPMap(DoubleMatrix highDimControlPoints, DoubleMatrix lowDimControlPoints,
                    String[] numColNames, String[] newColNames) {
+        this(highDimControlPoints, lowDimControlPoints, numColNames, newColNames, 0);
+    }
+
+    /**
+     * @param neighbors  If positive, each row is mapped using only the specified number
+     *                   of control points that are closest to it; if 0 all control points are used.
+     */
+    public LAMPMap(DoubleMatrix highDimControlPoints, DoubleMatrix lowDimControlPoints,
+                   String[] numColNames, String[] newColNames, int neighbors) {
+        if (highDimControlPoints.rows != lowDimControlPoints.rows)
+            throw new RuntimeException("Control points do not match: " + highDimControlPoints.rows +
+                    " and " + lowDimControlPoints.rows);
+        if (neighbors < 0)
+            throw new RuntimeException("Negative number of neighbors " + neighbors);
         this.numColNames = numColNames;
         this.highDimControlPoints = highDimControlPoints;
         this.lowDimControlPoints = lowDimControlPoints;
         this.lowDims = lowDimControlPoints.columns;
         this.highDims = highDimControlPoints.columns;
         this.newColNames = newColNames;
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * Copies a matrix into an array in row-major order.
+     */
+    private static double[] toRowMajor(DoubleMatrix matrix) {
+        double[] result = new double[matrix.rows * matrix.columns];
+        for (int i = 0; i < matrix.rows; i++)
+            for (int j = 0; j < matrix.columns; j++)
+                result[i * matrix.columns + j] = matrix.get(i, j);
+        return result;
     }
 
     @Override
@@ -70,70 +109,396 @@ public class LAMPMap implements IMap<ITable, ITable> {
             newColumns.add(new DoubleArrayColumn(cd, colSize));
         }
 
+        int[] rows = new int[set.getSize()];
         IRowIterator rowIt = data.getRowIterator();
-        int row = rowIt.getNextRow();
-        while (row >= 0) {
-            DoubleMatrix x = new DoubleMatrix(1, this.highDims);
-            boolean missing = false;
-            for (int i = 0 ; i < this.highDims; i++) {
-                if (columns.get(i).isMissing(row)){
-                    missing = true;
-                    break;
+        int count = 0;
+        for (int row = rowIt.getNextRow(); row >= 0; row = rowIt.getNextRow())
+            rows[count++] = row;
+
+        Mapper mapper = new Mapper(
+                toRowMajor(this.highDimControlPoints), toRowMajor(this.lowDimControlPoints),
+                this.highDimControlPoints.rows, this.highDims, this.lowDims, this.neighbors);
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(mapper::createScratch);
+        int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int rowCount = count;
+        ExecutorUtils.parallelFor(blocks, block -> {
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, rowCount);
+            IntArrayList missing = this.mapBlock(
+                    mapper, scratch.get(), columns, newColumns, rows, start, end);
+            if (!missing.isEmpty()) {
+                // Missing bits of different blocks may share words.
+                for (IMutableColumn col : newColumns) {
+                    synchronized (col) {
+                        for (int i = 0; i < missing.size(); i++)
+                            col.setMissing(missing.getInt(i));
+                    }
                 }
+            }
+        });
+        return data.append(newColumns);
+    }
+
+    /**
+     * Maps the rows with indexes start to end in the rows array.
+     * @return The rows whose mapping is missing.
+     */
+    private IntArrayList mapBlock(Mapper mapper, Scratch scratch, List<IColumn> columns,
+                                  List<IMutableColumn> newColumns, int[] rows, int start, int end) {
+        int size = end - start;
+        double[] x = scratch.block;
+        boolean[] missing = scratch.missing;
+        for (int r = 0; r < size; r++)
+            missing[r] = false;
+        // Read the block one column at a time.
+        for (int j = 0; j < this.highDims; j++) {
+            IColumn col = columns.get(j);
+            for (int r = 0; r < size; r++) {
+                int row = rows[start + r];
+                if (col.isMissing(row))
+                    missing[r] = true;
                 else
-                    x.put(i, columns.get(i).asDouble(row));
+                    x[r * this.highDims + j] = col.asDouble(row);
             }
-            if (!missing) {
-                DoubleMatrix y = computeMapping(x);
+        }
 
-                for (int i = 0; i < y.columns; i++) {
-                    if (Double.isNaN(y.get(i))) {
-                        missing = true;
-                        break;
-                    }
+        IntArrayList result = new IntArrayList();
+        double[] y = scratch.y;
+        for (int r = 0; r < size; r++) {
+            int row = rows[start + r];
+            if (!missing[r] && mapper.map(x, r * this.highDims, scratch)) {
+                for (int i = 0; i < this.lowDims; i++)
+                    newColumns.get(i).set(row, y[i]);
+            } else {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Buffers used by one thread to map rows.
+     */
+    private static final class Scratch {
+        /**
+         * Values of the rows in a block, in row-major order.
+         */
+        final double[] block;
+        final boolean[] missing;
+        /**
+         * Squared distance from the current row to each control point.
+         */
+        final double[] distances;
+        /**
+         * Indexes of the control points used for the current row.
+         */
+        final int[] points;
+        final double[] xTilde;
+        final double[] yTilde;
+        /**
+         * Weighted correlation between the high and low dimensional points, highDims x lowDims.
+         */
+        final double[] correlation;
+        /**
+         * Left singular vectors of the correlation, lowDims x highDims.
+         */
+        final double[] left;
+        /**
+         * The Gram matrix of the correlation, and its eigenvectors, lowDims x lowDims.
+         */
+        final double[] gram;
+        final double[] right;
+        final double[] y;
+
+        Scratch(int controlPoints, int highDims, int lowDims) {
+            this.block = new double[BLOCK_SIZE * highDims];
+            this.missing = new boolean[BLOCK_SIZE];
+            this.distances = new double[controlPoints];
+            this.points = new int[controlPoints];
+            this.xTilde = new double[highDims];
+            this.yTilde = new double[lowDims];
+            this.correlation = new double[highDims * lowDims];
+            this.left = new double[lowDims * highDims];
+            this.gram = new double[lowDims * lowDims];
+            this.right = new double[lowDims * lowDims];
+            this.y = new double[lowDims];
+        }
+    }
+
+    /**
+     * Computes the LAMP projection of individual points.
+     */
+    static final class Mapper {
+        /**
+         * Singular values smaller than this fraction of the largest one are considered 0.
+         */
+        private static final double EPSILON = 1e-12;
+        private static final int MAX_SWEEPS = 64;
+
+        private final double[] high;
+        private final double[] low;
+        private final int controlPoints;
+        private final int highDims;
+        private final int lowDims;
+        private final int neighbors;
+
+        /**
+         * @param high       High dimensional control points in row-major order.
+         * @param low        Low dimensional control points in row-major order.
+         * @param neighbors  Number of closest control points to use; 0 to use all.
+         */
+        Mapper(double[] high, double[] low, int controlPoints,
+               int highDims, int lowDims, int neighbors) {
+            this.high = high;
+            this.low = low;
+            this.controlPoints = controlPoints;
+            this.highDims = highDims;
+            this.lowDims = lowDims;
+            if (neighbors == 0 || neighbors > controlPoints)
+                neighbors = controlPoints;
+            this.neighbors = neighbors;
+        }
+
+        Scratch createScratch() {
+            return new Scratch(this.controlPoints, this.highDims, this.lowDims);
+        }
+
+        /**
+         * Maps one point; the result is left in scratch.y.
+         * @param x       Array holding the point.
+         * @param offset  Offset of the point in x.
+         * @return        False if the point cannot be mapped.
+         */
+        boolean map(double[] x, int offset, Scratch scratch) {
+            final int hd = this.highDims;
+            final int ld = this.lowDims;
+            double[] distances = scratch.distances;
+            int[] points = scratch.points;
+            double[] y = scratch.y;
+            for (int i = 0; i < this.controlPoints; i++) {
+                double d = 0;
+                int base = i * hd;
+                for (int j = 0; j < hd; j++) {
+                    double diff = this.high[base + j] - x[offset + j];
+                    d += diff * diff;
+                }
+                if (d == 0) {
+                    // The point is a control point.
+                    System.arraycopy(this.low, i * ld, y, 0, ld);
+                    return true;
                 }
-                if (!missing) {
-                    for (int i = 0; i < this.lowDims; i++) {
-                        newColumns.get(i).set(row, y.get(i));
+                distances[i] = d;
+                points[i] = i;
+            }
+            if (this.neighbors < this.controlPoints)
+                selectNearest(points, distances, this.neighbors);
+
+            double[] xTilde = scratch.xTilde;
+            double[] yTilde = scratch.yTilde;
+            Arrays.fill(xTilde, 0);
+            Arrays.fill(yTilde, 0);
+            double alpha = 0;
+            for (int n = 0; n < this.neighbors; n++) {
+                int i = points[n];
+                double a = 1 / distances[i];
+                alpha += a;
+                for (int j = 0; j < hd; j++)
+                    xTilde[j] += a * this.high[i * hd + j];
+                for (int l = 0; l < ld; l++)
+                    yTilde[l] += a * this.low[i * ld + l];
+            }
+            for (int j = 0; j < hd; j++)
+                xTilde[j] /= alpha;
+            for (int l = 0; l < ld; l++)
+                yTilde[l] /= alpha;
+
+            // correlation = A' * B, where the rows of A and B are the centered control
+            // points scaled by the square roots of their weights.
+            double[] correlation = scratch.correlation;
+            Arrays.fill(correlation, 0);
+            for (int n = 0; n < this.neighbors; n++) {
+                int i = points[n];
+                double a = 1 / distances[i];
+                for (int l = 0; l < ld; l++)
+                    y[l] = a * (this.low[i * ld + l] - yTilde[l]);
+                for (int j = 0; j < hd; j++) {
+                    double dx = this.high[i * hd + j] - xTilde[j];
+                    for (int l = 0; l < ld; l++)
+                        correlation[j * ld + l] += dx * y[l];
+                }
+            }
+
+            // The mapping is U * V', where correlation = U * S * V'.  V and S are obtained
+            // from the eigen-decomposition of correlation' * correlation = V * S^2 * V'.
+            double[] gram = scratch.gram;
+            for (int l = 0; l < ld; l++) {
+                for (int k = l; k < ld; k++) {
+                    double s = 0;
+                    for (int j = 0; j < hd; j++)
+                        s += correlation[j * ld + l] * correlation[j * ld + k];
+                    gram[l * ld + k] = s;
+                    gram[k * ld + l] = s;
+                }
+            }
+            double[] right = scratch.right;
+            symmetricEigen(gram, right, ld);
+            double maxEigen = 0;
+            for (int l = 0; l < ld; l++)
+                maxEigen = Math.max(maxEigen, gram[l * ld + l]);
+            double[] left = scratch.left;
+            boolean degenerate = false;
+            for (int l = 0; l < ld; l++) {
+                double eigen = gram[l * ld + l];
+                int base = l * hd;
+                if (eigen > EPSILON * maxEigen) {
+                    // u = correlation * v / s
+                    double s = Math.sqrt(eigen);
+                    for (int j = 0; j < hd; j++) {
+                        double u = 0;
+                        for (int k = 0; k < ld; k++)
+                            u += correlation[j * ld + k] * right[k * ld + l];
+                        left[base + j] = u / s;
                     }
                 } else {
-                    for (int i = 0; i < this.lowDims; i++) {
-                        newColumns.get(i).setMissing(row);
+                    Arrays.fill(left, base, base + hd, 0);
+                    degenerate = true;
+                }
+            }
+            if (degenerate) {
+                // The singular vectors of 0 singular values are arbitrary;
+                // choose them orthogonal to the other ones.
+                for (int l = 0; l < ld; l++)
+                    if (!(gram[l * ld + l] > EPSILON * maxEigen))
+                        completeBasis(left, l, hd, ld);
+            }
+
+            // y = (x - xTilde) * U * V' + yTilde
+            System.arraycopy(yTilde, 0, y, 0, ld);
+            for (int l = 0; l < ld; l++) {
+                double t = 0;
+                int base = l * hd;
+                for (int j = 0; j < hd; j++)
+                    t += (x[offset + j] - xTilde[j]) * left[base + j];
+                for (int k = 0; k < ld; k++)
+                    y[k] += t * right[k * ld + l];
+            }
+            for (int l = 0; l < ld; l++)
+                if (Double.isNaN(y[l]))
+                    return false;
+            return true;
+        }
+
+        /**
+         * Rearranges the first points so that the first k have the smallest distances.
+         */
+        static void selectNearest(int[] points, double[] distances, int k) {
+            int lo = 0;
+            int hi = points.length - 1;
+            while (lo < hi) {
+                double pivot = distances[points[(lo + hi) >>> 1]];
+                int i = lo;
+                int j = hi;
+                while (i <= j) {
+                    while (distances[points[i]] < pivot) i++;
+                    while (distances[points[j]] > pivot) j--;
+                    if (i <= j) {
+                        int tmp = points[i];
+                        points[i] = points[j];
+                        points[j] = tmp;
+                        i++;
+                        j--;
                     }
                 }
+                if (k - 1 <= j)
+                    hi = j;
+                else if (k - 1 >= i)
+                    lo = i;
+                else
+                    break;
             }
-            row = rowIt.getNextRow();
         }
 
-        return data.append(newColumns);
-    }
+        /**
+         * Sets row l of vectors (each row has size dims) to a unit vector orthogonal
+         * to the other rows, which are either unit vectors or 0.
+         */
+        private static void completeBasis(double[] vectors, int l, int dims, int count) {
+            int base = l * dims;
+            for (int e = 0; e < dims; e++) {
+                Arrays.fill(vectors, base, base + dims, 0);
+                vectors[base + e] = 1;
+                for (int o = 0; o < count; o++) {
+                    if (o == l)
+                        continue;
+                    int other = o * dims;
+                    double dot = vectors[other + e];
+                    for (int j = 0; j < dims; j++)
+                        vectors[base + j] -= dot * vectors[other + j];
+                }
+                double norm = 0;
+                for (int j = 0; j < dims; j++)
+                    norm += vectors[base + j] * vectors[base + j];
+                if (norm > 1e-6) {
+                    norm = Math.sqrt(norm);
+                    for (int j = 0; j < dims; j++)
+                        vectors[base + j] /= norm;
+                    return;
+                }
+            }
+            Arrays.fill(vectors, base, base + dims, 0);
+        }
 
-    private DoubleMatrix computeMapping(DoubleMatrix x) {
-        DoubleMatrix alphas = MatrixFunctions.pow(
-                MatrixFunctions.pow(
-                        this.highDimControlPoints.subRowVector(x),
-                        2
-                ).rowSums(),
-                -1
-        );
-        double alpha = alphas.sum();
-
-        DoubleMatrix xTilde = this.highDimControlPoints.mulColumnVector(alphas).columnSums().div(alpha);
-        DoubleMatrix yTilde = this.lowDimControlPoints.mulColumnVector(alphas).columnSums().div(alpha);
-        DoubleMatrix xHats = this.highDimControlPoints.subRowVector(xTilde);
-        @SuppressWarnings("SuspiciousNameCombination")
-        DoubleMatrix yHats = this.lowDimControlPoints.subRowVector(yTilde);
-
-        DoubleMatrix sqrtAlphas = MatrixFunctions.sqrt(alphas);
-        DoubleMatrix A = xHats.mulColumnVector(sqrtAlphas);
-        DoubleMatrix B = yHats.mulColumnVector(sqrtAlphas);
-
-        DoubleMatrix[] svdComposition = Singular.sparseSVD(A.transpose().mmul(B));
-        DoubleMatrix U = svdComposition[0];
-        DoubleMatrix V = svdComposition[2];
-
-        DoubleMatrix M = U.mmul(V);
-
-        return x.sub(xTilde).mmul(M).add(yTilde);
+        /**
+         * Cyclic Jacobi eigen-decomposition of a small symmetric matrix.
+         * @param matrix   An n x n symmetric matrix; on return its diagonal holds the eigenvalues.
+         * @param vectors  On return column i holds the eigenvector of the i-th eigenvalue.
+         */
+        static void symmetricEigen(double[] matrix, double[] vectors, int n) {
+            Arrays.fill(vectors, 0);
+            for (int i = 0; i < n; i++)
+                vectors[i * n + i] = 1;
+            for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+                double off = 0;
+                double diag = 0;
+                for (int p = 0; p < n; p++) {
+                    diag += matrix[p * n + p] * matrix[p * n + p];
+                    for (int q = p + 1; q < n; q++)
+                        off += matrix[p * n + q] * matrix[p * n + q];
+                }
+                if (off <= 1e-30 * diag || off == 0)
+                    return;
+                for (int p = 0; p < n; p++) {
+                    for (int q = p + 1; q < n; q++) {
+                        double apq = matrix[p * n + q];
+                        if (apq == 0)
+                            continue;
+                        double theta = (matrix[q * n + q] - matrix[p * n + p]) / (2 * apq);
+                        double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                        if (theta == 0)
+                            t = 1;
+                        double c = 1 / Math.sqrt(t * t + 1);
+                        double s = t * c;
+                        for (int k = 0; k < n; k++) {
+                            double akp = matrix[k * n + p];
+                            double akq = matrix[k * n + q];
+                            matrix[k * n + p] = c * akp - s * akq;
+                            matrix[k * n + q] = s * akp + c * akq;
+                        }
+                        for (int k = 0; k < n; k++) {
+                            double apk = matrix[p * n + k];
+                            double aqk = matrix[q * n + k];
+                            matrix[p * n + k] = c * apk - s * aqk;
+                            matrix[q * n + k] = s * apk + c * aqk;
+                        }
+                        for (int k = 0; k < n; k++) {
+                            double vkp = vectors[k * n + p];
+                            double vkq = vectors[k * n + q];
+                            vectors[k * n + p] = c * vkp - s * vkq;
+                            vectors[k * n + q] = s * vkp + c * vkq;
+                        }
+                    }
+                }
+            }
+        }
     }
 }
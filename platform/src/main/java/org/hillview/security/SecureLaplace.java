@@ -1,65 +1,145 @@
 package org.hillview.security;
 
 
+import org.hillview.utils.Converters;
 import org.hillview.utils.Pair;
-import org.hillview.utils.Utilities;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import java.security.*;
+import java.util.List;
 
-import static org.hillview.utils.Utilities.INT_SIZE;
-import static org.hillview.utils.Utilities.byteArrayToLong;
-
+/**
+ * Samples Laplace noise for the intervals of a dyadic decomposition.
+ * The noise of an interval is derived deterministically from the interval using a
+ * pseudorandom function: AES over the column index and interval boundaries, chained
+ * as in CBC-MAC over a fixed-length, two-block input.  The same inputs
+ * always produce the same noise.  The noise for many intervals can be sampled at
+ * once; the intervals are then encrypted in large batches.  The class is thread-safe;
+ * each thread uses its own cipher.
+ */
 public class SecureLaplace {
+    private static final int BLOCK_SIZE = 16;
     /**
-     * For sampling Laplace noise on intervals.
-     * For a query on a column with index I and a rectangle <x1, y1, x2, y2>,
-     * scratchBytes is filled with [I, x1, y1, x2, y2].
+     * Maximum number of values computed with one invocation of the cipher.
      */
-    private final Cipher aes;
-
+    private static final int BATCH_SIZE = 4096;
     private static final double NORMALIZER = Math.pow(2, -53);
 
+    private final Key key;
+    /**
+     * Identifies the key without revealing it: a hash of the key.
+     */
+    private final String keyId;
+    /**
+     * Ciphers are not thread-safe, so each thread has its own.
+     * For a query on a column with index I and a rectangle <x1, x2> x <y1, y2>
+     * the cipher input is the two blocks [I, x1, x2, y1] and [y2, dimensions, 0, 0].
+     */
+    private final ThreadLocal<Cipher> aes;
+
     public SecureLaplace(KeyLoader keyLoader) {
+        this.key = keyLoader.getOrCreateKey();
         try {
-            Key sk = keyLoader.getOrCreateKey();
-            this.aes = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            this.aes.init(Cipher.ENCRYPT_MODE, sk);
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException e) {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(this.key.getEncoded());
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest)
+                builder.append(String.format("%02x", b));
+            this.keyId = builder.toString();
+        } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
+        // Fail early if the key cannot be used.
+        Cipher cipher = this.createCipher();
+        this.aes = ThreadLocal.withInitial(this::createCipher);
+        this.aes.set(cipher);
     }
 
     /**
-     * Securely sample a random double uniformly in [0, 1). This implementation returns
-     * a uniform value that is a multiple of 2^-53 using a pseudorandom function indexed
-     * by index.
+     * A string that identifies the key used: two instances with the same key id
+     * produce the same noise.
      */
-    @SafeVarargs
-    private final double sampleUniform(Integer columnIndex, Pair<Integer, Integer>... index) {
-        byte[] scratchBytes = new byte[5*INT_SIZE];
-        if (scratchBytes.length < index.length*INT_SIZE + 1) {
-            throw new RuntimeException("Not enough bytes allocated to sample with " + index.length + " columns");
-        }
+    public String getKeyId() {
+        return this.keyId;
+    }
 
-        Utilities.intToByteArray(columnIndex, scratchBytes, 0);
-        for (int i = 0; i < index.length; i++) {
-            Utilities.intPairToByteArray(index[i], scratchBytes, INT_SIZE*(2*i + 1));
+    private Cipher createCipher() {
+        try {
+            Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, this.key);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
         }
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte)value;
+        bytes[offset + 1] = (byte)(value >> 8);
+        bytes[offset + 2] = (byte)(value >> 16);
+        bytes[offset + 3] = (byte)(value >> 24);
+    }
+
+    private static void xorInt(byte[] bytes, int offset, int value) {
+        bytes[offset] ^= (byte)value;
+        bytes[offset + 1] ^= (byte)(value >> 8);
+        bytes[offset + 2] ^= (byte)(value >> 16);
+        bytes[offset + 3] ^= (byte)(value >> 24);
+    }
+
+    /**
+     * A uniform value in [0, 1) that is a multiple of 2^-53, built from the
+     * first 7 bytes of an encrypted block.
+     */
+    private static double toUniform(byte[] bytes, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 7; i++)
+            value |= ((long)bytes[offset + i] & 0xffL) << (8 * i);
+        value &= (1L << 53) - 1;
+        return (double)value * NORMALIZER;
+    }
 
+    /**
+     * Securely sample many values uniformly in [0, 1) using a pseudorandom function.
+     * @param columnIndex  Index of the column (or columns) sampled.
+     * @param dimensions   Number of dimensions of the intervals, 1 or 2.
+     * @param coordinates  For each value 4 integers: x1, x2, y1, y2.
+     *                     y1 and y2 are 0 for one-dimensional intervals.
+     * @param count        Number of values to sample.
+     * @param result       Array where the values are written.
+     */
+    private void sampleUniform(int columnIndex, int dimensions,
+                               int[] coordinates, int count, double[] result) {
+        Cipher cipher = this.aes.get();
+        byte[] blocks = new byte[Math.min(count, BATCH_SIZE) * BLOCK_SIZE];
         try {
-            byte[] bytes = this.aes.doFinal(scratchBytes);
-            long val = byteArrayToLong(bytes);
-            return (double)val * NORMALIZER;
-        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            for (int start = 0; start < count; start += BATCH_SIZE) {
+                int n = Math.min(BATCH_SIZE, count - start);
+                int length = n * BLOCK_SIZE;
+                for (int i = 0; i < n; i++) {
+                    int offset = i * BLOCK_SIZE;
+                    int c = 4 * (start + i);
+                    putInt(blocks, offset, columnIndex);
+                    putInt(blocks, offset + 4, coordinates[c]);
+                    putInt(blocks, offset + 8, coordinates[c + 1]);
+                    putInt(blocks, offset + 12, coordinates[c + 2]);
+                }
+                cipher.doFinal(blocks, 0, length, blocks, 0);
+                // Chain the second block.
+                for (int i = 0; i < n; i++) {
+                    int offset = i * BLOCK_SIZE;
+                    xorInt(blocks, offset, coordinates[4 * (start + i) + 3]);
+                    xorInt(blocks, offset + 4, dimensions);
+                }
+                cipher.doFinal(blocks, 0, length, blocks, 0);
+                for (int i = 0; i < n; i++)
+                    result[start + i] = toUniform(blocks, i * BLOCK_SIZE);
+            }
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private double uniformToLaplace(double scale, double unif) {
+    private static double uniformToLaplace(double scale, double unif) {
         double r = 0.5 - unif;
         if ( r < 0 ) {
             return -1 * scale * Math.log(1 - 2*(-1 * r));
@@ -68,14 +148,73 @@ public class SecureLaplace {
         }
     }
 
+    private static void uniformToLaplace(double scale, double[] values, int count) {
+        for (int i = 0; i < count; i++)
+            values[i] = uniformToLaplace(scale, values[i]);
+    }
+
     /**
      * Sample a value from Laplace(0, scale) using a pseudorandom function indexed by index.
      * Note that this implementation is vulnerable to the attack described in
      * "On Significance of the Least Significant Bits For Differential Privacy", Mironov, CCS 2012.
+     * @param index  One interval for one-dimensional data, or two intervals for
+     *               two-dimensional data.
      */
     @SafeVarargs
     public final double sampleLaplace(Integer columnIndex, double scale, Pair<Integer, Integer>... index) {
-        double unif = this.sampleUniform(columnIndex, index);
-        return uniformToLaplace(scale, unif);
+        if (index.length < 1 || index.length > 2)
+            throw new RuntimeException("Cannot sample with " + index.length + " intervals");
+        int[] coordinates = new int[4];
+        for (int i = 0; i < index.length; i++) {
+            coordinates[2 * i] = Converters.checkNull(index[i].first);
+            coordinates[2 * i + 1] = Converters.checkNull(index[i].second);
+        }
+        double[] result = new double[1];
+        this.sampleUniform(columnIndex, index.length, coordinates, 1, result);
+        return uniformToLaplace(scale, result[0]);
+    }
+
+    /**
+     * Sample values from Laplace(0, scale) for many one-dimensional intervals at once.
+     * result[i] receives the same value as sampleLaplace(columnIndex, scale, intervals[i]).
+     */
+    public void sampleLaplace(int columnIndex, double scale,
+                              List<Pair<Integer, Integer>> intervals, /*out*/double[] result) {
+        int count = intervals.size();
+        int[] coordinates = new int[4 * count];
+        for (int i = 0; i < count; i++) {
+            Pair<Integer, Integer> x = intervals.get(i);
+            coordinates[4 * i] = Converters.checkNull(x.first);
+            coordinates[4 * i + 1] = Converters.checkNull(x.second);
+        }
+        this.sampleUniform(columnIndex, 1, coordinates, count, result);
+        uniformToLaplace(scale, result, count);
+    }
+
+    /**
+     * Sample values from Laplace(0, scale) for all the rectangles in the product
+     * of xIntervals and yIntervals at once.  result[i * yIntervals.size() + j] receives
+     * the same value as sampleLaplace(columnIndex, scale, xIntervals[i], yIntervals[j]).
+     */
+    public void sampleLaplace(int columnIndex, double scale,
+                              List<Pair<Integer, Integer>> xIntervals,
+                              List<Pair<Integer, Integer>> yIntervals,
+                              /*out*/double[] result) {
+        int ySize = yIntervals.size();
+        int count = xIntervals.size() * ySize;
+        int[] coordinates = new int[4 * count];
+        int index = 0;
+        for (Pair<Integer, Integer> x : xIntervals) {
+            int x1 = Converters.checkNull(x.first);
+            int x2 = Converters.checkNull(x.second);
+            for (Pair<Integer, Integer> y : yIntervals) {
+                coordinates[index++] = x1;
+                coordinates[index++] = x2;
+                coordinates[index++] = Converters.checkNull(y.first);
+                coordinates[index++] = Converters.checkNull(y.second);
+            }
+        }
+        this.sampleUniform(columnIndex, 2, coordinates, count, result);
+        uniformToLaplace(scale, result, count);
     }
 }
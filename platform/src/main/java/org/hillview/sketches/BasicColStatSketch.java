@@ -19,11 +19,13 @@ package org.hillview.sketches;
 
 import org.hillview.dataset.api.TableSketch;
 import org.hillview.sketches.results.BasicColStats;
+import org.hillview.table.api.IColumn;
 import org.hillview.table.api.ITable;
 import org.hillview.utils.Converters;
 import org.hillview.utils.JsonList;
 
 import javax.annotation.Nullable;
+import java.util.List;
 
 /**
  * A Sketch that computes basic column statistics for a set of columns.
@@ -48,8 +50,9 @@ public class BasicColStatSketch implements TableSketch<JsonList<BasicColStats>>
         Converters.checkNull(data);
         JsonList<BasicColStats> result = this.getZero();
         Converters.checkNull(result);
+        List<IColumn> columns = data.getLoadedColumns(this.cols);
         for (int i = 0; i < this.cols.length; i++)
-            result.get(i).scan(data.getLoadedColumn(this.cols[i]), data.getMembershipSet());
+            result.get(i).scan(columns.get(i), data.getMembershipSet());
         return result;
     }
 
@@ -26,6 +26,8 @@ import org.hillview.table.rows.VirtualRowSnapshot;
 import org.hillview.utils.Converters;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A sketch which just increments every time it is invoked.
@@ -44,11 +46,21 @@ public class CounterAndSingletonSketch extends
         result.increment(v, rowNumber);
     }
 
+    @Override
+    public List<String> getColumnNames() {
+        return new ArrayList<String>(this.schema.getColumnNames());
+    }
+
     @Override
     public VirtualRowSnapshot initialize(ITable data) {
         return new VirtualRowSnapshot(data, this.schema);
     }
 
+    @Override
+    public boolean supportsMorsels() {
+        return true;
+    }
+
     @Override
     public CountAndSingleton rescale(CountAndSingleton result, double samplingRate) {
         return result.rescale(samplingRate);
@@ -35,9 +35,17 @@ public class CounterSketch extends IncrementalTableSketch<Count, EmptyWorkspace>
         result.add(1);
     }
 
+    @Override
+    public void incrementBatch(EmptyWorkspace v, Count result, int[] rows, int from, int to) {
+        result.add(to - from);
+    }
+
     @Override
     public EmptyWorkspace initialize(ITable data) { return EmptyWorkspace.instance; }
 
+    @Override
+    public boolean supportsMorsels() { return true; }
+
     @Override
     public Count rescale(Count result, double samplingRate) {
         return result.rescale(samplingRate);
@@ -23,7 +23,6 @@ import org.hillview.sketches.results.CountAndSingleton;
 import org.hillview.sketches.results.Groups;
 import org.hillview.sketches.results.IHistogramBuckets;
 import org.hillview.table.Schema;
-import org.hillview.table.api.ITable;
 import org.hillview.table.rows.VirtualRowSnapshot;
 
 /**
@@ -41,10 +40,4 @@ public class HeatmapSketch extends GroupBySketch<
             IHistogramBuckets buckets1) {
         super(buckets1, new HistogramAndSingletonSketch(schema, buckets0));
     }
-
-    @Override
-    public GroupByWorkspace<GroupByWorkspace<VirtualRowSnapshot>> initialize(ITable data) {
-        data.getLoadedColumns(this.buckets.getColumn(), super.buckets.getColumn());
-        return super.initialize(data);
-    }
 }
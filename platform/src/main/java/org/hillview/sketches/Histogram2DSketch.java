@@ -22,7 +22,6 @@ import org.hillview.sketches.highorder.GroupByWorkspace;
 import org.hillview.sketches.results.Count;
 import org.hillview.sketches.results.Groups;
 import org.hillview.sketches.results.IHistogramBuckets;
-import org.hillview.table.api.ITable;
 
 /**
  * Standard 2D histogram computed using 2 nested group-by operators.
@@ -37,10 +36,4 @@ public class Histogram2DSketch extends GroupBySketch<
             IHistogramBuckets buckets1) {
         super(buckets1, new HistogramSketch(buckets0));
     }
-
-    @Override
-    public GroupByWorkspace<GroupByWorkspace<EmptyWorkspace>> initialize(ITable data) {
-        data.getLoadedColumns(this.buckets.getColumn(), super.buckets.getColumn());
-        return super.initialize(data);
-    }
 }
@@ -22,7 +22,6 @@ import org.hillview.sketches.highorder.GroupByWorkspace;
 import org.hillview.sketches.results.Count;
 import org.hillview.sketches.results.Groups;
 import org.hillview.sketches.results.IHistogramBuckets;
-import org.hillview.table.api.ITable;
 
 /**
  * 3D histogram computed using 3 nested GroupBy sketches.
@@ -32,19 +31,10 @@ public class Histogram3DSketch extends GroupBySketch<
         GroupByWorkspace<GroupByWorkspace<EmptyWorkspace>>,
         Histogram2DSketch> {
 
-    private final IHistogramBuckets superSuperBuckets;
-
     public Histogram3DSketch(
             IHistogramBuckets buckets0,
             IHistogramBuckets buckets1,
             IHistogramBuckets buckets2) {
         super(buckets2, new Histogram2DSketch(buckets0, buckets1));
-        this.superSuperBuckets = buckets0;
-    }
-
-    @Override
-    public GroupByWorkspace<GroupByWorkspace<GroupByWorkspace<EmptyWorkspace>>> initialize(ITable data) {
-        data.getLoadedColumns(buckets.getColumn(), super.buckets.getColumn(), this.superSuperBuckets.getColumn());
-        return super.initialize(data);
     }
 }
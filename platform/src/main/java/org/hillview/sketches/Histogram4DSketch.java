@@ -22,7 +22,6 @@ import org.hillview.sketches.highorder.GroupByWorkspace;
 import org.hillview.sketches.results.Count;
 import org.hillview.sketches.results.Groups;
 import org.hillview.sketches.results.IHistogramBuckets;
-import org.hillview.table.api.ITable;
 
 /**
  * 4D histogram computed using 4 nested GroupBySketch applications.
@@ -32,24 +31,11 @@ public class Histogram4DSketch extends GroupBySketch<
         GroupByWorkspace<GroupByWorkspace<GroupByWorkspace<EmptyWorkspace>>>,
         Histogram3DSketch> {
 
-    private final IHistogramBuckets b0;
-    private final IHistogramBuckets b1;
-
     public Histogram4DSketch(
             IHistogramBuckets buckets0,
             IHistogramBuckets buckets1,
             IHistogramBuckets buckets2,
             IHistogramBuckets buckets3) {
         super(buckets3, new Histogram3DSketch(buckets0, buckets1, buckets2));
-        this.b0 = buckets0;
-        this.b1 = buckets1;
-    }
-
-    @Override
-    public GroupByWorkspace<GroupByWorkspace<GroupByWorkspace<GroupByWorkspace<EmptyWorkspace>>>>
-    initialize(ITable data) {
-        data.getLoadedColumns(buckets.getColumn(), super.buckets.getColumn(),
-                this.b0.getColumn(), this.b1.getColumn());
-        return super.initialize(data);
     }
 }
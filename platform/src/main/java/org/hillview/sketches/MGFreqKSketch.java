@@ -27,6 +27,8 @@ import org.hillview.sketches.results.FreqKListMG;
 import org.hillview.table.QuantizationSchema;
 import org.hillview.table.QuantizedTable;
 import org.hillview.table.Schema;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IDictionaryColumn;
 import org.hillview.table.api.IRowIterator;
 import org.hillview.table.api.ITable;
 import org.hillview.table.rows.RowSnapshot;
@@ -130,6 +132,14 @@ public class MGFreqKSketch implements TableSketch<FreqKListMG> {
         Converters.checkNull(data);
         if (this.quantization != null)
             data = new QuantizedTable(data, this.quantization);
+        if (this.schema.getColumnCount() == 1) {
+            IColumn col = data.getLoadedColumn(this.schema.getColumnNames().get(0));
+            if (col instanceof IDictionaryColumn) {
+                IDictionaryColumn dc = (IDictionaryColumn)col;
+                if (dc.hasDictionary() && dc.getDictionarySize() <= data.getMembershipSet().getSize())
+                    return this.createFromCodes(data, dc);
+            }
+        }
         VirtualRowHashStrategy hashStrategy = new VirtualRowHashStrategy(data, this.schema);
         Int2ObjectOpenCustomHashMap<MutableInteger> hMap = new Int2ObjectOpenCustomHashMap<MutableInteger>(hashStrategy);
         IntSet toRemove = new IntOpenHashSet(this.maxSize);
@@ -172,4 +182,36 @@ public class MGFreqKSketch implements TableSketch<FreqKListMG> {
         Object2IntOpenHashMap<RowSnapshot> hm = hashStrategy.materializeHashMap(hMap);
         return new FreqKListMG(data.getNumOfRows(), this.epsilon, this.maxSize, hm);
     }
+
+    /**
+     * Computes the sketch for a single dictionary-encoded column.  The exact frequency
+     * of each code is counted in an array, and the maxSize most frequent values are kept
+     * with their exact counts.  This satisfies the same error bounds as the Misra-Gries
+     * summary: any value that is dropped has a frequency of at most n / (maxSize + 1).
+     */
+    private FreqKListMG createFromCodes(ITable data, IDictionaryColumn column) {
+        int size = column.getDictionarySize();
+        int[] counts = new int[size];
+        int[] firstRow = new int[size];
+        IRowIterator rowIt = data.getRowIterator();
+        for (int row = rowIt.getNextRow(); row >= 0; row = rowIt.getNextRow()) {
+            int code = column.getCode(row);
+            if (counts[code]++ == 0)
+                firstRow[code] = row;
+        }
+        IntArrayList codes = new IntArrayList(size);
+        for (int code = 0; code < size; code++)
+            if (counts[code] > 0)
+                codes.add(code);
+        int[] sorted = codes.toIntArray();
+        if (sorted.length > this.maxSize)
+            IntArrays.quickSort(sorted, (a, b) -> Integer.compare(counts[b], counts[a]));
+        int kept = Math.min(this.maxSize, sorted.length);
+        Object2IntOpenHashMap<RowSnapshot> hm = new Object2IntOpenHashMap<RowSnapshot>(kept);
+        for (int i = 0; i < kept; i++) {
+            int code = sorted[i];
+            hm.put(new RowSnapshot(data, firstRow[code], this.schema), counts[code]);
+        }
+        return new FreqKListMG(data.getNumOfRows(), this.epsilon, this.maxSize, hm);
+    }
 }
@@ -18,25 +18,26 @@
 package org.hillview.sketches;
 
 import it.unimi.dsi.fastutil.ints.Int2IntSortedMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2IntRBTreeMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
-import it.unimi.dsi.fastutil.objects.ObjectCollection;
 import org.hillview.dataset.api.TableSketch;
 import org.hillview.sketches.results.IntTopK;
 import org.hillview.sketches.results.IntTreeTopK;
 import org.hillview.sketches.results.NextKList;
 import org.hillview.table.*;
 import org.hillview.table.api.*;
-import org.hillview.table.columns.DoubleListColumn;
+import org.hillview.table.columns.BaseArrayColumn;
+import org.hillview.table.columns.DoubleArrayColumn;
 import org.hillview.table.columns.ObjectArrayColumn;
 import org.hillview.table.rows.RowSnapshot;
-import org.hillview.table.rows.VirtualRowSnapshot;
 import org.hillview.utils.Converters;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Given a data set, the NextKSketch generates the Next K items in Sorted Order (specified by a
@@ -82,11 +83,67 @@ public class NextKSketch implements TableSketch<NextKList> {
     /**
      * Given a table, generate the Next K items in Sorted Order starting from a specified
      * rowSnapShot (topRow), together with counts.
+     * Large tables are answered using a cached sort index, so that
+     * repeated queries with different topRows do not scan the table.
      * @param data The input table on which we want to compute the NextK list.
      * @return A NextKList.
      */
     public NextKList create(@Nullable ITable data) {
         Converters.checkNull(data);
+        if (this.quantizationSchema == null &&
+                data.getNumOfRows() >= SortIndexCache.MIN_INDEXED_ROWS)
+            return this.createFromIndex(data);
+        return this.createByScan(data);
+    }
+
+    /**
+     * Computes the NextK list using the sorted index of the table: the rows
+     * preceding topRow are found by binary search, and only the next K distinct
+     * rows are visited, both for counting and for aggregation.
+     */
+    private NextKList createFromIndex(ITable data) {
+        int[] sorted = SortIndexCache.getSortedRows(data, this.recordOrder);
+        int position = 0;
+        if (this.topRow != null)
+            position = SortIndexCache.lowerBound(data, this.recordOrder, sorted, this.topRow);
+        IndexComparator comp = this.recordOrder.getIndexComparator(data);
+        // For each distinct row: a representative, the start of its run in sorted, and the count.
+        IntList rows = new IntArrayList(this.maxSize);
+        IntList starts = new IntArrayList(this.maxSize);
+        IntList count = new IntArrayList(this.maxSize);
+        int index = position;
+        while (index < sorted.length && rows.size() < this.maxSize) {
+            int first = sorted[index];
+            int next = index + 1;
+            while (next < sorted.length && comp.compare(first, sorted[next]) == 0)
+                next++;
+            rows.add(first);
+            starts.add(index);
+            count.add(next - index);
+            index = next;
+        }
+        SmallTable topKRows = data.compress(
+                this.recordOrder.toSchema(), new ArrayRowOrder(rows.toIntArray()));
+
+        SmallTable aggTable = null;
+        if (this.aggregates != null) {
+            AggregateSlots slots = new AggregateSlots(this.aggregates, data, rows.size());
+            for (int g = 0; g < rows.size(); g++) {
+                int end = starts.getInt(g) + count.getInt(g);
+                for (int i = starts.getInt(g); i < end; i++)
+                    slots.add(g, sorted[i]);
+            }
+            aggTable = slots.toTable();
+        }
+        return new NextKList(topKRows, aggTable, count, position, data.getNumOfRows());
+    }
+
+    /**
+     * Computes the NextK list by scanning the whole table.
+     * @param data The input table on which we want to compute the NextK list.
+     * @return A NextKList.
+     */
+    public NextKList createByScan(ITable data) {
         if (this.quantizationSchema != null)
             data = new QuantizedTable(data, this.quantizationSchema);
         IndexComparator comp = this.recordOrder.getIndexComparator(data);
@@ -94,100 +151,132 @@ public class NextKSketch implements TableSketch<NextKList> {
         IRowIterator rowIt = data.getRowIterator();
         int position = 0;
         Schema toBring = this.recordOrder.toSchema();
-        VirtualRowSnapshot vw = new VirtualRowSnapshot(data, toBring);
+        @Nullable
+        IntUnaryOperator compareTop = this.topRow == null ? null :
+                this.recordOrder.getTopRowComparator(this.topRow, data);
         for (int i = rowIt.getNextRow(); i >= 0; i = rowIt.getNextRow()) {
-            vw.setRow(i);
-            if ((this.topRow == null) ||
-                    (this.topRow.compareTo(vw, this.recordOrder) <= 0))
+            if ((compareTop == null) || (compareTop.applyAsInt(i) <= 0))
                 topK.push(i);
             else
                 position++;
         }
         Int2IntSortedMap topKList = topK.getTopK();
-        IRowOrder rowOrder = new ArrayRowOrder(topKList.keySet().toIntArray());
-        SmallTable topKRows = data.compress(toBring, rowOrder);
+        int[] topRows = topKList.keySet().toIntArray();
+        SmallTable topKRows = data.compress(toBring, new ArrayRowOrder(topRows));
         IntList count = new IntArrayList(topKList.size());
         count.addAll(topKList.values());
 
         SmallTable aggTable = null;
         if (this.aggregates != null) {
-            // Create a map with the indexes of the rows that need to be aggregated
-            Int2ObjectRBTreeMap<Double[]> aggregates =
-                    new Int2ObjectRBTreeMap<Double[]>(comp);
-            IRowIterator it = rowOrder.getIterator();
-            for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
-                aggregates.put(row, new Double[this.aggregates.length]);
+            // Map each row that needs to be aggregated to the index of its group
+            Int2IntRBTreeMap groups = new Int2IntRBTreeMap(comp);
+            groups.defaultReturnValue(-1);
+            for (int g = 0; g < topRows.length; g++)
+                groups.put(topRows[g], g);
 
             // Do a second pass over the data to compute the aggregates
-            Schema aggSchema = new Schema();
-            for (AggregateDescription ad: this.aggregates)
-                // The same column can be aggregated multiple times
-                if (!aggSchema.containsColumnName(ad.cd.name))
-                    aggSchema.append(ad.cd);
-            vw = new VirtualRowSnapshot(data, aggSchema);
+            AggregateSlots slots = new AggregateSlots(this.aggregates, data, topRows.length);
             rowIt = data.getRowIterator();
             for (int i = rowIt.getNextRow(); i >= 0; i = rowIt.getNextRow()) {
-                vw.setRow(i);
-                Double[] agg = aggregates.get(i);
-                if (agg == null)
+                int g = groups.get(i);
+                if (g >= 0)
+                    slots.add(g, i);
+            }
+            aggTable = slots.toTable();
+        }
+
+        return new NextKList(topKRows, aggTable, count, position, data.getNumOfRows());
+    }
+
+    /**
+     * Aggregates for a set of groups of rows, stored in a flat array:
+     * the value of aggregate a for group g is at index g * aggregates.length + a.
+     */
+    private static final class AggregateSlots {
+        private final AggregateDescription[] aggregates;
+        /**
+         * Column of each aggregate.
+         */
+        private final IColumn[] columns;
+        private final double[] values;
+        /**
+         * Bit set for each slot that has received at least one value.
+         */
+        private final BitSet present;
+        private final int groups;
+
+        AggregateSlots(AggregateDescription[] aggregates, ITable data, int groups) {
+            this.aggregates = aggregates;
+            this.groups = groups;
+            // The same column can be aggregated multiple times
+            List<String> names = new ArrayList<String>();
+            for (AggregateDescription ad: aggregates)
+                if (!names.contains(ad.cd.name))
+                    names.add(ad.cd.name);
+            List<IColumn> loaded = data.getLoadedColumns(names);
+            this.columns = new IColumn[aggregates.length];
+            for (int a = 0; a < aggregates.length; a++)
+                this.columns[a] = loaded.get(names.indexOf(aggregates[a].cd.name));
+            this.values = new double[groups * aggregates.length];
+            this.present = new BitSet(this.values.length);
+        }
+
+        /**
+         * Add the specified row to the aggregates of a group.
+         */
+        void add(int group, int row) {
+            int base = group * this.aggregates.length;
+            for (int a = 0; a < this.aggregates.length; a++) {
+                IColumn col = this.columns[a];
+                if (col.isMissing(row))
                     continue;
-                for (int a = 0; a < this.aggregates.length; a++) {
-                    AggregateDescription cad = this.aggregates[a];
-                    if (vw.isMissing(cad.cd.name))
-                        continue;
-                    double d = vw.asDouble(cad.cd.name);
-                    switch (cad.agkind) {
-                        case Sum:
-                            if (agg[a] == null)
-                                agg[a] = d;
-                            else
-                                agg[a] += d;
-                            break;
-                        case Count:
-                            if (agg[a] == null)
-                                agg[a] = 1.0;
-                            else
-                                agg[a]++;
-                            break;
-                        case Min:
-                            if (agg[a] == null)
-                                agg[a] = d;
-                            else
-                                agg[a] = Math.min(agg[a], d);
-                            break;
-                        case Max:
-                            if (agg[a] == null)
-                                agg[a] = d;
-                            else
-                                agg[a] = Math.max(agg[a], d);
-                            break;
-                        default:
-                            throw new RuntimeException("Unexpected aggregation");
-                    }
+                int slot = base + a;
+                double d = col.asDouble(row);
+                if (!this.present.get(slot)) {
+                    this.present.set(slot);
+                    this.values[slot] = this.aggregates[a].agkind ==
+                            AggregateDescription.AggregateKind.Count ? 1 : d;
+                    continue;
+                }
+                switch (this.aggregates[a].agkind) {
+                    case Sum:
+                        this.values[slot] += d;
+                        break;
+                    case Count:
+                        this.values[slot]++;
+                        break;
+                    case Min:
+                        this.values[slot] = Math.min(this.values[slot], d);
+                        break;
+                    case Max:
+                        this.values[slot] = Math.max(this.values[slot], d);
+                        break;
+                    default:
+                        throw new RuntimeException("Unexpected aggregation");
                 }
             }
+        }
 
-            // Create columns for the aggregate table
-            List<DoubleListColumn> aggCols = new ArrayList<DoubleListColumn>(this.aggregates.length);
+        /**
+         * Create a table with one column for each aggregate and one row for each group.
+         */
+        SmallTable toTable() {
             Schema aggTableSchema = NextKList.getSchema(this.aggregates);
             List<ColumnDescription> cds = aggTableSchema.getColumnDescriptions();
-            for (int i = 0; i < this.aggregates.length; i++) {
-                ColumnDescription cd = cds.get(i);
-                DoubleListColumn col = new DoubleListColumn(cd);
-                aggCols.add(col);
-            }
-
-            ObjectCollection<Double[]> values = aggregates.values();
-            for (Double[] agg: values) {
-                for (int a = 0; a < this.aggregates.length; a++) {
-                    DoubleListColumn col = aggCols.get(a);
-                    col.append(agg[a]);
+            List<IColumn> aggCols = new ArrayList<IColumn>(this.aggregates.length);
+            for (int a = 0; a < this.aggregates.length; a++) {
+                DoubleArrayColumn col = new DoubleArrayColumn(cds.get(a), this.groups);
+                for (int g = 0; g < this.groups; g++) {
+                    int slot = g * this.aggregates.length + a;
+                    if (this.present.get(slot))
+                        col.set(g, this.values[slot]);
+                    else
+                        col.setMissing(g);
                 }
+                aggCols.add(col);
             }
-            aggTable = new SmallTable(aggCols);
+            return new SmallTable(aggCols);
         }
-
-        return new NextKList(topKRows, aggTable, count, position, data.getNumOfRows());
     }
 
     /**
@@ -221,33 +310,46 @@ public class NextKSketch implements TableSketch<NextKList> {
         return mergedCounts;
     }
 
-    private static ObjectArrayColumn mergeAggregates(
-            IColumn left, IColumn right, final List<Integer> mergeOrder, int maxSize,
+    /**
+     * Merge two aggregate columns of two NextK lists.  A missing aggregate
+     * means that the group had no values for the aggregated column.
+     */
+    private static DoubleArrayColumn mergeAggregates(
+            IColumn left, IColumn right, final IntList mergeOrder, int maxSize,
             AggregateDescription.AggregateKind agkind) {
         final int size = Math.min(maxSize, mergeOrder.size());
-        final ObjectArrayColumn merged = new ObjectArrayColumn(left.getDescription(), size);
+        final DoubleArrayColumn merged = new DoubleArrayColumn(left.getDescription(), size);
         int i = 0, j = 0, k = 0;
         while (k < size) {
-            if (mergeOrder.get(k) < 0) {
-                merged.set(k, left.getDouble(i));
+            int order = mergeOrder.getInt(k);
+            if (order < 0) {
+                copyDouble(left, i, merged, k);
                 i++;
-            } else if (mergeOrder.get(k) > 0) {
-                merged.set(k, right.getDouble(j));
+            } else if (order > 0) {
+                copyDouble(right, j, merged, k);
                 j++;
             } else {
-                switch (agkind) {
-                    case Sum:
-                    case Count:
-                        merged.set(k, right.getDouble(j) + left.getDouble(i));
-                        break;
-                    case Min:
-                        merged.set(k, Math.min(right.getDouble(j), left.getDouble(i)));
-                        break;
-                    case Max:
-                        merged.set(k, Math.max(right.getDouble(j), left.getDouble(i)));
-                        break;
-                    default:
-                        throw new RuntimeException("Unexpected aggregation");
+                if (left.isMissing(i)) {
+                    copyDouble(right, j, merged, k);
+                } else if (right.isMissing(j)) {
+                    copyDouble(left, i, merged, k);
+                } else {
+                    double l = left.getDouble(i);
+                    double r = right.getDouble(j);
+                    switch (agkind) {
+                        case Sum:
+                        case Count:
+                            merged.set(k, r + l);
+                            break;
+                        case Min:
+                            merged.set(k, Math.min(r, l));
+                            break;
+                        case Max:
+                            merged.set(k, Math.max(r, l));
+                            break;
+                        default:
+                            throw new RuntimeException("Unexpected aggregation");
+                    }
                 }
                 i++;
                 j++;
@@ -257,6 +359,81 @@ public class NextKSketch implements TableSketch<NextKList> {
         return merged;
     }
 
+    private static void copyDouble(IColumn from, int fromRow, IMutableColumn to, int toRow) {
+        if (from.isMissing(fromRow))
+            to.setMissing(toRow);
+        else
+            to.set(toRow, from.getDouble(fromRow));
+    }
+
+    /**
+     * Copies a cell between two columns of the same kind.
+     */
+    private interface ICellCopier {
+        void copy(IColumn from, int fromRow, IMutableColumn to, int toRow);
+    }
+
+    private static ICellCopier getCopier(ContentsKind kind) {
+        switch (kind) {
+            case None:
+                return (from, fromRow, to, toRow) -> to.setMissing(toRow);
+            case String:
+            case Json:
+                return (from, fromRow, to, toRow) -> to.set(toRow, from.getString(fromRow));
+            case Integer:
+                return (from, fromRow, to, toRow) -> {
+                    if (from.isMissing(fromRow))
+                        to.setMissing(toRow);
+                    else
+                        to.set(toRow, from.getInt(fromRow));
+                };
+            case Date:
+            case Double:
+            case Duration:
+            case Time:
+            case LocalDate:
+                return NextKSketch::copyDouble;
+            default:
+                throw new RuntimeException("Unexpected kind " + kind);
+        }
+    }
+
+    /**
+     * Merge two columns of the rows of two NextK lists into a column of the
+     * same kind, without boxing the values.
+     * @param left       The left column
+     * @param right      The right column
+     * @param mergeOrder The order in which to merge the two columns, as
+     *                   produced by RecordOrder.getIntMergeOrder.
+     * @param maxSize Bound on the size of the merged column
+     */
+    private static IColumn mergeRows(IColumn left, IColumn right,
+                                     final IntList mergeOrder, int maxSize) {
+        ColumnDescription desc = left.getDescription();
+        if (desc.kind == ContentsKind.Interval)
+            return ObjectArrayColumn.mergeColumns(left, right, mergeOrder, maxSize);
+        final int size = Math.min(maxSize, mergeOrder.size());
+        final IMutableColumn merged = BaseArrayColumn.create(desc, size);
+        final ICellCopier copier = getCopier(desc.kind);
+        int i = 0, j = 0, k = 0;
+        while (k < size) {
+            int order = mergeOrder.getInt(k);
+            if (order < 0) {
+                copier.copy(left, i, merged, k);
+                i++;
+            } else if (order > 0) {
+                copier.copy(right, j, merged, k);
+                j++;
+            } else {
+                copier.copy(right, j, merged, k);
+                i++;
+                j++;
+            }
+            k++;
+        }
+        return merged.seal();
+    }
+
     /**
      * Add two NextK Lists, merging counts of identical rows.
      * @param left The left TopK list
@@ -273,7 +450,7 @@ public class NextKSketch implements TableSketch<NextKList> {
         List<IColumn> mergedCol = new ArrayList<IColumn>(width);
         IntList mergeOrder = this.recordOrder.getIntMergeOrder(left.rows, right.rows);
         for (String colName : left.rows.getSchema().getColumnNames()) {
-            IColumn newCol = ObjectArrayColumn.mergeColumns(left.rows.getColumn(colName),
+            IColumn newCol = mergeRows(left.rows.getColumn(colName),
                     right.rows.getColumn(colName), mergeOrder, this.maxSize);
             mergedCol.add(newCol);
         }
@@ -24,6 +24,8 @@ import org.hillview.table.api.ITable;
 import org.hillview.utils.Converters;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This sketch extracts samples from a given numeric column using reservoir sampling.
@@ -50,6 +52,13 @@ public class NumericSamplesSketch extends
         }
     }
 
+    @Override
+    public List<String> getColumnNames() {
+        List<String> result = new ArrayList<String>();
+        result.add(this.column);
+        return result;
+    }
+
     @Override
     public ColumnWorkspace<ReservoirSampleWorkspace> initialize(ITable data) {
         IColumn col = Converters.checkNull(data.getLoadedColumn(this.column));
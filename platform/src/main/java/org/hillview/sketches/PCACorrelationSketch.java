@@ -20,13 +20,13 @@ package org.hillview.sketches;
 import org.hillview.dataset.api.TableSketch;
 import org.hillview.sketches.results.CorrMatrix;
 import org.hillview.table.api.*;
-import org.hillview.utils.BlasConversions;
 import org.hillview.utils.Converters;
 import org.jblas.DoubleMatrix;
 
 import javax.annotation.Nullable;
 import java.security.InvalidParameterException;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * This class computes the correlations between different columns in the table.
@@ -36,7 +36,12 @@ import java.util.Arrays;
 
 public class PCACorrelationSketch implements TableSketch<CorrMatrix> {
     static final long serialVersionUID = 1;
-    
+    /**
+     * Number of rows processed at once; the values of a batch of rows
+     * for all columns should fit in the processor cache.
+     */
+    private static final int BATCH_SIZE = 1024;
+
     private final String[] colNames;
     private final long seed;
     private final double samplingRate;
@@ -62,51 +67,123 @@ public class PCACorrelationSketch implements TableSketch<CorrMatrix> {
                 throw new InvalidParameterException("Correlation Sketch requires column to be " +
                         "integer or double: " + col);
         }
-        CorrMatrix corrMatrix = new CorrMatrix(this.colNames);
-        ITable table;
-        if (this.samplingRate >= 1)
-            table = data;
-        else {
-            data.getLoadedColumns(this.colNames);
-            IMembershipSet mm = data.getMembershipSet().sample(this.samplingRate, this.seed);
-            table = data.compress(mm);
-        }
-        int nRows = table.getNumOfRows();
+        IMembershipSet members = data.getMembershipSet();
+        if (this.samplingRate < 1)
+            members = members.sample(this.samplingRate, this.seed);
+        List<IColumn> columns = data.getLoadedColumns(Arrays.asList(this.colNames));
         int nCols = this.colNames.length;
-        // Convert the columns to a DoubleMatrix.
-        DoubleMatrix mat = BlasConversions.toDoubleMatrix(table, Arrays.asList(this.colNames));
-
-        // The number of non-missing values per column pair
-        corrMatrix.nonMissing = DoubleMatrix.ones(nCols, nCols).mul(nRows);
-        for (int row = 0; row < mat.rows; row++) {
-            for (int i = 0; i < mat.columns; i++) {
-                if (Double.isNaN(mat.get(row, i))) {
-                    mat.put(row, i, 0); // Set the value to 0 so it doesn't contribute.
-                    corrMatrix.nonMissing.put(i, i, corrMatrix.nonMissing.get(i, i) - 1);
-                    for (int j = i; j < mat.columns; j++) {
-                        if (Double.isNaN(mat.get(row, j))) {
-                            corrMatrix.nonMissing.put(i, j, corrMatrix.nonMissing.get(i, j) - 1);
-                            corrMatrix.nonMissing.put(j, i, corrMatrix.nonMissing.get(j, i) - 1);
-                        }
-                    }
-                }
+        Accumulator acc = new Accumulator(nCols);
+        int[] rows = new int[BATCH_SIZE];
+        int count = 0;
+        IRowIterator it = members.getIterator();
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow()) {
+            rows[count++] = row;
+            if (count == BATCH_SIZE) {
+                acc.add(columns, rows, count);
+                count = 0;
             }
         }
+        if (count > 0)
+            acc.add(columns, rows, count);
 
-        // Since the missing values are set to 0, they don't contribute to the covariance matrix.
-        DoubleMatrix covMat = mat.transpose().mmul(mat);
+        CorrMatrix corrMatrix = new CorrMatrix(this.colNames);
+        // The number of non-missing values per column pair: on the diagonal the rows
+        // where the column is present, elsewhere the rows where either column is present.
+        corrMatrix.nonMissing = new DoubleMatrix(nCols, nCols);
+        for (int i = 0; i < nCols; i++) {
+            for (int j = i; j < nCols; j++) {
+                double nonMissing = acc.rows - acc.missing[i * nCols + j];
+                corrMatrix.nonMissing.put(i, j, nonMissing);
+                corrMatrix.nonMissing.put(j, i, nonMissing);
+                // Normalize by the number of *actual* values processed. (Also for the mean!)
+                corrMatrix.put(i, j, acc.gram[i * nCols + j] / nonMissing);
+            }
+            corrMatrix.means[i] = acc.sums[i] / corrMatrix.nonMissing.get(i, i);
+        }
+        return corrMatrix;
+    }
 
-        // Normalize by the number of *actual* values processed. (Also for the mean!)
-        covMat.divi(corrMatrix.nonMissing);
-        DoubleMatrix means = mat.columnSums().divRowVector(corrMatrix.nonMissing.diag());
+    /**
+     * Accumulates the inner products of the columns one batch of rows at a time,
+     * without materializing the table.  Missing values are treated as 0.
+     */
+    private static final class Accumulator {
+        final int nCols;
+        long rows;
+        /**
+         * Inner products of each pair of columns; only the upper triangle is used.
+         */
+        final double[] gram;
+        /**
+         * On the diagonal the number of rows where a column is missing; elsewhere
+         * the number of rows where both columns are missing.
+         */
+        final long[] missing;
+        final double[] sums;
+        /**
+         * Values in the current batch; missing values are 0.
+         */
+        final double[][] values;
+        /**
+         * Bitmap of the rows with missing values in the current batch.
+         */
+        final long[][] missingRows;
+        final boolean[] anyMissing;
+
+        Accumulator(int nCols) {
+            this.nCols = nCols;
+            this.rows = 0;
+            this.gram = new double[nCols * nCols];
+            this.missing = new long[nCols * nCols];
+            this.sums = new double[nCols];
+            this.values = new double[nCols][BATCH_SIZE];
+            this.missingRows = new long[nCols][(BATCH_SIZE + 63) / 64];
+            this.anyMissing = new boolean[nCols];
+        }
 
-        for (int i = 0; i < this.colNames.length; i++) {
-            for (int j = i; j < this.colNames.length; j++) {
-                corrMatrix.put(i, j,  covMat.get(i, j));
+        void add(List<IColumn> columns, int[] rows, int count) {
+            this.rows += count;
+            for (int c = 0; c < this.nCols; c++) {
+                IColumn col = columns.get(c);
+                double[] v = this.values[c];
+                long[] m = this.missingRows[c];
+                Arrays.fill(m, 0);
+                boolean any = false;
+                double sum = 0;
+                for (int k = 0; k < count; k++) {
+                    int row = rows[k];
+                    if (col.isMissing(row)) {
+                        v[k] = 0;
+                        m[k >>> 6] |= 1L << k;
+                        any = true;
+                    } else {
+                        v[k] = col.asDouble(row);
+                        sum += v[k];
+                    }
+                }
+                this.sums[c] += sum;
+                this.anyMissing[c] = any;
+            }
+            int words = (count + 63) >>> 6;
+            for (int i = 0; i < this.nCols; i++) {
+                double[] vi = this.values[i];
+                for (int j = i; j < this.nCols; j++) {
+                    double[] vj = this.values[j];
+                    double dot = 0;
+                    for (int k = 0; k < count; k++)
+                        dot += vi[k] * vj[k];
+                    this.gram[i * this.nCols + j] += dot;
+                    if (this.anyMissing[i] && this.anyMissing[j]) {
+                        long[] mi = this.missingRows[i];
+                        long[] mj = this.missingRows[j];
+                        long both = 0;
+                        for (int w = 0; w < words; w++)
+                            both += Long.bitCount(mi[w] & mj[w]);
+                        this.missing[i * this.nCols + j] += both;
+                    }
+                }
             }
-            corrMatrix.means[i] = means.get(i);
         }
-        return corrMatrix;
     }
 
     @Nullable
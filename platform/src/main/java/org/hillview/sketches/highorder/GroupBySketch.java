@@ -30,6 +30,8 @@ import org.hillview.utils.JsonList;
 import org.hillview.utils.Linq;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Given a TableSketch S, this applies S to each group.
@@ -55,6 +57,11 @@ public class GroupBySketch<
         this.buckets = buckets;
     }
 
+    @Override
+    public boolean supportsMorsels() {
+        return this.missingSketch.supportsMorsels();
+    }
+
     @Override
     public void increment(GroupByWorkspace<SW> workspace, Groups<R> result, int rowNumber) {
         if (workspace.column.isMissing(rowNumber)) {
@@ -82,12 +89,111 @@ public class GroupBySketch<
         }
     }
 
+    /**
+     * @return True if rows[from], ..., rows[to - 1] are consecutive row numbers.
+     */
+    private static boolean isRange(int[] rows, int from, int to) {
+        if (from >= to || rows[to - 1] - rows[from] != to - from - 1)
+            return false;
+        for (int i = from + 1; i < to; i++)
+            if (rows[i] != rows[i - 1] + 1)
+                return false;
+        return true;
+    }
+
+    /**
+     * Processes a batch of rows one column at a time: missing rows are separated
+     * (the rows are only copied once a missing row is found),
+     * the bucket indexes of all remaining rows are computed together, the rows are grouped by bucket,
+     * and each group is handed as a batch to the sketch of its bucket.
+     */
+    @Override
+    public void incrementBatch(GroupByWorkspace<SW> workspace, Groups<R> result,
+                               int[] rows, int from, int to) {
+        final int bucketCount = result.perBucket.size();
+        if (workspace.indexer == null || to - from < bucketCount) {
+            // Interval columns, or batches too small to amortize the grouping.
+            super.incrementBatch(workspace, result, rows, from, to);
+            return;
+        }
+        workspace.reserve(to - from);
+        int firstMissing = from;
+        if (isRange(rows, from, to) && !workspace.column.anyMissing(rows[from], rows[to - 1] + 1))
+            // A range of rows without missing values; the column checks it word by word.
+            firstMissing = to;
+        else
+            while (firstMissing < to && !workspace.column.isMissing(rows[firstMissing]))
+                firstMissing++;
+
+        int[] present = rows;
+        int presentFrom = from;
+        int presentTo = to;
+        if (firstMissing < to) {
+            present = workspace.present;
+            presentFrom = 0;
+            presentTo = firstMissing - from;
+            System.arraycopy(rows, from, present, 0, presentTo);
+            // Missing rows are collected in grouped, which is not used yet.
+            int[] missing = workspace.grouped;
+            int missingCount = 0;
+            for (int i = firstMissing; i < to; i++) {
+                int row = rows[i];
+                if (workspace.column.isMissing(row))
+                    missing[missingCount++] = row;
+                else
+                    present[presentTo++] = row;
+            }
+            this.missingSketch.incrementBatch(
+                    workspace.missingWorkspace, result.perMissing, missing, 0, missingCount);
+        }
+
+        // Counting sort of the present rows by bucket.
+        int[] indexes = workspace.indexes;
+        workspace.indexer.indexOf(present, presentFrom, presentTo, indexes);
+        int count = presentTo - presentFrom;
+        int[] start = workspace.bucketStart;
+        Arrays.fill(start, 0);
+        for (int i = 0; i < count; i++) {
+            int index = indexes[i];
+            if (index >= 0 && index < bucketCount)
+                start[index + 1]++;
+        }
+        for (int b = 0; b < bucketCount; b++)
+            start[b + 1] += start[b];
+        int[] grouped = workspace.grouped;
+        for (int i = 0; i < count; i++) {
+            int index = indexes[i];
+            if (index >= 0 && index < bucketCount)
+                grouped[start[index]++] = present[presentFrom + i];
+        }
+        // start[b] is now the end of bucket b.
+        int bucketFrom = 0;
+        for (int b = 0; b < bucketCount; b++) {
+            int bucketTo = start[b];
+            if (bucketTo > bucketFrom)
+                this.bucketSketch.get(b).incrementBatch(workspace.bucketWorkspace.get(b),
+                        result.perBucket.get(b), grouped, bucketFrom, bucketTo);
+            bucketFrom = bucketTo;
+        }
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        List<String> result = this.missingSketch.getColumnNames();
+        if (!result.contains(this.buckets.getColumn()))
+            result.add(0, this.buckets.getColumn());
+        return result;
+    }
+
     @Override
     public GroupByWorkspace<SW> initialize(ITable data) {
-        IColumn column = Converters.checkNull(data).getLoadedColumn(this.buckets.getColumn());
+        // Load the columns of the nested sketches as well.
+        List<String> names = this.getColumnNames();
+        List<IColumn> columns = Converters.checkNull(data).getLoadedColumns(names);
+        IColumn column = columns.get(names.indexOf(this.buckets.getColumn()));
         SW missing = this.missingSketch.initialize(data);
         JsonList<SW> bucketWorkspaces = Linq.map(this.bucketSketch, s -> s.initialize(data));
-        return new GroupByWorkspace<SW>(column, bucketWorkspaces, missing);
+        return new GroupByWorkspace<SW>(column, this.buckets, bucketWorkspaces, missing);
     }
 
     @Override
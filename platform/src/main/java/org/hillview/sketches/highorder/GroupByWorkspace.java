@@ -17,6 +17,7 @@
 
 package org.hillview.sketches.highorder;
 
+import org.hillview.sketches.results.IHistogramBuckets;
 import org.hillview.table.api.ContentsKind;
 import org.hillview.table.api.IColumn;
 import org.hillview.table.api.IIntervalColumn;
@@ -35,8 +36,17 @@ public class GroupByWorkspace<SW> implements ISketchWorkspace {
     final IColumn endColumn;  // only used for Interval columns
     final JsonList<SW> bucketWorkspace;   // one per bucket
     final SW missingWorkspace;
+    @Nullable
+    final IHistogramBuckets.IBatchIndexer indexer;  // not used for Interval columns
+
+    // Scratch arrays used for processing batches of rows.
+    int[] present = new int[0];   // rows that are not missing
+    int[] indexes = new int[0];   // bucket index of each present row
+    int[] grouped = new int[0];   // present rows grouped by bucket
+    final int[] bucketStart;      // start of each bucket in grouped
 
-    GroupByWorkspace(IColumn column, JsonList<SW> bucketWorkspace, SW missingWorkspace) {
+    GroupByWorkspace(IColumn column, IHistogramBuckets buckets,
+                     JsonList<SW> bucketWorkspace, SW missingWorkspace) {
         if (column.getKind() == ContentsKind.Interval) {
             IIntervalColumn ic = column.to(IIntervalColumn.class);
             this.column = ic.getStartColumn();
@@ -47,5 +57,18 @@ public class GroupByWorkspace<SW> implements ISketchWorkspace {
         }
         this.bucketWorkspace = bucketWorkspace;
         this.missingWorkspace = missingWorkspace;
+        this.indexer = this.endColumn == null ? buckets.getBatchIndexer(this.column) : null;
+        this.bucketStart = new int[buckets.getBucketCount() + 1];
+    }
+
+    /**
+     * Make sure that the scratch arrays can hold a batch of the specified size.
+     */
+    void reserve(int batchSize) {
+        if (this.present.length < batchSize) {
+            this.present = new int[batchSize];
+            this.indexes = new int[batchSize];
+            this.grouped = new int[batchSize];
+        }
     }
 }
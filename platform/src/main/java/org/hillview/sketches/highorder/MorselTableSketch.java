@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.sketches.highorder;
+
+import org.hillview.dataset.api.IProgressiveSketch;
+import org.hillview.dataset.api.IScalable;
+import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.api.IncrementalTableSketch;
+import org.hillview.dataset.api.PartialResult;
+import org.hillview.dataset.api.TableSketch;
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.ISketchWorkspace;
+import org.hillview.table.api.ITable;
+import org.hillview.utils.Converters;
+import org.hillview.utils.ExecutorUtils;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Runs an incremental sketch over a single table using multiple threads.
+ * The rows of the table are split into ranges ("morsels") of a fixed size.
+ * Each morsel is processed with a fresh workspace and a fresh result, and the
+ * partial results are combined using the sketch's add method.
+ * Morsels are claimed dynamically by the threads of the compute executor
+ * (the same pool that runs LocalDataSet computations) and by the calling thread.
+ * The calling thread never waits for a morsel that has not been claimed by
+ * a running thread, so this cannot deadlock even if the pool is saturated.
+ * @param <R>   Result produced by the original and this sketch.
+ * @param <SW>  Type of workspace used by the actual sketch.
+ * @param <S>   Actual sketch that will be run.
+ */
+public class MorselTableSketch<
+        SW extends ISketchWorkspace,
+        R extends ISketchResult & IScalable<R>,
+        S extends IncrementalTableSketch<R, SW>>
+        implements TableSketch<R>, IProgressiveSketch<ITable, R> {
+    protected final S actualSketch;
+    /**
+     * Number of consecutive row indexes in a morsel.
+     */
+    protected final int morselSize;
+    /**
+     * When computed progressively, pending results are reported after this
+     * many rows or after this many milliseconds, whichever comes first.
+     */
+    protected final int progressRows;
+    protected final long progressIntervalMs;
+
+    public MorselTableSketch(S actualSketch, int morselSize) {
+        this(actualSketch, morselSize,
+                IncrementalTableSketch.PROGRESS_ROWS, IncrementalTableSketch.PROGRESS_INTERVAL_MS);
+    }
+
+    public MorselTableSketch(S actualSketch, int morselSize,
+                             int progressRows, long progressIntervalMs) {
+        if (morselSize <= 0)
+            throw new IllegalArgumentException("Morsel size must be positive: " + morselSize);
+        this.actualSketch = actualSketch;
+        this.morselSize = morselSize;
+        this.progressRows = progressRows;
+        this.progressIntervalMs = progressIntervalMs;
+    }
+
+    /**
+     * Receives the result of each morsel; may be invoked concurrently.
+     */
+    private interface IMorselConsumer<R> {
+        void accept(int morsel, R result);
+    }
+
+    /**
+     * Accumulates the results of completed morsels and reports them as deltas.
+     */
+    private final class Deltas {
+        private final Consumer<PartialResult<R>> deltas;
+        /**
+         * Number of row indexes covered by all morsels.
+         */
+        private final double max;
+        @Nullable
+        private R pending;
+        /**
+         * Number of row indexes covered by the pending result.
+         */
+        private long pendingRows;
+        private long lastReport;
+
+        Deltas(Consumer<PartialResult<R>> deltas, int max) {
+            this.deltas = deltas;
+            this.max = max;
+            this.pending = null;
+            this.pendingRows = 0;
+            this.lastReport = System.nanoTime();
+        }
+
+        synchronized void add(R result, int rows) {
+            MorselTableSketch<SW, R, S> sketch = MorselTableSketch.this;
+            this.pending = this.pending == null ? result : sketch.actualSketch.add(this.pending, result);
+            this.pendingRows += rows;
+            long now = System.nanoTime();
+            if (this.pendingRows >= sketch.progressRows ||
+                    now - this.lastReport >= TimeUnit.MILLISECONDS.toNanos(sketch.progressIntervalMs))
+                this.report();
+        }
+
+        synchronized void report() {
+            if (this.pending != null) {
+                this.deltas.accept(new PartialResult<R>(this.pendingRows / this.max, this.pending));
+                this.pending = null;
+                this.pendingRows = 0;
+            }
+            this.lastReport = System.nanoTime();
+        }
+    }
+
+    /**
+     * Runs the sketch over the rows of the set in the specified morsel.
+     */
+    private R runMorsel(ITable data, IMembershipSet set, int morsel) {
+        R result = Converters.checkNull(this.actualSketch.zero());
+        SW workspace = this.actualSketch.initialize(data);
+        int start = morsel * this.morselSize;
+        int end = (int)Math.min((long)start + this.morselSize, set.getMax());
+        this.actualSketch.incrementAll(workspace, result, set.getIterator(start, end));
+        return result;
+    }
+
+    private int morselCount(IMembershipSet set) {
+        int max = set.getMax();
+        return max / this.morselSize + ((max % this.morselSize == 0) ? 0 : 1);
+    }
+
+    /**
+     * Number of row indexes in a morsel.
+     */
+    private int morselRows(IMembershipSet set, int morsel) {
+        int start = morsel * this.morselSize;
+        return (int)Math.min((long)start + this.morselSize, set.getMax()) - start;
+    }
+
+    /**
+     * Runs all morsels, using the calling thread and threads from the compute executor.
+     * Returns after all morsels have been processed.
+     */
+    private void runMorsels(ITable table, IMembershipSet set, int morselCount,
+                            IMorselConsumer<R> consumer) {
+        ExecutorUtils.parallelFor(morselCount,
+                morsel -> consumer.accept(morsel, this.runMorsel(table, set, morsel)));
+    }
+
+    @Override
+    public R create(@Nullable ITable data) {
+        ITable table = Converters.checkNull(data);
+        IMembershipSet set = table.getMembershipSet();
+        int morselCount = this.morselCount(set);
+        if (morselCount <= 1)
+            return this.runMorsel(table, set, 0);
+        AtomicReferenceArray<R> results = new AtomicReferenceArray<R>(morselCount);
+        this.runMorsels(table, set, morselCount, results::set);
+        List<R> partials = new ArrayList<R>(morselCount);
+        for (int i = 0; i < morselCount; i++)
+            partials.add(results.get(i));
+        return Converters.checkNull(this.actualSketch.reduce(partials));
+    }
+
+    /**
+     * Reports the results of completed morsels, combining the morsels
+     * that complete close in time.
+     */
+    @Override
+    public void createProgressive(@Nullable ITable data, Consumer<PartialResult<R>> deltas) {
+        ITable table = Converters.checkNull(data);
+        IMembershipSet set = table.getMembershipSet();
+        int morselCount = this.morselCount(set);
+        if (morselCount <= 1) {
+            deltas.accept(new PartialResult<R>(this.runMorsel(table, set, 0)));
+            return;
+        }
+        Deltas pending = new Deltas(deltas, set.getMax());
+        this.runMorsels(table, set, morselCount,
+                (morsel, result) -> pending.add(result, this.morselRows(set, morsel)));
+        pending.report();
+    }
+
+    @Nullable
+    @Override
+    public R zero() {
+        return this.actualSketch.zero();
+    }
+
+    @Nullable
+    @Override
+    public R add(@Nullable R left, @Nullable R right) {
+        return this.actualSketch.add(left, right);
+    }
+}
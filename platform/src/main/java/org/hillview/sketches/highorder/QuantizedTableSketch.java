@@ -26,6 +26,7 @@ import org.hillview.table.api.ISketchWorkspace;
 import org.hillview.table.api.ITable;
 
 import javax.annotation.Nullable;
+import java.util.List;
 
 /**
  * A QuantizedTableSketch runs another sketch (childSketch) over a quantized table.
@@ -45,11 +46,26 @@ public class QuantizedTableSketch<
         this.quantizationSchema = qs;
     }
 
+    @Override
+    public boolean supportsMorsels() {
+        return this.childSketch.supportsMorsels();
+    }
+
     @Override
     public void increment(SW workspace, R result, int rowNumber) {
         this.childSketch.increment(workspace, result, rowNumber);
     }
 
+    @Override
+    public void incrementBatch(SW workspace, R result, int[] rows, int from, int to) {
+        this.childSketch.incrementBatch(workspace, result, rows, from, to);
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return this.childSketch.getColumnNames();
+    }
+
     @Override
     public SW initialize(ITable data) {
         ITable qt = new QuantizedTable(data, this.quantizationSchema);
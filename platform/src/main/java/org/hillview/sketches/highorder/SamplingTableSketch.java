@@ -55,11 +55,7 @@ public class SamplingTableSketch<
         ISampledRowIterator it = data
                 .getMembershipSet()
                 .getIteratorOverSample(this.samplingRate, this.seed, false);
-        int row = it.getNextRow();
-        while (row >= 0) {
-            this.actualSketch.increment(workspace, result, row);
-            row = it.getNextRow();
-        }
+        this.actualSketch.incrementAll(workspace, result, it);
         return result.rescale(this.samplingRate);
     }
 
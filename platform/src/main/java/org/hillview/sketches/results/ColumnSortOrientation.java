@@ -19,6 +19,7 @@ package org.hillview.sketches.results;
 
 import org.hillview.table.ColumnDescription;
 
+import javax.annotation.Nullable;
 import java.io.Serializable;
 
 public class ColumnSortOrientation implements Serializable {
@@ -32,4 +33,19 @@ public class ColumnSortOrientation implements Serializable {
         this.columnDescription = colDesc;
         this.isAscending = isAscending;
     }
+
+    @Override
+    public boolean equals(@Nullable final Object o) {
+        if (this == o) return true;
+        if ((o == null) || (getClass() != o.getClass())) return false;
+
+        final ColumnSortOrientation that = (ColumnSortOrientation) o;
+        return this.columnDescription.equals(that.columnDescription) &&
+                (this.isAscending == that.isAscending);
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * this.columnDescription.hashCode()) + Boolean.hashCode(this.isAscending);
+    }
 }
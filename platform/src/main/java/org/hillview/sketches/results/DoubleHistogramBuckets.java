@@ -20,6 +20,8 @@ package org.hillview.sketches.results;
 import org.hillview.table.api.IColumn;
 import org.hillview.utils.Converters;
 
+import java.util.function.DoubleToIntFunction;
+
 /**
  * Buckets for computing a histogram of data that can be converted to a double.
  * The last bucket is right-inclusive.
@@ -61,6 +63,12 @@ public class DoubleHistogramBuckets implements IHistogramBuckets {
         return this.indexOf(item);
     }
 
+    @Override
+    public IBatchIndexer getBatchIndexer(IColumn column) {
+        DoubleToIntFunction index = this::indexOf;
+        return (rows, from, to, indexes) -> column.mapDoubles(rows, from, to, index, indexes);
+    }
+
     @Override
     public int getBucketCount() { return this.bucketCount; }
 
@@ -21,6 +21,7 @@ import net.openhft.hashing.LongHashFunction;
 
 import org.hillview.dataset.api.ISketchResult;
 import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IDictionaryColumn;
 import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.IRowIterator;
 import org.hillview.utils.Converters;
@@ -54,6 +55,38 @@ public class HLogLog implements ISketchResult {
         this.confidence = 0;
     }
 
+    /**
+     * Creates a HLogLog with the specified register contents.
+     * @param registers  Register values; the array is not copied.
+     */
+    public HLogLog(int logRegNum, long seed, byte[] registers) {
+        HLogLog.checkSpaceValid(logRegNum);
+        if (registers.length != 1 << logRegNum)
+            throw new IllegalArgumentException("Expected " + (1 << logRegNum) +
+                    " registers, got " + registers.length);
+        this.regNum = registers.length;
+        this.registers = registers;
+        this.logRegNum = logRegNum;
+        this.seed = seed;
+        this.confidence = 0;
+        this.distinctItemsEstimator();
+    }
+
+    public int getLogRegNum() {
+        return this.logRegNum;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * The registers of this HLogLog; should not be modified.
+     */
+    public byte[] getRegisters() {
+        return this.registers;
+    }
+
     /**
      * adds the long 'itemHash' to the data structure.
      * Uses the first bits to identify the register and then counts trailing zeros
@@ -71,6 +104,13 @@ public class HLogLog implements ISketchResult {
      * of the objects in the column as identifier.
      */
     public void createHLL(IColumn column, IMembershipSet memSet) {
+        if (column instanceof IDictionaryColumn) {
+            IDictionaryColumn dc = (IDictionaryColumn)column;
+            if (dc.hasDictionary() && dc.getDictionarySize() <= memSet.getSize()) {
+                this.createHLLFromCodes(dc, memSet);
+                return;
+            }
+        }
         final IRowIterator myIter = memSet.getIterator();
         LongHashFunction hash = LongHashFunction.xx(this.seed);
         int currRow = myIter.getNextRow();
@@ -83,6 +123,23 @@ public class HLogLog implements ISketchResult {
         this.distinctItemsEstimator();
     }
 
+    /**
+     * Same as createHLL for a dictionary-encoded column: finds the distinct codes
+     * present in the rows, and adds the (cached) hash of each distinct value once.
+     */
+    private void createHLLFromCodes(IDictionaryColumn column, IMembershipSet memSet) {
+        final boolean[] present = new boolean[column.getDictionarySize()];
+        final IRowIterator myIter = memSet.getIterator();
+        for (int row = myIter.getNextRow(); row >= 0; row = myIter.getNextRow())
+            present[column.getCode(row)] = true;
+        final long[] hashes = column.getCodeHashes(this.seed);
+        for (int code = 0; code < present.length; code++) {
+            if (present[code] && column.decodeCode(code) != null)
+                this.add(hashes[code]);
+        }
+        this.distinctItemsEstimator();
+    }
+
     public HLogLog union(HLogLog otherHLL) {
         if ((otherHLL.regNum != this.regNum) || (otherHLL.seed != this.seed))
             throw new IllegalArgumentException("attempted union of non matching HLogLog classes");
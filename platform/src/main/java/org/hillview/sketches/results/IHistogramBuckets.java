@@ -43,4 +43,37 @@ public interface IHistogramBuckets extends Serializable {
      * the maximum it returns bucketCount.
      */
     int indexOf(IColumn column, int rowIndex);
+
+    /**
+     * Computes bucket indexes for batches of rows of a specific column.
+     */
+    @FunctionalInterface
+    interface IBatchIndexer {
+        /**
+         * For each i between from (inclusive) and to (exclusive) sets indexes[i - from]
+         * to the index of the bucket of row rows[i], as computed by indexOf.
+         * None of the rows can be missing.
+         */
+        void indexOf(int[] rows, int from, int to, int[] indexes);
+    }
+
+    /**
+     * Returns an indexer that computes bucket indexes for batches of rows of a column.
+     * This is called once for each column, so implementations can precompute data
+     * that depends on the column contents.
+     * @param column Column holding the data.
+     */
+    default IBatchIndexer getBatchIndexer(IColumn column) {
+        return rowByRowIndexer(this, column);
+    }
+
+    /**
+     * An indexer that calls indexOf for each row.
+     */
+    static IBatchIndexer rowByRowIndexer(IHistogramBuckets buckets, IColumn column) {
+        return (rows, from, to, indexes) -> {
+            for (int i = from; i < to; i++)
+                indexes[i - from] = buckets.indexOf(column, rows[i]);
+        };
+    }
 }
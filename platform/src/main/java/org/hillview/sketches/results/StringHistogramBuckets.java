@@ -18,6 +18,7 @@
 package org.hillview.sketches.results;
 
 import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IDictionaryColumn;
 
 /**
  * Left endpoints for string buckets.
@@ -41,4 +42,24 @@ public class StringHistogramBuckets extends ExplicitHistogramBuckets<String> {
             return -1;
         return this.indexOf(item);
     }
+
+    /**
+     * For dictionary-encoded columns the bucket of each distinct value
+     * is computed once, and rows are mapped to buckets by their codes.
+     */
+    @Override
+    public IBatchIndexer getBatchIndexer(IColumn column) {
+        if (column instanceof IDictionaryColumn) {
+            IDictionaryColumn dc = (IDictionaryColumn)column;
+            if (dc.hasDictionary()) {
+                int[] table = new int[dc.getDictionarySize()];
+                for (int code = 0; code < table.length; code++) {
+                    String item = dc.decodeCode(code);
+                    table[code] = item == null ? -1 : this.indexOf(item);
+                }
+                return (rows, from, to, indexes) -> dc.mapCodes(rows, from, to, table, indexes);
+            }
+        }
+        return IHistogramBuckets.rowByRowIndexer(this, column);
+    }
 }
@@ -37,6 +37,13 @@ import java.io.*;
  * Knows how to read a CSV file (comma-separated file).
  */
 public class CsvFileLoader extends TextFileLoader {
+    /**
+     * System property holding the default chunk size in bytes for parsing
+     * CSV files in parallel, e.g. -Dhillview.csvChunkBytes=0 to parse all
+     * files serially.
+     */
+    public static final String PARALLEL_CHUNK_PROPERTY = "hillview.csvChunkBytes";
+
     public static class Config implements Serializable {
         static final long serialVersionUID = 1;
         /**
@@ -51,6 +58,13 @@ public class CsvFileLoader extends TextFileLoader {
          * If true the file is expected to have a header row.
          */
         public boolean hasHeaderRow;
+        /**
+         * Uncompressed files larger than twice this many bytes are split into chunks of
+         * about this size, which are parsed in parallel.  If 0 files are parsed serially.
+         * The default is 32MB, and can be changed with the PARALLEL_CHUNK_PROPERTY
+         * system property of the server.
+         */
+        public long parallelChunkBytes = Long.getLong(PARALLEL_CHUNK_PROPERTY, 32L * 1024 * 1024);
     }
 
     private final Config configuration;
@@ -74,24 +88,96 @@ public class CsvFileLoader extends TextFileLoader {
     @Nullable
     String[] firstLine;
 
-    @Override
-    public void prepareLoading() {
-        this.actualSchema = this.schema.getSchema();
-        this.file = this.getFileReader();
+    /**
+     * Creates a parser for files with the specified configuration.
+     * @param schema  Schema of the file, if known.
+     */
+    static CsvParser createParser(Config configuration, @Nullable Schema schema) {
         CsvParserSettings settings = new CsvParserSettings();
         CsvFormat format = new CsvFormat();
-        format.setDelimiter(this.configuration.separator);
+        format.setDelimiter(configuration.separator);
         settings.setFormat(format);
         settings.setIgnoreTrailingWhitespaces(true);
         settings.setEmptyValue("");
         settings.setNullValue(null);
         settings.setReadInputOnSeparateThread(false);
-        if (this.actualSchema != null)
-            settings.setMaxColumns(this.actualSchema.getColumnCount());
+        if (schema != null)
+            settings.setMaxColumns(schema.getColumnCount());
         else
             settings.setMaxColumns(50000);
         settings.setMaxCharsPerColumn(100000);
-        this.reader = new CsvParser(settings);
+        return new CsvParser(settings);
+    }
+
+    /**
+     * Creates a schema with string columns named after the header row of a file.
+     */
+    static Schema schemaFromHeader(String[] line) {
+        HillviewLogger.instance.info("Creating schema");
+        Schema result = new Schema();
+        int index = 0;
+        for (String col : line) {
+            if ((col == null) || col.isEmpty())
+                col = result.newColumnName("Column_" + index);
+            col = result.newColumnName(col);
+            ColumnDescription cd = new ColumnDescription(col,
+                    ContentsKind.String);
+            result.append(cd);
+            index++;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a schema with string columns for a file without a header row.
+     */
+    static Schema defaultSchema(int columnCount) {
+        Schema result = new Schema();
+        for (int i = 0; i < columnCount; i++) {
+            ColumnDescription cd = new ColumnDescription("Column " + i,
+                    ContentsKind.String);
+            result.append(cd);
+        }
+        return result;
+    }
+
+    /**
+     * Converts a column of strings to the kind guessed from its contents.
+     * @param column  Column of strings.
+     * @param ms      Membership set of the table holding the column.
+     */
+    static IColumn guessKind(IColumn column, IMembershipSet ms) {
+        GuessSchema gs = new GuessSchema();
+        GuessSchema.SchemaInfo info = gs.guess((IStringColumn)column);
+        switch (info.kind) {
+            case String:
+                return column;
+            case None:
+                return new EmptyColumn(column.getName(), column.sizeInRows());
+            default:
+                return column.convertKind(info.kind, column.getName(), ms);
+        }
+    }
+
+    /**
+     * Loads the whole file.  Large files are parsed in parallel when possible.
+     */
+    @Override
+    public ITable load() {
+        Schema schema = this.schema.getSchema();
+        if (ParallelCsvLoader.canLoad(this.filename, this.configuration, schema)) {
+            ITable result = new ParallelCsvLoader(this.filename, this.configuration, schema).load();
+            if (result != null)
+                return result;
+        }
+        return super.load();
+    }
+
+    @Override
+    public void prepareLoading() {
+        this.actualSchema = this.schema.getSchema();
+        this.file = this.getFileReader();
+        this.reader = createParser(this.configuration, this.actualSchema);
         this.reader.beginParsing(file);
 
         if (this.configuration.hasHeaderRow) {
@@ -105,36 +191,17 @@ public class CsvFileLoader extends TextFileLoader {
             if (line == null)
                 throw new RuntimeException("Missing header row " + this.filename);
             if (this.actualSchema == null) {
-                HillviewLogger.instance.info("Creating schema");
-                this.actualSchema = new Schema();
-                int index = 0;
-                for (String col : line) {
-                    if ((col == null) || col.isEmpty())
-                        col = this.actualSchema.newColumnName("Column_" + index);
-                    col = this.actualSchema.newColumnName(col);
-                    ColumnDescription cd = new ColumnDescription(col,
-                            ContentsKind.String);
-                    this.actualSchema.append(cd);
-                    index++;
-                }
+                this.actualSchema = schemaFromHeader(line);
             } else {
                 this.currentRow++;
             }
         }
 
         if (this.actualSchema == null) {
-            int columnCount;
-            this.actualSchema = new Schema();
             this.firstLine = reader.parseNext();
             if (this.firstLine == null)
                 throw new RuntimeException("Cannot create schema from empty CSV file");
-            columnCount = this.firstLine.length;
-
-            for (int i = 0; i < columnCount; i++) {
-                ColumnDescription cd = new ColumnDescription("Column " + i,
-                        ContentsKind.String);
-                this.actualSchema.append(cd);
-            }
+            this.actualSchema = defaultSchema(this.firstLine.length);
         }
     }
 
@@ -171,23 +238,10 @@ public class CsvFileLoader extends TextFileLoader {
             IColumn s = c.seal();
             if (ms == null)
                 ms = new FullMembershipSet(s.sizeInRows());
-            if (this.guessSchema) {
-                GuessSchema gs = new GuessSchema();
-                GuessSchema.SchemaInfo info = gs.guess((IStringColumn)s);
-                switch (info.kind) {
-                    case String:
-                        sealed[ci] = s;
-                        break;
-                    case None:
-                        sealed[ci] = new EmptyColumn(c.getName(), c.sizeInRows());
-                        break;
-                    default:
-                        sealed[ci] = s.convertKind(info.kind, c.getName(), ms);
-                        break;
-                }
-            } else {
+            if (this.guessSchema)
+                sealed[ci] = guessKind(s, ms);
+            else
                 sealed[ci] = s;
-            }
             assert sealed[ci] != null;
         }
 
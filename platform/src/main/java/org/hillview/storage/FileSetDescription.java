@@ -17,6 +17,7 @@
 
 package org.hillview.storage;
 
+import net.openhft.hashing.LongHashFunction;
 import org.hillview.table.LazySchema;
 import org.hillview.dataset.api.IJson;
 import org.hillview.table.Schema;
@@ -27,6 +28,7 @@ import org.hillview.utils.Utilities;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 
@@ -90,6 +92,19 @@ public class FileSetDescription implements IJson {
      */
     @Nullable
     public String name;
+    /**
+     * If not null or empty, a snapshot of the table loaded from each file is saved
+     * in this folder, and later loads of the same file map the snapshot instead
+     * of parsing the file again.  The folder is relative to the snapshot root of the
+     * server, given by the SNAPSHOT_ROOT_PROPERTY system property; folders outside the
+     * root are rejected, and no snapshots are used when the property is not set.
+     */
+    @Nullable
+    public String snapshotFolder;
+    /**
+     * System property naming the folder under which snapshots can be written.
+     */
+    public static final String SNAPSHOT_ROOT_PROPERTY = "hillview.snapshotRoot";
 
     @SuppressWarnings("unused")
     public String getBasename() {
@@ -120,8 +135,55 @@ public class FileSetDescription implements IJson {
             this.pathname = pathname;
         }
 
+        /**
+         * Name of the snapshot file for this file, or null if snapshots are not used.
+         */
+        @Nullable
+        private String getSnapshotPath() {
+            String folderName = FileSetDescription.this.snapshotFolder;
+            if (Utilities.isNullOrEmpty(folderName) || FileSetDescription.this.deleteAfterLoading)
+                return null;
+            String rootName = System.getProperty(SNAPSHOT_ROOT_PROPERTY);
+            if (Utilities.isNullOrEmpty(rootName)) {
+                HillviewLogger.instance.warn("Snapshots are not enabled on this server", "{0}", folderName);
+                return null;
+            }
+            Path root = Paths.get(rootName).toAbsolutePath().normalize();
+            Path folder = root.resolve(folderName).normalize();
+            if (!folder.startsWith(root)) {
+                HillviewLogger.instance.warn("Snapshot folder is outside the snapshot root", "{0}", folderName);
+                return null;
+            }
+            String absolute = new File(this.pathname).getAbsolutePath();
+            long hash = LongHashFunction.xx().hashChars(absolute);
+            String name = Paths.get(absolute).getFileName() + "." + Long.toHexString(hash) + ".snapshot";
+            return folder.resolve(name).toString();
+        }
+
+        /**
+         * A key describing the file contents and all the options that influence loading;
+         * a snapshot is only reused if its key matches.
+         */
+        private String getSnapshotKey() {
+            FileSetDescription d = FileSetDescription.this;
+            File file = new File(this.pathname);
+            return String.join("|", file.getAbsolutePath(),
+                    Long.toString(file.length()), Long.toString(file.lastModified()),
+                    d.fileKind, Boolean.toString(d.headerRow), String.valueOf(d.schemaFile),
+                    d.schema == null ? "" : d.schema.toJson(), String.valueOf(d.logFormat),
+                    String.valueOf(d.startTime), String.valueOf(d.endTime));
+        }
+
         @Override
         public ITable load() {
+            String snapshot = this.getSnapshotPath();
+            String key = snapshot == null ? "" : this.getSnapshotKey();
+            if (snapshot != null) {
+                SnapshotFileLoader snapshotLoader = new SnapshotFileLoader(snapshot, this.pathname, key);
+                if (snapshotLoader.isValid())
+                    return snapshotLoader.load();
+            }
+
             TextFileLoader loader;
             switch (FileSetDescription.this.fileKind) {
                 case "lazycsv":
@@ -175,6 +237,8 @@ public class FileSetDescription implements IJson {
                             "Unexpected file kind " + FileSetDescription.this.fileKind);
             }
             ITable result = Converters.checkNull(loader.load());
+            if (snapshot != null)
+                new SnapshotFileWriter(snapshot, key).writeInBackground(result);
             if (FileSetDescription.this.deleteAfterLoading) {
                 File file = new File(this.pathname);
                 boolean success = file.delete();
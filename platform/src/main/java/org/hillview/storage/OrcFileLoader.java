@@ -20,16 +20,16 @@ package org.hillview.storage;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.ql.exec.vector.*;
-import org.apache.orc.OrcFile;
-import org.apache.orc.Reader;
-import org.apache.orc.RecordReader;
-import org.apache.orc.TypeDescription;
+import org.apache.orc.*;
+import org.hillview.table.BlockColumnStatistics;
 import org.hillview.table.LazySchema;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.Schema;
 import org.hillview.table.Table;
+import org.hillview.table.TableBlocks;
 import org.hillview.table.api.*;
 import org.hillview.table.columns.BaseListColumn;
+import org.hillview.table.membership.FullMembershipSet;
 import org.hillview.utils.Converters;
 import org.hillview.utils.Linq;
 
@@ -38,6 +38,7 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -353,6 +354,97 @@ public class OrcFileLoader extends TextFileLoader {
         }
     }
 
+    /**
+     * Statistics of a column in a stripe, or null if they cannot be used.
+     * @param category  Type of the ORC column.
+     * @param stats     ORC statistics of the column in the stripe.
+     */
+    @Nullable
+    private static BlockColumnStatistics getStatistics(
+            TypeDescription.Category category, ColumnStatistics stats) {
+        if (stats.getNumberOfValues() == 0)
+            return BlockColumnStatistics.missing();
+        boolean hasMissing = stats.hasNull();
+        // Dates are converted using the local time zone in the statistics,
+        // so we widen their range by one day.
+        final long dayMillis = Converters.SECONDS_TO_DAY * 1000L;
+        switch (category) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG: {
+                IntegerColumnStatistics is = (IntegerColumnStatistics)stats;
+                return BlockColumnStatistics.numeric(
+                        is.getMinimum(), is.getMaximum(), hasMissing, false);
+            }
+            case FLOAT:
+            case DOUBLE: {
+                DoubleColumnStatistics ds = (DoubleColumnStatistics)stats;
+                return BlockColumnStatistics.numeric(
+                        ds.getMinimum(), ds.getMaximum(), hasMissing, true);
+            }
+            case STRING: {
+                StringColumnStatistics ss = (StringColumnStatistics)stats;
+                // The minimum and maximum are null if they were truncated.
+                String min = ss.getMinimum();
+                String max = ss.getMaximum();
+                if (min == null || max == null)
+                    return null;
+                return BlockColumnStatistics.strings(min, max, hasMissing);
+            }
+            case DATE: {
+                DateColumnStatistics ds = (DateColumnStatistics)stats;
+                Date min = ds.getMinimum();
+                Date max = ds.getMaximum();
+                if (min == null || max == null)
+                    return null;
+                return BlockColumnStatistics.numeric(min.getTime() - dayMillis,
+                        max.getTime() + dayMillis, hasMissing, false);
+            }
+            case TIMESTAMP: {
+                TimestampColumnStatistics ts = (TimestampColumnStatistics)stats;
+                Date min = ts.getMinimum();
+                Date max = ts.getMaximum();
+                if (min == null || max == null)
+                    return null;
+                return BlockColumnStatistics.numeric(min.getTime() - dayMillis,
+                        max.getTime() + dayMillis, hasMissing, false);
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The stripes of the file, with the column statistics stored in the file.
+     * @param reader  Reader for the file.
+     * @param desc    Hillview description of the file columns.
+     */
+    private static TableBlocks getBlocks(Reader reader, List<ColumnDescription> desc)
+            throws IOException {
+        List<StripeInformation> stripes = reader.getStripes();
+        int[] rows = new int[stripes.size()];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = Converters.toInt(stripes.get(i).getNumberOfRows());
+        TableBlocks result = new TableBlocks(rows);
+        List<StripeStatistics> stats = reader.getStripeStatistics();
+        if (stats.size() != rows.length)
+            return result;
+        List<TypeDescription> types = reader.getSchema().getChildren();
+        for (int c = 0; c < types.size(); c++) {
+            TypeDescription type = types.get(c);
+            ColumnDescription cd = desc.get(c);
+            // Statistics do not apply to values converted to a different kind.
+            if (cd.kind != getKind(type))
+                continue;
+            for (int i = 0; i < rows.length; i++) {
+                ColumnStatistics cs = stats.get(i).getColumnStatistics()[type.getId()];
+                result.setStatistics(cd.name, i, getStatistics(type.getCategory(), cs));
+            }
+        }
+        return result;
+    }
+
     private static List<IAppendableColumn> readColumns(
             Reader reader, Reader.Options options, @Nullable Schema hillviewSchema)
             throws IOException {
@@ -401,23 +493,25 @@ public class OrcFileLoader extends TextFileLoader {
             this.schema = reader.getSchema();
             assert this.schema != null;
             Table result;
+            List<ColumnDescription> desc = getDescriptions(this.schema);
+            if (hillviewSchema != null) {
+                List<ColumnDescription> imposed = hillviewSchema.getColumnDescriptions();
+                if (imposed.size() != desc.size())
+                    throw new RuntimeException("Schema in JSON file does not match Orc schema");
+                desc = imposed;
+            }
+            TableBlocks blocks = getBlocks(reader, desc);
+            int rowCount = Converters.toInt(reader.getNumberOfRows());
 
             if (this.lazy) {
                 IColumnLoader lazyLoader = new OrcColumnLoader();
-                List<ColumnDescription> desc = getDescriptions(this.schema);
-                if (hillviewSchema != null) {
-                    List<ColumnDescription> imposed = hillviewSchema.getColumnDescriptions();
-                    if (imposed.size() != desc.size())
-                        throw new RuntimeException("Schema in JSON file does not match Orc schema");
-                    desc = imposed;
-                }
-                long rowCount = reader.getNumberOfRows();
-                result = Table.createLazyTable(desc, Converters.toInt(rowCount), this.filename, lazyLoader);
+                result = Table.createLazyTable(desc, rowCount, this.filename, lazyLoader, blocks);
             } else {
                 Reader.Options options = new Reader.Options();
                 List<IAppendableColumn> cols = readColumns(reader, options, this.hillviewSchema);
                 this.close(null);
-                result = new Table(cols, this.filename, null);
+                result = new Table(cols, new FullMembershipSet(rowCount),
+                        this.filename, null, blocks);
             }
             return result;
         } catch (IOException ex) {
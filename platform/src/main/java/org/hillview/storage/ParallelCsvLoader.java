@@ -0,0 +1,718 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.storage;
+
+import com.univocity.parsers.csv.CsvParser;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Schema;
+import org.hillview.table.Table;
+import org.hillview.table.api.*;
+import org.hillview.table.columns.BaseArrayColumn;
+import org.hillview.table.columns.BaseListColumn;
+import org.hillview.table.columns.StringArrayColumn;
+import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.table.rows.GuessSchema;
+import org.hillview.utils.Converters;
+import org.hillview.utils.ExecutorUtils;
+import org.hillview.utils.HillviewLogger;
+import org.hillview.utils.Utilities;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads a large uncompressed CSV file by splitting it into chunks of records which
+ * are parsed in parallel.  Chunks are split at record boundaries found by a scanner
+ * that tracks quoted fields and comment lines; since the scanner state at the start
+ * of a chunk is only known after scanning all preceding chunks, each chunk is scanned
+ * in parallel from all possible states, and the results are chained from the start
+ * of the file.  The scanner also counts the records of each chunk, so the columns of
+ * the table are allocated once, and each chunk is parsed directly into its range of
+ * rows.  If the parser finds a different number of records than the scanner the file
+ * is loaded serially instead.
+ *
+ * When the schema is not known the kinds of the columns are guessed from a sample
+ * of records at the start of the file, and the integer and double columns are parsed
+ * directly into numeric columns.  If a later value contradicts the guess the column
+ * is parsed as strings instead, and its kind is guessed from all its values, like
+ * CsvFileLoader does for all columns.
+ */
+final class ParallelCsvLoader {
+    /**
+     * Number of records used to guess the column kinds.
+     */
+    private static final int SAMPLE_ROWS = 1000;
+    private static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * Returned when a chunk does not have the number of records found by the scanner.
+     */
+    private static final int COUNT_MISMATCH = -2;
+
+    // States of the record boundary scanner.
+    private static final int LINE_START = 0;
+    private static final int FIELD_START = 1;
+    private static final int UNQUOTED = 2;
+    private static final int QUOTED = 3;
+    private static final int QUOTE_IN_QUOTED = 4;
+    private static final int COMMENT = 5;
+    private static final int STATES = 6;
+
+    // Classes of bytes for the scanner.
+    private static final int OTHER = 0;
+    private static final int SEPARATOR = 1;
+    private static final int NEWLINE = 2;
+    private static final int QUOTE = 3;
+    private static final int SPACE = 4;
+    private static final int HASH = 5;
+    private static final int CLASSES = 6;
+
+    /**
+     * Scanner transitions, indexed by state * CLASSES + byte class.  Quotes only start
+     * a quoted field at the beginning of a field, after optional white space, like in
+     * the CSV parser.  A newline ends a line unless it is within a quoted field.
+     * Lines that start with # are comments, and are skipped by the parser, like
+     * empty lines; the other lines are records.
+     */
+    private static final int[] transitions = {
+        // OTHER     SEPARATOR    NEWLINE      QUOTE            SPACE            HASH
+        UNQUOTED,    FIELD_START, LINE_START,  QUOTED,          FIELD_START,     COMMENT,  // LINE_START
+        UNQUOTED,    FIELD_START, LINE_START,  QUOTED,          FIELD_START,     UNQUOTED, // FIELD_START
+        UNQUOTED,    FIELD_START, LINE_START,  UNQUOTED,        UNQUOTED,        UNQUOTED, // UNQUOTED
+        QUOTED,      QUOTED,      QUOTED,      QUOTE_IN_QUOTED, QUOTED,          QUOTED,   // QUOTED
+        UNQUOTED,    FIELD_START, LINE_START,  QUOTED,          QUOTE_IN_QUOTED, UNQUOTED, // QUOTE_IN_QUOTED
+        COMMENT,     COMMENT,     LINE_START,  COMMENT,         COMMENT,         COMMENT   // COMMENT
+    };
+
+    /**
+     * True if a newline in the specified scanner state ends a record.
+     */
+    private static boolean endsRecord(int state) {
+        return state == FIELD_START || state == UNQUOTED || state == QUOTE_IN_QUOTED;
+    }
+
+    private final String filename;
+    private final CsvFileLoader.Config configuration;
+    /**
+     * Schema of the file; null until it is known.
+     */
+    @Nullable
+    private Schema schema;
+    private final boolean guessSchema;
+    /**
+     * Byte class of each byte value.
+     */
+    private final int[] classes;
+    /**
+     * For each column the kind guessed from the sample.
+     */
+    @Nullable
+    private ContentsKind[] sampled;
+    /**
+     * For each column true if it is parsed directly as numbers; a column
+     * stops being typed when its guess is contradicted.
+     */
+    @Nullable
+    private boolean[] typed;
+    /**
+     * The columns of the table; a typed column is replaced by a string column
+     * when its guess is contradicted.  Guarded by this, like typed.
+     */
+    @Nullable
+    private IMutableColumn[] targets;
+    /**
+     * Set if the parser finds a different number of records than the scanner.
+     */
+    private volatile boolean countMismatch;
+
+    ParallelCsvLoader(String filename, CsvFileLoader.Config configuration,
+                      @Nullable Schema schema) {
+        this.filename = filename;
+        this.configuration = configuration;
+        this.schema = schema;
+        this.guessSchema = schema == null;
+        this.classes = new int[256];
+        this.classes[' '] = SPACE;
+        this.classes['\t'] = SPACE;
+        this.classes['\n'] = NEWLINE;
+        this.classes['"'] = QUOTE;
+        this.classes['#'] = HASH;
+        this.classes[configuration.separator] = SEPARATOR;
+    }
+
+    /**
+     * Length of the UTF-8 byte order mark at the start of a file, or -1 if the
+     * file starts with the byte order mark of another encoding.
+     */
+    private static int byteOrderMarkLength(byte[] head, int length) {
+        int b0 = length > 0 ? head[0] & 0xFF : -1;
+        int b1 = length > 1 ? head[1] & 0xFF : -1;
+        int b2 = length > 2 ? head[2] & 0xFF : -1;
+        int b3 = length > 3 ? head[3] & 0xFF : -1;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF)
+            return 3;
+        if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE) ||
+                (b0 == 0 && b1 == 0 && b2 == 0xFE && b3 == 0xFF))
+            return -1;
+        return 0;
+    }
+
+    /**
+     * True if the file can be loaded in parallel: it must be large, uncompressed,
+     * UTF-8 encoded, and use an ASCII separator.
+     */
+    static boolean canLoad(String filename, CsvFileLoader.Config configuration,
+                           @Nullable Schema schema) {
+        if (configuration.parallelChunkBytes <= 0 || Utilities.isCompressed(filename) != null)
+            return false;
+        char separator = configuration.separator;
+        if (separator >= 128 || separator == '"' || separator == '\n' || separator == '\r')
+            return false;
+        if (schema != null)
+            for (ColumnDescription cd : schema.getColumnDescriptions())
+                if (cd.kind == ContentsKind.Interval)
+                    return false;
+        File file = new File(filename);
+        if (!file.isFile() || file.length() < 2 * configuration.parallelChunkBytes)
+            return false;
+        try (FileInputStream stream = new FileInputStream(file)) {
+            byte[] head = new byte[4];
+            int length = stream.read(head);
+            return byteOrderMarkLength(head, length) >= 0;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a range of bytes of a file.  Uses positional reads, so that many
+     * streams can read concurrently from the same channel.
+     */
+    private static final class RegionInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RegionInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = this.read(one, 0, 1);
+            return read < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.position >= this.end)
+                return -1;
+            int toRead = (int)Math.min(len, this.end - this.position);
+            int read = this.channel.read(ByteBuffer.wrap(b, off, toRead), this.position);
+            if (read <= 0)
+                return -1;
+            this.position += read;
+            return read;
+        }
+    }
+
+    private Reader getReader(FileChannel channel, long start, long end) {
+        return new InputStreamReader(
+                new RegionInputStream(channel, start, end), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The result of scanning a chunk of the file from each scanner state.
+     */
+    private static final class ChunkScan {
+        /**
+         * For each start state the state at the end of the chunk.
+         */
+        final int[] endState = new int[STATES];
+        /**
+         * For each start state the position after the first line end in the chunk,
+         * or -1 if no line ends in the chunk.
+         */
+        final long[] recordStart = new long[STATES];
+        /**
+         * For each start state the number of records that end before recordStart.
+         */
+        final int[] recordsBefore = new int[STATES];
+        /**
+         * For each start state the number of records that end after recordStart.
+         */
+        final int[] recordsAfter = new int[STATES];
+    }
+
+    private ChunkScan scan(FileChannel channel, long start, long end) {
+        ChunkScan result = new ChunkScan();
+        Arrays.fill(result.recordStart, -1);
+        int[] state = new int[STATES];
+        for (int s = 0; s < STATES; s++)
+            state[s] = s;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream stream = new RegionInputStream(channel, start, end)) {
+            long position = start;
+            int read;
+            while ((read = stream.read(buffer, 0, buffer.length)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    int byteClass = this.classes[buffer[i] & 0xFF];
+                    for (int s = 0; s < STATES; s++) {
+                        int current = state[s];
+                        int next = transitions[current * CLASSES + byteClass];
+                        if (byteClass == NEWLINE && next == LINE_START) {
+                            boolean record = endsRecord(current);
+                            if (result.recordStart[s] < 0) {
+                                result.recordStart[s] = position + i + 1;
+                                if (record)
+                                    result.recordsBefore[s]++;
+                            } else if (record) {
+                                result.recordsAfter[s]++;
+                            }
+                        }
+                        state[s] = next;
+                    }
+                }
+                position += read;
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        System.arraycopy(state, 0, result.endState, 0, STATES);
+        return result;
+    }
+
+    /**
+     * Splits the records between start and end into about count chunks,
+     * and counts the records of each chunk.
+     */
+    private List<Chunk> split(FileChannel channel, long start, long end, int count) {
+        long[] guesses = new long[count + 1];
+        for (int i = 0; i <= count; i++)
+            guesses[i] = start + (end - start) * i / count;
+        ChunkScan[] scans = new ChunkScan[count];
+        ExecutorUtils.parallelFor(count, i -> scans[i] = this.scan(channel, guesses[i], guesses[i + 1]));
+        List<Chunk> result = new ArrayList<Chunk>();
+        long chunkStart = start;
+        long records = 0;
+        int firstRow = 0;
+        int state = LINE_START;
+        for (int i = 0; i < count; i++) {
+            ChunkScan scan = scans[i];
+            long recordStart = scan.recordStart[state];
+            if (i > 0 && recordStart >= 0 && recordStart < end) {
+                records += scan.recordsBefore[state];
+                result.add(new Chunk(chunkStart, recordStart, firstRow, Converters.toInt(records)));
+                firstRow = Converters.toInt((long)firstRow + records);
+                chunkStart = recordStart;
+                records = scan.recordsAfter[state];
+            } else {
+                records += scan.recordsBefore[state] + scan.recordsAfter[state];
+            }
+            state = scan.endState[state];
+        }
+        // The last record may not end with a newline.
+        if (state != LINE_START && state != COMMENT)
+            records++;
+        result.add(new Chunk(chunkStart, end, firstRow, Converters.toInt(records)));
+        return result;
+    }
+
+    private RuntimeException error(long chunkStart, int row, String message) {
+        return new RuntimeException("Error while parsing file " + this.filename + "@" +
+                Utilities.getHostName() + " record " + (row + 1) +
+                " of chunk starting at byte " + chunkStart + ": " + message);
+    }
+
+    /**
+     * Stores a value in a typed column, parsing it like the conversion of
+     * strings does.  Missing values are added to the missing list.
+     * @return False if the value cannot be parsed.
+     */
+    private static boolean setNumber(IMutableColumn column, int row, @Nullable String value,
+                                     IntArrayList missing) {
+        if (value == null || value.trim().isEmpty()) {
+            missing.add(row);
+            return true;
+        }
+        try {
+            if (column.getKind() == ContentsKind.Integer)
+                column.set(row, Integer.parseInt(value));
+            else
+                column.set(row, Double.parseDouble(value));
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Makes a typed column a string column after its guess has been contradicted.
+     * The chunks that have already stored the column as numbers become stale.
+     */
+    private synchronized void untype(int column, int rows) {
+        assert this.typed != null;
+        assert this.targets != null;
+        assert this.schema != null;
+        if (!this.typed[column])
+            return;
+        this.typed[column] = false;
+        this.targets[column] = BaseArrayColumn.create(
+                this.schema.getColumnDescriptions().get(column), rows);
+    }
+
+    /**
+     * A range of records of the file, which is parsed into a range of rows of the table.
+     */
+    private final class Chunk {
+        final long start;
+        final long end;
+        /**
+         * Row of the table holding the first record of the chunk.
+         */
+        final int firstRow;
+        /**
+         * Number of records in the chunk, as counted by the scanner.
+         */
+        final int rows;
+        /**
+         * The columns that were parsed as numbers; null until the chunk is parsed.
+         */
+        @Nullable
+        boolean[] parsedTyped;
+
+        Chunk(long start, long end, int firstRow, int rows) {
+            this.start = start;
+            this.end = end;
+            this.firstRow = firstRow;
+            this.rows = rows;
+        }
+
+        boolean isStale() {
+            return !Arrays.equals(this.parsedTyped, ParallelCsvLoader.this.typed);
+        }
+
+        void parse(FileChannel channel, int tableRows) {
+            ParallelCsvLoader loader = ParallelCsvLoader.this;
+            while (!loader.countMismatch) {
+                boolean[] typed;
+                IMutableColumn[] targets;
+                synchronized (loader) {
+                    assert loader.typed != null;
+                    assert loader.targets != null;
+                    typed = loader.typed.clone();
+                    targets = loader.targets.clone();
+                }
+                int failed = this.tryParse(channel, typed, targets);
+                if (failed == COUNT_MISMATCH) {
+                    loader.countMismatch = true;
+                    return;
+                }
+                if (failed < 0) {
+                    this.parsedTyped = typed;
+                    return;
+                }
+                loader.untype(failed, tableRows);
+            }
+        }
+
+        /**
+         * Parses the chunk into its rows of the target columns.  When the chunk
+         * has been parsed before, only the columns that have changed from numbers
+         * to strings are stored again.
+         * @param typed    Columns to parse as numbers.
+         * @param targets  Columns of the table.
+         * @return -1 on success, COUNT_MISMATCH if the chunk does not have the
+         *         expected number of records, or the index of a typed column
+         *         containing a value that is not a number.
+         */
+        int tryParse(FileChannel channel, boolean[] typed, IMutableColumn[] targets) {
+            ParallelCsvLoader loader = ParallelCsvLoader.this;
+            assert loader.schema != null;
+            int columnCount = targets.length;
+            boolean[] store = new boolean[columnCount];
+            // Values of string columns are first encoded with a dictionary local to the chunk.
+            int[][] codes = new int[columnCount][];
+            List<HashMap<String, Integer>> dictionaries = new ArrayList<HashMap<String, Integer>>();
+            IntArrayList[] missing = new IntArrayList[columnCount];
+            // Columns of other kinds are parsed into lists, and copied when the chunk is done.
+            IAppendableColumn[] lists = new IAppendableColumn[columnCount];
+            for (int j = 0; j < columnCount; j++) {
+                store[j] = this.parsedTyped == null || this.parsedTyped[j] != typed[j];
+                dictionaries.add(null);
+                if (!store[j] || typed[j])
+                    missing[j] = new IntArrayList();
+                else if (targets[j] instanceof StringArrayColumn) {
+                    codes[j] = new int[this.rows];
+                    dictionaries.set(j, new HashMap<String, Integer>());
+                } else
+                    lists[j] = BaseListColumn.create(targets[j].getDescription());
+            }
+
+            CsvParser parser = CsvFileLoader.createParser(loader.configuration, loader.schema);
+            parser.beginParsing(loader.getReader(channel, this.start, this.end));
+            int row = 0;
+            try {
+                while (true) {
+                    String[] line;
+                    try {
+                        line = parser.parseNext();
+                    } catch (Exception ex) {
+                        throw loader.error(this.start, row, ex.getMessage());
+                    }
+                    if (line == null)
+                        break;
+                    if (row >= this.rows)
+                        return COUNT_MISMATCH;
+                    if (line.length > columnCount)
+                        throw loader.error(this.start, row,
+                                "Too many columns " + line.length + " vs " + columnCount);
+                    if (line.length < columnCount && !loader.configuration.allowFewerColumns)
+                        throw loader.error(this.start, row,
+                                "Too few columns " + line.length + " vs " + columnCount);
+                    for (int j = 0; j < columnCount; j++) {
+                        if (!store[j])
+                            continue;
+                        String value = j < line.length ? line[j] : "";
+                        if (typed[j]) {
+                            if (!setNumber(targets[j], this.firstRow + row, value, missing[j]))
+                                return j;
+                        } else if (codes[j] != null) {
+                            HashMap<String, Integer> dictionary = dictionaries.get(j);
+                            Integer code = dictionary.get(value);
+                            if (code == null) {
+                                code = dictionary.size();
+                                dictionary.put(value, code);
+                            }
+                            codes[j][row] = code;
+                        } else {
+                            try {
+                                lists[j].parseAndAppendString(value);
+                            } catch (Exception ex) {
+                                throw loader.error(this.start, row,
+                                        "column " + j + " token " + value + ": " + ex.getMessage());
+                            }
+                        }
+                    }
+                    row++;
+                }
+            } finally {
+                parser.stopParsing();
+            }
+            if (row != this.rows)
+                return COUNT_MISMATCH;
+
+            for (int j = 0; j < columnCount; j++) {
+                if (!store[j])
+                    continue;
+                if (typed[j])
+                    this.setMissing(targets[j], missing[j]);
+                else if (codes[j] != null)
+                    this.storeStrings(dictionaries.get(j), codes[j], (StringArrayColumn)targets[j]);
+                else
+                    this.copy(lists[j].seal(), targets[j]);
+            }
+            return -1;
+        }
+
+        private void setMissing(IMutableColumn target, IntArrayList missing) {
+            if (missing.isEmpty())
+                return;
+            // Missing bits of different chunks may share words.
+            synchronized (target) {
+                for (int i = 0; i < missing.size(); i++)
+                    target.setMissing(missing.getInt(i));
+            }
+        }
+
+        private void storeStrings(HashMap<String, Integer> dictionary, int[] codes,
+                                  StringArrayColumn target) {
+            int[] map = new int[dictionary.size()];
+            synchronized (target) {
+                for (Map.Entry<String, Integer> e : dictionary.entrySet())
+                    map[e.getValue()] = target.encode(e.getKey());
+            }
+            for (int r = 0; r < this.rows; r++)
+                target.setCode(this.firstRow + r, map[codes[r]]);
+        }
+
+        /**
+         * Copies a column parsed from the chunk into its rows of a column of the table.
+         */
+        private void copy(IColumn source, IMutableColumn target) {
+            if (source.getKind() == ContentsKind.None)
+                return;
+            IntArrayList missing = new IntArrayList();
+            boolean isInt = source.getKind() == ContentsKind.Integer;
+            for (int r = 0; r < this.rows; r++) {
+                if (source.isMissing(r))
+                    missing.add(this.firstRow + r);
+                else if (isInt)
+                    target.set(this.firstRow + r, source.getInt(r));
+                else
+                    target.set(this.firstRow + r, source.getDouble(r));
+            }
+            this.setMissing(target, missing);
+        }
+    }
+
+    /**
+     * Parses the header row, and guesses the column kinds from a sample if
+     * the schema is not known.
+     * @return  The position of the first record after the header.
+     */
+    private long prepare(FileChannel channel, long start, long end) {
+        if (this.configuration.hasHeaderRow) {
+            long headerEnd = start;
+            ChunkScan scan = this.scan(channel, start, Math.min(end, start + BUFFER_SIZE));
+            if (scan.recordStart[LINE_START] >= 0)
+                headerEnd = scan.recordStart[LINE_START];
+            else
+                throw this.error(start, 0, "Header row is too long");
+            CsvParser parser = CsvFileLoader.createParser(this.configuration, this.schema);
+            parser.beginParsing(this.getReader(channel, start, headerEnd));
+            String[] line = parser.parseNext();
+            parser.stopParsing();
+            if (line == null)
+                throw new RuntimeException("Missing header row " + this.filename);
+            if (this.schema == null)
+                this.schema = CsvFileLoader.schemaFromHeader(line);
+            start = headerEnd;
+        }
+
+        List<GuessSchema> guesses = new ArrayList<GuessSchema>();
+        if (this.guessSchema) {
+            CsvParser parser = CsvFileLoader.createParser(this.configuration, this.schema);
+            parser.beginParsing(this.getReader(channel, start, end));
+            for (int i = 0; i < SAMPLE_ROWS; i++) {
+                String[] line = parser.parseNext();
+                if (line == null)
+                    break;
+                if (this.schema == null)
+                    this.schema = CsvFileLoader.defaultSchema(line.length);
+                while (guesses.size() < this.schema.getColumnCount())
+                    guesses.add(new GuessSchema());
+                for (int j = 0; j < Math.min(line.length, guesses.size()); j++)
+                    guesses.get(j).updateGuess(line[j]);
+            }
+            parser.stopParsing();
+            if (this.schema == null)
+                throw new RuntimeException("Cannot create schema from empty CSV file");
+        }
+
+        List<ColumnDescription> desc = this.schema.getColumnDescriptions();
+        int columnCount = desc.size();
+        this.sampled = new ContentsKind[columnCount];
+        this.typed = new boolean[columnCount];
+        for (int j = 0; j < columnCount; j++) {
+            if (this.guessSchema && j < guesses.size()) {
+                GuessSchema guess = guesses.get(j);
+                guess.setName(desc.get(j).name);
+                this.sampled[j] = guess.getColumnDesc().kind;
+            } else if (this.guessSchema)
+                this.sampled[j] = ContentsKind.None;
+            else
+                this.sampled[j] = desc.get(j).kind;
+            this.typed[j] = this.guessSchema && (this.sampled[j] == ContentsKind.Integer ||
+                    this.sampled[j] == ContentsKind.Double);
+        }
+        return start;
+    }
+
+    /**
+     * Loads the file.
+     * @return The table, or null if the file has to be loaded serially.
+     */
+    @Nullable
+    ITable load() {
+        HillviewLogger.instance.info("Reading file in parallel", "{0}", this.filename);
+        try (FileChannel channel = FileChannel.open(
+                Paths.get(this.filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            byte[] head = new byte[4];
+            int length = channel.read(ByteBuffer.wrap(head), 0);
+            long start = Math.max(byteOrderMarkLength(head, length), 0);
+            start = this.prepare(channel, start, size);
+            assert this.schema != null;
+            assert this.typed != null;
+            assert this.sampled != null;
+
+            int count = (int)Math.max(1, (size - start) / this.configuration.parallelChunkBytes);
+            List<Chunk> chunks = this.split(channel, start, size, count);
+            Chunk last = chunks.get(chunks.size() - 1);
+            int rows = Converters.toInt((long)last.firstRow + last.rows);
+            List<ColumnDescription> desc = this.schema.getColumnDescriptions();
+            int columnCount = desc.size();
+            IMutableColumn[] columns = new IMutableColumn[columnCount];
+            for (int j = 0; j < columnCount; j++) {
+                ColumnDescription cd = desc.get(j);
+                if (this.typed[j])
+                    cd = new ColumnDescription(cd.name, this.sampled[j]);
+                columns[j] = BaseArrayColumn.create(cd, rows);
+            }
+            synchronized (this) {
+                this.targets = columns;
+            }
+            HillviewLogger.instance.info("Parsing chunks", "{0}: {1} chunks, {2} rows",
+                    this.filename, chunks.size(), rows);
+            List<Chunk> toParse = chunks;
+            while (!toParse.isEmpty() && !this.countMismatch) {
+                List<Chunk> parse = toParse;
+                ExecutorUtils.parallelFor(parse.size(), i -> parse.get(i).parse(channel, rows));
+                // Chunks parsed before a guess was contradicted in another chunk.
+                toParse = new ArrayList<Chunk>();
+                for (Chunk c : chunks)
+                    if (c.isStale())
+                        toParse.add(c);
+            }
+            if (this.countMismatch) {
+                HillviewLogger.instance.warn("Record count mismatch; loading serially",
+                        "{0}", this.filename);
+                return null;
+            }
+
+            IMutableColumn[] targets;
+            synchronized (this) {
+                targets = Converters.checkNull(this.targets);
+            }
+            IMembershipSet ms = new FullMembershipSet(rows);
+            IColumn[] sealed = new IColumn[columnCount];
+            for (int j = 0; j < columnCount; j++) {
+                sealed[j] = targets[j].seal();
+                if (this.guessSchema && !this.typed[j] && this.sampled[j] != ContentsKind.String)
+                    sealed[j] = CsvFileLoader.guessKind(sealed[j], ms);
+            }
+            return new Table(sealed, this.filename, null);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -21,32 +21,31 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.parquet.ParquetReadOptions;
 import org.apache.parquet.column.ColumnDescriptor;
-import org.apache.parquet.column.page.PageReadStore;
-import org.apache.parquet.example.data.Group;
-import org.apache.parquet.example.data.simple.NanoTime;
-import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.column.statistics.*;
 import org.apache.parquet.hadoop.ParquetFileReader;
 import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 import org.apache.parquet.hadoop.metadata.FileMetaData;
 import org.apache.parquet.hadoop.metadata.ParquetMetadata;
 import org.apache.parquet.hadoop.util.HadoopInputFile;
-import org.apache.parquet.io.ColumnIOFactory;
 import org.apache.parquet.io.InputFile;
-import org.apache.parquet.io.MessageColumnIO;
-import org.apache.parquet.io.RecordReader;
-import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
 import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
 import org.apache.parquet.schema.Type;
+import org.hillview.table.BlockColumnStatistics;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.Table;
+import org.hillview.table.TableBlocks;
 import org.hillview.table.api.*;
-import org.hillview.table.columns.BaseListColumn;
+import org.hillview.table.columns.BaseArrayColumn;
+import org.hillview.table.membership.FullMembershipSet;
 import org.hillview.utils.Converters;
+import org.hillview.utils.ExecutorUtils;
 import org.hillview.utils.Linq;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -74,79 +73,6 @@ public class ParquetFileLoader extends TextFileLoader {
         }
     }
 
-    @SuppressWarnings("RedundantCast")
-    private static void appendGroup(
-            List<IAppendableColumn> cols, Group g, List<ColumnDescriptor> cds) {
-        int fieldCount = g.getType().getFieldCount();
-        for (int field = 0; field < fieldCount; field++) {
-            int valueCount = g.getFieldRepetitionCount(field);
-            IAppendableColumn col = cols.get(field);
-            if (valueCount == 0) {
-                col.appendMissing();
-                continue;
-            }
-            if (valueCount > 1)
-                throw new RuntimeException("Repeated values not supported");
-
-            Type fieldType = g.getType().getType(field);
-            if (!fieldType.isPrimitive())
-                throw new RuntimeException("Non-primitive field not supported");
-            switch (cds.get(field).getPrimitiveType().getPrimitiveTypeName()) {
-                case INT64: {
-                    long l = g.getLong(field, 0);
-                    col.append((double) l);
-                    break;
-                }
-                case FLOAT: {
-                    float f = g.getFloat(field, 0);
-                    col.append((double) f);
-                    break;
-                }
-                case DOUBLE: {
-                    double d = g.getDouble(field, 0);
-                    col.append(d);
-                    break;
-                }
-                case INT32: {
-                    int i = g.getInteger(field, 0);
-                    col.append(i);
-                    break;
-                }
-                case BOOLEAN: {
-                    boolean b = g.getBoolean(field, 0);
-                    col.append(b ? "true" : "false");
-                    break;
-                }
-                case BINARY: {
-                    Binary b = g.getBinary(field, 0);
-                    String s = b.toStringUsingUTF8();
-                    col.append(s);
-                    break;
-                }
-                case FIXED_LEN_BYTE_ARRAY: {
-                    String s = g.getString(field, 0);
-                    col.append(s);
-                    break;
-                }
-                case INT96: {
-                    // We are assuming that this is a Hive/Impala timestamp
-                    // from the drill ParquetReaderUtility.java file
-                    final long JULIAN_DAY_NUMBER_FOR_UNIX_EPOCH = 2440588;
-                    Binary val = g.getInt96(field, 0);
-                    NanoTime nt = NanoTime.fromBinary(val);
-                    int julianDay = nt.getJulianDay();
-                    long nanosOfDay = nt.getTimeOfDayNanos();
-                    long epochSeconds = (julianDay - JULIAN_DAY_NUMBER_FOR_UNIX_EPOCH) * Converters.SECONDS_TO_DAY + nanosOfDay / Converters.NANOS_TO_SECONDS;
-                    LocalDateTime inst = LocalDateTime.ofEpochSecond(epochSeconds, Converters.toInt(nanosOfDay % Converters.NANOS_TO_SECONDS), ZoneOffset.UTC);
-                    col.append(Converters.toDouble(inst));
-                    break;
-                }
-                default:
-                    throw new RuntimeException("Unexpected column kind " + cds.get(field).getPrimitiveType().getPrimitiveTypeName());
-            }
-        }
-    }
-
     private static ColumnDescription getColumnDescription(ColumnDescriptor cd) {
         String name = String.join("", cd.getPath());  // this should contain a single String
         ContentsKind kind;
@@ -173,18 +99,6 @@ public class ParquetFileLoader extends TextFileLoader {
         return new ColumnDescription(name, kind);
     }
 
-    private static List<IAppendableColumn> createColumns(ParquetMetadata md) {
-        MessageType schema = md.getFileMetaData().getSchema();
-        List<ColumnDescriptor> cols = schema.getColumns();
-        List<IAppendableColumn> result = new ArrayList<IAppendableColumn>(cols.size());
-
-        for (ColumnDescriptor cd : cols) {
-            ColumnDescription desc = getColumnDescription(cd);
-            result.add(BaseListColumn.create(desc));
-        }
-        return result;
-    }
-
     public class ParquetColumnLoader implements IColumnLoader {
         @Override
         public List<? extends IColumn> loadColumns(List<String> names) {
@@ -206,33 +120,33 @@ public class ParquetFileLoader extends TextFileLoader {
         }
     }
 
+    /**
+     * Loads all columns in the schema of md.  The pages of each column chunk are
+     * decoded directly into array columns, and the row groups are decoded in parallel.
+     */
     private List<IColumn> loadColumns(ParquetMetadata md) {
-        try {
-            MessageType schema = md.getFileMetaData().getSchema();
-            List<IAppendableColumn> cols = createColumns(md);
-            ParquetReadOptions.Builder builder = new ParquetReadOptions.Builder();
-            InputFile file = HadoopInputFile.fromPath(path, this.configuration);
-            ParquetFileReader r = new ParquetFileReader(file, builder.build());
-            MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(schema);
-
-            PageReadStore pages;
-            while (null != (pages = r.readNextRowGroup())) {
-                final long rows = pages.getRowCount();
-                RecordReader<Group> recordReader = columnIO.getRecordReader(
-                        pages, new GroupRecordConverter(schema));
-                for (int i = 0; i < rows; i++) {
-                    Group g = recordReader.read();
-                    appendGroup(cols, g, md.getFileMetaData().getSchema().getColumns());
-                }
-            }
+        FileMetaData fm = md.getFileMetaData();
+        MessageType schema = fm.getSchema();
+        for (Type field : schema.getFields())
+            if (!field.isPrimitive())
+                throw new RuntimeException("Non-primitive field not supported");
+        List<ColumnDescriptor> cds = schema.getColumns();
+        for (ColumnDescriptor cd : cds)
+            if (cd.getMaxRepetitionLevel() > 0)
+                throw new RuntimeException("Repeated values not supported");
 
-            for (IAppendableColumn c : cols)
-                c.seal();
-            r.close();
-            return Linq.map(cols, e -> e);
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+        int size = this.getNumRows();
+        List<IMutableColumn> cols = Linq.map(cds,
+                cd -> BaseArrayColumn.create(getColumnDescription(cd), size));
+        List<ParquetRowGroupLoader> rowGroups = new ArrayList<ParquetRowGroupLoader>();
+        int firstRow = 0;
+        for (BlockMetaData block : md.getBlocks()) {
+            rowGroups.add(new ParquetRowGroupLoader(
+                    this.configuration, this.path, fm, block, firstRow));
+            firstRow += Converters.toInt(block.getRowCount());
         }
+        ExecutorUtils.parallelFor(rowGroups.size(), i -> rowGroups.get(i).load(cols));
+        return Linq.map(cols, IMutableColumn::seal);
     }
 
     private int getNumRows() {
@@ -243,6 +157,73 @@ public class ParquetFileLoader extends TextFileLoader {
         return Converters.toInt(rowCount);
     }
 
+    /**
+     * Statistics of a column chunk in a row group, or null if they are missing
+     * or cannot be used for the Hillview representation of the column.
+     */
+    @Nullable
+    private static BlockColumnStatistics getStatistics(ColumnChunkMetaData chunk, long rowCount) {
+        Statistics<?> stats = chunk.getStatistics();
+        if (stats == null || stats.isEmpty())
+            return null;
+        if (!stats.hasNonNullValue()) {
+            if (stats.isNumNullsSet() && stats.getNumNulls() == rowCount)
+                return BlockColumnStatistics.missing();
+            return null;
+        }
+        boolean hasMissing = !stats.isNumNullsSet() || stats.getNumNulls() > 0;
+        PrimitiveType type = chunk.getPrimitiveType();
+        switch (type.getPrimitiveTypeName()) {
+            case INT32: {
+                IntStatistics is = (IntStatistics)stats;
+                return BlockColumnStatistics.numeric(is.getMin(), is.getMax(), hasMissing, false);
+            }
+            case INT64: {
+                LongStatistics ls = (LongStatistics)stats;
+                return BlockColumnStatistics.numeric(ls.getMin(), ls.getMax(), hasMissing, false);
+            }
+            case FLOAT: {
+                FloatStatistics fs = (FloatStatistics)stats;
+                return BlockColumnStatistics.numeric(fs.getMin(), fs.getMax(), hasMissing, true);
+            }
+            case DOUBLE: {
+                DoubleStatistics ds = (DoubleStatistics)stats;
+                return BlockColumnStatistics.numeric(ds.getMin(), ds.getMax(), hasMissing, true);
+            }
+            case BINARY: {
+                // Only UTF-8 strings are ordered like the decoded Java strings.
+                if (!(type.getLogicalTypeAnnotation() instanceof
+                        LogicalTypeAnnotation.StringLogicalTypeAnnotation))
+                    return null;
+                BinaryStatistics bs = (BinaryStatistics)stats;
+                return BlockColumnStatistics.strings(bs.genericGetMin().toStringUsingUTF8(),
+                        bs.genericGetMax().toStringUsingUTF8(), hasMissing);
+            }
+            default:
+                // Booleans are converted to strings and INT96 timestamps to dates;
+                // the order of their statistics does not carry over.
+                return null;
+        }
+    }
+
+    /**
+     * The row groups of the file, with the column statistics stored in the footer.
+     */
+    private TableBlocks getBlocks() {
+        List<BlockMetaData> rowGroups = this.metadata.getBlocks();
+        int[] rows = new int[rowGroups.size()];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = Converters.toInt(rowGroups.get(i).getRowCount());
+        TableBlocks result = new TableBlocks(rows);
+        for (int i = 0; i < rows.length; i++) {
+            for (ColumnChunkMetaData chunk : rowGroups.get(i).getColumns()) {
+                String name = String.join("", chunk.getPath().toArray());
+                result.setStatistics(name, i, getStatistics(chunk, rows[i]));
+            }
+        }
+        return result;
+    }
+
     public ITable load() {
         ParquetMetadata md = this.metadata;
         if (this.lazy) {
@@ -251,13 +232,15 @@ public class ParquetFileLoader extends TextFileLoader {
             int size = this.getNumRows();
             List<ColumnDescription> desc = Linq.map(cds,
                     ParquetFileLoader::getColumnDescription);
-            Table result = Table.createLazyTable(desc, size, this.filename, loader);
+            Table result = Table.createLazyTable(
+                    desc, size, this.filename, loader, this.getBlocks());
             this.close(null);
             return result;
         } else {
             List<IColumn> cols = this.loadColumns(md);
             this.close(null);
-            return new Table(cols, this.filename, null);
+            return new Table(cols, new FullMembershipSet(this.getNumRows()),
+                    this.filename, null, this.getBlocks());
         }
     }
 }
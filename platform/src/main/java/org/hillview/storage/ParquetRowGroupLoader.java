@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.storage;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.Dictionary;
+import org.apache.parquet.column.EncodingStats;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.simple.NanoTime;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnPath;
+import org.apache.parquet.hadoop.metadata.FileMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.Converter;
+import org.apache.parquet.io.api.GroupConverter;
+import org.apache.parquet.io.api.PrimitiveConverter;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.hillview.table.api.IMutableColumn;
+import org.hillview.table.columns.StringArrayColumn;
+import org.hillview.utils.Converters;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decodes one row group of a Parquet file directly into array columns.
+ * The pages of each column chunk are decoded value by value into the primitive
+ * column storage, without materializing records.  Strings are decoded once
+ * for each distinct value in the row group; dictionary-encoded chunks are
+ * decoded once for each dictionary entry.  Different row groups of the same
+ * file can be loaded concurrently into the same columns.
+ */
+class ParquetRowGroupLoader {
+    private final Configuration configuration;
+    private final Path path;
+    private final FileMetaData fileMetaData;
+    private final BlockMetaData block;
+    /**
+     * Index of the first row of the row group in the columns.
+     */
+    private final int firstRow;
+    private final int rowCount;
+
+    ParquetRowGroupLoader(Configuration configuration, Path path, FileMetaData fileMetaData,
+                          BlockMetaData block, int firstRow) {
+        this.configuration = configuration;
+        this.path = path;
+        this.fileMetaData = fileMetaData;
+        this.block = block;
+        this.firstRow = firstRow;
+        this.rowCount = Converters.toInt(block.getRowCount());
+    }
+
+    /**
+     * Captures the dictionary of a column chunk when the column reader is created.
+     */
+    private static final class DictionaryConverter extends PrimitiveConverter {
+        @Nullable
+        Dictionary dictionary = null;
+
+        @Override
+        public boolean hasDictionarySupport() { return true; }
+
+        @Override
+        public void setDictionary(Dictionary dictionary) { this.dictionary = dictionary; }
+    }
+
+    private static final class ColumnsConverter extends GroupConverter {
+        final DictionaryConverter[] converters;
+
+        ColumnsConverter(int columnCount) {
+            this.converters = new DictionaryConverter[columnCount];
+            for (int i = 0; i < columnCount; i++)
+                this.converters[i] = new DictionaryConverter();
+        }
+
+        @Override
+        public Converter getConverter(int fieldIndex) { return this.converters[fieldIndex]; }
+
+        @Override
+        public void start() {}
+
+        @Override
+        public void end() {}
+    }
+
+    /**
+     * Loads the row group into the specified columns, which have one entry for each
+     * column of the file schema.
+     */
+    @SuppressWarnings("deprecation")
+    void load(List<IMutableColumn> columns) {
+        MessageType schema = this.fileMetaData.getSchema();
+        List<ColumnDescriptor> cds = schema.getColumns();
+        // A footer with a single row group: the reader only reads the requested row group
+        // and the columns in the schema.
+        ParquetMetadata footer = new ParquetMetadata(
+                this.fileMetaData, Collections.singletonList(this.block));
+        try (ParquetFileReader reader = new ParquetFileReader(
+                this.configuration, this.path, footer)) {
+            PageReadStore pages = reader.readNextRowGroup();
+            if (pages == null)
+                throw new RuntimeException("Missing row group in " + this.path);
+            ColumnsConverter converter = new ColumnsConverter(cds.size());
+            ColumnReadStoreImpl store = new ColumnReadStoreImpl(
+                    pages, converter, schema, this.fileMetaData.getCreatedBy());
+            for (int i = 0; i < cds.size(); i++) {
+                ColumnDescriptor cd = cds.get(i);
+                ColumnReader cr = store.getColumnReader(cd);
+                this.loadColumn(cd, cr, converter.converters[i].dictionary, columns.get(i));
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void loadColumn(ColumnDescriptor cd, ColumnReader cr,
+                            @Nullable Dictionary dictionary, IMutableColumn col) {
+        int maxDefinition = cd.getMaxDefinitionLevel();
+        IntArrayList missing = new IntArrayList();
+        int row = this.firstRow;
+        switch (cd.getPrimitiveType().getPrimitiveTypeName()) {
+            case INT64:
+                for (int i = 0; i < this.rowCount; i++, row++) {
+                    if (cr.getCurrentDefinitionLevel() == maxDefinition)
+                        col.set(row, (double)cr.getLong());
+                    else
+                        missing.add(row);
+                    cr.consume();
+                }
+                break;
+            case FLOAT:
+                for (int i = 0; i < this.rowCount; i++, row++) {
+                    if (cr.getCurrentDefinitionLevel() == maxDefinition)
+                        col.set(row, (double)cr.getFloat());
+                    else
+                        missing.add(row);
+                    cr.consume();
+                }
+                break;
+            case DOUBLE:
+                for (int i = 0; i < this.rowCount; i++, row++) {
+                    if (cr.getCurrentDefinitionLevel() == maxDefinition)
+                        col.set(row, cr.getDouble());
+                    else
+                        missing.add(row);
+                    cr.consume();
+                }
+                break;
+            case INT32:
+                for (int i = 0; i < this.rowCount; i++, row++) {
+                    if (cr.getCurrentDefinitionLevel() == maxDefinition)
+                        col.set(row, cr.getInteger());
+                    else
+                        missing.add(row);
+                    cr.consume();
+                }
+                break;
+            case INT96:
+                for (int i = 0; i < this.rowCount; i++, row++) {
+                    if (cr.getCurrentDefinitionLevel() == maxDefinition)
+                        col.set(row, int96ToDouble(cr.getBinary()));
+                    else
+                        missing.add(row);
+                    cr.consume();
+                }
+                break;
+            case BOOLEAN:
+            case BINARY:
+            case FIXED_LEN_BYTE_ARRAY:
+                this.loadStrings(cd, cr, dictionary, (StringArrayColumn)col);
+                return;
+            default:
+                throw new RuntimeException("Unexpected column kind " + cd.getPrimitiveType().getPrimitiveTypeName());
+        }
+        if (!missing.isEmpty()) {
+            // Missing bits of different row groups may share words.
+            synchronized (col) {
+                for (int i = 0; i < missing.size(); i++)
+                    col.setMissing(missing.getInt(i));
+            }
+        }
+    }
+
+    /**
+     * True if all data pages of the column chunk are dictionary-encoded.
+     */
+    private boolean isDictionaryEncoded(ColumnDescriptor cd) {
+        ColumnPath path = ColumnPath.get(cd.getPath());
+        for (ColumnChunkMetaData chunk : this.block.getColumns()) {
+            if (!chunk.getPath().equals(path))
+                continue;
+            EncodingStats stats = chunk.getEncodingStats();
+            return stats != null && stats.hasDictionaryPages() &&
+                    !stats.hasNonDictionaryEncodedPages();
+        }
+        return false;
+    }
+
+    /**
+     * Loads a string column.  Each row is first mapped to a code local to this
+     * row group; the local codes are then translated to the codes of the column.
+     */
+    private void loadStrings(ColumnDescriptor cd, ColumnReader cr,
+                             @Nullable Dictionary dictionary, StringArrayColumn col) {
+        int maxDefinition = cd.getMaxDefinitionLevel();
+        int[] codes = new int[this.rowCount];
+        // Distinct values of this row group, indexed by local code; null is missing.
+        List<String> values = new ArrayList<String>();
+        if (dictionary != null && this.isDictionaryEncoded(cd)) {
+            int dictionarySize = dictionary.getMaxId() + 1;
+            for (int i = 0; i < dictionarySize; i++)
+                values.add(dictionary.decodeToBinary(i).toStringUsingUTF8());
+            values.add(null);
+            for (int i = 0; i < this.rowCount; i++) {
+                if (cr.getCurrentDefinitionLevel() == maxDefinition)
+                    codes[i] = cr.getCurrentValueDictionaryID();
+                else
+                    codes[i] = dictionarySize;
+                cr.consume();
+            }
+        } else if (cd.getPrimitiveType().getPrimitiveTypeName() ==
+                PrimitiveType.PrimitiveTypeName.BOOLEAN) {
+            values.add("false");
+            values.add("true");
+            values.add(null);
+            for (int i = 0; i < this.rowCount; i++) {
+                if (cr.getCurrentDefinitionLevel() == maxDefinition)
+                    codes[i] = cr.getBoolean() ? 1 : 0;
+                else
+                    codes[i] = 2;
+                cr.consume();
+            }
+        } else {
+            Object2IntOpenHashMap<Binary> local = new Object2IntOpenHashMap<Binary>();
+            local.defaultReturnValue(-1);
+            values.add(null);
+            for (int i = 0; i < this.rowCount; i++) {
+                if (cr.getCurrentDefinitionLevel() == maxDefinition) {
+                    Binary b = cr.getBinary();
+                    int code = local.getInt(b);
+                    if (code < 0) {
+                        code = values.size();
+                        // The binary may refer to a buffer that is reused.
+                        local.put(b.copy(), code);
+                        values.add(b.toStringUsingUTF8());
+                    }
+                    codes[i] = code;
+                } else {
+                    codes[i] = 0;
+                }
+                cr.consume();
+            }
+        }
+
+        int[] map = new int[values.size()];
+        synchronized (col) {
+            for (int i = 0; i < map.length; i++)
+                map[i] = col.encode(values.get(i));
+        }
+        for (int i = 0; i < this.rowCount; i++)
+            col.setCode(this.firstRow + i, map[codes[i]]);
+    }
+
+    /**
+     * Converts an INT96 value to a date.  We are assuming that this is
+     * a Hive/Impala timestamp (from the drill ParquetReaderUtility.java file).
+     */
+    static double int96ToDouble(Binary val) {
+        final long JULIAN_DAY_NUMBER_FOR_UNIX_EPOCH = 2440588;
+        NanoTime nt = NanoTime.fromBinary(val);
+        int julianDay = nt.getJulianDay();
+        long nanosOfDay = nt.getTimeOfDayNanos();
+        long epochSeconds = (julianDay - JULIAN_DAY_NUMBER_FOR_UNIX_EPOCH) * Converters.SECONDS_TO_DAY + nanosOfDay / Converters.NANOS_TO_SECONDS;
+        LocalDateTime inst = LocalDateTime.ofEpochSecond(epochSeconds, Converters.toInt(nanosOfDay % Converters.NANOS_TO_SECONDS), ZoneOffset.UTC);
+        return Converters.toDouble(inst);
+    }
+}
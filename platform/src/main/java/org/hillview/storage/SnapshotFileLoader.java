@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.storage;
+
+import org.hillview.table.BlockColumnStatistics;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Table;
+import org.hillview.table.TableBlocks;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.ITable;
+import org.hillview.table.columns.EmptyColumn;
+import org.hillview.table.columns.MappedDoubleColumn;
+import org.hillview.table.columns.MappedIntColumn;
+import org.hillview.table.columns.MappedStringColumn;
+import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.utils.HillviewLogger;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a table written by the SnapshotFileWriter.  The column data is not parsed:
+ * the columns read the file through memory-mapped buffers, so the operating system
+ * only pages in the data that is used.  Only the string dictionaries are decoded
+ * when the file is loaded.
+ */
+public class SnapshotFileLoader extends TextFileLoader {
+    /**
+     * Name of the file that was snapshotted; used as the source of the table.
+     */
+    private final String sourceFile;
+    private final String key;
+    @Nullable
+    private Footer footer;
+
+    private static class Footer {
+        final String key;
+        final int rowCount;
+        final List<SnapshotFileWriter.ColumnSections> columns;
+        @Nullable
+        final TableBlocks blocks;
+
+        Footer(String key, int rowCount, List<SnapshotFileWriter.ColumnSections> columns,
+               @Nullable TableBlocks blocks) {
+            this.key = key;
+            this.rowCount = rowCount;
+            this.columns = columns;
+            this.blocks = blocks;
+        }
+    }
+
+    /**
+     * Creates a snapshot loader.
+     * @param path        Snapshot file.
+     * @param sourceFile  File whose contents were snapshotted.
+     * @param key         Expected key of the snapshot.
+     */
+    public SnapshotFileLoader(String path, String sourceFile, String key) {
+        super(path);
+        this.sourceFile = sourceFile;
+        this.key = key;
+    }
+
+    private static Footer readFooter(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < SnapshotFileWriter.TRAILER_SIZE)
+            throw new RuntimeException("File too short");
+        ByteBuffer trailer = ByteBuffer.allocate(SnapshotFileWriter.TRAILER_SIZE);
+        readFully(channel, trailer, size - SnapshotFileWriter.TRAILER_SIZE);
+        long footerOffset = trailer.getLong(0);
+        if (trailer.getInt(8) != SnapshotFileWriter.MAGIC ||
+                footerOffset < 0 || footerOffset > size - SnapshotFileWriter.TRAILER_SIZE)
+            throw new RuntimeException("Not a snapshot file");
+        ByteBuffer bytes = ByteBuffer.allocate(
+                (int)(size - SnapshotFileWriter.TRAILER_SIZE - footerOffset));
+        readFully(channel, bytes, footerOffset);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array()));
+        if (in.readInt() != SnapshotFileWriter.MAGIC)
+            throw new RuntimeException("Not a snapshot file");
+        int version = in.readInt();
+        if (version != SnapshotFileWriter.VERSION)
+            throw new RuntimeException("Unsupported snapshot version " + version);
+        byte[] keyBytes = new byte[in.readInt()];
+        in.readFully(keyBytes);
+        int rowCount = in.readInt();
+        int columnCount = in.readInt();
+        List<SnapshotFileWriter.ColumnSections> columns = new ArrayList<SnapshotFileWriter.ColumnSections>();
+        for (int i = 0; i < columnCount; i++) {
+            String name = in.readUTF();
+            ContentsKind kind = ContentsKind.valueOf(in.readUTF());
+            SnapshotFileWriter.ColumnSections cs = new SnapshotFileWriter.ColumnSections(
+                    new ColumnDescription(name, kind));
+            cs.dataOffset = in.readLong();
+            cs.missingOffset = in.readLong();
+            cs.dictionaryOffset = in.readLong();
+            cs.dictionaryBytes = in.readLong();
+            cs.dictionarySize = in.readInt();
+            columns.add(cs);
+        }
+        TableBlocks blocks = readBlocks(in, columns);
+        return new Footer(new String(keyBytes, StandardCharsets.UTF_8), rowCount, columns, blocks);
+    }
+
+    @Nullable
+    private static TableBlocks readBlocks(DataInputStream in, List<SnapshotFileWriter.ColumnSections> columns)
+            throws IOException {
+        int blockCount = in.readInt();
+        if (blockCount < 0)
+            return null;
+        int[] blockRows = new int[blockCount];
+        for (int b = 0; b < blockCount; b++)
+            blockRows[b] = in.readInt();
+        TableBlocks blocks = new TableBlocks(blockRows);
+        for (SnapshotFileWriter.ColumnSections cs : columns) {
+            for (int b = 0; b < blockCount; b++) {
+                BlockColumnStatistics stats;
+                byte tag = in.readByte();
+                switch (tag) {
+                    case SnapshotFileWriter.NO_STATISTICS:
+                        continue;
+                    case SnapshotFileWriter.MISSING_STATISTICS:
+                        stats = BlockColumnStatistics.missing();
+                        break;
+                    case SnapshotFileWriter.STRING_STATISTICS: {
+                        String min = in.readUTF();
+                        String max = in.readUTF();
+                        stats = BlockColumnStatistics.strings(min, max, in.readBoolean());
+                        break;
+                    }
+                    case SnapshotFileWriter.NUMERIC_STATISTICS: {
+                        double min = in.readDouble();
+                        double max = in.readDouble();
+                        boolean hasMissing = in.readBoolean();
+                        stats = BlockColumnStatistics.numeric(min, max, hasMissing, in.readBoolean());
+                        break;
+                    }
+                    default:
+                        throw new RuntimeException("Unexpected block statistics " + tag);
+                }
+                blocks.setStatistics(cs.description.name, b, stats);
+            }
+        }
+        return blocks;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new EOFException();
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long bytes) throws IOException {
+        if (bytes > Integer.MAX_VALUE)
+            throw new RuntimeException("Snapshot section too large: " + bytes + " bytes");
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+    }
+
+    /**
+     * True if the snapshot file exists and holds the data with the expected key.
+     */
+    public boolean isValid() {
+        File file = new File(this.filename);
+        if (!file.exists())
+            return false;
+        try (FileChannel channel = FileChannel.open(Paths.get(this.filename), StandardOpenOption.READ)) {
+            this.footer = readFooter(channel);
+        } catch (IOException | RuntimeException ex) {
+            HillviewLogger.instance.error("Cannot read snapshot", ex);
+            return false;
+        }
+        return this.footer.key.equals(this.key);
+    }
+
+    @Override
+    public ITable load() {
+        // The mappings remain valid after the channel is closed.
+        try (FileChannel channel = FileChannel.open(Paths.get(this.filename), StandardOpenOption.READ)) {
+            Footer footer = this.footer;
+            if (footer == null)
+                footer = readFooter(channel);
+            if (!footer.key.equals(this.key))
+                throw new RuntimeException("Snapshot " + this.filename + " does not match " + this.sourceFile);
+            List<IColumn> columns = new ArrayList<IColumn>(footer.columns.size());
+            for (SnapshotFileWriter.ColumnSections cs : footer.columns)
+                columns.add(loadColumn(channel, cs, footer.rowCount));
+            HillviewLogger.instance.info("Mapped snapshot", "{0}", this.filename);
+            return new Table(columns, new FullMembershipSet(footer.rowCount),
+                    this.sourceFile, null, footer.blocks);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static IColumn loadColumn(FileChannel channel, SnapshotFileWriter.ColumnSections cs,
+                                      int rowCount) throws IOException {
+        ColumnDescription desc = cs.description;
+        switch (desc.kind) {
+            case None:
+                return new EmptyColumn(desc.name, rowCount);
+            case String:
+            case Json: {
+                String[] dictionary = new String[cs.dictionarySize];
+                ByteBuffer buffer = map(channel, cs.dictionaryOffset, cs.dictionaryBytes);
+                for (int i = 0; i < dictionary.length; i++) {
+                    int length = buffer.getInt();
+                    if (length < 0)
+                        continue;
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                return new MappedStringColumn(desc,
+                        map(channel, cs.dataOffset, 4L * rowCount).asIntBuffer(), dictionary);
+            }
+            case Integer:
+                return new MappedIntColumn(desc,
+                        map(channel, cs.dataOffset, 4L * rowCount).asIntBuffer(),
+                        loadMissing(channel, cs, rowCount));
+            case Double:
+            case Date:
+            case Duration:
+            case Time:
+            case LocalDate:
+                return new MappedDoubleColumn(desc,
+                        map(channel, cs.dataOffset, 8L * rowCount).asDoubleBuffer(),
+                        loadMissing(channel, cs, rowCount));
+            case Interval:
+            default:
+                throw new RuntimeException("Unexpected column kind in snapshot " + desc.kind);
+        }
+    }
+
+    @Nullable
+    private static LongBuffer loadMissing(FileChannel channel, SnapshotFileWriter.ColumnSections cs,
+                                          int rowCount) throws IOException {
+        if (cs.missingOffset < 0)
+            return null;
+        return map(channel, cs.missingOffset, 8L * ((rowCount + 63) >>> 6)).asLongBuffer();
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.storage;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.hillview.table.BlockColumnStatistics;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.TableBlocks;
+import org.hillview.table.api.*;
+import org.hillview.utils.ExecutorUtils;
+import org.hillview.utils.HillviewLogger;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Writes a table in the Hillview snapshot format, which can be memory-mapped
+ * by the SnapshotFileLoader without any parsing.
+ * The file contains the data of each column followed by a footer describing the columns.
+ * Integer columns are stored as 4-byte integers, and the other numeric kinds as
+ * 8-byte doubles, followed by a missing bit vector when some values are missing.
+ * String columns are stored as 4-byte dictionary codes followed by the dictionary;
+ * missing strings are encoded as a null dictionary entry.  All values are big-endian.
+ * The footer holds a key identifying the data that was snapshotted; the loader
+ * only accepts a snapshot with the expected key.  The footer also holds the blocks
+ * of the table and their statistics, if the table has any.
+ * The file is written under a temporary name and renamed when complete, so readers
+ * never observe a partial snapshot.
+ */
+public class SnapshotFileWriter implements ITableWriter {
+    static final int MAGIC = 0x48565331;  // "HVS1"
+    static final int VERSION = 2;
+    /**
+     * Tags of the block statistics in the footer.
+     */
+    static final byte NO_STATISTICS = 0;
+    static final byte MISSING_STATISTICS = 1;
+    static final byte NUMERIC_STATISTICS = 2;
+    static final byte STRING_STATISTICS = 3;
+    /**
+     * Size of the trailer: footer offset followed by the magic number.
+     */
+    static final int TRAILER_SIZE = 12;
+
+    /**
+     * Background snapshots are written by a single low-priority thread.
+     */
+    private static final ExecutorService backgroundWriter =
+            ExecutorUtils.newNamedThreadPool("snapshot", 1, Thread.MIN_PRIORITY);
+    /**
+     * Snapshot files that are scheduled or being written in the background.
+     */
+    private static final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final String path;
+    private final String key;
+
+    /**
+     * Describes the location of the data of one column.
+     */
+    static class ColumnSections {
+        final ColumnDescription description;
+        long dataOffset = -1;
+        long missingOffset = -1;
+        long dictionaryOffset = -1;
+        long dictionaryBytes = 0;
+        int dictionarySize = 0;
+
+        ColumnSections(ColumnDescription description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * Creates a snapshot writer.
+     * @param path  File to write.
+     * @param key   Key identifying the data in the snapshot.
+     */
+    public SnapshotFileWriter(String path, String key) {
+        this.path = path;
+        this.key = key;
+    }
+
+    /**
+     * Writes a snapshot of the table on a background thread.  Tables that have columns
+     * which are not loaded are not written, since that would load all their columns.
+     * Failures are only logged: snapshots are an optimization.
+     * @return True if the snapshot was scheduled.
+     */
+    public boolean writeInBackground(ITable table) {
+        for (IColumn col : table.getColumns(table.getSchema())) {
+            if (!col.isLoaded()) {
+                HillviewLogger.instance.info("Not writing snapshot of partially loaded table",
+                        "{0}", this.path);
+                return false;
+            }
+        }
+        if (!pending.add(this.path))
+            return false;
+        backgroundWriter.execute(() -> {
+            try {
+                this.writeTable(table);
+            } catch (RuntimeException ex) {
+                HillviewLogger.instance.error("Could not write snapshot " + this.path, ex);
+            } finally {
+                pending.remove(this.path);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Waits until all the snapshots scheduled so far have been written.
+     */
+    public static void awaitBackgroundWrites() {
+        try {
+            backgroundWriter.submit(() -> {}).get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public void writeTable(ITable table) {
+        List<String> names = table.getSchema().getColumnNames();
+        List<IColumn> columns = table.getLoadedColumns(names);
+        int rowCount = table.getMembershipSet().getMax();
+        Path target = Paths.get(this.path);
+        Path tmp = Paths.get(this.path + ".tmp");
+        try {
+            try (CountingOutputStream counter = new CountingOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp.toFile())));
+                 DataOutputStream out = new DataOutputStream(counter)) {
+                List<ColumnSections> sections = new ArrayList<ColumnSections>();
+                for (IColumn col : columns) {
+                    if (col.sizeInRows() != rowCount)
+                        throw new RuntimeException("Column " + col.getName() + " has " +
+                                col.sizeInRows() + " rows; expected " + rowCount);
+                    ColumnSections cs = new ColumnSections(col.getDescription());
+                    writeColumn(col, cs, out, counter);
+                    sections.add(cs);
+                }
+                long footerOffset = counter.getByteCount();
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                byte[] keyBytes = this.key.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(keyBytes.length);
+                out.write(keyBytes);
+                out.writeInt(rowCount);
+                out.writeInt(sections.size());
+                for (ColumnSections cs : sections) {
+                    out.writeUTF(cs.description.name);
+                    out.writeUTF(cs.description.kind.name());
+                    out.writeLong(cs.dataOffset);
+                    out.writeLong(cs.missingOffset);
+                    out.writeLong(cs.dictionaryOffset);
+                    out.writeLong(cs.dictionaryBytes);
+                    out.writeInt(cs.dictionarySize);
+                }
+                writeBlocks(table.getBlocks(), names, out);
+                out.writeLong(footerOffset);
+                out.writeInt(MAGIC);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            HillviewLogger.instance.info("Wrote snapshot", "{0}", this.path);
+        } catch (IOException ex) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {}
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static void writeBlocks(@Nullable TableBlocks blocks, List<String> columns,
+                                    DataOutputStream out) throws IOException {
+        if (blocks == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(blocks.getBlockCount());
+        for (int b = 0; b < blocks.getBlockCount(); b++)
+            out.writeInt(blocks.getEnd(b) - blocks.getStart(b));
+        for (String col : columns) {
+            for (int b = 0; b < blocks.getBlockCount(); b++) {
+                BlockColumnStatistics stats = blocks.getStatistics(col, b);
+                if (stats == null) {
+                    out.writeByte(NO_STATISTICS);
+                } else if (stats.allMissing) {
+                    out.writeByte(MISSING_STATISTICS);
+                } else if (stats.minString != null && stats.maxString != null &&
+                        // writeUTF is limited to 64K bytes
+                        stats.minString.length() < 16384 && stats.maxString.length() < 16384) {
+                    out.writeByte(STRING_STATISTICS);
+                    out.writeUTF(stats.minString);
+                    out.writeUTF(stats.maxString);
+                    out.writeBoolean(stats.hasMissing);
+                } else if (stats.minString != null || stats.maxString != null) {
+                    out.writeByte(NO_STATISTICS);
+                } else {
+                    out.writeByte(NUMERIC_STATISTICS);
+                    out.writeDouble(stats.min);
+                    out.writeDouble(stats.max);
+                    out.writeBoolean(stats.hasMissing);
+                    out.writeBoolean(stats.mayHaveNaN);
+                }
+            }
+        }
+    }
+
+    private static void writeColumn(IColumn col, ColumnSections cs, DataOutputStream out,
+                                    CountingOutputStream counter) throws IOException {
+        int rows = col.sizeInRows();
+        switch (col.getKind()) {
+            case None:
+                return;
+            case String:
+            case Json:
+                writeStrings(col, cs, out, counter);
+                return;
+            case Integer:
+                cs.dataOffset = counter.getByteCount();
+                for (int i = 0; i < rows; i++)
+                    out.writeInt(col.isMissing(i) ? 0 : col.getInt(i));
+                break;
+            case Double:
+            case Date:
+            case Duration:
+            case Time:
+            case LocalDate:
+                cs.dataOffset = counter.getByteCount();
+                for (int i = 0; i < rows; i++)
+                    out.writeDouble(col.isMissing(i) ? 0 : col.getDouble(i));
+                break;
+            case Interval:
+            default:
+                throw new RuntimeException("Column kind not supported in snapshots " + col.getKind());
+        }
+
+        if (!col.anyMissing(0, rows))
+            return;
+        long[] words = new long[(rows + 63) >>> 6];
+        for (int i = 0; i < rows; i++)
+            if (col.isMissing(i))
+                words[i >>> 6] |= 1L << i;
+        cs.missingOffset = counter.getByteCount();
+        for (long w : words)
+            out.writeLong(w);
+    }
+
+    private static int encode(@Nullable String value, Object2IntOpenHashMap<String> codes,
+                              List<String> dictionary) {
+        int code = codes.getInt(value);
+        if (code < 0) {
+            code = dictionary.size();
+            codes.put(value, code);
+            dictionary.add(value);
+        }
+        return code;
+    }
+
+    private static void writeStrings(IColumn col, ColumnSections cs, DataOutputStream out,
+                                     CountingOutputStream counter) throws IOException {
+        int rows = col.sizeInRows();
+        List<String> dictionary = new ArrayList<String>();
+        cs.dataOffset = counter.getByteCount();
+        Object2IntOpenHashMap<String> codes = new Object2IntOpenHashMap<String>();
+        codes.defaultReturnValue(-1);
+        if (col instanceof IDictionaryColumn && ((IDictionaryColumn)col).hasDictionary()) {
+            // Translate the codes of the column, which may have unused or repeated entries.
+            IDictionaryColumn dc = (IDictionaryColumn)col;
+            int[] map = new int[dc.getDictionarySize()];
+            for (int i = 0; i < map.length; i++)
+                map[i] = encode(dc.decodeCode(i), codes, dictionary);
+            for (int i = 0; i < rows; i++)
+                out.writeInt(map[dc.getCode(i)]);
+        } else {
+            for (int i = 0; i < rows; i++)
+                out.writeInt(encode(col.getString(i), codes, dictionary));
+        }
+
+        cs.dictionaryOffset = counter.getByteCount();
+        cs.dictionarySize = dictionary.size();
+        for (String s : dictionary) {
+            if (s == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        cs.dictionaryBytes = counter.getByteCount() - cs.dictionaryOffset;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table;
+
+import org.hillview.table.api.BlockMatch;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+
+/**
+ * Statistics of the values of a column in a block of consecutive rows, as stored
+ * by columnar file formats (ORC stripes, Parquet row groups).  The bounds are
+ * conservative: every value v in the block that is not missing satisfies
+ * min <= v <= max, but the bounds themselves need not appear in the block.
+ */
+public class BlockColumnStatistics implements Serializable {
+    static final long serialVersionUID = 1;
+
+    /**
+     * Bounds of numeric values (including dates, as their double representation).
+     */
+    public final double min;
+    public final double max;
+    /**
+     * Bounds of string values; null for numeric columns.
+     */
+    @Nullable
+    public final String minString;
+    @Nullable
+    public final String maxString;
+    /**
+     * True if the block may contain missing values.
+     */
+    public final boolean hasMissing;
+    /**
+     * True if all values in the block are missing; then the bounds are meaningless.
+     */
+    public final boolean allMissing;
+    /**
+     * True if the block may contain NaN values, which are not reflected in the bounds.
+     */
+    public final boolean mayHaveNaN;
+
+    private BlockColumnStatistics(double min, double max,
+                                  @Nullable String minString, @Nullable String maxString,
+                                  boolean hasMissing, boolean allMissing, boolean mayHaveNaN) {
+        this.min = min;
+        this.max = max;
+        this.minString = minString;
+        this.maxString = maxString;
+        this.hasMissing = hasMissing;
+        this.allMissing = allMissing;
+        this.mayHaveNaN = mayHaveNaN;
+    }
+
+    public static BlockColumnStatistics numeric(double min, double max,
+                                                boolean hasMissing, boolean mayHaveNaN) {
+        return new BlockColumnStatistics(min, max, null, null, hasMissing, false, mayHaveNaN);
+    }
+
+    /**
+     * Statistics of a string column.  The file formats compare strings as UTF-8 bytes,
+     * which matches the order of String.compareTo only for bounds without surrogates
+     * or characters above them; for other bounds this returns null.
+     */
+    @Nullable
+    public static BlockColumnStatistics strings(String min, String max, boolean hasMissing) {
+        if (!isBelowSurrogates(min) || !isBelowSurrogates(max))
+            return null;
+        return new BlockColumnStatistics(0, 0, min, max, hasMissing, false, false);
+    }
+
+    public static BlockColumnStatistics missing() {
+        return new BlockColumnStatistics(0, 0, null, null, true, true, false);
+    }
+
+    private static boolean isBelowSurrogates(String s) {
+        for (int i = 0; i < s.length(); i++)
+            if (s.charAt(i) >= Character.MIN_SURROGATE)
+                return false;
+        return true;
+    }
+
+    /**
+     * Combines the decisions of a filter about the values and about the missing
+     * values of the block.
+     * @param noValueMatches   True if no value within the bounds is accepted.
+     * @param allValuesMatch   True if all values within the bounds are accepted.
+     * @param missingMatches   True if missing values are accepted.
+     */
+    public BlockMatch match(boolean noValueMatches, boolean allValuesMatch, boolean missingMatches) {
+        if (this.allMissing)
+            return missingMatches ? BlockMatch.All : BlockMatch.None;
+        if (this.mayHaveNaN)
+            // NaN values are outside of all ranges
+            allValuesMatch = false;
+        if (noValueMatches && (!this.hasMissing || !missingMatches))
+            return BlockMatch.None;
+        if (allValuesMatch && (!this.hasMissing || missingMatches))
+            return BlockMatch.All;
+        return BlockMatch.Some;
+    }
+}
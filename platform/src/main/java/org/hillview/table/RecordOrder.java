@@ -21,19 +21,23 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntArrays;
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.hillview.sketches.results.ColumnSortOrientation;
+import org.hillview.table.api.ContentsKind;
 import org.hillview.table.api.IColumn;
 import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.ITable;
 import org.hillview.table.api.IndexComparator;
+import org.hillview.table.rows.BaseRowSnapshot;
 import org.hillview.table.rows.RowSnapshot;
 import org.hillview.table.rows.VirtualRowSnapshot;
 import org.hillview.utils.Converters;
 import org.hillview.utils.Linq;
 
+import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.IntUnaryOperator;
 
 /**
  * This class specifies an ordering over all records that share a particular schema. These could be
@@ -87,6 +91,20 @@ public class RecordOrder implements Serializable {
         return this.sortOrientationList.get(index);
     }
 
+    @Override
+    public boolean equals(@Nullable final Object o) {
+        if (this == o) return true;
+        if ((o == null) || (getClass() != o.getClass())) return false;
+
+        final RecordOrder that = (RecordOrder) o;
+        return this.sortOrientationList.equals(that.sortOrientationList);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.sortOrientationList.hashCode();
+    }
+
     /**
      * Returns an IndexComparator for rows in a Table, based on the sort order.
      * The table and the RecordOrder need to be compatible.
@@ -110,6 +128,80 @@ public class RecordOrder implements Serializable {
         return new ListComparator(comparatorList);
     }
 
+    /**
+     * Compare the value of a column of a row snapshot with the
+     * rows of a column; same convention as BaseRowSnapshot.compareTo.
+     */
+    private static IntUnaryOperator compareColumn(
+            BaseRowSnapshot row, IColumn col, String name, ContentsKind kind) {
+        if (row.isMissing(name))
+            return i -> col.isMissing(i) ? 0 : 1;
+        switch (kind) {
+            case None:
+                return i -> col.isMissing(i) ? -1 : 0;
+            case String:
+            case Json: {
+                String value = Converters.checkNull(row.getString(name));
+                return i -> col.isMissing(i) ? -1 :
+                        value.compareTo(Converters.checkNull(col.getString(i)));
+            }
+            case Integer: {
+                int value = row.getInt(name);
+                return i -> col.isMissing(i) ? -1 : Integer.compare(value, col.getInt(i));
+            }
+            case Time:
+            case Date:
+            case Double:
+            case Duration:
+            case LocalDate: {
+                double value = row.getDouble(name);
+                return i -> col.isMissing(i) ? -1 : Double.compare(value, col.getDouble(i));
+            }
+            case Interval: {
+                double start = row.getEndpoint(name, true);
+                double end = row.getEndpoint(name, false);
+                return i -> {
+                    if (col.isMissing(i))
+                        return -1;
+                    int c = Double.compare(start, col.getEndpoint(i, true));
+                    if (c == 0)
+                        c = Double.compare(end, col.getEndpoint(i, false));
+                    return c;
+                };
+            }
+            default:
+                throw new RuntimeException("Unexpected kind " + kind);
+        }
+    }
+
+    /**
+     * Returns a function that compares a fixed row with the rows of a table.
+     * The result for row index i is the same as row.compareTo(snapshot of row i, this),
+     * but the columns are resolved and the values of the fixed row are unpacked only once.
+     * @param row   Row that is compared; must contain all columns in this order.
+     * @param table Table containing the rows compared.
+     */
+    public IntUnaryOperator getTopRowComparator(BaseRowSnapshot row, ITable table) {
+        List<IColumn> cols = table.getLoadedColumns(Linq.map(this.sortOrientationList,
+                ordCol -> ordCol.columnDescription.name));
+        final IntUnaryOperator[] comparators = new IntUnaryOperator[this.sortOrientationList.size()];
+        final boolean[] ascending = new boolean[comparators.length];
+        for (int i = 0; i < comparators.length; i++) {
+            ColumnSortOrientation ordCol = this.sortOrientationList.get(i);
+            comparators[i] = compareColumn(row, Converters.checkNull(cols.get(i)),
+                    ordCol.columnDescription.name, ordCol.columnDescription.kind);
+            ascending[i] = ordCol.isAscending;
+        }
+        return index -> {
+            for (int i = 0; i < comparators.length; i++) {
+                int c = comparators[i].applyAsInt(index);
+                if (c != 0)
+                    return ascending[i] ? c : -c;
+            }
+            return 0;
+        };
+    }
+
     public Comparator<RowSnapshot> getRowComparator() {
         return (o1, o2) -> o1.compareTo(o2, RecordOrder.this);
     }
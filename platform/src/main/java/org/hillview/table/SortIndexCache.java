@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.hillview.table.api.ITable;
+import org.hillview.table.rows.RowSnapshot;
+import org.hillview.utils.HillviewLogger;
+
+import javax.annotation.Nullable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Caches, for each table and RecordOrder, the rows of the table sorted in that order.
+ * Tables are immutable, so an index stays valid as long as the table is alive.
+ * The cache holds only weak references to the tables; the indexes of tables
+ * that have been garbage-collected are removed on the next access.  The total
+ * size of the cached indexes is bounded, and the least recently used indexes
+ * are evicted first.
+ * This is used to answer repeated NextK queries (e.g., scrolling through a spreadsheet)
+ * without scanning the whole table.
+ */
+public class SortIndexCache {
+    /**
+     * Tables with fewer rows are never indexed: scanning them is cheap.
+     */
+    public static final int MIN_INDEXED_ROWS = 10000;
+    /**
+     * Fraction of the maximum heap that can be used by the cached indexes.
+     */
+    private static final int HEAP_FRACTION = 16;
+    private static final int EXPIRE_TIME_IN_HOURS = 2;
+
+    /**
+     * Receives the references of the keys whose tables have been collected.
+     */
+    private static final ReferenceQueue<ITable> collected = new ReferenceQueue<ITable>();
+
+    private static final class TableReference extends WeakReference<ITable> {
+        /**
+         * Key holding this reference; set when the key is created.
+         */
+        @Nullable
+        IndexKey key;
+
+        TableReference(ITable table) {
+            super(table, collected);
+        }
+    }
+
+    private static final class IndexKey {
+        private final TableReference table;
+        private final int tableHash;
+        private final RecordOrder order;
+
+        IndexKey(ITable table, RecordOrder order) {
+            this.table = new TableReference(table);
+            this.table.key = this;
+            this.tableHash = System.identityHashCode(table);
+            this.order = order;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if ((o == null) || (getClass() != o.getClass())) return false;
+            IndexKey that = (IndexKey)o;
+            ITable t = this.table.get();
+            // Keys of collected tables are only equal to themselves.
+            return t != null && t == that.table.get() && this.order.equals(that.order);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.tableHash + this.order.hashCode();
+        }
+    }
+
+    private static final Cache<IndexKey, int[]> indexes = CacheBuilder.newBuilder()
+            .maximumWeight(Runtime.getRuntime().maxMemory() / HEAP_FRACTION)
+            .weigher((IndexKey k, int[] v) -> (int)Math.min(Integer.MAX_VALUE, 4L * v.length))
+            .expireAfterAccess(EXPIRE_TIME_IN_HOURS, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * Returns the rows of the table sorted in the specified order.
+     * The index is computed the first time it is requested and cached afterwards.
+     * The returned array must not be modified.
+     */
+    public static int[] getSortedRows(ITable table, RecordOrder order) {
+        removeCollected();
+        try {
+            return indexes.get(new IndexKey(table, order), () -> {
+                HillviewLogger.instance.info("Building sort index", "{0} rows", table.getNumOfRows());
+                return order.getSortedRowOrder(table, table.getMembershipSet());
+            });
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Removes the indexes of the tables that have been garbage-collected.
+     */
+    private static void removeCollected() {
+        Reference<? extends ITable> ref;
+        while ((ref = collected.poll()) != null) {
+            IndexKey key = ((TableReference)ref).key;
+            if (key != null)
+                indexes.invalidate(key);
+        }
+    }
+
+    /**
+     * Number of indexes in the cache.
+     */
+    public static long size() {
+        removeCollected();
+        indexes.cleanUp();
+        return indexes.size();
+    }
+
+    /**
+     * Returns the first position in a sorted index that holds a row
+     * greater than or equal to topRow.  This is also the number of rows
+     * that precede topRow.
+     * @param table      Table that was indexed.
+     * @param order      Order used for sorting.
+     * @param sortedRows Index produced by getSortedRows.
+     * @param topRow     Row to search for.
+     */
+    public static int lowerBound(ITable table, RecordOrder order, int[] sortedRows, RowSnapshot topRow) {
+        IntUnaryOperator compare = order.getTopRowComparator(topRow, table);
+        int low = 0;
+        int high = sortedRows.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare.applyAsInt(sortedRows[mid]) <= 0)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    public static void purge() {
+        indexes.invalidateAll();
+    }
+}
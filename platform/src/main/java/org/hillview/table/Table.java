@@ -51,6 +51,12 @@ public class Table extends BaseTable {
      */
     @Nullable
     private final String sourceFile;
+    /**
+     * If the table was loaded from a columnar file, the blocks of rows of the file
+     * and their statistics.
+     */
+    @Nullable
+    private final TableBlocks blocks;
 
     /**
      * Create an empty table with the specified schema.
@@ -61,6 +67,7 @@ public class Table extends BaseTable {
         this.schema = schema;
         this.columnLoader = null;
         this.sourceFile = null;
+        this.blocks = null;
         this.members = new FullMembershipSet(0);
     }
 
@@ -81,11 +88,27 @@ public class Table extends BaseTable {
         this.schema = schema;
         this.columnLoader = loader;
         this.sourceFile = sourceFile;
+        this.blocks = null;
     }
 
     public <C extends IColumn> Table(final List<C> columns, final IMembershipSet members,
                                      @Nullable final String sourceFile,
                                      @Nullable final IColumnLoader loader) {
+        this(columns, members, sourceFile, loader, null);
+    }
+
+    /**
+     * Create a table from raw ingredients.
+     * @param columns  Columns in the table.
+     * @param members  Membership set (rows in the table).
+     * @param sourceFile  The file where the data is loaded from.
+     * @param loader   Loader that knows how to load column data.
+     * @param blocks   Blocks of rows of the source file and their statistics.
+     */
+    public <C extends IColumn> Table(final List<C> columns, final IMembershipSet members,
+                                     @Nullable final String sourceFile,
+                                     @Nullable final IColumnLoader loader,
+                                     @Nullable final TableBlocks blocks) {
         super(columns);
         int size = members.getMax();
         final Schema s = new Schema();
@@ -96,10 +119,14 @@ public class Table extends BaseTable {
                         "(" + c.sizeInRows() + ") do not have the same size");
             s.append(c.getDescription());
         }
+        if (blocks != null && blocks.getRowCount() != size)
+            throw new IllegalArgumentException("Blocks (" + blocks.getRowCount() +
+                    ") and membership set (" + size + ") do not have the same size");
         this.schema = s;
         this.sourceFile = sourceFile;
         this.members = members;
         this.columnLoader = loader;
+        this.blocks = blocks;
     }
 
     public <C extends IColumn> Table(final C[] columns,
@@ -125,8 +152,22 @@ public class Table extends BaseTable {
      */
     public static Table createLazyTable(List<ColumnDescription> desc, int rowCount,
                                         @Nullable String sourceFile, IColumnLoader loader) {
+        return createLazyTable(desc, rowCount, sourceFile, loader, null);
+    }
+
+    /**
+     * Creates a table where all columns are lazy.
+     * @param desc    A collection column descriptions.
+     * @param loader  Loader that knows how to load a column.
+     * @param rowCount Number of rows of the table.
+     * @param sourceFile  File where this data was loaded from.
+     * @param blocks  Blocks of rows of the file and their statistics.
+     */
+    public static Table createLazyTable(List<ColumnDescription> desc, int rowCount,
+                                        @Nullable String sourceFile, IColumnLoader loader,
+                                        @Nullable TableBlocks blocks) {
         List<LazyColumn> cols = Linq.map(desc, d -> new LazyColumn(d, rowCount, loader));
-        return new Table(cols, sourceFile, loader);
+        return new Table(cols, new FullMembershipSet(rowCount), sourceFile, loader, blocks);
     }
 
 
@@ -138,7 +179,7 @@ public class Table extends BaseTable {
     @Override
     public ITable project(Schema schema) {
         List<IColumn> cols = this.getColumns(schema);
-        return new Table(cols, this.members, this.sourceFile, this.columnLoader);
+        return new Table(cols, this.members, this.sourceFile, this.columnLoader, this.blocks);
     }
 
     /**
@@ -152,17 +193,29 @@ public class Table extends BaseTable {
                 this.sourceFile, this.columnLoader);
     }
 
+    /**
+     * Loads all the requested columns that are not loaded.  All the lazy columns
+     * are loaded together, with a single request to their loader; lazy columns
+     * that are concurrently loaded by another table sharing them are not loaded twice.
+     */
     @Override
     synchronized public List<IColumn> getLoadedColumns(List<String> columns) {
+        List<LazyColumn> lazy = new ArrayList<LazyColumn>();
         List<String> toLoad = new ArrayList<String>();
         List<IColumn> result = new ArrayList<IColumn>(columns.size());
         for (String name : columns) {
             IColumn col = this.columns.get(name);
             if (col == null)
                 throw new RuntimeException("No column named '" + name + "'");
-            if (!col.isLoaded())
+            if (col.isLoaded())
+                continue;
+            if (col instanceof LazyColumn)
+                lazy.add((LazyColumn)col);
+            else
                 toLoad.add(name);
         }
+        if (!lazy.isEmpty())
+            LazyColumn.loadAll(lazy);
         if (!toLoad.isEmpty()) {
             if (this.columnLoader == null)
                 throw new RuntimeException("Cannot load columns dynamically");
@@ -174,6 +227,12 @@ public class Table extends BaseTable {
             IColumn col = this.columns.get(name);
             if (col == null)
                 throw new RuntimeException("Cannot get column " + name);
+            if (col instanceof LazyColumn) {
+                // Hand out the loaded column, so that callers do not go
+                // through the lazy column for each cell.
+                col = ((LazyColumn)col).getLoadedColumn();
+                this.columns.put(name, col);
+            }
             result.add(col);
         }
         return result;
@@ -185,6 +244,12 @@ public class Table extends BaseTable {
         return this.sourceFile;
     }
 
+    @Nullable
+    @Override
+    public TableBlocks getBlocks() {
+        return this.blocks;
+    }
+
     @Override
     public Schema getSchema() {
         return this.schema;
@@ -212,7 +277,8 @@ public class Table extends BaseTable {
      */
     @Override
     public ITable selectRowsFromFullTable(IMembershipSet set) {
-        return new Table(this.getColumns(), set, this.sourceFile, this.columnLoader);
+        return new Table(this.getColumns(), set, this.sourceFile,
+                this.columnLoader, this.blocks);
     }
 
     /**
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Describes how the rows of a table loaded from a columnar file are split into
+ * blocks of consecutive rows (ORC stripes or Parquet row groups), together with
+ * the statistics of the columns in each block.  Filters can use the statistics to
+ * reject or accept whole blocks without reading the column data.
+ */
+public class TableBlocks implements Serializable {
+    static final long serialVersionUID = 1;
+
+    /**
+     * Block i holds the rows between blockStart[i] (inclusive) and blockStart[i+1].
+     */
+    private final int[] blockStart;
+    /**
+     * For each column the statistics of each block; entries may be null if a
+     * block has no statistics.
+     */
+    private final HashMap<String, BlockColumnStatistics[]> statistics;
+
+    /**
+     * Creates a block description.
+     * @param blockRows  Number of rows in each block.
+     */
+    public TableBlocks(int[] blockRows) {
+        this.blockStart = new int[blockRows.length + 1];
+        for (int i = 0; i < blockRows.length; i++)
+            this.blockStart[i + 1] = this.blockStart[i] + blockRows[i];
+        this.statistics = new HashMap<String, BlockColumnStatistics[]>();
+    }
+
+    public int getBlockCount() {
+        return this.blockStart.length - 1;
+    }
+
+    /**
+     * Total number of rows in all blocks.
+     */
+    public int getRowCount() {
+        return this.blockStart[this.blockStart.length - 1];
+    }
+
+    public int getStart(int block) {
+        return this.blockStart[block];
+    }
+
+    public int getEnd(int block) {
+        return this.blockStart[block + 1];
+    }
+
+    public void setStatistics(String column, int block, @Nullable BlockColumnStatistics stats) {
+        BlockColumnStatistics[] stat = this.statistics.computeIfAbsent(
+                column, c -> new BlockColumnStatistics[this.getBlockCount()]);
+        stat[block] = stats;
+    }
+
+    /**
+     * The statistics of a column in a block, or null if they are not known.
+     */
+    @Nullable
+    public BlockColumnStatistics getStatistics(String column, int block) {
+        BlockColumnStatistics[] stat = this.statistics.get(column);
+        if (stat == null)
+            return null;
+        return stat[block];
+    }
+}
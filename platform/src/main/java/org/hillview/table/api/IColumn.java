@@ -26,6 +26,7 @@ import org.hillview.utils.ICast;
 
 import javax.annotation.Nullable;
 import java.io.Serializable;
+import java.util.function.DoubleToIntFunction;
 import java.util.function.Function;
 
 /**
@@ -136,6 +137,32 @@ public interface IColumn extends Serializable, ICast {
      */
     double asDouble(int rowIndex);
 
+    /**
+     * Batch version of asDouble: for each i between from (inclusive) and to (exclusive)
+     * sets result[i - from] = f(asDouble(rows[i])).  None of the rows can be missing.
+     * Columns backed by arrays override this with a tight loop over their data.
+     * @param rows    Row indexes.
+     * @param from    First position in rows.
+     * @param to      Last position in rows (exclusive).
+     * @param f       Function applied to each value.
+     * @param result  Array receiving the results; must have at least to - from elements.
+     */
+    default void mapDoubles(int[] rows, int from, int to, DoubleToIntFunction f, int[] result) {
+        for (int i = from; i < to; i++)
+            result[i - from] = f.applyAsInt(this.asDouble(rows[i]));
+    }
+
+    /**
+     * @return True if any row between start (inclusive) and end (exclusive) is missing.
+     * Columns that keep a bitmap of missing values override this to check whole words at once.
+     */
+    default boolean anyMissing(int start, int end) {
+        for (int i = start; i < end; i++)
+            if (this.isMissing(i))
+                return true;
+        return false;
+    }
+
     // Returns null only if the object is missing.
     @Nullable
     String asString(int rowIndex);
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.api;
+
+import javax.annotation.Nullable;
+
+/**
+ * A string column that can store its values as small integer codes
+ * indexing a dictionary of distinct values.  Algorithms can then do their
+ * work once per distinct value instead of once per row.
+ */
+public interface IDictionaryColumn extends IStringColumn {
+    /**
+     * True if the column currently uses a dictionary.  If this is false
+     * none of the other methods in this interface can be used.
+     */
+    boolean hasDictionary();
+
+    /**
+     * Number of entries in the dictionary; codes are between 0 and this value (exclusive).
+     */
+    int getDictionarySize();
+
+    /**
+     * The value with the specified code; null stands for a missing value.
+     */
+    @Nullable
+    String decodeCode(int code);
+
+    /**
+     * The code of the value in the specified row.
+     */
+    int getCode(int rowIndex);
+
+    /**
+     * The hash code of each dictionary entry, indexed by code; each is equal to the
+     * result of hashCode64 with LongHashFunction.xx(seed) on a row holding that entry
+     * (missing values hash to MISSING_HASH_VALUE).  The result is cached and must not be modified.
+     */
+    long[] getCodeHashes(long seed);
+
+    /**
+     * For each i between from (inclusive) and to (exclusive)
+     * sets result[i - from] = table[getCode(rows[i])].
+     * @param rows   Row indexes.
+     * @param from   First position in rows.
+     * @param to     Last position in rows (exclusive).
+     * @param table  A value for each code in the dictionary.
+     * @param result Array receiving the results; must have at least to - from elements.
+     */
+    default void mapCodes(int[] rows, int from, int to, int[] table, int[] result) {
+        for (int i = from; i < to; i++)
+            result[i - from] = table[this.getCode(rows[i])];
+    }
+}
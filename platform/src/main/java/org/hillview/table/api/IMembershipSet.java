@@ -40,6 +40,29 @@ public interface IMembershipSet extends IRowOrder {
      */
     boolean isMember(int rowIndex);
 
+    /**
+     * Returns an iterator over the rows of this set that are in the range [start, end).
+     * The default implementation probes every row in the range, so it is efficient only
+     * when the set is not sparse.
+     * @param start  First row index in the range.
+     * @param end    First row index after the range.
+     */
+    default IRowIterator getIterator(final int start, final int end) {
+        return new IRowIterator() {
+            private int current = start - 1;
+
+            @Override
+            public int getNextRow() {
+                while (++this.current < end) {
+                    if (IMembershipSet.this.isMember(this.current))
+                        return this.current;
+                }
+                this.current = end;
+                return -1;
+            }
+        };
+    }
+
     /**
      * Return a membership containing only the rows in the current one where
      * the predicate evaluates to true.
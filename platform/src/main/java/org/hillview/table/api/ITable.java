@@ -21,6 +21,7 @@ import org.hillview.sketches.results.ColumnSortOrientation;
 import org.hillview.table.RecordOrder;
 import org.hillview.table.Schema;
 import org.hillview.table.SmallTable;
+import org.hillview.table.TableBlocks;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
@@ -40,6 +41,13 @@ public interface ITable {
     @Nullable
     String getSourceFile();
 
+    /**
+     * The blocks of rows of the columnar file this table was loaded from,
+     * with their column statistics; null if they are not known.
+     */
+    @Nullable
+    default TableBlocks getBlocks() { return null; }
+
     /**
      * The schema of the table, describing the set of columns.
      */
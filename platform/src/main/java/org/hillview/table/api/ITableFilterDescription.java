@@ -18,6 +18,7 @@
 package org.hillview.table.api;
 
 import org.hillview.dataset.api.IJson;
+import org.hillview.table.TableBlocks;
 
 /**
  * Describes a filter that is applied to each row of a table.
@@ -29,4 +30,14 @@ public interface ITableFilterDescription extends IJson {
      * @return       A new filter, customized for this table.
      */
     ITableFilter getFilter(ITable table);
+
+    /**
+     * Decides from the statistics of a block of rows, without reading the column data,
+     * whether the filter accepts none, all, or only some of the rows of the block.
+     * @param blocks  Blocks of the table and their statistics.
+     * @param block   Index of the block.
+     */
+    default BlockMatch matchBlock(TableBlocks blocks, int block) {
+        return BlockMatch.Some;
+    }
 }
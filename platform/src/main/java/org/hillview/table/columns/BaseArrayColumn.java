@@ -51,6 +51,18 @@ public abstract class BaseArrayColumn extends BaseColumn {
         return this.missing.get(rowIndex);
     }
 
+    public boolean anyMissing(int start, int end) {
+        if (this.missing == null) {
+            // Object columns represent missing values differently.
+            for (int i = start; i < end; i++)
+                if (this.isMissing(i))
+                    return true;
+            return false;
+        }
+        int next = this.missing.nextSetBit(start);
+        return next >= 0 && next < end;
+    }
+
     public void setMissing(final int rowIndex) {
         assert this.missing != null;
         this.missing.set(rowIndex);
@@ -69,6 +69,29 @@ public abstract class BaseListColumn extends BaseColumn implements IAppendableCo
         return this.missing.get(segmentId).get(localIndex);
     }
 
+    @Override
+    public boolean anyMissing(int start, int end) {
+        if (start >= end)
+            return false;
+        if (this.missing == null) {
+            // Object columns represent missing values differently.
+            for (int i = start; i < end; i++)
+                if (this.isMissing(i))
+                    return true;
+            return false;
+        }
+        final int firstSegment = start >> LogSegmentSize;
+        final int lastSegment = (end - 1) >> LogSegmentSize;
+        for (int segmentId = firstSegment; segmentId <= lastSegment; segmentId++) {
+            int localStart = segmentId == firstSegment ? start & SegmentMask : 0;
+            int localEnd = segmentId == lastSegment ? ((end - 1) & SegmentMask) + 1 : SegmentSize;
+            int next = this.missing.get(segmentId).nextSetBit(localStart);
+            if (next >= 0 && next < localEnd)
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public void appendMissing() {
         assert this.missing != null;
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+
+import javax.annotation.Nullable;
+import java.nio.LongBuffer;
+
+/**
+ * Base class for read-only columns whose data is stored in a memory-mapped file.
+ * The buffers are only accessed by absolute position, so the columns can be read
+ * concurrently.  The buffers are not serializable; these columns are serialized
+ * as the equivalent array columns.
+ */
+public abstract class BaseMappedColumn extends BaseColumn {
+    static final long serialVersionUID = 1;
+
+    final int size;
+    /**
+     * Missing bit vector, with the same layout as BitSet.toLongArray; null if no value is missing.
+     */
+    @Nullable
+    final transient LongBuffer missing;
+
+    BaseMappedColumn(ColumnDescription description, int size, @Nullable LongBuffer missing) {
+        super(description);
+        this.size = size;
+        this.missing = missing;
+    }
+
+    @Override
+    public boolean isLoaded() { return true; }
+
+    @Override
+    public int sizeInRows() { return this.size; }
+
+    @Override
+    public boolean isMissing(final int rowIndex) {
+        return this.missing != null &&
+                (this.missing.get(rowIndex >>> 6) & (1L << rowIndex)) != 0;
+    }
+
+    @Override
+    public boolean anyMissing(int start, int end) {
+        if (this.missing == null || start >= end)
+            return false;
+        int first = start >>> 6;
+        int last = (end - 1) >>> 6;
+        for (int i = first; i <= last; i++) {
+            long word = this.missing.get(i);
+            if (i == first)
+                word &= -1L << start;
+            if (i == last)
+                word &= -1L >>> -end;
+            if (word != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the missing values of this column into the specified column.
+     */
+    void copyMissing(BaseArrayColumn column) {
+        if (this.missing == null)
+            return;
+        for (int i = this.missing.capacity() - 1; i >= 0; i--) {
+            long word = this.missing.get(i);
+            while (word != 0) {
+                column.setMissing(i * 64 + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+}
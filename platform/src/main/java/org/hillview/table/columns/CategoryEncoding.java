@@ -19,8 +19,12 @@ package org.hillview.table.columns;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.openhft.hashing.LongHashFunction;
+import org.hillview.table.api.IColumn;
 
 import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This class is used to compress categorical data.
@@ -31,6 +35,15 @@ class CategoryEncoding {
     // Decode small integer into categorical value
     private final Int2ObjectOpenHashMap<String> intDecoding;
     private static final int KEY_NOT_FOUND = -1;
+    /**
+     * Number of seeds for which we keep hash codes of the encoded values.
+     */
+    private static final int CACHED_HASH_SEEDS = 4;
+    /**
+     * Hash codes of the encoded values, indexed by code, for recently used seeds.
+     */
+    @Nullable
+    private LinkedHashMap<Long, long[]> hashes;
 
     CategoryEncoding() {
         this.intEncoding = new Object2IntOpenHashMap<String>(100);
@@ -50,8 +63,41 @@ class CategoryEncoding {
         return encoding;
     }
 
-    public void clear() {
+    /**
+     * Number of distinct values encoded; codes are between 0 and this value.
+     */
+    int size() { return this.intEncoding.size(); }
+
+    /**
+     * Returns the hash code of each encoded value, indexed by code, as computed by
+     * IStringColumn.hashCode64 with LongHashFunction.xx(seed).  Null values hash to
+     * IColumn.MISSING_HASH_VALUE.  The result is cached and must not be modified.
+     */
+    synchronized long[] getHashes(long seed) {
+        if (this.hashes == null)
+            this.hashes = new LinkedHashMap<Long, long[]>(CACHED_HASH_SEEDS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+                    return this.size() > CACHED_HASH_SEEDS;
+                }
+            };
+        long[] result = this.hashes.get(seed);
+        int size = this.size();
+        if (result != null && result.length == size)
+            return result;
+        LongHashFunction hash = LongHashFunction.xx(seed);
+        result = new long[size];
+        for (int code = 0; code < size; code++) {
+            String value = this.decode(code);
+            result[code] = value == null ? IColumn.MISSING_HASH_VALUE : hash.hashChars(value);
+        }
+        this.hashes.put(seed, result);
+        return result;
+    }
+
+    public synchronized void clear() {
         this.intEncoding.clear();
         this.intDecoding.clear();
+        this.hashes = null;
     }
 }
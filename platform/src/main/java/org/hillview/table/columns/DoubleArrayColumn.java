@@ -23,6 +23,8 @@ import org.hillview.table.api.IColumn;
 import org.hillview.table.api.IDoubleColumn;
 import org.hillview.table.api.IMutableColumn;
 
+import java.util.function.DoubleToIntFunction;
+
 /**
  * Column of doubles, implemented as an array of doubles and a BitSet of missing values.
  */
@@ -61,6 +63,12 @@ public class DoubleArrayColumn
     @Override
     public double getDouble(final int rowIndex) { return this.data[rowIndex];}
 
+    @Override
+    public void mapDoubles(int[] rows, int from, int to, DoubleToIntFunction f, int[] result) {
+        for (int i = from; i < to; i++)
+            result[i - from] = f.applyAsInt(this.data[rows[i]]);
+    }
+
     @Override
     public void set(final int rowIndex, final double value)
     { this.data[rowIndex] = value; }
@@ -29,6 +29,7 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.function.DoubleToIntFunction;
 
 /**
  * A column of doubles that can grow in size.
@@ -75,6 +76,15 @@ public class DoubleListColumn
         return this.segments.get(segmentId)[localIndex];
     }
 
+    @Override
+    public void mapDoubles(int[] rows, int from, int to, DoubleToIntFunction f, int[] result) {
+        for (int i = from; i < to; i++) {
+            final int row = rows[i];
+            result[i - from] = f.applyAsInt(
+                    this.segments.get(row >> LogSegmentSize)[row & SegmentMask]);
+        }
+    }
+
     @Override
     void grow() {
         this.segments.add(new double[SegmentSize]);
@@ -20,6 +20,8 @@ package org.hillview.table.columns;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.api.*;
 
+import java.util.function.DoubleToIntFunction;
+
 /**
  * Column of integers, implemented as an array of integers and a BitSet of missing values.
  */
@@ -67,6 +69,12 @@ public final class IntArrayColumn
         return this.data[rowIndex];
     }
 
+    @Override
+    public void mapDoubles(int[] rows, int from, int to, DoubleToIntFunction f, int[] result) {
+        for (int i = from; i < to; i++)
+            result[i - from] = f.applyAsInt(this.data[rows[i]]);
+    }
+
     public void set(final int rowIndex, final int value) {
         this.data[rowIndex] = value;
     }
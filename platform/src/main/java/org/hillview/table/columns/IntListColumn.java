@@ -27,6 +27,7 @@ import javax.annotation.Nullable;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.function.DoubleToIntFunction;
 
 /**
  * A column of integers that can grow in size.
@@ -66,6 +67,15 @@ public final class IntListColumn
         return this.segments.get(segmentId)[localIndex];
     }
 
+    @Override
+    public void mapDoubles(int[] rows, int from, int to, DoubleToIntFunction f, int[] result) {
+        for (int i = from; i < to; i++) {
+            final int row = rows[i];
+            result[i - from] = f.applyAsInt(
+                    this.segments.get(row >> LogSegmentSize)[row & SegmentMask]);
+        }
+    }
+
     @Override
     public IColumn rename(String newName) {
         return new IntListColumn(this.description.rename(newName), this.segments,
@@ -20,26 +20,45 @@ package org.hillview.table.columns;
 import net.openhft.hashing.LongHashFunction;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.api.*;
+import org.hillview.utils.Converters;
 import org.hillview.utils.HillviewLogger;
+import org.hillview.utils.Linq;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The contents of a lazy column is loaded lazily.
+ * Loading happens at most once, even when several threads request the data
+ * concurrently; after the data is published through a volatile field reads do
+ * not need to synchronize.  Lazy columns that share a loader can be loaded
+ * together.  Code that accesses many cells should obtain the loaded column
+ * once using getLoadedColumn and use it directly.
  */
 public class LazyColumn extends BaseColumn {
     static final long serialVersionUID = 1;
 
     @Nullable
-    private IColumn data;
+    private volatile IColumn data;
+    /**
+     * Completed when a load in progress finishes; null when no load is in progress.
+     */
+    @Nullable
+    private CompletableFuture<IColumn> pending;
     private final IColumnLoader loader;
     private final int size;
 
     public LazyColumn(final ColumnDescription description, int size, IColumnLoader loader) {
         super(description);
         this.data = null;
+        this.pending = null;
         this.loader = loader;
         this.size = size;
     }
@@ -105,18 +124,120 @@ public class LazyColumn extends BaseColumn {
         return this.ensureLoaded().hashCode64(rowIndex, hash);
     }
 
-    synchronized private IColumn ensureLoaded() {
+    /**
+     * Returns the column that holds the actual data, loading it if necessary.
+     */
+    public IColumn getLoadedColumn() {
+        return this.ensureLoaded();
+    }
+
+    private IColumn ensureLoaded() {
+        // Single volatile read on the fast path.
+        IColumn result = this.data;
+        if (result != null)
+            return result;
+        loadAll(Collections.singletonList(this));
+        return Converters.checkNull(this.data);
+    }
+
+    /**
+     * Claims the loading of this column.  If the column is not loaded and no other
+     * thread is loading it, the column is added to mine, and the caller must then
+     * invoke loaded or failed.
+     * @return The future result of the thread that is loading the column, or null.
+     */
+    @Nullable
+    private synchronized CompletableFuture<IColumn> claim(List<LazyColumn> mine) {
         if (this.data != null)
-            return this.data;
-        HillviewLogger.instance.info("Loading data for lazy column", "{0}", this);
-        List<String> toLoad = new ArrayList<String>();
-        toLoad.add(this.getName());
-        List<? extends IColumn> loaded = this.loader.loadColumns(toLoad);
-        if (loaded.size() != 1)
-            throw new RuntimeException("Expected 1 column to be loaded, not " + loaded.size());
-        this.setData(loaded.get(0));
-        assert this.data != null;
-        return this.data;
+            return null;
+        if (this.pending != null)
+            return this.pending;
+        this.pending = new CompletableFuture<IColumn>();
+        mine.add(this);
+        return null;
+    }
+
+    private void loaded(IColumn data) {
+        CompletableFuture<IColumn> pending;
+        synchronized (this) {
+            this.data = data;
+            pending = this.pending;
+            this.pending = null;
+        }
+        if (pending != null)
+            pending.complete(data);
+    }
+
+    /**
+     * Does nothing if the column has been loaded already.
+     */
+    private void failed(Throwable ex) {
+        CompletableFuture<IColumn> pending;
+        synchronized (this) {
+            pending = this.pending;
+            this.pending = null;
+        }
+        if (pending != null)
+            pending.completeExceptionally(ex);
+    }
+
+    /**
+     * Loads the data of all the specified lazy columns.  The columns that share
+     * a loader are loaded with a single request to the loader.  Columns that are
+     * concurrently being loaded by another thread are not loaded again; this waits
+     * for the other thread to complete.
+     */
+    public static void loadAll(List<LazyColumn> columns) {
+        List<LazyColumn> mine = new ArrayList<LazyColumn>();
+        List<CompletableFuture<IColumn>> loading = new ArrayList<CompletableFuture<IColumn>>();
+        for (LazyColumn c : columns) {
+            if (c.isLoaded())
+                continue;
+            CompletableFuture<IColumn> other = c.claim(mine);
+            if (other != null)
+                loading.add(other);
+        }
+        Map<IColumnLoader, List<LazyColumn>> toLoad =
+                new IdentityHashMap<IColumnLoader, List<LazyColumn>>();
+        for (LazyColumn c : mine)
+            toLoad.computeIfAbsent(c.loader, l -> new ArrayList<LazyColumn>()).add(c);
+
+        Throwable failure = null;
+        for (Map.Entry<IColumnLoader, List<LazyColumn>> e : toLoad.entrySet()) {
+            List<LazyColumn> cols = e.getValue();
+            List<String> names = Linq.map(cols, IColumn::getName);
+            HillviewLogger.instance.info("Loading data for lazy columns", "{0}", names);
+            try {
+                // Loaders do not necessarily return the columns in the requested order.
+                Map<String, IColumn> loaded = new HashMap<String, IColumn>();
+                for (IColumn c : e.getKey().loadColumns(names))
+                    loaded.put(c.getName(), c);
+                for (LazyColumn c : cols) {
+                    IColumn data = loaded.get(c.getName());
+                    if (data == null)
+                        throw new RuntimeException("Column " + c.getName() + " was not loaded");
+                    c.loaded(data);
+                }
+            } catch (Throwable ex) {
+                for (LazyColumn c : cols)
+                    c.failed(ex);
+                if (failure == null)
+                    failure = ex;
+            }
+        }
+        if (failure != null)
+            throw new RuntimeException(failure);
+
+        for (CompletableFuture<IColumn> f : loading) {
+            try {
+                f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
     }
 
     synchronized public void setData(IColumn data) {
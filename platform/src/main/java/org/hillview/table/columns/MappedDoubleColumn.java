@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IDoubleColumn;
+
+import javax.annotation.Nullable;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.function.DoubleToIntFunction;
+
+/**
+ * Column of doubles stored in a memory-mapped file.  Also used for
+ * the kinds that are represented as doubles, such as dates.
+ */
+public final class MappedDoubleColumn extends BaseMappedColumn implements IDoubleColumn {
+    static final long serialVersionUID = 1;
+
+    private final transient DoubleBuffer data;
+
+    public MappedDoubleColumn(ColumnDescription description, DoubleBuffer data,
+                              @Nullable LongBuffer missing) {
+        super(description, data.capacity(), missing);
+        this.data = data;
+    }
+
+    @Override
+    public IColumn rename(String newName) {
+        return new MappedDoubleColumn(this.description.rename(newName), this.data, this.missing);
+    }
+
+    @Override
+    public double getDouble(final int rowIndex) {
+        return this.data.get(rowIndex);
+    }
+
+    @Override
+    public void mapDoubles(int[] rows, int from, int to, DoubleToIntFunction f, int[] result) {
+        for (int i = from; i < to; i++)
+            result[i - from] = f.applyAsInt(this.data.get(rows[i]));
+    }
+
+    private Object writeReplace() {
+        DoubleArrayColumn result = new DoubleArrayColumn(this.description, this.size);
+        for (int i = 0; i < this.size; i++)
+            result.set(i, this.data.get(i));
+        this.copyMissing(result);
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IIntColumn;
+
+import javax.annotation.Nullable;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.function.DoubleToIntFunction;
+
+/**
+ * Column of integers stored in a memory-mapped file.
+ */
+public final class MappedIntColumn extends BaseMappedColumn implements IIntColumn {
+    static final long serialVersionUID = 1;
+
+    private final transient IntBuffer data;
+
+    public MappedIntColumn(ColumnDescription description, IntBuffer data,
+                           @Nullable LongBuffer missing) {
+        super(description, data.capacity(), missing);
+        this.checkKind(ContentsKind.Integer);
+        this.data = data;
+    }
+
+    @Override
+    public IColumn rename(String newName) {
+        return new MappedIntColumn(this.description.rename(newName), this.data, this.missing);
+    }
+
+    @Override
+    public int getInt(final int rowIndex) {
+        return this.data.get(rowIndex);
+    }
+
+    @Override
+    public void mapDoubles(int[] rows, int from, int to, DoubleToIntFunction f, int[] result) {
+        for (int i = from; i < to; i++)
+            result[i - from] = f.applyAsInt(this.data.get(rows[i]));
+    }
+
+    private Object writeReplace() {
+        int[] values = new int[this.size];
+        this.data.duplicate().get(values);
+        IntArrayColumn result = new IntArrayColumn(this.description, values);
+        this.copyMissing(result);
+        return result;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IDictionaryColumn;
+
+import javax.annotation.Nullable;
+import java.nio.IntBuffer;
+
+/**
+ * Column of strings stored in a memory-mapped file as dictionary codes.
+ * The dictionary itself is held in memory; missing values are encoded as
+ * a null dictionary entry.
+ */
+public final class MappedStringColumn extends BaseMappedColumn implements IDictionaryColumn {
+    static final long serialVersionUID = 1;
+
+    private final transient IntBuffer data;
+    private final CategoryEncoding encoding;
+
+    /**
+     * Creates a column.
+     * @param description  Column description; the kind must be a string kind.
+     * @param data         Code of each row.
+     * @param dictionary   Distinct values, indexed by code; may contain null.
+     */
+    public MappedStringColumn(ColumnDescription description, IntBuffer data,
+                              String[] dictionary) {
+        super(description, data.capacity(), null);
+        if (!description.kind.isString())
+            throw new RuntimeException("Unexpected kind for string column: " + description.kind);
+        this.data = data;
+        this.encoding = new CategoryEncoding();
+        for (int i = 0; i < dictionary.length; i++) {
+            int code = this.encoding.encode(dictionary[i]);
+            if (code != i)
+                throw new RuntimeException("Duplicate dictionary value " + dictionary[i]);
+        }
+    }
+
+    private MappedStringColumn(ColumnDescription description, IntBuffer data,
+                               CategoryEncoding encoding) {
+        super(description, data.capacity(), null);
+        this.data = data;
+        this.encoding = encoding;
+    }
+
+    @Override
+    public IColumn rename(String newName) {
+        return new MappedStringColumn(this.description.rename(newName), this.data, this.encoding);
+    }
+
+    @Override
+    public boolean isMissing(final int rowIndex) {
+        return this.getString(rowIndex) == null;
+    }
+
+    @Override
+    public boolean anyMissing(int start, int end) {
+        for (int i = start; i < end; i++)
+            if (this.isMissing(i))
+                return true;
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public Object getObject(int rowIndex) {
+        return this.getString(rowIndex);
+    }
+
+    @Override
+    public String getString(int rowIndex) {
+        return this.encoding.decode(this.data.get(rowIndex));
+    }
+
+    @Override
+    public boolean hasDictionary() { return true; }
+
+    @Override
+    public int getDictionarySize() { return this.encoding.size(); }
+
+    @Nullable
+    @Override
+    public String decodeCode(int code) { return this.encoding.decode(code); }
+
+    @Override
+    public long[] getCodeHashes(long seed) { return this.encoding.getHashes(seed); }
+
+    @Override
+    public int getCode(int rowIndex) { return this.data.get(rowIndex); }
+
+    @Override
+    public void mapCodes(int[] rows, int from, int to, int[] table, int[] result) {
+        for (int i = from; i < to; i++)
+            result[i - from] = table[this.data.get(rows[i])];
+    }
+
+    private Object writeReplace() {
+        StringArrayColumn result = new StringArrayColumn(this.description, this.size);
+        int[] codes = new int[this.encoding.size()];
+        for (int i = 0; i < codes.length; i++)
+            codes[i] = result.encode(this.encoding.decode(i));
+        for (int i = 0; i < this.size; i++)
+            result.setCode(i, codes[this.data.get(i)]);
+        return result;
+    }
+}
@@ -176,6 +176,15 @@ public final class ObjectArrayColumn extends BaseArrayColumn {
     @Override
     public boolean isMissing(final int rowIndex) { return this.data[rowIndex] == null; }
 
+    @Override
+    public boolean anyMissing(int start, int end) {
+        // Missing values are nulls, not bits.
+        for (int i = start; i < end; i++)
+            if (this.data[i] == null)
+                return true;
+        return false;
+    }
+
     @Override
     public void setMissing(final int rowIndex) { this.set(rowIndex, null);}
 
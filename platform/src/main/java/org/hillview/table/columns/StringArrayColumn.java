@@ -23,7 +23,7 @@ import org.hillview.table.api.*;
 import javax.annotation.Nullable;
 
 public class StringArrayColumn extends BaseArrayColumn
-        implements IStringColumn, IMutableColumn {
+        implements IDictionaryColumn, IMutableColumn {
     static final long serialVersionUID = 1;
 
     private final int[] data;
@@ -86,6 +86,45 @@ public class StringArrayColumn extends BaseArrayColumn
         return this.encoding.decode(this.data[rowIndex]);
     }
 
+    /**
+     * Adds a value to the dictionary of this column without storing it in any row.
+     * Not thread-safe.
+     * @return The code of the value, to be used with setCode.
+     */
+    public int encode(@Nullable String value) {
+        return this.encoding.encode(value);
+    }
+
+    /**
+     * Sets the value of a row to the value with the specified code, which
+     * must have been returned by encode.  Rows can be set concurrently.
+     */
+    public void setCode(int rowIndex, int code) {
+        this.data[rowIndex] = code;
+    }
+
+    @Override
+    public boolean hasDictionary() { return true; }
+
+    @Override
+    public int getDictionarySize() { return this.encoding.size(); }
+
+    @Nullable
+    @Override
+    public String decodeCode(int code) { return this.encoding.decode(code); }
+
+    @Override
+    public long[] getCodeHashes(long seed) { return this.encoding.getHashes(seed); }
+
+    @Override
+    public int getCode(int rowIndex) { return this.data[rowIndex]; }
+
+    @Override
+    public void mapCodes(int[] rows, int from, int to, int[] table, int[] result) {
+        for (int i = from; i < to; i++)
+            result[i - from] = table[this.data[rows[i]]];
+    }
+
     @Override
     public int sizeInRows() {
         return this.data.length;
@@ -27,7 +27,7 @@ import java.util.ArrayList;
 /**
  * A column of String values that can grow in size.
  */
-public class StringListColumn extends BaseListColumn implements IStringColumn {
+public class StringListColumn extends BaseListColumn implements IDictionaryColumn {
     static final long serialVersionUID = 1;
     /*
      * We use one of two representations for string columns:
@@ -119,6 +119,30 @@ public class StringListColumn extends BaseListColumn implements IStringColumn {
         }
     }
 
+    @Override
+    public boolean hasDictionary() { return this.isSparse(); }
+
+    @Override
+    public int getDictionarySize() { return this.encoding.size(); }
+
+    @Nullable
+    @Override
+    public String decodeCode(int code) { return this.encoding.decode(code); }
+
+    @Override
+    public long[] getCodeHashes(long seed) { return this.encoding.getHashes(seed); }
+
+    @Override
+    public int getCode(int rowIndex) {
+        assert this.isSparse();
+        int segmentId = rowIndex >> LogSegmentSize;
+        final int localIndex = rowIndex & SegmentMask;
+        if (segmentId < this.firstShortSegment)
+            return Byte.toUnsignedInt(this.byteSegments.get(segmentId)[localIndex]);
+        segmentId = segmentId - this.firstShortSegment;
+        return Short.toUnsignedInt(this.shortSegments.get(segmentId)[localIndex]);
+    }
+
     @Override
     public IColumn seal() { return this; }
 
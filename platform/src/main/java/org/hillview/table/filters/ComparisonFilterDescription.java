@@ -17,7 +17,9 @@
 
 package org.hillview.table.filters;
 
+import org.hillview.table.BlockColumnStatistics;
 import org.hillview.table.ColumnDescription;
+import org.hillview.table.TableBlocks;
 import org.hillview.table.api.*;
 import org.hillview.utils.Converters;
 
@@ -66,6 +68,101 @@ public class ComparisonFilterDescription implements ITableFilterDescription {
         return new ComparisonFilter(table);
     }
 
+    /**
+     * True if the comparison accepts rows where the column value is missing.
+     * This must agree with the comparators of ComparisonFilter.
+     */
+    private boolean missingMatches() {
+        boolean doubleKind = this.column.kind != ContentsKind.Integer &&
+                !this.column.kind.isString();
+        switch (this.comparison) {
+            case "==":
+            case ">=":
+                return false;
+            case "!=":
+            case "<=":
+                return true;
+            case ">":
+                return doubleKind;
+            case "<":
+                return !doubleKind;
+            default:
+                throw new RuntimeException("Unexpected comparison operation " + this.comparison);
+        }
+    }
+
+    @Override
+    public BlockMatch matchBlock(TableBlocks blocks, int block) {
+        BlockColumnStatistics stats = blocks.getStatistics(this.column.name, block);
+        if (stats == null || this.column.kind == ContentsKind.Interval)
+            return BlockMatch.Some;
+        boolean isString = this.column.kind.isString();
+        if ((isString && this.stringValue == null) || (!isString && this.doubleValue == null)) {
+            // Comparisons with null only depend on whether the value is missing.
+            switch (this.comparison) {
+                case "<":
+                case "<=":
+                    return BlockMatch.All;
+                case ">":
+                    return BlockMatch.None;
+                case "==":
+                    return stats.match(true, false, true);
+                default:
+                    return stats.match(false, true, false);
+            }
+        }
+        // Comparison of the constant with the bounds of the block.
+        int cmpMin, cmpMax;
+        if (isString) {
+            if (stats.minString == null || stats.maxString == null)
+                return stats.match(false, false, this.missingMatches());
+            assert this.stringValue != null;
+            cmpMin = Integer.signum(this.stringValue.compareTo(stats.minString));
+            cmpMax = Integer.signum(this.stringValue.compareTo(stats.maxString));
+        } else {
+            if (Double.isNaN(stats.min) || Double.isNaN(stats.max))
+                return stats.match(false, false, this.missingMatches());
+            assert this.doubleValue != null;
+            double c = this.doubleValue;
+            if (this.column.kind == ContentsKind.Integer)
+                c = Converters.toInt(this.doubleValue);
+            cmpMin = c < stats.min ? -1 : (c > stats.min ? 1 : 0);
+            cmpMax = c < stats.max ? -1 : (c > stats.max ? 1 : 0);
+        }
+        // The constant is to the left of the comparison.
+        boolean none, all;
+        switch (this.comparison) {
+            case "==":
+                none = cmpMin < 0 || cmpMax > 0;
+                all = cmpMin == 0 && cmpMax == 0;
+                break;
+            case "!=":
+                // NaN values are different from all constants
+                none = cmpMin == 0 && cmpMax == 0 && !stats.mayHaveNaN;
+                all = cmpMin < 0 || cmpMax > 0;
+                break;
+            case ">":
+                none = cmpMin <= 0;
+                all = cmpMax > 0;
+                break;
+            case "<":
+                none = cmpMax >= 0;
+                all = cmpMin < 0;
+                break;
+            case "<=":
+                none = cmpMax > 0;
+                all = cmpMin <= 0;
+                break;
+            case ">=":
+                none = cmpMin < 0;
+                all = cmpMax >= 0;
+                break;
+            default:
+                throw new RuntimeException("Unexpected comparison operation " + this.comparison);
+        }
+        return stats.match(none, all, this.missingMatches());
+    }
+
     /**
      * This filter maps a given Table to a Table that only contains the given value in the
      * specified column.
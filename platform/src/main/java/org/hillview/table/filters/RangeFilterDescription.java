@@ -17,7 +17,9 @@
 
 package org.hillview.table.filters;
 
+import org.hillview.table.BlockColumnStatistics;
 import org.hillview.table.ColumnDescription;
+import org.hillview.table.TableBlocks;
 import org.hillview.table.api.*;
 import org.hillview.table.columns.ColumnQuantization;
 import org.hillview.table.columns.DoubleColumnQuantization;
@@ -48,6 +50,26 @@ public class RangeFilterDescription implements ITableFilterDescription {
             return new DoubleRangeFilter(col);
     }
 
+    @Override
+    public BlockMatch matchBlock(TableBlocks blocks, int block) {
+        BlockColumnStatistics stats = blocks.getStatistics(this.cd.name, block);
+        if (stats == null || this.cd.kind == ContentsKind.Interval)
+            return BlockMatch.Some;
+        boolean none, all;
+        if (this.cd.kind.isString()) {
+            if (stats.minString == null || stats.maxString == null)
+                return stats.match(false, false, this.includeMissing);
+            none = stats.maxString.compareTo(this.minString) < 0 ||
+                    stats.minString.compareTo(this.maxString) > 0;
+            all = stats.minString.compareTo(this.minString) >= 0 &&
+                    stats.maxString.compareTo(this.maxString) <= 0;
+        } else {
+            none = stats.max < this.min || stats.min > this.max;
+            all = this.min <= stats.min && stats.max <= this.max;
+        }
+        return stats.match(none, all, this.includeMissing);
+    }
+
     public class DoubleRangeFilter implements ITableFilter {
         final IColumn column;
 
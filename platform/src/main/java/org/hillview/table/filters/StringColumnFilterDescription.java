@@ -19,6 +19,8 @@ package org.hillview.table.filters;
 
 import org.hillview.table.api.*;
 
+import javax.annotation.Nullable;
+
 public class StringColumnFilterDescription implements ITableFilterDescription {
     static final long serialVersionUID = 1;
 
@@ -49,9 +51,26 @@ public class StringColumnFilterDescription implements ITableFilterDescription {
     public class StringColumnFilter implements ITableFilter {
         private final IColumn column;
         private final IStringFilter stringFilter;
+        /**
+         * For dictionary-encoded columns the filter result for each code;
+         * the filter is then evaluated once per distinct value.
+         */
+        @Nullable
+        private final boolean[] codeMatches;
+
         StringColumnFilter(ITable table) {
             this.stringFilter = StringFilterFactory.getFilter(stringFilterDescription);
             this.column = table.getLoadedColumn(StringColumnFilterDescription.this.colName);
+            boolean[] matches = null;
+            if (this.column instanceof IDictionaryColumn) {
+                IDictionaryColumn dc = (IDictionaryColumn)this.column;
+                if (dc.hasDictionary() && dc.getDictionarySize() <= table.getNumOfRows()) {
+                    matches = new boolean[dc.getDictionarySize()];
+                    for (int code = 0; code < matches.length; code++)
+                        matches[code] = this.stringFilter.test(dc.decodeCode(code));
+                }
+            }
+            this.codeMatches = matches;
         }
 
         /**
@@ -59,6 +78,8 @@ public class StringColumnFilterDescription implements ITableFilterDescription {
          */
         @Override
         public boolean test(int rowIndex) {
+            if (this.codeMatches != null)
+                return this.codeMatches[((IDictionaryColumn)this.column).getCode(rowIndex)];
             return this.stringFilter.test(column.asString(rowIndex));
         }
     }
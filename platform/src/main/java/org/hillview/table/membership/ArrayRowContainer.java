@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.membership;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A container that stores its values in a sorted array.
+ * Used for containers with at most MAX_ARRAY_SIZE values.
+ */
+final class ArrayRowContainer extends RowContainer {
+    private char[] values;
+    private int cardinality;
+
+    ArrayRowContainer() {
+        this.values = new char[4];
+        this.cardinality = 0;
+    }
+
+    private ArrayRowContainer(char[] values, int cardinality) {
+        this.values = values;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * An array container with the contents of the specified container,
+     * which must have at most MAX_ARRAY_SIZE values.
+     */
+    static ArrayRowContainer from(RowContainer container) {
+        if (container instanceof ArrayRowContainer) {
+            ArrayRowContainer array = (ArrayRowContainer)container;
+            if (array.values.length == array.cardinality)
+                return array;
+            return new ArrayRowContainer(
+                    Arrays.copyOf(array.values, array.cardinality), array.cardinality);
+        }
+        int card = container.cardinality();
+        assert card <= MAX_ARRAY_SIZE;
+        char[] values = new char[card];
+        Cursor cursor = container.cursor(0);
+        for (int i = 0; i < card; i++)
+            values[i] = (char)cursor.next();
+        return new ArrayRowContainer(values, card);
+    }
+
+    static ArrayRowContainer merge(ArrayRowContainer left, ArrayRowContainer right) {
+        char[] result = new char[left.cardinality + right.cardinality];
+        int i = 0, j = 0, k = 0;
+        while (i < left.cardinality && j < right.cardinality) {
+            char l = left.values[i];
+            char r = right.values[j];
+            if (l <= r) {
+                result[k++] = l;
+                i++;
+                if (l == r)
+                    j++;
+            } else {
+                result[k++] = r;
+                j++;
+            }
+        }
+        while (i < left.cardinality)
+            result[k++] = left.values[i++];
+        while (j < right.cardinality)
+            result[k++] = right.values[j++];
+        return new ArrayRowContainer(result, k);
+    }
+
+    /**
+     * Returns the values of this container for which other.contains(value) == keep,
+     * or null if there are none.
+     */
+    @Nullable
+    RowContainer filter(RowContainer other, boolean keep) {
+        char[] result = new char[this.cardinality];
+        int k = 0;
+        for (int i = 0; i < this.cardinality; i++) {
+            char v = this.values[i];
+            if (other.contains(v) == keep)
+                result[k++] = v;
+        }
+        if (k == 0)
+            return null;
+        return new ArrayRowContainer(result, k).optimize();
+    }
+
+    /**
+     * Sets or clears in a bitmap the bits corresponding to the values in this container.
+     */
+    void setBits(long[] words, boolean set) {
+        for (int i = 0; i < this.cardinality; i++) {
+            char v = this.values[i];
+            if (set)
+                words[v >>> 6] |= 1L << v;
+            else
+                words[v >>> 6] &= ~(1L << v);
+        }
+    }
+
+    @Override
+    int cardinality() {
+        return this.cardinality;
+    }
+
+    @Override
+    boolean contains(int value) {
+        return Arrays.binarySearch(this.values, 0, this.cardinality, (char)value) >= 0;
+    }
+
+    @Override
+    RowContainer add(int value) {
+        int index;
+        if (this.cardinality == 0 || this.values[this.cardinality - 1] < value) {
+            // Rows are usually added in increasing order.
+            index = this.cardinality;
+        } else {
+            index = Arrays.binarySearch(this.values, 0, this.cardinality, (char)value);
+            if (index >= 0)
+                return this;
+            index = -index - 1;
+        }
+        if (this.cardinality == MAX_ARRAY_SIZE) {
+            BitmapRowContainer bitmap = new BitmapRowContainer(this.getWords(), this.cardinality);
+            return bitmap.add(value);
+        }
+        if (this.cardinality == this.values.length)
+            this.values = Arrays.copyOf(this.values,
+                    Math.min(MAX_ARRAY_SIZE, 2 * this.values.length));
+        System.arraycopy(this.values, index, this.values, index + 1, this.cardinality - index);
+        this.values[index] = (char)value;
+        this.cardinality++;
+        return this;
+    }
+
+    @Override
+    int select(int rank) {
+        return this.values[rank];
+    }
+
+    @Override
+    Cursor cursor(int from) {
+        int start = Arrays.binarySearch(this.values, 0, this.cardinality, (char)from);
+        if (start < 0)
+            start = -start - 1;
+        final int first = start;
+        return new Cursor() {
+            private int index = first;
+
+            @Override
+            public int next() {
+                if (this.index >= ArrayRowContainer.this.cardinality)
+                    return -1;
+                return ArrayRowContainer.this.values[this.index++];
+            }
+        };
+    }
+
+    @Override
+    int runCount() {
+        int runs = 0;
+        for (int i = 0; i < this.cardinality; i++)
+            if (i == 0 || this.values[i] != this.values[i - 1] + 1)
+                runs++;
+        return runs;
+    }
+
+    @Override
+    long[] getWords() {
+        long[] words = new long[BITMAP_WORDS];
+        this.setBits(words, true);
+        return words;
+    }
+}
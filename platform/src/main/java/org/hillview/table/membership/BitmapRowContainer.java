@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.membership;
+
+import javax.annotation.Nullable;
+
+/**
+ * A container that stores its values as a bitmap with one bit for each row in the chunk.
+ */
+final class BitmapRowContainer extends RowContainer {
+    private final long[] words;
+    private int cardinality;
+
+    /**
+     * Creates a bitmap container.
+     * @param words        Bitmap; it becomes owned by the container.
+     * @param cardinality  Number of bits set in the bitmap.
+     */
+    BitmapRowContainer(long[] words, int cardinality) {
+        assert words.length == BITMAP_WORDS;
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * The best container holding the values set in the bitmap,
+     * or null if the bitmap is empty.
+     */
+    @Nullable
+    static RowContainer create(long[] words) {
+        int card = 0;
+        for (long w : words)
+            card += Long.bitCount(w);
+        return new BitmapRowContainer(words, card).optimize();
+    }
+
+    /**
+     * Sets the bits in the range [start, end).
+     */
+    static void setRange(long[] words, int start, int end) {
+        if (start >= end)
+            return;
+        int first = start >>> 6;
+        int last = (end - 1) >>> 6;
+        long firstMask = -1L << start;
+        long lastMask = -1L >>> -end;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int i = first + 1; i < last; i++)
+            words[i] = -1L;
+        words[last] |= lastMask;
+    }
+
+    @Override
+    int cardinality() {
+        return this.cardinality;
+    }
+
+    @Override
+    boolean contains(int value) {
+        return (this.words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    RowContainer add(int value) {
+        long bit = 1L << value;
+        int index = value >>> 6;
+        if ((this.words[index] & bit) == 0) {
+            this.words[index] |= bit;
+            this.cardinality++;
+        }
+        return this;
+    }
+
+    @Override
+    int select(int rank) {
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+            long w = this.words[i];
+            int count = Long.bitCount(w);
+            if (rank < count) {
+                for (int j = 0; j < rank; j++)
+                    w &= w - 1;
+                return i * 64 + Long.numberOfTrailingZeros(w);
+            }
+            rank -= count;
+        }
+        throw new RuntimeException("Rank out of bounds " + rank);
+    }
+
+    @Override
+    Cursor cursor(int from) {
+        return new Cursor() {
+            private int current = from;
+
+            @Override
+            public int next() {
+                if (this.current >= SIZE)
+                    return -1;
+                int index = this.current >>> 6;
+                long w = BitmapRowContainer.this.words[index] & (-1L << this.current);
+                while (w == 0) {
+                    if (++index == BITMAP_WORDS) {
+                        this.current = SIZE;
+                        return -1;
+                    }
+                    w = BitmapRowContainer.this.words[index];
+                }
+                int result = index * 64 + Long.numberOfTrailingZeros(w);
+                this.current = result + 1;
+                return result;
+            }
+        };
+    }
+
+    @Override
+    int runCount() {
+        int runs = 0;
+        long previous = 0;
+        for (long w : this.words) {
+            // A run starts at each set bit whose predecessor is not set.
+            runs += Long.bitCount(w & ~((w << 1) | (previous >>> 63)));
+            previous = w;
+        }
+        return runs;
+    }
+
+    @Override
+    long[] getWords() {
+        return this.words;
+    }
+}
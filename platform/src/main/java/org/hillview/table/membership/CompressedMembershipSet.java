@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.membership;
+
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.IMutableMembershipSet;
+import org.hillview.table.api.IRowIterator;
+import org.hillview.table.api.ISampledRowIterator;
+import org.hillview.utils.Randomness;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A compressed membership set, organized like a Roaring bitmap.  The rows are split
+ * into chunks of 2^16 consecutive rows, and the members of each chunk are stored in a
+ * container: a sorted array when there are few members, a bitmap when there are many,
+ * or a list of runs when the members are mostly consecutive.  Set operations between
+ * two compressed sets are performed one container at a time, using word-level operations
+ * on bitmaps.  The iterators return the rows in increasing order.
+ * Once sealed a set cannot be modified anymore; sealed sets share containers.
+ */
+public class CompressedMembershipSet implements IMembershipSet, IMutableMembershipSet {
+    /**
+     * Number of consecutive rows held by one container.
+     */
+    public static final int CHUNK_SIZE = RowContainer.SIZE;
+    private final static double samplingThreshold = 0.05;
+    private final static double samplingSizeMinimum = 100; // if size is smaller than this no need to sample
+
+    private final int max;
+    /**
+     * Container for each chunk; null for chunks with no members.
+     */
+    private final RowContainer[] containers;
+    private int size;
+    private boolean sealed;
+
+    public CompressedMembershipSet(int max) {
+        this.max = max;
+        this.containers = new RowContainer[chunkCount(max)];
+        this.size = 0;
+        this.sealed = false;
+    }
+
+    private CompressedMembershipSet(int max, RowContainer[] containers) {
+        this.max = max;
+        this.containers = containers;
+        int size = 0;
+        for (RowContainer c : containers)
+            if (c != null)
+                size += c.cardinality();
+        this.size = size;
+        this.sealed = true;
+    }
+
+    private static int chunkCount(int max) {
+        return (int)(((long)max + RowContainer.MASK) >>> RowContainer.BITS);
+    }
+
+    @Nullable
+    private RowContainer getContainer(int chunk) {
+        if (chunk >= this.containers.length)
+            return null;
+        return this.containers[chunk];
+    }
+
+    @Override
+    public int getMax() {
+        return this.max;
+    }
+
+    @Override
+    public boolean isMember(int rowIndex) {
+        RowContainer container = this.getContainer(rowIndex >>> RowContainer.BITS);
+        return container != null && container.contains(rowIndex & RowContainer.MASK);
+    }
+
+    @Override
+    public void add(int index) {
+        if (this.sealed)
+            throw new RuntimeException("Adding to a sealed membership set");
+        int chunk = index >>> RowContainer.BITS;
+        RowContainer container = this.containers[chunk];
+        int before = 0;
+        if (container == null)
+            container = new ArrayRowContainer();
+        else
+            before = container.cardinality();
+        container = container.add(index & RowContainer.MASK);
+        this.containers[chunk] = container;
+        this.size += container.cardinality() - before;
+    }
+
+    /**
+     * Converts each container to the representation that uses the least memory.
+     */
+    @Override
+    public IMembershipSet seal() {
+        if (!this.sealed) {
+            for (int i = 0; i < this.containers.length; i++)
+                if (this.containers[i] != null)
+                    this.containers[i] = this.containers[i].optimize();
+            this.sealed = true;
+        }
+        return this;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public IRowIterator getIterator() {
+        return new CompressedIterator(0, this.max);
+    }
+
+    @Override
+    public IRowIterator getIterator(int start, int end) {
+        return new CompressedIterator(start, end);
+    }
+
+    @Override
+    public IMembershipSet union(IMembershipSet other) {
+        if (other instanceof FullMembershipSet && other.getMax() == this.max)
+            return other;
+        if (!(other instanceof CompressedMembershipSet))
+            return IMembershipSet.super.union(other);
+        CompressedMembershipSet o = (CompressedMembershipSet)other;
+        RowContainer[] result = new RowContainer[
+                Math.max(this.containers.length, o.containers.length)];
+        for (int i = 0; i < result.length; i++) {
+            RowContainer left = this.getContainer(i);
+            RowContainer right = o.getContainer(i);
+            if (left == null)
+                result[i] = right;
+            else if (right == null)
+                result[i] = left;
+            else
+                result[i] = RowContainer.or(left, right);
+        }
+        return new CompressedMembershipSet(Math.max(this.max, o.max), result);
+    }
+
+    @Override
+    public IMembershipSet intersection(IMembershipSet other) {
+        if (other instanceof FullMembershipSet && other.getMax() == this.max)
+            return this;
+        if (!(other instanceof CompressedMembershipSet))
+            return IMembershipSet.super.intersection(other);
+        CompressedMembershipSet o = (CompressedMembershipSet)other;
+        RowContainer[] result = new RowContainer[this.containers.length];
+        for (int i = 0; i < result.length; i++) {
+            RowContainer left = this.containers[i];
+            RowContainer right = o.getContainer(i);
+            if (left != null && right != null)
+                result[i] = RowContainer.and(left, right);
+        }
+        return new CompressedMembershipSet(this.max, result);
+    }
+
+    @Override
+    public IMembershipSet setMinus(IMembershipSet other) {
+        if (other instanceof FullMembershipSet && other.getMax() == this.max)
+            return new EmptyMembershipSet(this.max);
+        if (!(other instanceof CompressedMembershipSet))
+            return IMembershipSet.super.setMinus(other);
+        CompressedMembershipSet o = (CompressedMembershipSet)other;
+        RowContainer[] result = new RowContainer[this.containers.length];
+        for (int i = 0; i < result.length; i++) {
+            RowContainer left = this.containers[i];
+            RowContainer right = o.getContainer(i);
+            if (left == null || right == null)
+                result[i] = left;
+            else
+                result[i] = RowContainer.andNot(left, right);
+        }
+        return new CompressedMembershipSet(this.max, result);
+    }
+
+    /**
+     * Samples k distinct rows without replacement.
+     */
+    @Override
+    public IMembershipSet sample(int k, long seed) {
+        if (k >= this.size)
+            return this;
+        // Choose the ranks of the sampled rows, then find the rows with these ranks.
+        int[] ranks = new FullMembershipSet(this.size).sample(k, seed).getRows();
+        Arrays.sort(ranks);
+        CompressedMembershipSet result = new CompressedMembershipSet(this.max);
+        if (k * 64L > this.size) {
+            // Many samples: a linear scan is cheaper than selecting each row.
+            IRowIterator it = this.getIterator();
+            int rank = 0;
+            for (int next : ranks) {
+                int row;
+                do {
+                    row = it.getNextRow();
+                } while (rank++ < next);
+                result.add(row);
+            }
+        } else {
+            int chunk = 0;
+            int before = 0;  // number of members in chunks preceding chunk
+            for (int rank : ranks) {
+                while (this.containers[chunk] == null ||
+                        rank >= before + this.containers[chunk].cardinality()) {
+                    if (this.containers[chunk] != null)
+                        before += this.containers[chunk].cardinality();
+                    chunk++;
+                }
+                int value = this.containers[chunk].select(rank - before);
+                result.add((chunk << RowContainer.BITS) | value);
+            }
+        }
+        return result.seal();
+    }
+
+    @Override
+    public ISampledRowIterator getIteratorOverSample(double rate, long seed, boolean enforceRate) {
+        double usedRate;
+        if (enforceRate)
+            usedRate = rate;
+        else
+            usedRate = this.computeRate(rate);
+        if (usedRate >= 1)
+            return new NoSampleRowIterator(this.getIterator());
+        return new CompressedSampledRowIterator(this.getIterator(), usedRate, seed);
+    }
+
+    private double computeRate(double rate) {
+        if (this.size < CompressedMembershipSet.samplingSizeMinimum)
+            return 1;
+        if (rate <= CompressedMembershipSet.samplingThreshold)
+            return rate;
+        else return 1;
+    }
+
+    /**
+     * Iterates over the rows in the range [start, end) in increasing order.
+     */
+    private class CompressedIterator implements IRowIterator {
+        private int chunk;
+        private final int end;
+        @Nullable
+        private RowContainer.Cursor cursor;
+
+        CompressedIterator(int start, int end) {
+            start = Math.max(start, 0);
+            this.end = end;
+            this.chunk = start >>> RowContainer.BITS;
+            RowContainer container = CompressedMembershipSet.this.getContainer(this.chunk);
+            this.cursor = container == null ? null : container.cursor(start & RowContainer.MASK);
+        }
+
+        @Override
+        public int getNextRow() {
+            RowContainer[] containers = CompressedMembershipSet.this.containers;
+            while (true) {
+                if (this.cursor != null) {
+                    int value = this.cursor.next();
+                    if (value >= 0) {
+                        int row = (this.chunk << RowContainer.BITS) | value;
+                        if (row < this.end)
+                            return row;
+                        this.chunk = containers.length;
+                        this.cursor = null;
+                        return -1;
+                    }
+                }
+                if (this.chunk >= containers.length)
+                    return -1;
+                this.chunk++;
+                if (this.chunk >= containers.length ||
+                        (this.chunk << RowContainer.BITS) >= this.end) {
+                    this.chunk = containers.length;
+                    this.cursor = null;
+                    return -1;
+                }
+                RowContainer container = containers[this.chunk];
+                this.cursor = container == null ? null : container.cursor(0);
+            }
+        }
+    }
+
+    /**
+     * An iterator that returns each row with a fixed probability, skipping
+     * over a geometrically distributed number of rows.  The class has a Randomness
+     * object as a member which makes it non thread-safe.
+     */
+    private static class CompressedSampledRowIterator implements ISampledRowIterator {
+        private final IRowIterator rows;
+        private final Randomness prg;
+        private final double rate;
+
+        CompressedSampledRowIterator(IRowIterator rows, double rate, long seed) {
+            this.rows = rows;
+            this.prg = new Randomness(seed);
+            this.rate = rate;
+        }
+
+        @Override
+        public double rate() { return this.rate; }
+
+        @Override
+        public int getNextRow() {
+            int skip = this.prg.nextGeometric(this.rate);
+            int row = -1;
+            for (int i = 0; i < skip; i++) {
+                row = this.rows.getNextRow();
+                if (row < 0)
+                    return -1;
+            }
+            return row;
+        }
+    }
+}
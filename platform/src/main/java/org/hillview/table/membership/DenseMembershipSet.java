@@ -123,6 +123,11 @@ public class DenseMembershipSet implements IMembershipSet, IMutableMembershipSet
         return new DenseMembershipIterator(this.membershipMap);
     }
 
+    @Override
+    public IRowIterator getIterator(int start, int end) {
+        return new DenseMembershipIterator(this.membershipMap, start, end);
+    }
+
     /**
      *
      * @param rate  Sampling rate.
@@ -186,15 +191,26 @@ public class DenseMembershipSet implements IMembershipSet, IMutableMembershipSet
     public static class DenseMembershipIterator implements IRowIterator {
         private final BitSet bits;
         private int current;
+        private final int end;
 
         DenseMembershipIterator(BitSet bits) {
+            this(bits, 0, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Iterates over the set bits in the range [start, end).
+         */
+        DenseMembershipIterator(BitSet bits, int start, int end) {
             this.bits = bits;
-            this.current = -1;
+            this.current = Math.max(start, 0) - 1;
+            this.end = end;
         }
 
         @Override
         public int getNextRow() {
             this.current = this.bits.nextSetBit(this.current + 1);
+            if (this.current >= this.end)
+                this.current = -1;
             return this.current;
         }
     }
@@ -60,6 +60,11 @@ public class FullMembershipSet implements IMembershipSet {
         return new FullMembershipIterator(this.rowCount);
     }
 
+    @Override
+    public IRowIterator getIterator(final int start, final int end) {
+        return new FullMembershipIterator(Math.max(start, 0), Math.min(end, this.rowCount));
+    }
+
     /**
      * The procedure
      * samples k times with replacement so it may return a set with less than k distinct items
@@ -151,10 +156,18 @@ public class FullMembershipSet implements IMembershipSet {
     }
 
     public static class FullMembershipIterator implements IRowIterator {
-        private int cursor = 0;
+        private int cursor;
         private final int range;
 
         public FullMembershipIterator(final int range) {
+            this(0, range);
+        }
+
+        /**
+         * Iterates over the rows in [start, range).
+         */
+        public FullMembershipIterator(final int start, final int range) {
+            this.cursor = start;
             this.range = range;
         }
 
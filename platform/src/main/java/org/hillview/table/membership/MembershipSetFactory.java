@@ -30,11 +30,14 @@ public class MembershipSetFactory {
     private static final int sizeEstimationSampleSize = 40;
 
     /**
-     * Creates a mutable membership set.
+     * Creates a mutable membership set.  Sets over large tables are compressed;
+     * this bounds the memory used by each set regardless of its density.
      * @param maxSize        Maximum size.
      * @param estimatedSize  Estimated number of elements inside.
      */
     public static IMutableMembershipSet create(int maxSize, int estimatedSize) {
+        if (maxSize > CompressedMembershipSet.CHUNK_SIZE)
+            return new CompressedMembershipSet(maxSize);
         if (estimatedSize >= maxSize / 30)
             return new DenseMembershipSet(maxSize, estimatedSize);
         else
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.membership;
+
+import org.hillview.utils.Converters;
+
+import javax.annotation.Nullable;
+
+/**
+ * Holds the members of a CompressedMembershipSet that fall in one chunk of SIZE
+ * consecutive rows.  Values stored in a container are offsets within the chunk.
+ * There are three representations: a sorted array of values, a bitmap, and
+ * a list of runs of consecutive values.
+ */
+abstract class RowContainer {
+    static final int BITS = 16;
+    static final int SIZE = 1 << BITS;
+    static final int MASK = SIZE - 1;
+    /**
+     * Array containers with more values use more memory than a bitmap.
+     */
+    static final int MAX_ARRAY_SIZE = 4096;
+    static final int BITMAP_WORDS = SIZE / 64;
+
+    /**
+     * Iterates over the values of a container in increasing order.
+     */
+    interface Cursor {
+        /**
+         * @return The next value, or -1 when there are no more values.
+         */
+        int next();
+    }
+
+    abstract int cardinality();
+
+    abstract boolean contains(int value);
+
+    /**
+     * Adds a value to this container.
+     * @return The container holding the result: either this one or a
+     * container with a different representation.
+     */
+    abstract RowContainer add(int value);
+
+    /**
+     * @return The value with the specified rank, counting from 0.
+     */
+    abstract int select(int rank);
+
+    /**
+     * A cursor over the values that are greater than or equal to from.
+     */
+    abstract Cursor cursor(int from);
+
+    /**
+     * Number of runs of consecutive values.
+     */
+    abstract int runCount();
+
+    /**
+     * A bitmap with the contents of this container.  For bitmap containers
+     * this is the container's own data; it must not be modified.
+     */
+    abstract long[] getWords();
+
+    /**
+     * Returns the container with the same contents that uses the least memory,
+     * or null if the container is empty.
+     */
+    @Nullable
+    RowContainer optimize() {
+        int card = this.cardinality();
+        if (card == 0)
+            return null;
+        int runs = this.runCount();
+        int arrayBytes = card <= MAX_ARRAY_SIZE ? 2 * card : Integer.MAX_VALUE;
+        int runBytes = 4 * runs;
+        int bitmapBytes = SIZE / 8;
+        if (runBytes < arrayBytes && runBytes < bitmapBytes)
+            return this instanceof RunRowContainer ? this : RunRowContainer.from(this, runs);
+        if (arrayBytes <= bitmapBytes)
+            return ArrayRowContainer.from(this);
+        return this instanceof BitmapRowContainer ? this :
+                new BitmapRowContainer(this.getWords(), card);
+    }
+
+    @Nullable
+    static RowContainer and(RowContainer left, RowContainer right) {
+        if (left instanceof ArrayRowContainer)
+            return ((ArrayRowContainer)left).filter(right, true);
+        if (right instanceof ArrayRowContainer)
+            return ((ArrayRowContainer)right).filter(left, true);
+        long[] a = left.getWords();
+        long[] b = right.getWords();
+        long[] result = new long[BITMAP_WORDS];
+        for (int i = 0; i < BITMAP_WORDS; i++)
+            result[i] = a[i] & b[i];
+        return BitmapRowContainer.create(result);
+    }
+
+    static RowContainer or(RowContainer left, RowContainer right) {
+        if (left instanceof ArrayRowContainer && right instanceof ArrayRowContainer &&
+                left.cardinality() + right.cardinality() <= MAX_ARRAY_SIZE)
+            return ArrayRowContainer.merge((ArrayRowContainer)left, (ArrayRowContainer)right);
+        if (left instanceof ArrayRowContainer) {
+            RowContainer tmp = left;
+            left = right;
+            right = tmp;
+        }
+        long[] result = left.getWords().clone();
+        if (right instanceof ArrayRowContainer) {
+            ((ArrayRowContainer)right).setBits(result, true);
+        } else {
+            long[] b = right.getWords();
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                result[i] |= b[i];
+        }
+        return Converters.checkNull(BitmapRowContainer.create(result));
+    }
+
+    @Nullable
+    static RowContainer andNot(RowContainer left, RowContainer right) {
+        if (left instanceof ArrayRowContainer)
+            return ((ArrayRowContainer)left).filter(right, false);
+        long[] result = left.getWords().clone();
+        if (right instanceof ArrayRowContainer) {
+            ((ArrayRowContainer)right).setBits(result, false);
+        } else {
+            long[] b = right.getWords();
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                result[i] &= ~b[i];
+        }
+        return BitmapRowContainer.create(result);
+    }
+}
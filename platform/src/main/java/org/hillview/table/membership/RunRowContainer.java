@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.membership;
+
+import java.util.Arrays;
+
+/**
+ * A container that stores its values as a sorted list of runs of consecutive values.
+ * Run containers are immutable; adding a value produces a bitmap container.
+ */
+final class RunRowContainer extends RowContainer {
+    /**
+     * First value in each run.
+     */
+    private final char[] starts;
+    /**
+     * Length of each run minus 1.
+     */
+    private final char[] lengths;
+    private final int cardinality;
+
+    private RunRowContainer(char[] starts, char[] lengths) {
+        this.starts = starts;
+        this.lengths = lengths;
+        int card = 0;
+        for (char l : lengths)
+            card += l + 1;
+        this.cardinality = card;
+    }
+
+    /**
+     * A run container with the contents of the specified container.
+     * @param container  Container to convert.
+     * @param runs       Number of runs in the container.
+     */
+    static RunRowContainer from(RowContainer container, int runs) {
+        char[] starts = new char[runs];
+        char[] lengths = new char[runs];
+        Cursor cursor = container.cursor(0);
+        int run = -1;
+        int previous = -2;
+        for (int v = cursor.next(); v >= 0; v = cursor.next()) {
+            if (v == previous + 1) {
+                lengths[run]++;
+            } else {
+                run++;
+                starts[run] = (char)v;
+            }
+            previous = v;
+        }
+        assert run == runs - 1;
+        return new RunRowContainer(starts, lengths);
+    }
+
+    /**
+     * Index of the last run that starts at or before value, or -1 if there is none.
+     */
+    private int findRun(int value) {
+        int index = Arrays.binarySearch(this.starts, (char)value);
+        if (index >= 0)
+            return index;
+        return -index - 2;
+    }
+
+    @Override
+    int cardinality() {
+        return this.cardinality;
+    }
+
+    @Override
+    boolean contains(int value) {
+        int run = this.findRun(value);
+        return run >= 0 && value <= this.starts[run] + this.lengths[run];
+    }
+
+    @Override
+    RowContainer add(int value) {
+        if (this.contains(value))
+            return this;
+        return new BitmapRowContainer(this.getWords(), this.cardinality).add(value);
+    }
+
+    @Override
+    int select(int rank) {
+        for (int i = 0; i < this.starts.length; i++) {
+            int length = this.lengths[i] + 1;
+            if (rank < length)
+                return this.starts[i] + rank;
+            rank -= length;
+        }
+        throw new RuntimeException("Rank out of bounds " + rank);
+    }
+
+    @Override
+    Cursor cursor(int from) {
+        int first = Math.max(this.findRun(from), 0);
+        return new Cursor() {
+            private int run = first;
+            private int current = from;
+
+            @Override
+            public int next() {
+                char[] starts = RunRowContainer.this.starts;
+                char[] lengths = RunRowContainer.this.lengths;
+                while (this.run < starts.length) {
+                    int start = starts[this.run];
+                    int end = start + lengths[this.run];
+                    if (this.current < start)
+                        this.current = start;
+                    if (this.current <= end)
+                        return this.current++;
+                    this.run++;
+                }
+                return -1;
+            }
+        };
+    }
+
+    @Override
+    int runCount() {
+        return this.starts.length;
+    }
+
+    @Override
+    long[] getWords() {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < this.starts.length; i++)
+            BitmapRowContainer.setRange(words, this.starts[i], this.starts[i] + this.lengths[i] + 1);
+        return words;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.*;
+
+/**
+ * A log handler that hands log records to another handler on a background thread,
+ * so threads that log do not wait for the formatting of the messages and for the I/O.
+ * Records are kept in a bounded buffer; when the buffer is full, records below
+ * the SEVERE level are dropped and counted, while SEVERE records wait for space.
+ */
+public class AsyncLogHandler extends Handler {
+    private static final int CAPACITY = 16 * 1024;
+    /**
+     * Maximum number of records written at once.
+     */
+    private static final int BATCH = 256;
+
+    private final Handler target;
+    private final ArrayBlockingQueue<LogRecord> queue;
+    private final AtomicLong dropped;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public AsyncLogHandler(Handler target) {
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<LogRecord>(CAPACITY);
+        this.dropped = new AtomicLong();
+        this.closed = false;
+        this.writer = new Thread(this::run, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    @Override
+    public void setFormatter(Formatter formatter) {
+        this.target.setFormatter(formatter);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (this.closed) {
+            this.target.publish(record);
+            return;
+        }
+        if (this.queue.offer(record))
+            return;
+        if (record.getLevel().intValue() < Level.SEVERE.intValue()) {
+            this.dropped.incrementAndGet();
+            return;
+        }
+        try {
+            this.queue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<LogRecord> batch = new ArrayList<LogRecord>(BATCH);
+        while (true) {
+            try {
+                batch.add(this.queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            this.queue.drainTo(batch, BATCH - 1);
+            this.write(batch);
+            batch.clear();
+        }
+    }
+
+    private synchronized void write(List<LogRecord> batch) {
+        long lost = this.dropped.getAndSet(0);
+        if (lost > 0) {
+            LogRecord record = new LogRecord(Level.WARNING, "log-writer," +
+                    this.getClass().getName() + ",write,Dropped log messages," + lost);
+            this.target.publish(record);
+        }
+        for (LogRecord r : batch)
+            this.target.publish(r);
+        this.target.flush();
+    }
+
+    /**
+     * Writes all records received so far.
+     */
+    @Override
+    public void flush() {
+        List<LogRecord> batch = new ArrayList<LogRecord>();
+        this.queue.drainTo(batch);
+        this.write(batch);
+    }
+
+    /**
+     * Stops the writer thread, then writes the remaining records.  The writer
+     * may still be writing a batch, so it has to finish before the queue is
+     * flushed, or records would be written out of order.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.closed)
+                return;
+            this.closed = true;
+        }
+        this.writer.interrupt();
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flush();
+        this.target.close();
+    }
+}
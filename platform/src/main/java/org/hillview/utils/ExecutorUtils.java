@@ -6,9 +6,13 @@ import rx.Scheduler;
 import rx.schedulers.Schedulers;
 
 import javax.annotation.Nullable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
 
 /**
  * Custom thread pools
@@ -86,6 +90,48 @@ public class ExecutorUtils {
         return computeExecutorService;
     }
 
+    /**
+     * Invokes body for all values between 0 and count-1, using the calling thread and
+     * threads from the compute executor.  The calling thread takes part in the work,
+     * so this can be invoked from a compute thread.  Returns after all invocations
+     * have completed.  If an invocation fails the remaining ones are skipped and the
+     * exception is rethrown.
+     */
+    public static void parallelFor(int count, IntConsumer body) {
+        AtomicInteger next = new AtomicInteger(0);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>(null);
+        CountDownLatch done = new CountDownLatch(count);
+        Runnable worker = () -> {
+            int index = next.getAndIncrement();
+            while (index < count) {
+                try {
+                    if (failure.get() == null)
+                        body.accept(index);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+                index = next.getAndIncrement();
+            }
+        };
+
+        ExecutorService executor = getComputeExecutorService();
+        int helpers = Math.min(count, Runtime.getRuntime().availableProcessors()) - 1;
+        for (int i = 0; i < helpers; i++)
+            executor.execute(worker);
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        Throwable t = failure.get();
+        if (t != null)
+            throw new RuntimeException(t);
+    }
+
     public static Scheduler getUnsubscribeScheduler() {
         return unsubScheduler;
     }
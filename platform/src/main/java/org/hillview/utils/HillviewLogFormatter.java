@@ -47,7 +47,10 @@ public class HillviewLogFormatter extends SimpleFormatter {
         if (logger != null)
             this.builder.append(logger.machine);
         this.builder.append(',');
-        this.builder.append(record.getMessage());
+        if (record instanceof HillviewLogRecord)
+            this.builder.append(((HillviewLogRecord)record).getText());
+        else
+            this.builder.append(record.getMessage());
         this.builder.append(this.newline);
         return builder.toString();
     }
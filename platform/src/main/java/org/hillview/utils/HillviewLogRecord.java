@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.utils;
+
+import org.apache.commons.text.StringEscapeUtils;
+
+import java.text.MessageFormat;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log record produced by the HillviewLogger.  The message is only formatted
+ * when the record is written, on the thread that writes the log.  Strings and
+ * boxed primitives are formatted there too, but all other arguments, such as
+ * datasets and sketches, are converted to strings with toString on the caller's
+ * thread when the record is created, since they may change in the meantime.
+ */
+public class HillviewLogRecord extends LogRecord {
+    static final long serialVersionUID = 1;
+
+    private final String threadName;
+    private final String className;
+    private final String methodName;
+    private final String format;
+    private final Object[] arguments;
+
+    public HillviewLogRecord(Level level, String threadName, String className, String methodName,
+                             String message, String format, Object... arguments) {
+        super(level, message);
+        this.threadName = threadName;
+        this.className = className;
+        this.methodName = methodName;
+        this.format = format;
+        this.arguments = snapshot(arguments);
+        this.setSourceClassName(className);
+        this.setSourceMethodName(methodName);
+    }
+
+    /**
+     * Copies the arguments.  Strings and boxed primitives are immutable, so
+     * they are kept and formatted as before; all other objects are converted
+     * to strings.
+     */
+    private static Object[] snapshot(Object[] arguments) {
+        Object[] result = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            Object arg = arguments[i];
+            if (arg == null || arg instanceof String || arg instanceof Integer ||
+                    arg instanceof Long || arg instanceof Double || arg instanceof Float ||
+                    arg instanceof Short || arg instanceof Byte ||
+                    arg instanceof Boolean || arg instanceof Character)
+                result[i] = arg;
+            else
+                result[i] = String.valueOf(arg);
+        }
+        return result;
+    }
+
+    /**
+     * The text of the record: thread, class, method, message, and the escaped
+     * result of formatting the arguments, separated by commas.
+     */
+    public String getText() {
+        String text = MessageFormat.format(this.format, this.arguments);
+        int len = text.length();
+        if (len > 20000)
+            text = text.substring(0, 19500) + "... (" + (len - 19500) + " more)";
+        String quoted = quote(text);
+        return String.join(",", this.threadName, this.className,
+                this.methodName, this.getMessage(), quoted);
+    }
+
+    private static String quote(String message) {
+        message = message.replace("\n", "\\n");
+        return StringEscapeUtils.escapeCsv(message);
+    }
+}
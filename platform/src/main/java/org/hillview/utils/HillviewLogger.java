@@ -19,12 +19,12 @@ package org.hillview.utils;
 
 import io.grpc.netty.shaded.io.netty.util.internal.logging.InternalLoggerFactory;
 import io.grpc.netty.shaded.io.netty.util.internal.logging.JdkLoggerFactory;
-import org.apache.commons.text.StringEscapeUtils;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
-import java.text.MessageFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.*;
 
 /**
@@ -43,6 +43,14 @@ public class HillviewLogger {
     final String machine;
     // Role of machine (worker or web server).
     final String role;
+    // Sampling rate of each category of frequent messages; the default is 1.
+    private final ConcurrentHashMap<String, Integer> samplingRates;
+    // Number of sampled messages logged in each category.
+    private final ConcurrentHashMap<String, AtomicLong> sampleCounters;
+    /**
+     * Category of the messages logged for each partition of a dataset.
+     */
+    public static final String PARTITION = "partition";
     // Default logger if users forget to initialize
     public static HillviewLogger instance = new HillviewLogger("none", null);
 
@@ -64,6 +72,9 @@ public class HillviewLogger {
         this.machine = this.checkCommas(Utilities.getHostName());
         this.role = this.checkCommas(role);
         this.logger.setLevel(Level.INFO);
+        this.samplingRates = new ConcurrentHashMap<String, Integer>();
+        this.sampleCounters = new ConcurrentHashMap<String, AtomicLong>();
+        this.samplingRates.put(PARTITION, 100);
 
         Formatter form = new HillviewLogFormatter();
         Handler handler;
@@ -77,7 +88,7 @@ public class HillviewLogger {
             handler = new ConsoleHandler();
         }
         handler.setFormatter(form);
-        logger.addHandler(handler);
+        logger.addHandler(new AsyncLogHandler(handler));
         File currentDirectory = new File(new File(".").getAbsolutePath());
         this.info("Starting logger", "Working directory: {0}", currentDirectory);
 
@@ -112,32 +123,64 @@ public class HillviewLogger {
     public void info(String message, String format, Object... arguments) {
         if (!this.logger.isLoggable(Level.INFO))
             return;
-        String text = this.createMessage(message, format, arguments);
-        this.logger.info(text);
+        this.log(Level.INFO, message, format, arguments);
+    }
+
+    /**
+     * Logs an INFO message that belongs to a category of frequent messages,
+     * such as the messages emitted for each partition of a dataset.  Only one in
+     * every rate messages of the category is logged; the rate is set by setSamplingRate.
+     * The message that ends an operation should be logged with info only if the
+     * message that started it was logged, e.g.:
+     * <pre>
+     * boolean logged = HillviewLogger.instance.infoSampled(PARTITION, "Starting map", ...);
+     * ...
+     * if (logged)
+     *     HillviewLogger.instance.info("Completed map", ...);
+     * </pre>
+     * @param category  Category of the message.
+     * @return          True if the message was logged.
+     */
+    public boolean infoSampled(String category, String message, String format, Object... arguments) {
+        if (!this.logger.isLoggable(Level.INFO))
+            return false;
+        AtomicLong counter = this.sampleCounters.computeIfAbsent(category, c -> new AtomicLong());
+        int rate = this.samplingRates.getOrDefault(category, 1);
+        if (rate > 1 && counter.getAndIncrement() % rate != 0)
+            return false;
+        this.log(Level.INFO, message, format, arguments);
+        return true;
+    }
+
+    /**
+     * Set the sampling rate of a category of messages logged with infoSampled.
+     * @param category  Message category.
+     * @param rate      One in every rate messages is logged; 1 logs all messages.
+     */
+    public void setSamplingRate(String category, int rate) {
+        if (rate < 1)
+            throw new IllegalArgumentException("Sampling rate must be positive: " + rate);
+        this.samplingRates.put(category, rate);
     }
 
     public void warn(String message, String format, Object... arguments) {
         if (!this.logger.isLoggable(Level.WARNING))
             return;
-        String text = this.createMessage(message, format, arguments);
-        this.logger.warning(text);
+        this.log(Level.WARNING, message, format, arguments);
     }
 
     private void debug(String message, String format, Object... arguments) {
         if (!this.logger.isLoggable(Level.INFO))
             return;
-        String text = this.createMessage(message, format, arguments);
-        this.logger.log(Level.INFO, text);
+        this.log(Level.INFO, message, format, arguments);
     }
 
     public void error(String message, Throwable ex) {
-        String text = this.createMessage(message, "{0}", Utilities.throwableToString(ex));
-        this.logger.severe(text);
+        this.log(Level.SEVERE, message, "{0}", Utilities.throwableToString(ex));
     }
 
     public void error(String message, String format, Object... arguments) {
-        String text = this.createMessage(message, format, arguments);
-        this.logger.severe(text);
+        this.log(Level.SEVERE, message, format, arguments);
     }
 
     private String checkCommas(String str) {
@@ -148,23 +191,18 @@ public class HillviewLogger {
         return str;
     }
 
-    private String createMessage(String message, String format, Object... arguments) {
+    /**
+     * Logs a message.  The caller is found here, and arguments other than strings
+     * and boxed primitives are converted to strings here; the message is formatted
+     * by the thread that writes the log.
+     */
+    private void log(Level level, String message, String format, Object... arguments) {
         message = this.checkCommas(message);
-        String text = MessageFormat.format(format, arguments);
-        int len = text.length();
-        if (len > 20000)
-            text = text.substring(0, 19500) + "... (" + (len - 19500) + " more)";
         Thread current = Thread.currentThread();
         StackTraceElement[] stackTraceElements = current.getStackTrace();
         StackTraceElement caller = stackTraceElements[3];
-        String quoted = this.quote(text);
-        return String.join(",", current.getName(), caller.getClassName(),
-                caller.getMethodName(), message, quoted);
-    }
-
-    private String quote(String message) {
-        message = message.replace("\n", "\\n");
-        return StringEscapeUtils.escapeCsv(message);
+        this.logger.log(new HillviewLogRecord(level, current.getName(),
+                caller.getClassName(), caller.getMethodName(), message, format, arguments));
     }
 
     public void info(String message) { this.info(message, ""); }
@@ -14,15 +14,12 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.hillview.utils;
 
 import org.jblas.DoubleMatrix;
-import org.jblas.MatrixFunctions;
-import org.jblas.ranges.PointRange;
-import org.jblas.ranges.AllRange;
 
-import java.util.function.BiFunction;
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 /**
@@ -32,6 +29,11 @@ import java.util.logging.Logger;
  * It can be used for finding (for example) 2D coordinates for entities in a dataset, if only the distances between
  * those entities are known (by some distance function).
  *
+ * The points are stored in primitive arrays.  The pairwise distances and the gradient are computed in parallel,
+ * on ranges of rows that contain roughly the same number of pairs.  For large data sets the stress can be
+ * restricted to a fixed random sample of pairs for each point, which needs memory and time linear in the
+ * number of points for each iteration.
+ *
  * For more information: https://en.wikipedia.org/wiki/Multidimensional_scaling
  */
 public class MetricMDS {
@@ -41,15 +43,23 @@ public class MetricMDS {
     private static final double defaultLearningRateDecay = 0.999;
     private static final double tolerance = 1e-5;
     private static final double eps = 1e-9;
-    private static final BiFunction<DoubleMatrix, DoubleMatrix, Double> squaredEuclid =
-            (x1, x2) -> MatrixFunctions.pow(x1.sub(x2),2).sum();
-    private static final BiFunction<DoubleMatrix, DoubleMatrix, Double> euclid =
-            (x1, x2) -> Math.sqrt(MetricMDS.squaredEuclid.apply(x1, x2));
+    /**
+     * Number of high-dimensional points whose distances to a range of rows are computed together.
+     */
+    private static final int tileSize = 64;
+    /**
+     * Work below this number of pairs is not split between threads.
+     */
+    private static final int minPairsPerTask = 1 << 14;
 
     /**
      * Number of observations in the dataset.
      */
     private final int numObservations;
+    /**
+     * Number of input dimensions.
+     */
+    private final int highDims;
     /**
      * Number of output dimensions
      */
@@ -60,128 +70,212 @@ public class MetricMDS {
     private double learningRate = MetricMDS.defaultLearningRate;
     private static final double learningRateDecay = MetricMDS.defaultLearningRateDecay;
 
+    /**
+     * High-dimensional data, one observation after the other.
+     */
+    private final double[] dataHighDim;
+    /**
+     * If positive, each point is only compared with this number of randomly chosen other points.
+     */
+    private int samples = 0;
     /**
      * All pairwise distances d(i, j) in nD. Since it is symmetric, only the upper-triangular part is stored.
      * It is indexed as follows: d(i, j) = d(j, i) = distsHighDim[i * (N - (i + 3) / 2) + j - 1], with i < j < N, and N the
      * number of observations.
      * Note that the diagonal d(i, i) is not contained in the matrix, as d(i, i) = 0 always.
+     * When sampling, d(i, partners[i * samples + k]) = distsHighDim[i * samples + k].
      */
-    private final DoubleMatrix distsHighDim;
+    @Nullable
+    private double[] distsHighDim;
+    /**
+     * When sampling, the points that each point is compared with.
+     */
+    @Nullable
+    private int[] partners;
     /**
      * Normalization factor for the high-dimensional distances. This is later used to rescale the low-dimensional
      * points to reflect the original distances.
      */
     private double scaling;
     /**
-     * Same format for the low-dimensional distances, but this matrix is recomputed every epoch.
+     * The low-dimensional embedding of the high-dimensional data, one point after the other.
      */
-    private final DoubleMatrix distsLowDim;
-
+    private final double[] dataLowDim;
+    private final double[] gradient;
+    /**
+     * First row handled by each task; the last element is the number of observations.
+     */
+    private int[] taskRows = new int[0];
     /**
-     * The low-dimensional embedding of the high-dimensional data.
+     * Gradient and cost accumulated by each task over all pairs of points.
      */
-    private final DoubleMatrix dataLowDim;
+    private double[][] partialGradients = new double[0][];
+    private double[] partialCosts = new double[0];
 
     private boolean verbose = false;
 
     /**
-     * Constructs an object that calculates the metric MDS projection. Note that the low-dimensional distance metric is
-     * always the Euclidean distance, as the gradient is calculated for this.
+     * Constructs an object that calculates the metric MDS projection. The distances are Euclidean,
+     * both in the high- and in the low-dimensional space.
      * @param dataHighDim High-dimensional data with observations/{data points} as rows, and dimensions/features as columns.
      * @param lowDims The target dimensionality of the embedding. Commonly 2.
-     * @param highDimDist The distance function for nD observations.
      */
-    private MetricMDS(DoubleMatrix dataHighDim, int lowDims, BiFunction<DoubleMatrix, DoubleMatrix, Double> highDimDist) {
+    private MetricMDS(DoubleMatrix dataHighDim, int lowDims) {
         this.numObservations = dataHighDim.rows;
+        this.highDims = dataHighDim.columns;
         this.lowDims = lowDims;
-        this.distsHighDim = this.computeHighDimDistances(dataHighDim, highDimDist);
-        this.dataLowDim = new DoubleMatrix();
-        this.distsLowDim = new DoubleMatrix();
-    }
-
-    private MetricMDS(DoubleMatrix dataHighDim, int lowDims) {
-        this(dataHighDim, lowDims, MetricMDS.euclid);
+        this.dataHighDim = new double[this.numObservations * this.highDims];
+        for (int i = 0; i < this.numObservations; i++)
+            for (int j = 0; j < this.highDims; j++)
+                this.dataHighDim[i * this.highDims + j] = dataHighDim.get(i, j);
+        this.dataLowDim = new double[this.numObservations * lowDims];
+        this.gradient = new double[this.numObservations * lowDims];
     }
 
     public MetricMDS(DoubleMatrix dataHighDim) {
         this(dataHighDim, 2);
     }
 
+    /**
+     * Restricts the stress to a random sample of pairs: each point is only compared to the specified
+     * number of other points.  Must be called before computeEmbedding.
+     * @param samples Number of points each point is compared to; 0 compares all pairs of points.
+     */
+    public void setSamples(int samples) {
+        if (samples < 0)
+            throw new RuntimeException("Negative number of samples " + samples);
+        this.samples = samples;
+    }
+
     private int compactIndex(int i, int j) {
         return i * this.numObservations - (i * (i + 3)) / 2 + j - 1;
     }
 
-    private DoubleMatrix computeHighDimDistances(DoubleMatrix dataHighDim, BiFunction<DoubleMatrix, DoubleMatrix, Double> distHighDim) {
-        DoubleMatrix dists = new DoubleMatrix((dataHighDim.rows * (dataHighDim.rows - 1)) / 2);
-        for (int i = 0; i < dataHighDim.rows - 1; i++) {
-            DoubleMatrix x1 = dataHighDim.get(new PointRange(i), new AllRange());
-            for (int j = i + 1; j < dataHighDim.rows; j++) {
-                DoubleMatrix x2 = dataHighDim.get(new PointRange(j), new AllRange());
-                double dist = distHighDim.apply(x1, x2);
-                int idx = this.compactIndex(i, j);
-                dists.put(idx, dist);
-            }
-        }
-        /* Normalize the distances s.t. the largest is 1. */
-        this.scaling = 1 / dists.max();
-        dists.muli(this.scaling);
-
-        return dists;
+    private boolean isSampled() {
+        return this.samples > 0 && this.samples < this.numObservations - 1;
     }
 
-    private DoubleMatrix computeLowDimDistances(DoubleMatrix dataLowDim) {
-        DoubleMatrix dists = new DoubleMatrix((dataLowDim.rows * (dataLowDim.rows - 1)) / 2);
-        for (int i = 0; i < dataLowDim.rows - 1; i++) {
-            DoubleMatrix x1 = dataLowDim.get(new PointRange(i), new AllRange());
-            for (int j = i + 1; j < dataLowDim.rows; j++) {
-                DoubleMatrix x2 = dataLowDim.get(new PointRange(j), new AllRange());
-                double dist = MetricMDS.euclid.apply(x1, x2);
-                int idx = this.compactIndex(i, j);
-                dists.put(idx, dist);
-            }
+    private double highDimDistance(int i, int j) {
+        double sum = 0;
+        int bi = i * this.highDims;
+        int bj = j * this.highDims;
+        for (int k = 0; k < this.highDims; k++) {
+            double d = this.dataHighDim[bi + k] - this.dataHighDim[bj + k];
+            sum += d * d;
         }
-        return dists;
+        return Math.sqrt(sum);
     }
 
     /**
-     * Auxiliary for accessing distances in a compact matrix.
-     * @param compactMatrix Distance matrix, stored compactly, as described in [MetricMds].
-     * @param i Observation index
-     * @param j Observation index
-     * @return The distances between the high-dimensional observations.
+     * Splits the rows into ranges that have roughly the same number of pairs.
      */
-    private double getDist(DoubleMatrix compactMatrix, int i, int j) {
-        if (i < j)
-            return compactMatrix.get(this.compactIndex(i, j));
-        else if (j < i) {
-            return compactMatrix.get(this.compactIndex(j, i));
+    private void partitionRows() {
+        int n = this.numObservations;
+        long pairs = this.isSampled() ? (long)n * this.samples : (long)n * (n - 1) / 2;
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int tasks = (int)Math.max(1, Math.min(4L * cpus, pairs / MetricMDS.minPairsPerTask));
+        tasks = Math.min(tasks, Math.max(n, 1));
+        this.taskRows = new int[tasks + 1];
+        long done = 0;
+        int task = 1;
+        for (int i = 0; i < n && task < tasks; i++) {
+            done += this.isSampled() ? this.samples : n - i - 1;
+            if (done * tasks >= pairs * task)
+                this.taskRows[task++] = i + 1;
+        }
+        while (task <= tasks)
+            this.taskRows[task++] = n;
+        this.partialCosts = new double[tasks];
+        this.partialGradients = new double[this.isSampled() ? 0 : tasks][];
+        for (int t = 0; t < this.partialGradients.length; t++)
+            this.partialGradients[t] = new double[n * this.lowDims];
+    }
+
+    private void computeHighDimDistances(long seed) {
+        int n = this.numObservations;
+        double[] dists;
+        if (this.isSampled()) {
+            int s = this.samples;
+            int[] partners = new int[n * s];
+            Randomness rnd = new Randomness(seed);
+            for (int i = 0; i < n; i++) {
+                for (int k = 0; k < s; k++) {
+                    int j;
+                    boolean duplicate;
+                    do {
+                        j = rnd.nextInt(n - 1);
+                        if (j >= i)
+                            j++;
+                        duplicate = false;
+                        for (int m = 0; m < k; m++) {
+                            if (partners[i * s + m] == j) {
+                                duplicate = true;
+                                break;
+                            }
+                        }
+                    } while (duplicate);
+                    partners[i * s + k] = j;
+                }
+            }
+            dists = new double[n * s];
+            ExecutorUtils.parallelFor(this.partialCosts.length, t -> {
+                for (int i = this.taskRows[t]; i < this.taskRows[t + 1]; i++)
+                    for (int k = 0; k < s; k++)
+                        dists[i * s + k] = this.highDimDistance(i, partners[i * s + k]);
+            });
+            this.partners = partners;
         } else {
-            return 0;
+            dists = new double[(n * (n - 1)) / 2];
+            ExecutorUtils.parallelFor(this.partialCosts.length, t -> {
+                int first = this.taskRows[t];
+                int last = this.taskRows[t + 1];
+                // Process the columns in tiles, which are reused by all rows of the task.
+                for (int tile = first + 1; tile < n; tile += MetricMDS.tileSize) {
+                    int tileEnd = Math.min(tile + MetricMDS.tileSize, n);
+                    for (int i = first; i < last && i < tileEnd - 1; i++) {
+                        int index = this.compactIndex(i, Math.max(i + 1, tile));
+                        for (int j = Math.max(i + 1, tile); j < tileEnd; j++)
+                            dists[index++] = this.highDimDistance(i, j);
+                    }
+                }
+            });
         }
+        /* Normalize the distances s.t. the largest is 1. */
+        double max = 0;
+        for (double d : dists)
+            max = Math.max(max, d);
+        this.scaling = 1 / max;
+        for (int i = 0; i < dists.length; i++)
+            dists[i] *= this.scaling;
+        this.distsHighDim = dists;
     }
 
     /**
      * Compute a projection to this.lowDims dimensions. The initial guess for the projection is set to the given matrix.
-     * @param dataLowDimInit Initial value for the projection.
+     * @param seed Seed used to sample pairs of points.
      * @return Projection of the high-dimensional data, computed with metric mds.
      */
-    private DoubleMatrix computeEmbedding(DoubleMatrix dataLowDimInit) {
-        this.dataLowDim.copy(dataLowDimInit);
-        this.distsLowDim.copy(this.computeLowDimDistances(this.dataLowDim));
+    private DoubleMatrix computeEmbedding(double[] dataLowDimInit, long seed) {
+        System.arraycopy(dataLowDimInit, 0, this.dataLowDim, 0, this.dataLowDim.length);
+        this.partitionRows();
+        this.computeHighDimDistances(seed);
 
         int iterations = 0;
-        double cost = this.cost();
+        double cost = this.gradient();
         double magnitude;
         double initialCost = cost;
         do {
-            /* Compute the gradient */
-            DoubleMatrix gradient = this.gradient();
-            DoubleMatrix step = this.gradient().mul(learningRate / this.numObservations).neg();
             /* Move the low-dimensional points s.t. the cost locally decreases. */
-            this.dataLowDim.addi(step);
+            double step = this.learningRate / this.numObservations;
+            double norm = 0;
+            for (int i = 0; i < this.gradient.length; i++) {
+                double g = this.gradient[i];
+                this.dataLowDim[i] -= step * g;
+                norm += g * g;
+            }
+            magnitude = Math.sqrt(norm) / this.numObservations;
 
-            magnitude = gradient.norm2() / this.numObservations;
-            double newCost = this.cost();
+            double newCost = this.gradient();
             if (this.verbose) {
                 LOG.info(
                     String.format(
@@ -207,7 +301,11 @@ public class MetricMDS {
                 cost));
 
         /* Divide by the normalization factor, s.t. the result reflects the original distances. */
-        return this.dataLowDim.div(this.scaling);
+        DoubleMatrix result = new DoubleMatrix(this.numObservations, this.lowDims);
+        for (int i = 0; i < this.numObservations; i++)
+            for (int j = 0; j < this.lowDims; j++)
+                result.put(i, j, this.dataLowDim[i * this.lowDims + j] / this.scaling);
+        return result;
     }
 
     /**
@@ -217,52 +315,108 @@ public class MetricMDS {
      * @return Projection of the high-dimensional data, computed with metric mds.
      */
     public DoubleMatrix computeEmbedding(long seed) {
-        DoubleMatrix dataLowDimInit = new DoubleMatrix(this.numObservations, this.lowDims);
+        double[] dataLowDimInit = new double[this.numObservations * this.lowDims];
         Randomness rnd = new Randomness(seed);
         rnd.nextGaussian();
-        for (int i = 0; i < this.numObservations; i++) {
-            for (int j = 0; j < this.lowDims; j++) {
-                dataLowDimInit.put(i, j, rnd.nextGaussian());
-            }
-        }
-        return this.computeEmbedding(dataLowDimInit);
+        for (int i = 0; i < dataLowDimInit.length; i++)
+            dataLowDimInit[i] = rnd.nextGaussian();
+        return this.computeEmbedding(dataLowDimInit, seed);
     }
 
     /**
-     * Compute the gradient.
-     * @return The gradient of the cost function w.r.t. the low-dimensional points.
+     * Compute the gradient of the cost function w.r.t. the low-dimensional points into this.gradient.
+     * @return The cost of the current embedding.
      */
-    private DoubleMatrix gradient() {
-        DoubleMatrix gradient = DoubleMatrix.zeros(this.numObservations, this.lowDims);
-        this.distsLowDim.copy(this.computeLowDimDistances(this.dataLowDim));
-
-        /* Loop over all pairs of points. */
-        for (int i = 0; i < this.numObservations - 1; i++) {
-            DoubleMatrix pointI = this.dataLowDim.getRow(i);
-            for (int j = i + 1; j < this.numObservations; j++) {
-                DoubleMatrix pointJ = this.dataLowDim.getRow(j);
-                /* Compute gradient for point i (only w.r.t. points with index > i) */
+    private double gradient() {
+        if (this.isSampled())
+            ExecutorUtils.parallelFor(this.partialCosts.length, this::sampledGradient);
+        else
+            ExecutorUtils.parallelFor(this.partialCosts.length, this::pairsGradient);
 
-                /* Vector from (low-dim) point i to point j */
-                DoubleMatrix gradientI = pointJ.sub(pointI);
-                /* Make it a unit vector */
-                gradientI.divi(Math.max(this.getDist(this.distsLowDim, j, i), MetricMDS.eps));
-                /* Scale by the discrepancy */
-                gradientI.muli(this.getDist(this.distsHighDim, j, i) - this.getDist(this.distsLowDim, j, i));
+        double cost = 0;
+        for (double c : this.partialCosts)
+            cost += c;
+        if (this.isSampled()) {
+            // Each pair is seen from both ends in the estimate.
+            double factor = (double)(this.numObservations - 1) / this.samples;
+            for (int i = 0; i < this.gradient.length; i++)
+                this.gradient[i] *= factor;
+            return cost * factor / 2;
+        }
+        Arrays.fill(this.gradient, 0);
+        for (double[] partial : this.partialGradients)
+            for (int i = 0; i < this.gradient.length; i++)
+                this.gradient[i] += partial[i];
+        return cost;
+    }
 
-                /* Exploit symmetry: The gradient on i caused by j is equal to the inverse gradient on j caused by i. */
-                gradient.putRow(i, gradient.getRow(i).add(gradientI));
-                gradient.putRow(j, gradient.getRow(j).add(gradientI.neg()));
+    /**
+     * Accumulates the gradient and cost of all pairs (i, j) with i in the rows of the task and i < j.
+     */
+    private void pairsGradient(int task) {
+        double[] dists = Converters.checkNull(this.distsHighDim);
+        double[] points = this.dataLowDim;
+        double[] g = this.partialGradients[task];
+        Arrays.fill(g, 0);
+        int n = this.numObservations;
+        int ld = this.lowDims;
+        double cost = 0;
+        for (int i = this.taskRows[task]; i < this.taskRows[task + 1]; i++) {
+            int index = this.compactIndex(i, i + 1);
+            int bi = i * ld;
+            for (int j = i + 1; j < n; j++) {
+                int bj = j * ld;
+                double squared = 0;
+                for (int l = 0; l < ld; l++) {
+                    double d = points[bj + l] - points[bi + l];
+                    squared += d * d;
+                }
+                double dist = Math.sqrt(squared);
+                double discrepancy = dists[index++] - dist;
+                cost += discrepancy * discrepancy;
+                /* Vector from point i to point j, scaled by the discrepancy; the gradient
+                   on j caused by i is the inverse of the gradient on i caused by j. */
+                double f = 2 * discrepancy / Math.max(dist, MetricMDS.eps);
+                for (int l = 0; l < ld; l++) {
+                    double v = f * (points[bj + l] - points[bi + l]);
+                    g[bi + l] += v;
+                    g[bj + l] -= v;
+                }
             }
         }
-
-        gradient.muli(2);
-
-        return gradient;
+        this.partialCosts[task] = cost;
     }
 
-    private double cost() {
-        return MatrixFunctions.pow(this.distsHighDim.sub(this.distsLowDim), 2).sum();
+    /**
+     * Computes the gradient and cost of the sampled pairs of the rows of the task.
+     */
+    private void sampledGradient(int task) {
+        double[] dists = Converters.checkNull(this.distsHighDim);
+        int[] partners = Converters.checkNull(this.partners);
+        double[] points = this.dataLowDim;
+        int ld = this.lowDims;
+        int s = this.samples;
+        double cost = 0;
+        for (int i = this.taskRows[task]; i < this.taskRows[task + 1]; i++) {
+            int bi = i * ld;
+            for (int l = 0; l < ld; l++)
+                this.gradient[bi + l] = 0;
+            for (int k = 0; k < s; k++) {
+                int bj = partners[i * s + k] * ld;
+                double squared = 0;
+                for (int l = 0; l < ld; l++) {
+                    double d = points[bj + l] - points[bi + l];
+                    squared += d * d;
+                }
+                double dist = Math.sqrt(squared);
+                double discrepancy = dists[i * s + k] - dist;
+                cost += discrepancy * discrepancy;
+                double f = 2 * discrepancy / Math.max(dist, MetricMDS.eps);
+                for (int l = 0; l < ld; l++)
+                    this.gradient[bi + l] += f * (points[bj + l] - points[bi + l]);
+            }
+        }
+        this.partialCosts[task] = cost;
     }
 
     @SuppressWarnings("unused")
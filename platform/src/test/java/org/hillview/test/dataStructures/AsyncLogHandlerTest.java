@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.dataStructures;
+
+import org.hillview.test.BaseTest;
+import org.hillview.utils.AsyncLogHandler;
+import org.hillview.utils.HillviewLogRecord;
+import org.hillview.utils.HillviewLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+public class AsyncLogHandlerTest extends BaseTest {
+    /**
+     * A handler that keeps the records it receives; it can be blocked to
+     * simulate a slow disk.
+     */
+    static class CollectingHandler extends Handler {
+        final List<LogRecord> records = new ArrayList<LogRecord>();
+        final CountDownLatch released;
+        boolean closed = false;
+
+        CollectingHandler(boolean blocked) {
+            this.released = new CountDownLatch(blocked ? 1 : 0);
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            try {
+                this.released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this.records) {
+                this.records.add(record);
+            }
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() { this.closed = true; }
+
+        int size() {
+            synchronized (this.records) {
+                return this.records.size();
+            }
+        }
+
+        LogRecord get(int index) {
+            synchronized (this.records) {
+                return this.records.get(index);
+            }
+        }
+    }
+
+    private static LogRecord record(Level level, int index) {
+        return new HillviewLogRecord(level, "thread", "class", "method",
+                "message", "{0}", index);
+    }
+
+    @Test
+    public void testOrder() {
+        CollectingHandler target = new CollectingHandler(false);
+        AsyncLogHandler handler = new AsyncLogHandler(target);
+        for (int i = 0; i < 1000; i++)
+            handler.publish(record(Level.INFO, i));
+        handler.close();
+        Assert.assertTrue(target.closed);
+        Assert.assertEquals(1000, target.size());
+        for (int i = 0; i < 1000; i++)
+            Assert.assertEquals("thread,class,method,message," + i,
+                    ((HillviewLogRecord)target.get(i)).getText());
+
+        // Records published after closing are written directly.
+        handler.publish(record(Level.INFO, 1000));
+        Assert.assertEquals(1001, target.size());
+    }
+
+    @Test
+    public void testDropped() {
+        CollectingHandler target = new CollectingHandler(true);
+        AsyncLogHandler handler = new AsyncLogHandler(target);
+        int count = 20000;
+        for (int i = 0; i < count; i++)
+            handler.publish(record(Level.INFO, i));
+        target.released.countDown();
+        handler.close();
+        int written = target.size();
+        int warnings = 0;
+        long dropped = 0;
+        for (int i = 0; i < written; i++) {
+            LogRecord r = target.get(i);
+            String message = r.getMessage();
+            if (message.contains("Dropped log messages")) {
+                Assert.assertEquals(Level.WARNING, r.getLevel());
+                dropped += Long.parseLong(message.substring(message.lastIndexOf(',') + 1));
+                warnings++;
+            }
+        }
+        Assert.assertTrue(dropped > 0);
+        Assert.assertEquals(count, written - warnings + dropped);
+    }
+
+    @Test
+    public void testArgumentSnapshot() {
+        StringBuilder builder = new StringBuilder("before");
+        HillviewLogRecord record = new HillviewLogRecord(Level.INFO, "thread", "class",
+                "method", "message", "{0} {1}", builder, 12345);
+        builder.setLength(0);
+        builder.append("after");
+        // Boxed numbers are still formatted as numbers.
+        Assert.assertEquals("thread,class,method,message,\"before 12,345\"", record.getText());
+    }
+
+    @Test
+    public void testSampling() {
+        HillviewLogger.instance.setSamplingRate("test", 4);
+        int logged = 0;
+        for (int i = 0; i < 20; i++) {
+            // The decision is made once per operation, whatever the message.
+            String message = (i % 3 == 0) ? "Starting test" : "Invoked test";
+            if (HillviewLogger.instance.infoSampled("test", message, "{0}", i))
+                logged++;
+        }
+        Assert.assertEquals(5, logged);
+    }
+}
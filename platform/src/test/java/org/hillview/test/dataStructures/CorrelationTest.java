@@ -20,7 +20,12 @@ package org.hillview.test.dataStructures;
 import org.hillview.dataset.api.IDataSet;
 import org.hillview.sketches.results.CorrMatrix;
 import org.hillview.sketches.PCACorrelationSketch;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Table;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
 import org.hillview.table.api.ITable;
+import org.hillview.table.columns.DoubleArrayColumn;
 import org.hillview.test.BaseTest;
 import org.hillview.utils.BlasConversions;
 import org.hillview.utils.LinAlg;
@@ -33,6 +38,7 @@ import org.jblas.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class CorrelationTest extends BaseTest {
@@ -104,4 +110,60 @@ public class CorrelationTest extends BaseTest {
             }
         }
     }
+
+    @Test
+    public void testMissingValues() {
+        int rows = 3000;
+        int cols = 3;
+        java.util.Random random = new java.util.Random(12);
+        double[][] data = new double[cols][rows];
+        List<IColumn> columns = new ArrayList<IColumn>();
+        String[] names = new String[cols];
+        for (int c = 0; c < cols; c++) {
+            names[c] = "C" + c;
+            DoubleArrayColumn col = new DoubleArrayColumn(
+                    new ColumnDescription(names[c], ContentsKind.Double), rows);
+            for (int r = 0; r < rows; r++) {
+                if (random.nextInt(5) == 0) {
+                    col.setMissing(r);
+                    data[c][r] = Double.NaN;
+                } else {
+                    data[c][r] = random.nextDouble() * 10;
+                    col.set(r, data[c][r]);
+                }
+            }
+            columns.add(col);
+        }
+        ITable table = new Table(columns, null, null);
+        CorrMatrix cm = new PCACorrelationSketch(names).create(table);
+        Assert.assertNotNull(cm);
+
+        for (int i = 0; i < cols; i++) {
+            double sum = 0;
+            int present = 0;
+            for (int r = 0; r < rows; r++) {
+                if (!Double.isNaN(data[i][r])) {
+                    sum += data[i][r];
+                    present++;
+                }
+            }
+            Assert.assertEquals(present, cm.nonMissing.get(i, i), 0);
+            Assert.assertEquals(sum / present, cm.means[i], 1e-9);
+            for (int j = i; j < cols; j++) {
+                double product = 0;
+                int nonMissing = 0;
+                for (int r = 0; r < rows; r++) {
+                    boolean mi = Double.isNaN(data[i][r]);
+                    boolean mj = Double.isNaN(data[j][r]);
+                    if (!mi || !mj)
+                        nonMissing++;
+                    if (!mi && !mj)
+                        product += data[i][r] * data[j][r];
+                }
+                Assert.assertEquals(nonMissing, cm.nonMissing.get(i, j), 0);
+                Assert.assertEquals(nonMissing, cm.nonMissing.get(j, i), 0);
+                Assert.assertEquals(product / nonMissing, cm.get(i, j), 1e-9);
+            }
+        }
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.dataStructures;
+
+import org.hillview.test.BaseTest;
+import org.hillview.utils.MetricMDS;
+import org.jblas.DoubleMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class MetricMDSTest extends BaseTest {
+    /**
+     * Embeds points that lie in a plane of a 5-dimensional space, and returns the
+     * stress of the embedding relative to the sum of the squared distances.
+     */
+    private double relativeStress(int points, int samples) {
+        Random random = new Random(1);
+        DoubleMatrix data = new DoubleMatrix(points, 5);
+        for (int i = 0; i < points; i++) {
+            data.put(i, 0, 3 * random.nextGaussian());
+            data.put(i, 1, 3 * random.nextGaussian());
+        }
+        MetricMDS mds = new MetricMDS(data);
+        mds.setSamples(samples);
+        DoubleMatrix proj = mds.computeEmbedding(3);
+        Assert.assertEquals(points, proj.rows);
+        Assert.assertEquals(2, proj.columns);
+
+        double stress = 0;
+        double total = 0;
+        for (int i = 0; i < points; i++) {
+            for (int j = i + 1; j < points; j++) {
+                double high = Math.hypot(data.get(i, 0) - data.get(j, 0), data.get(i, 1) - data.get(j, 1));
+                double low = Math.hypot(proj.get(i, 0) - proj.get(j, 0), proj.get(i, 1) - proj.get(j, 1));
+                stress += (high - low) * (high - low);
+                total += high * high;
+            }
+        }
+        return stress / total;
+    }
+
+    @Test
+    public void testAllPairs() {
+        Assert.assertTrue(this.relativeStress(300, 0) < 1e-6);
+    }
+
+    @Test
+    public void testSampledPairs() {
+        Assert.assertTrue(this.relativeStress(300, 50) < 1e-3);
+    }
+}
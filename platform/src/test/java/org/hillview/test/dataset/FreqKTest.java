@@ -29,7 +29,10 @@ import org.hillview.sketches.results.NextKList;
 import org.hillview.table.Schema;
 import org.hillview.table.SmallTable;
 import org.hillview.table.Table;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IRowIterator;
 import org.hillview.table.api.ITable;
+import org.hillview.table.rows.RowSnapshot;
 import org.hillview.test.BaseTest;
 import org.hillview.utils.Converters;
 import org.hillview.utils.TestTables;
@@ -38,6 +41,7 @@ import org.junit.Test;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import static org.junit.Assert.assertTrue;
@@ -192,4 +196,32 @@ public class FreqKTest extends BaseTest {
         String s = "10: 4\n20: 4\n30: 3\n40: 2\n50: 1\n60: 1\n";
         Assert.assertEquals(s, Converters.checkNull(fk.create(t)).toString());
     }
+
+    @Test
+    public void testDictionaryMG() {
+        List<String> strings = TestTables.randStringList(30, 5);
+        Table t = TestTables.randStringTable(10000, strings);
+        IColumn col = t.getLoadedColumn("Name");
+        HashMap<String, Integer> counts = new HashMap<String, Integer>();
+        IRowIterator it = t.getMembershipSet().getIterator();
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+            counts.merge(col.getString(row), 1, Integer::sum);
+
+        // Keeps 20 of the 30 values, with their exact counts.
+        MGFreqKSketch fk = new MGFreqKSketch(t.getSchema(), 4);
+        FreqKListMG fkList = fk.create(t);
+        Assert.assertNotNull(fkList);
+        Assert.assertEquals(20, fkList.hMap.size());
+        int smallest = Integer.MAX_VALUE;
+        for (RowSnapshot rs : fkList.hMap.keySet()) {
+            int count = fkList.hMap.getInt(rs);
+            Assert.assertEquals((int)counts.get(rs.getString("Name")), count);
+            smallest = Math.min(smallest, count);
+        }
+        int kept = 0;
+        for (int c : counts.values())
+            if (c > smallest)
+                kept++;
+        Assert.assertTrue(kept <= fkList.hMap.size());
+    }
 }
@@ -19,18 +19,30 @@ package org.hillview.test.dataset;
 import org.hillview.dataset.LocalDataSet;
 import org.hillview.dataset.ParallelDataSet;
 import org.hillview.dataset.api.IDataSet;
+import org.hillview.dataset.api.IScalable;
+import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.api.IncrementalTableSketch;
+import org.hillview.dataset.api.PartialResult;
 import org.hillview.dataset.api.TableSketch;
 import org.hillview.sketches.*;
+import org.hillview.sketches.highorder.MorselTableSketch;
 import org.hillview.sketches.results.*;
 import org.hillview.table.api.IIntColumn;
 import org.hillview.test.BaseTest;
 import org.hillview.utils.TestTables;
 import org.hillview.table.SmallTable;
 import org.hillview.table.Table;
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.IRowIterator;
+import org.hillview.table.api.ISketchWorkspace;
 import org.hillview.table.api.ITable;
+import org.hillview.utils.Converters;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Test class for the sketches of all types of histograms.
  */
@@ -197,4 +209,106 @@ public class HistSketchTest extends BaseTest {
         Assert.assertNotNull(h1);
         Assert.assertEquals(h0, h1);
     }
+
+    @Test
+    public void histogramMorselTest() {
+        final int numCols = 2;
+        final int bigSize = 100000;
+        SmallTable bigTable = TestTables.getIntTable(bigSize, numCols);
+        String colName1 = bigTable.getSchema().getColumnNames().get(0);
+        String colName2 = bigTable.getSchema().getColumnNames().get(1);
+        IHistogramBuckets buckets1 = new DoubleHistogramBuckets(colName1, 1, 50, 10);
+        IHistogramBuckets buckets2 = new DoubleHistogramBuckets(colName2, 1, 50, 15);
+        Histogram2DSketch s = new Histogram2DSketch(buckets2, buckets1);
+        Assert.assertTrue(s.supportsMorsels());
+
+        Groups<Groups<Count>> serial = s.create(bigTable);
+        Groups<Groups<Count>> parallel = s.morsels(7000).create(bigTable);
+        Assert.assertNotNull(serial);
+        Assert.assertNotNull(parallel);
+        Assert.assertEquals(serial, parallel);
+
+        IMembershipSet filtered = bigTable.getMembershipSet().filter(r -> r % 3 != 0);
+        ITable filteredTable = bigTable.selectRowsFromFullTable(filtered);
+        serial = s.create(filteredTable);
+        parallel = s.morsels(5000).create(filteredTable);
+        Assert.assertNotNull(serial);
+        Assert.assertNotNull(parallel);
+        Assert.assertEquals(serial, parallel);
+
+        HeatmapSketch hs = new HeatmapSketch(bigTable.getSchema(), buckets2, buckets1);
+        Groups<Groups<CountAndSingleton>> h0 = hs.create(filteredTable);
+        Groups<Groups<CountAndSingleton>> h1 = hs.morsels(5000).create(filteredTable);
+        Assert.assertNotNull(h0);
+        Assert.assertNotNull(h1);
+        Assert.assertEquals(h0.toString(), h1.toString());
+    }
+
+    private static <R extends ISketchResult & IScalable<R>, W extends ISketchWorkspace>
+    R rowByRow(IncrementalTableSketch<R, W> sketch, ITable table) {
+        R result = Converters.checkNull(sketch.zero());
+        W workspace = sketch.initialize(table);
+        IRowIterator it = table.getRowIterator();
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+            sketch.increment(workspace, result, row);
+        return result;
+    }
+
+    @Test
+    public void histogramBatchTest() {
+        SmallTable table = TestTables.getMissingIntTable(20000, 2);
+        String colName1 = table.getSchema().getColumnNames().get(0);
+        String colName2 = table.getSchema().getColumnNames().get(1);
+        IHistogramBuckets buckets1 = new DoubleHistogramBuckets(colName1, 0, 15000, 10);
+        IHistogramBuckets buckets2 = new DoubleHistogramBuckets(colName2, 0, 20000, 7);
+        HistogramSketch h = new HistogramSketch(buckets1);
+        Assert.assertEquals(rowByRow(h, table), h.create(table));
+        Histogram2DSketch h2 = new Histogram2DSketch(buckets2, buckets1);
+        Assert.assertEquals(rowByRow(h2, table), h2.create(table));
+
+        IMembershipSet filtered = table.getMembershipSet().filter(r -> r % 7 != 0);
+        ITable filteredTable = table.selectRowsFromFullTable(filtered);
+        Assert.assertEquals(rowByRow(h2, filteredTable), h2.create(filteredTable));
+        HeatmapSketch hs = new HeatmapSketch(table.getSchema(), buckets2, buckets1);
+        Groups<Groups<CountAndSingleton>> heatmap = hs.create(filteredTable);
+        Assert.assertNotNull(heatmap);
+        Assert.assertEquals(rowByRow(hs, filteredTable).toString(), heatmap.toString());
+
+        Table strings = TestTables.randStringTable(20000, TestTables.randStringList(200, 4));
+        IHistogramBuckets sb = new StringHistogramBuckets(
+                "Name", new String[] { "A", "F", "M", "W", "Z" });
+        HistogramSketch sh = new HistogramSketch(sb);
+        Groups<Count> shisto = sh.create(strings);
+        Assert.assertNotNull(shisto);
+        Assert.assertEquals(rowByRow(sh, strings), shisto);
+    }
+
+    @Test
+    public void histogramProgressiveTest() {
+        SmallTable table = TestTables.getIntTable(100000, 1);
+        String colName = table.getSchema().getColumnNames().get(0);
+        IHistogramBuckets buckets = new DoubleHistogramBuckets(colName, 0, 100, 10);
+        HistogramSketch h = new HistogramSketch(buckets);
+        Groups<Count> expected = h.create(table);
+
+        // Report every morsel separately.
+        MorselTableSketch<?, Groups<Count>, HistogramSketch> ms = new MorselTableSketch<>(
+                h, 1000, 1, IncrementalTableSketch.PROGRESS_INTERVAL_MS);
+        List<PartialResult<Groups<Count>>> deltas = new ArrayList<>();
+        ms.createProgressive(table, deltas::add);
+        Assert.assertEquals(100, deltas.size());
+        double done = 0;
+        Groups<Count> sum = h.zero();
+        for (PartialResult<Groups<Count>> d : deltas) {
+            done += d.deltaDone;
+            sum = h.add(sum, d.deltaValue);
+        }
+        Assert.assertEquals(1.0, done, 1e-9);
+        Assert.assertEquals(expected, sum);
+
+        LocalDataSet<ITable> local = new LocalDataSet<ITable>(table);
+        List<PartialResult<Groups<Count>>> results = local.sketch(h).toList().toBlocking().single();
+        Assert.assertFalse(results.isEmpty());
+        Assert.assertEquals(expected, local.blockingSketch(h));
+    }
 }
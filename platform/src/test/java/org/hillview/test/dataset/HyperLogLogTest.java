@@ -20,7 +20,9 @@ package org.hillview.test.dataset;
 import org.hillview.dataset.ParallelDataSet;
 import org.hillview.sketches.*;
 import org.hillview.sketches.results.HLogLog;
+import org.hillview.table.api.IColumn;
 import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.table.membership.SparseMembershipSet;
 import org.hillview.table.columns.IntArrayColumn;
 import org.hillview.table.SmallTable;
 import org.hillview.table.api.ITable;
@@ -31,6 +33,8 @@ import org.hillview.utils.TestTables;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 /**
@@ -65,4 +69,25 @@ public class HyperLogLogTest extends BaseTest {
         Assert.assertNotNull(hll);
         assertTrue(hll.distinctItemsEstimator() > 85000);
     }
+
+    @Test
+    public void testDictionaryHLL() {
+        final int size = 20000;
+        final int chunk = 400;
+        List<String> strings = TestTables.randStringList(500, 6);
+        ITable table = TestTables.randStringTable(size, strings);
+        IColumn col = table.getLoadedColumn("Name");
+        // The whole column uses the dictionary codes.
+        HLogLog hll = new HLogLog(12, 1234);
+        hll.createHLL(col, table.getMembershipSet());
+        // Chunks smaller than the dictionary hash each row.
+        HLogLog rows = new HLogLog(12, 1234);
+        for (int start = 0; start < size; start += chunk) {
+            HLogLog part = new HLogLog(12, 1234);
+            part.createHLL(col, new SparseMembershipSet(start, chunk, size));
+            rows = rows.union(part);
+        }
+        Assert.assertArrayEquals(rows.getRegisters(), hll.getRegisters());
+        Assert.assertEquals(rows.distinctItemCount, hll.distinctItemCount);
+    }
 }
@@ -21,6 +21,7 @@ import org.hillview.dataset.api.IDataSet;
 import org.hillview.maps.LAMPMap;
 import org.hillview.sketches.RandomSamplingSketch;
 import org.hillview.table.SmallTable;
+import org.hillview.table.api.IColumn;
 import org.hillview.table.api.ITable;
 import org.hillview.test.BaseTest;
 import org.hillview.utils.*;
@@ -31,6 +32,7 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 public class LAMPMapTest extends BaseTest {
     private void testLAMPMap(ITable table, int numSamples, int fragmentSize) {
@@ -77,6 +79,44 @@ public class LAMPMapTest extends BaseTest {
         }
     }
 
+    @Test
+    public void testControlPoints() {
+        Random random = new Random(1);
+        int controlPoints = 10;
+        DoubleMatrix data = new DoubleMatrix(2000, 5);
+        for (int i = 0; i < data.length; i++)
+            data.put(i, random.nextGaussian());
+        DoubleMatrix high = data.getRange(0, controlPoints, 0, data.columns);
+        DoubleMatrix low = new DoubleMatrix(controlPoints, 2);
+        for (int i = 0; i < low.length; i++)
+            low.put(i, random.nextGaussian());
+        ITable table = BlasConversions.toTable(data);
+        String[] colNames = Utilities.toArray(TestUtils.getNumericColumnNames(table));
+        String[] newColNames = new String[] { "LAMP1", "LAMP2" };
+
+        ITable all = new LAMPMap(high, low, colNames, newColNames).apply(table);
+        ITable allNeighbors = new LAMPMap(high, low, colNames, newColNames, controlPoints).apply(table);
+        ITable near = new LAMPMap(high, low, colNames, newColNames, 3).apply(table);
+        Assert.assertNotNull(all);
+        Assert.assertNotNull(allNeighbors);
+        Assert.assertNotNull(near);
+        for (int c = 0; c < newColNames.length; c++) {
+            IColumn col = all.getLoadedColumn(newColNames[c]);
+            IColumn colAll = allNeighbors.getLoadedColumn(newColNames[c]);
+            IColumn colNear = near.getLoadedColumn(newColNames[c]);
+            for (int i = 0; i < data.rows; i++) {
+                Assert.assertFalse(col.isMissing(i));
+                Assert.assertFalse(colNear.isMissing(i));
+                Assert.assertEquals(col.getDouble(i), colAll.getDouble(i), 1e-9);
+                if (i < controlPoints) {
+                    // Control points are mapped to their low-dimensional positions.
+                    Assert.assertEquals(low.get(i, c), col.getDouble(i), 1e-9);
+                    Assert.assertEquals(low.get(i, c), colNear.getDouble(i), 1e-9);
+                }
+            }
+        }
+    }
+
     @Test
     public void testBlobs() {
         ITable table = TestTables.getNdGaussianBlobs(10, 200, 15, 0.05);
@@ -27,6 +27,7 @@ import org.hillview.table.*;
 import org.hillview.table.api.ContentsKind;
 import org.hillview.table.api.ITable;
 import org.hillview.table.api.IndexComparator;
+import org.hillview.table.columns.ObjectArrayColumn;
 import org.hillview.table.membership.EmptyMembershipSet;
 import org.hillview.table.rows.RowSnapshot;
 import org.hillview.test.BaseTest;
@@ -155,6 +156,88 @@ public class NextKSketchTest extends BaseTest {
                 "...");
     }
 
+    @Test
+    public void testSortIndex() {
+        final int maxSize = 10;
+        final Table table = TestTables.getRepIntTable(SortIndexCache.MIN_INDEXED_ROWS * 3, 2);
+        List<String> cols = table.getSchema().getColumnNames();
+        ColumnDescription col0 = table.getSchema().getDescription(cols.get(0));
+        ColumnDescription col1 = table.getSchema().getDescription(cols.get(1));
+        RecordOrder cso = new RecordOrder();
+        cso.append(new ColumnSortOrientation(col0, true));
+        cso.append(new ColumnSortOrientation(col1, false));
+        AggregateDescription[] agg = new AggregateDescription[2];
+        agg[0] = new AggregateDescription(col1, AggregateDescription.AggregateKind.Sum);
+        agg[1] = new AggregateDescription(col0, AggregateDescription.AggregateKind.Min);
+
+        List<RowSnapshot> topRows = new ArrayList<RowSnapshot>();
+        topRows.add(null);
+        for (int row : new int[] { 0, 10, 4000, 20000 })
+            topRows.add(new RowSnapshot(table, row));
+        for (RowSnapshot topRow : topRows) {
+            NextKSketch nk = new NextKSketch(cso, agg, topRow, maxSize);
+            NextKList indexed = nk.create(table);
+            NextKList scanned = nk.createByScan(table);
+            Assert.assertNotNull(indexed);
+            Assert.assertEquals(scanned.toLongString(maxSize), indexed.toLongString(maxSize));
+            Assert.assertEquals(scanned.startPosition, indexed.startPosition);
+            Assert.assertEquals(scanned.rowsScanned, indexed.rowsScanned);
+        }
+        // The same index is used for the second query.
+        Assert.assertSame(SortIndexCache.getSortedRows(table, cso),
+                SortIndexCache.getSortedRows(table, cso));
+    }
+
+    private static RecordOrder indexTable() {
+        final Table table = TestTables.getRepIntTable(SortIndexCache.MIN_INDEXED_ROWS, 2);
+        ColumnDescription col0 = table.getSchema().getDescription(
+                table.getSchema().getColumnNames().get(0));
+        RecordOrder cso = new RecordOrder();
+        cso.append(new ColumnSortOrientation(col0, true));
+        SortIndexCache.getSortedRows(table, cso);
+        return cso;
+    }
+
+    @Test
+    public void testSortIndexRelease() throws InterruptedException {
+        SortIndexCache.purge();
+        indexTable();
+        Assert.assertEquals(1, SortIndexCache.size());
+        // The index is removed once the table has been collected.
+        for (int i = 0; i < 100 && SortIndexCache.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, SortIndexCache.size());
+    }
+
+    @Test
+    public void testMergeMissingAggregates() {
+        final int maxSize = 10;
+        final ITable table = TestTables.getMissingIntTable(1000, 2);
+        List<String> cols = table.getSchema().getColumnNames();
+        ColumnDescription col0 = table.getSchema().getDescription(cols.get(0));
+        ColumnDescription col1 = table.getSchema().getDescription(cols.get(1));
+        RecordOrder cso = new RecordOrder();
+        cso.append(new ColumnSortOrientation(col0, true));
+        AggregateDescription[] agg = new AggregateDescription[2];
+        agg[0] = new AggregateDescription(col1, AggregateDescription.AggregateKind.Sum);
+        agg[1] = new AggregateDescription(col1, AggregateDescription.AggregateKind.Count);
+        NextKSketch nk = new NextKSketch(cso, agg, null, maxSize);
+
+        NextKList whole = nk.create(table);
+        Assert.assertNotNull(whole);
+        List<ITable> halves = TestTables.splitTable(table, 500);
+        NextKList merged = nk.add(nk.create(halves.get(0)), nk.create(halves.get(1)));
+        Assert.assertNotNull(merged);
+        Assert.assertEquals(whole.toLongString(maxSize), merged.toLongString(maxSize));
+        Assert.assertNotNull(merged.aggregates);
+        Assert.assertNotNull(whole.aggregates);
+        Assert.assertEquals(whole.aggregates.toLongString(maxSize),
+                merged.aggregates.toLongString(maxSize));
+        Assert.assertFalse(merged.rows.getColumn(col0.name) instanceof ObjectArrayColumn);
+    }
+
     @Test
     public void testNextList() {
         ColumnDescription cd = new ColumnDescription("X", ContentsKind.Integer);
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.dataset;
+
+import org.hillview.dataset.OperationMetrics;
+import org.hillview.dataset.api.IDataSet;
+import org.hillview.sketches.SummarySketch;
+import org.hillview.sketches.results.TableSummary;
+import org.hillview.table.api.ITable;
+import org.hillview.test.BaseTest;
+import org.hillview.utils.TestTables;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class OperationMetricsTest extends BaseTest {
+    @Test
+    public void testSketchMetrics() throws IOException {
+        ITable table = TestTables.testTable();
+        IDataSet<ITable> all = TestTables.makeParallel(table, 5);
+        OperationMetrics.instance.reset();
+        OperationMetrics.instance.startTrace();
+        TableSummary summary = all.blockingSketch(new SummarySketch());
+        Assert.assertNotNull(summary);
+
+        String stats = OperationMetrics.instance.getSummary();
+        Assert.assertTrue(stats.contains("SummarySketch"));
+        Assert.assertTrue(stats.contains("compute: count=5"));
+        Assert.assertTrue(stats.contains("rows: count=5 total=" + table.getNumOfRows()));
+        Assert.assertTrue(stats.contains("queue_wait: count=5"));
+
+        StringWriter writer = new StringWriter();
+        int events = OperationMetrics.instance.stopTrace(writer);
+        Assert.assertTrue(events >= 10);
+        String trace = writer.toString();
+        Assert.assertTrue(trace.startsWith("{\"traceEvents\":["));
+        Assert.assertTrue(trace.contains("\"cat\":\"COMPUTE\""));
+        Assert.assertEquals(0, OperationMetrics.instance.stopTrace(new StringWriter()));
+
+        OperationMetrics.instance.reset();
+        Assert.assertEquals("No operations recorded", OperationMetrics.instance.getSummary());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.dataset;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.hillview.dataset.api.PartialResult;
+import org.hillview.dataset.remoting.WireFormat;
+import org.hillview.pb.PartialResponse;
+import org.hillview.sketches.*;
+import org.hillview.sketches.results.*;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.RecordOrder;
+import org.hillview.table.SmallTable;
+import org.hillview.table.Table;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.columns.DoubleArrayColumn;
+import org.hillview.table.columns.IntArrayColumn;
+import org.hillview.table.columns.StringArrayColumn;
+import org.hillview.table.rows.RowSnapshot;
+import org.hillview.test.BaseTest;
+import org.hillview.utils.TestTables;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Tests the encoding of sketch results exchanged between machines.
+ */
+public class WireFormatTest extends BaseTest {
+    private static Object roundTrip(Object value, int expectedCodec) {
+        PartialResult<Object> pr = new PartialResult<Object>(0.5, value);
+        PartialResponse response = WireFormat.encode(pr, WireFormat.CURRENT);
+        Assert.assertEquals(expectedCodec, response.getCodec());
+        PartialResult<?> decoded = WireFormat.decode(response);
+        Assert.assertEquals(0.5, decoded.deltaDone, 0);
+        return decoded.deltaValue;
+    }
+
+    @Test
+    public void testHistogram() {
+        SmallTable table = TestTables.getIntTable(10000, 2);
+        String col0 = table.getSchema().getColumnNames().get(0);
+        String col1 = table.getSchema().getColumnNames().get(1);
+        IHistogramBuckets b0 = new DoubleHistogramBuckets(col0, 0, 50000, 20);
+        IHistogramBuckets b1 = new DoubleHistogramBuckets(col1, 0, 50000, 10);
+        Groups<Count> h = new HistogramSketch(b0).create(table);
+        Assert.assertNotNull(h);
+        Assert.assertEquals(h, roundTrip(h, WireFormat.COMPACT));
+        PartialResponse compact = WireFormat.encode(new PartialResult<>(h), WireFormat.COMPACT);
+        PartialResponse java = WireFormat.encode(new PartialResult<>(h), WireFormat.JAVA_SERIALIZATION);
+        Assert.assertEquals(WireFormat.JAVA_SERIALIZATION, java.getCodec());
+        Assert.assertTrue(compact.getSerializedOp().size() < java.getSerializedOp().size());
+
+        Groups<Groups<Count>> h2 = new Histogram2DSketch(b0, b1).create(table);
+        Assert.assertNotNull(h2);
+        Assert.assertEquals(h2, roundTrip(h2, WireFormat.COMPACT));
+    }
+
+    @Test
+    public void testFallback() {
+        SmallTable table = TestTables.getIntTable(1000, 2);
+        String col0 = table.getSchema().getColumnNames().get(0);
+        IHistogramBuckets b0 = new DoubleHistogramBuckets(col0, 0, 5000, 20);
+        Groups<CountAndSingleton> h = new HistogramAndSingletonSketch(table.getSchema(), b0).create(table);
+        Assert.assertNotNull(h);
+        Object decoded = roundTrip(h, WireFormat.JAVA_SERIALIZATION);
+        Assert.assertEquals(h.toString(), decoded.toString());
+        Assert.assertNull(roundTrip(null, WireFormat.COMPACT));
+    }
+
+    @Test
+    public void testHLogLog() {
+        SmallTable table = TestTables.getIntTable(10000, 1);
+        String col0 = table.getSchema().getColumnNames().get(0);
+        HLogLog hll = new HLogLogSketch(col0, 12, 1234, null).create(table);
+        Assert.assertNotNull(hll);
+        HLogLog decoded = (HLogLog)roundTrip(hll, WireFormat.COMPACT);
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals(hll.distinctItemCount, decoded.distinctItemCount);
+        Assert.assertArrayEquals(hll.getRegisters(), decoded.getRegisters());
+    }
+
+    @Test
+    public void testSampleSet() {
+        SmallTable table = TestTables.getIntTable(10000, 1);
+        String col0 = table.getSchema().getColumnNames().get(0);
+        SampleSet samples = new NumericSamplesSketch(col0, 100, 3).create(table);
+        Assert.assertNotNull(samples);
+        SampleSet decoded = (SampleSet)roundTrip(samples, WireFormat.COMPACT);
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals(samples.count, decoded.count);
+        Assert.assertEquals(samples.min, decoded.min, 0);
+        Assert.assertEquals(samples.max, decoded.max, 0);
+        Assert.assertArrayEquals(samples.samples, decoded.samples, 0);
+    }
+
+    @Test
+    public void testNextK() {
+        Table table = TestTables.testRepTable();
+        RecordOrder order = table.getRecordOrder(true);
+        RowSnapshot topRow = new RowSnapshot(table, 2);
+        NextKList list = new NextKSketch(order, null, topRow, 5).create(table);
+        Assert.assertNotNull(list);
+        NextKList decoded = (NextKList)roundTrip(list, WireFormat.COMPACT);
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals(list.toLongString(10), decoded.toLongString(10));
+        Assert.assertEquals(list.startPosition, decoded.startPosition);
+        Assert.assertEquals(list.rowsScanned, decoded.rowsScanned);
+    }
+
+    @Test
+    public void testNextKColumns() {
+        IntArrayColumn ints = new IntArrayColumn(
+                new ColumnDescription("Int", ContentsKind.Integer), 3);
+        ints.set(0, -5);
+        ints.setMissing(1);
+        ints.set(2, 7);
+        StringArrayColumn strings = new StringArrayColumn(
+                new ColumnDescription("String", ContentsKind.String), 3);
+        strings.set(0, "a");
+        strings.set(1, "b");
+        strings.set(2, null);
+        DoubleArrayColumn dates = new DoubleArrayColumn(
+                new ColumnDescription("Date", ContentsKind.Date), 3);
+        dates.setMissing(0);
+        dates.set(1, 1.5e12);
+        dates.set(2, 1.6e12);
+        SmallTable rows = new SmallTable(Arrays.asList(ints, strings, dates));
+        NextKList list = new NextKList(rows, null, new IntArrayList(new int[] { 1, 2, 3 }), 0, 6);
+        NextKList decoded = (NextKList)roundTrip(list, WireFormat.COMPACT);
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals(list.toLongString(10), decoded.toLongString(10));
+        // Columns are decoded into arrays of the kind of each column.
+        Assert.assertTrue(decoded.rows.getColumn("Int") instanceof IntArrayColumn);
+        Assert.assertTrue(decoded.rows.getColumn("String") instanceof StringArrayColumn);
+        Assert.assertTrue(decoded.rows.getColumn("Date") instanceof DoubleArrayColumn);
+        Assert.assertTrue(decoded.rows.getColumn("Int").isMissing(1));
+        Assert.assertTrue(decoded.rows.getColumn("String").isMissing(2));
+        Assert.assertTrue(decoded.rows.getColumn("Date").isMissing(0));
+        Assert.assertEquals(1.5e12, decoded.rows.getColumn("Date").getDouble(1), 0);
+    }
+}
@@ -4,8 +4,12 @@ import org.hillview.utils.Pair;
 import org.hillview.security.SecureLaplace;
 import org.hillview.security.TestKeyLoader;
 import org.hillview.test.BaseTest;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SecureLaplaceTest extends BaseTest {
     @Test
     public void LaplaceTest() {
@@ -17,4 +21,43 @@ public class SecureLaplaceTest extends BaseTest {
         if (toPrint)
             System.out.println(noise);
     }
+
+    @Test
+    public void DeterministicTest() {
+        TestKeyLoader tkl = new TestKeyLoader();
+        SecureLaplace first = new SecureLaplace(tkl);
+        SecureLaplace second = new SecureLaplace(tkl);
+        Pair<Integer, Integer> x = new Pair<>(10, 11);
+        Pair<Integer, Integer> y = new Pair<>(4, 8);
+        Pair<Integer, Integer> y1 = new Pair<>(4, 9);
+        Assert.assertEquals(first.sampleLaplace(3, 1.0, x), second.sampleLaplace(3, 1.0, x), 0);
+        Assert.assertEquals(first.sampleLaplace(3, 1.0, x, y), second.sampleLaplace(3, 1.0, x, y), 0);
+        Assert.assertNotEquals(first.sampleLaplace(3, 1.0, x), first.sampleLaplace(4, 1.0, x), 0);
+        Assert.assertNotEquals(first.sampleLaplace(3, 1.0, x, y), first.sampleLaplace(3, 1.0, x, y1), 0);
+    }
+
+    @Test
+    public void BatchTest() {
+        TestKeyLoader tkl = new TestKeyLoader();
+        SecureLaplace sl = new SecureLaplace(tkl);
+        double scale = 2;
+        List<Pair<Integer, Integer>> xs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+            xs.add(new Pair<>(i, i + 1 + i % 3));
+        double[] result = new double[xs.size()];
+        sl.sampleLaplace(7, scale, xs, result);
+        for (int i = 0; i < xs.size(); i++)
+            Assert.assertEquals(sl.sampleLaplace(7, scale, xs.get(i)), result[i], 0);
+
+        List<Pair<Integer, Integer>> ys = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            ys.add(new Pair<>(2 * i, 2 * i + 2));
+        List<Pair<Integer, Integer>> x2 = xs.subList(0, 1400);
+        double[] product = new double[x2.size() * ys.size()];
+        sl.sampleLaplace(7, scale, x2, ys, product);
+        for (int i = 0; i < x2.size(); i++)
+            for (int j = 0; j < ys.size(); j++)
+                Assert.assertEquals(sl.sampleLaplace(7, scale, x2.get(i), ys.get(j)),
+                        product[i * ys.size() + j], 0);
+    }
 }
@@ -233,6 +233,56 @@ public class CsvFileTest extends BaseTest {
         Assert.assertNotNull(tbl);
         writeReadTable(tbl);
     }
-}
 
+    private static ITable loadCsv(String path, long parallelChunkBytes) {
+        CsvFileLoader.Config config = new CsvFileLoader.Config();
+        config.allowFewerColumns = true;
+        config.hasHeaderRow = true;
+        config.parallelChunkBytes = parallelChunkBytes;
+        CsvFileLoader r = new CsvFileLoader(path, config, new LazySchema());
+        return r.load();
+    }
 
+    @Test
+    public void parallelLoadTest() throws IOException {
+        String path = "./" + UUID.randomUUID().toString() + ".csv";
+        try {
+            try (Writer fw = new FileWriter(path)) {
+                fw.write("I,D,S,Q,L,M,E\n");
+                for (int r = 0; r < 3000; r++) {
+                    fw.write(r + "," + (r * 0.25) + ",s" + (r % 17) + ",");
+                    // Quoted values with separators, quotes and newlines.
+                    fw.write("\"line " + r + "\nnext, \"\"x\"\"\",");
+                    // Guesses contradicted after the sample.
+                    fw.write((r < 2500 ? Integer.toString(r) : "x" + r) + ",");
+                    fw.write((r < 2000 ? Integer.toString(r) : (r + 0.5)) + ",");
+                    if (r > 1500 && r % 7 == 0)
+                        fw.write(Integer.toString(r));
+                    if (r == 2999)
+                        // The last record does not end with a newline.
+                        break;
+                    if (r % 5 != 0)
+                        fw.write("\n");
+                    else
+                        fw.write("\r\n");
+                    // Comments and empty lines are not records.
+                    if (r % 100 == 50)
+                        fw.write("# comment, \"unbalanced\n\n");
+                }
+            }
+            ITable serial = loadCsv(path, 0);
+            ITable parallel = loadCsv(path, 4096);
+            Assert.assertEquals(3000, parallel.getNumOfRows());
+            Assert.assertEquals(serial.getSchema(), parallel.getSchema());
+            Schema schema = parallel.getSchema();
+            Assert.assertEquals(ContentsKind.Integer, schema.getKind("I"));
+            Assert.assertEquals(ContentsKind.Double, schema.getKind("D"));
+            Assert.assertEquals(ContentsKind.String, schema.getKind("L"));
+            Assert.assertEquals(ContentsKind.Double, schema.getKind("M"));
+            Assert.assertEquals(ContentsKind.Integer, schema.getKind("E"));
+            Assert.assertEquals(serial.toLongString(3000), parallel.toLongString(3000));
+        } finally {
+            Files.deleteIfExists(Paths.get(path));
+        }
+    }
+}
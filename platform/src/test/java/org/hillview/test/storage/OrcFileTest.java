@@ -19,26 +19,36 @@ package org.hillview.test.storage;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.orc.OrcFile;
 import org.apache.orc.Reader;
 import org.apache.orc.RecordReader;
 import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.hillview.maps.FilterMap;
 import org.hillview.table.LazySchema;
 import org.hillview.storage.CsvFileLoader;
 import org.hillview.storage.OrcFileLoader;
 import org.hillview.storage.OrcFileWriter;
+import org.hillview.table.BlockColumnStatistics;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.Schema;
 import org.hillview.table.Table;
-import org.hillview.table.api.ContentsKind;
-import org.hillview.table.api.IColumn;
-import org.hillview.table.api.ITable;
+import org.hillview.table.TableBlocks;
+import org.hillview.table.api.*;
 import org.hillview.table.columns.StringArrayColumn;
+import org.hillview.table.filters.RangeFilterDescription;
 import org.hillview.test.BaseTest;
+import org.hillview.test.table.BlockFilterTest;
+import org.hillview.utils.Converters;
 import org.hillview.utils.TestTables;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
@@ -50,6 +60,9 @@ public class OrcFileTest extends BaseTest {
     private static final String orcFolder = dataDir + "/orc/";
     private static final String orcOutFile = "test.orc";
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     private void deleteOrcFile(String folder, String file) {
         File f = new File(Paths.get(folder, file).toString());
         if (f.exists()) {
@@ -193,4 +206,77 @@ public class OrcFileTest extends BaseTest {
         Assert.assertNotNull(table);
         Assert.assertEquals(ref.toLongString(20), table.toLongString(20));
     }
+
+    @Test
+    public void statisticsTest() throws IOException {
+        final int stripes = 4;
+        final int stripeRows = 1000;
+        final long firstDay = 18000;
+        TypeDescription schema = TypeDescription.fromString(
+                "struct<i:int,d:double,s:string,t:date>");
+        // The hadoop file system also writes a .crc file in the folder.
+        String file = new File(this.folder.getRoot(), "statistics.orc").getPath();
+        Writer writer = OrcFile.createWriter(new Path(file),
+                OrcFile.writerOptions(new Configuration()).setSchema(schema));
+        VectorizedRowBatch batch = schema.createRowBatch(stripeRows);
+        LongColumnVector i = (LongColumnVector)batch.cols[0];
+        DoubleColumnVector d = (DoubleColumnVector)batch.cols[1];
+        BytesColumnVector s = (BytesColumnVector)batch.cols[2];
+        LongColumnVector t = (LongColumnVector)batch.cols[3];
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            batch.reset();
+            for (int j = 0; j < stripeRows; j++) {
+                int r = stripe * stripeRows + j;
+                // Column i has a few missing values in stripe 1, and is missing in stripe 3.
+                if (stripe == 3 || (stripe == 1 && r % 10 == 3)) {
+                    i.noNulls = false;
+                    i.isNull[j] = true;
+                } else {
+                    i.vector[j] = r;
+                }
+                d.vector[j] = r * .5;
+                s.setVal(j, String.format("s%05d", r).getBytes());
+                t.vector[j] = firstDay + r / 10;
+            }
+            batch.size = stripeRows;
+            writer.addRowBatch(batch);
+            // Ends the stripe.
+            writer.writeIntermediateFooter();
+        }
+        writer.close();
+
+        ITable table = new OrcFileLoader(file, new LazySchema(), false).load();
+        TableBlocks blocks = table.getBlocks();
+        Assert.assertNotNull(blocks);
+        Assert.assertEquals(stripes, blocks.getBlockCount());
+        for (int b = 0; b < stripes; b++)
+            Assert.assertEquals(b * stripeRows, blocks.getStart(b));
+        BlockFilterTest.checkStatistics(table, "i", 0);
+        BlockFilterTest.checkStatistics(table, "d", 0);
+        BlockFilterTest.checkStatistics(table, "s", 0);
+        // Dates are widened by a day for the time zone.
+        BlockFilterTest.checkStatistics(table, "t", 2 * Converters.SECONDS_TO_DAY * 1000.0);
+        BlockColumnStatistics stats = blocks.getStatistics("i", 3);
+        Assert.assertNotNull(stats);
+        Assert.assertTrue(stats.allMissing);
+        stats = blocks.getStatistics("i", 1);
+        Assert.assertNotNull(stats);
+        Assert.assertTrue(stats.hasMissing);
+
+        ColumnDescription icd = table.getSchema().getDescription("i");
+        RangeFilterDescription filter = BlockFilterTest.range(icd, 1000, 2999, false);
+        BlockMatch[] expected = { BlockMatch.None, BlockMatch.Some, BlockMatch.All, BlockMatch.None };
+        for (int b = 0; b < stripes; b++)
+            Assert.assertEquals(expected[b], filter.matchBlock(blocks, b));
+        Assert.assertEquals(1900, new FilterMap(filter).apply(table).getNumOfRows());
+
+        // A filter decided by the statistics does not load the column.
+        Table lazy = (Table)new OrcFileLoader(file, new LazySchema(), true).load();
+        ColumnDescription scd = table.getSchema().getDescription("s");
+        ITable selected = new FilterMap(
+                BlockFilterTest.range(scd, "s02000", "s02999", false)).apply(lazy);
+        Assert.assertEquals(stripeRows, selected.getNumOfRows());
+        for (IColumn col : lazy.getColumns())
+            Assert.assertFalse(col.isLoaded());
+    }
 }
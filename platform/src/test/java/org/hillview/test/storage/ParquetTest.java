@@ -17,19 +17,38 @@
 
 package org.hillview.test.storage;
 
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.hillview.maps.FilterMap;
 import org.hillview.storage.ParquetFileLoader;
+import org.hillview.table.BlockColumnStatistics;
+import org.hillview.table.ColumnDescription;
 import org.hillview.table.Table;
-import org.hillview.table.api.IColumn;
-import org.hillview.table.api.ITable;
+import org.hillview.table.TableBlocks;
+import org.hillview.table.api.*;
+import org.hillview.table.filters.RangeFilterDescription;
 import org.hillview.test.BaseTest;
+import org.hillview.test.table.BlockFilterTest;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
 
 public class ParquetTest extends BaseTest {
     // Not yet checked-in into the repository
     private static final String path = dataDir + "/parquet/" +
             "part-r-00000-9d5cd245-a2e4-4002-9d58-0efdfb0fb962.gz.parquet";
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void readTest() {
         ITable table;
@@ -69,4 +88,141 @@ public class ParquetTest extends BaseTest {
         Table tbl = (Table)table;
         Assert.assertFalse(tbl.getColumns().get(1).isLoaded());
     }
+
+    @Test
+    public void rowGroupsTest() throws IOException {
+        final int rows = 3000;
+        MessageType schema = MessageTypeParser.parseMessageType(
+                "message test { optional int32 i; optional double d; " +
+                        "optional binary s (UTF8); optional binary u (UTF8); " +
+                        "required int64 l; }");
+        // The hadoop file system also writes a .crc file in the folder.
+        File f = new File(this.folder.getRoot(), "rowGroups.parquet");
+        // Small row groups and dictionaries: the file has many row groups, and
+        // column u falls back from dictionary to plain encoding.
+        try (ParquetWriter<Group> writer = ExampleParquetWriter
+                .builder(new org.apache.hadoop.fs.Path(f.getPath()))
+                .withType(schema)
+                .withRowGroupSize(8192)
+                .withPageSize(1024)
+                .withDictionaryPageSize(256)
+                .withDictionaryEncoding(true)
+                .build()) {
+            SimpleGroupFactory factory = new SimpleGroupFactory(schema);
+            for (int r = 0; r < rows; r++) {
+                Group g = factory.newGroup();
+                if (r % 7 != 0)
+                    g.append("i", r);
+                g.append("d", r * .5);
+                if (r % 5 != 0)
+                    g.append("s", "s" + (r % 13));
+                g.append("u", "u" + r);
+                g.append("l", r * 1000L);
+                writer.write(g);
+            }
+        }
+
+        ParquetFileLoader pr = new ParquetFileLoader(f.getPath(), false);
+        ITable table = pr.load();
+        Assert.assertEquals("Table[5x" + rows + "]", table.toString());
+        IColumn i = table.getLoadedColumn("i");
+        IColumn d = table.getLoadedColumn("d");
+        IColumn s = table.getLoadedColumn("s");
+        IColumn u = table.getLoadedColumn("u");
+        IColumn l = table.getLoadedColumn("l");
+        for (int r = 0; r < rows; r++) {
+            if (r % 7 == 0)
+                Assert.assertTrue(i.isMissing(r));
+            else
+                Assert.assertEquals(r, i.getInt(r));
+            Assert.assertEquals(r * .5, d.getDouble(r), 0);
+            if (r % 5 == 0)
+                Assert.assertTrue(s.isMissing(r));
+            else
+                Assert.assertEquals("s" + (r % 13), s.getString(r));
+            Assert.assertEquals("u" + r, u.getString(r));
+            Assert.assertEquals(r * 1000.0, l.getDouble(r), 0);
+        }
+        // Dictionary entries shared between row groups are encoded once.
+        Assert.assertEquals(14, ((IDictionaryColumn)s).getDictionarySize());
+
+        pr = new ParquetFileLoader(f.getPath(), true);
+        ITable lazy = pr.load();
+        IColumn ls = lazy.getLoadedColumn("s");
+        for (int r = 0; r < rows; r++)
+            Assert.assertEquals(s.getString(r), ls.getString(r));
+    }
+
+    @Test
+    public void statisticsTest() throws IOException {
+        final int rows = 3000;
+        MessageType schema = MessageTypeParser.parseMessageType(
+                "message test { optional int32 i; optional double d; " +
+                        "optional binary s (UTF8); optional binary r; " +
+                        "optional boolean b; required int64 l; }");
+        // The hadoop file system also writes a .crc file in the folder.
+        File f = new File(this.folder.getRoot(), "statistics.parquet");
+        try (ParquetWriter<Group> writer = ExampleParquetWriter
+                .builder(new org.apache.hadoop.fs.Path(f.getPath()))
+                .withType(schema)
+                .withRowGroupSize(8192)
+                .withPageSize(1024)
+                .build()) {
+            SimpleGroupFactory factory = new SimpleGroupFactory(schema);
+            for (int r = 0; r < rows; r++) {
+                Group g = factory.newGroup();
+                // Column i is missing in the last row groups.
+                if (r < 2000)
+                    g.append("i", r);
+                g.append("d", r * .5);
+                if (r % 5 != 0)
+                    g.append("s", String.format("s%05d", r));
+                g.append("r", "r" + r);
+                g.append("b", r % 2 == 0);
+                g.append("l", r * 1000L);
+                writer.write(g);
+            }
+        }
+
+        ITable table = new ParquetFileLoader(f.getPath(), false).load();
+        TableBlocks blocks = table.getBlocks();
+        Assert.assertNotNull(blocks);
+        Assert.assertTrue(blocks.getBlockCount() > 2);
+        for (String col : new String[] { "i", "d", "s", "l" })
+            BlockFilterTest.checkStatistics(table, col, 0);
+        boolean allMissing = false;
+        for (int b = 0; b < blocks.getBlockCount(); b++) {
+            BlockColumnStatistics stats = blocks.getStatistics("i", b);
+            assert stats != null;
+            allMissing = allMissing || stats.allMissing;
+            // Binary values without the UTF8 annotation and booleans have no usable statistics.
+            Assert.assertNull(blocks.getStatistics("r", b));
+            Assert.assertNull(blocks.getStatistics("b", b));
+        }
+        Assert.assertTrue(allMissing);
+
+        ColumnDescription icd = table.getSchema().getDescription("i");
+        RangeFilterDescription filter = BlockFilterTest.range(icd, 0, 1999, false);
+        for (int b = 0; b < blocks.getBlockCount(); b++) {
+            BlockMatch expected;
+            if (blocks.getEnd(b) <= 2000)
+                expected = BlockMatch.All;
+            else if (blocks.getStart(b) >= 2000)
+                expected = BlockMatch.None;
+            else
+                expected = BlockMatch.Some;
+            Assert.assertEquals(expected, filter.matchBlock(blocks, b));
+        }
+        Assert.assertEquals(2000, new FilterMap(filter).apply(table).getNumOfRows());
+
+        // A filter decided by the statistics does not load the column.
+        Table lazy = (Table)new ParquetFileLoader(f.getPath(), true).load();
+        ColumnDescription scd = table.getSchema().getDescription("s");
+        ITable none = new FilterMap(BlockFilterTest.range(scd, "t", "u", false)).apply(lazy);
+        Assert.assertEquals(0, none.getNumOfRows());
+        ITable all = new FilterMap(BlockFilterTest.range(scd, "s", "t", true)).apply(lazy);
+        Assert.assertEquals(rows, all.getNumOfRows());
+        for (IColumn col : lazy.getColumns())
+            Assert.assertFalse(col.isLoaded());
+    }
 }
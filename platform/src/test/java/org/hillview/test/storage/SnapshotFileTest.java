@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.storage;
+
+import org.hillview.storage.FileSetDescription;
+import org.hillview.storage.IFileReference;
+import org.hillview.storage.SnapshotFileLoader;
+import org.hillview.storage.SnapshotFileWriter;
+import org.hillview.table.BlockColumnStatistics;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Table;
+import org.hillview.table.TableBlocks;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.ITable;
+import org.hillview.table.columns.*;
+import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.test.BaseTest;
+import org.hillview.utils.TestTables;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SnapshotFileTest extends BaseTest {
+    private static void deleteFolder(Path folder) {
+        File[] files = folder.toFile().listFiles();
+        if (files != null)
+            for (File f : files)
+                Assert.assertTrue(f.delete());
+        Assert.assertTrue(folder.toFile().delete());
+    }
+
+    private static Table mixedTable() {
+        final int size = 200;
+        IntArrayColumn ints = new IntArrayColumn(new ColumnDescription("I", ContentsKind.Integer), size);
+        DoubleArrayColumn doubles = new DoubleArrayColumn(new ColumnDescription("D", ContentsKind.Double), size);
+        DoubleArrayColumn dates = new DoubleArrayColumn(new ColumnDescription("T", ContentsKind.Date), size);
+        StringArrayColumn strings = new StringArrayColumn(new ColumnDescription("S", ContentsKind.String), size);
+        StringArrayColumn json = new StringArrayColumn(new ColumnDescription("J", ContentsKind.Json), size);
+        for (int i = 0; i < size; i++) {
+            if (i % 7 == 0)
+                ints.setMissing(i);
+            else
+                ints.set(i, i * 3 - 100);
+            if (i % 65 == 3)
+                doubles.setMissing(i);
+            else
+                doubles.set(i, i / 3.0);
+            dates.set(i, 1.5e12 + i * 1000.0);
+            strings.set(i, i % 5 == 0 ? null : "v\u00e9" + (i % 11));
+            json.set(i, "{\"a\": " + (i % 3) + "}");
+        }
+        List<IColumn> cols = new ArrayList<IColumn>();
+        cols.add(ints);
+        cols.add(doubles);
+        cols.add(dates);
+        cols.add(strings);
+        cols.add(json);
+        cols.add(new EmptyColumn("E", size));
+        return new Table(cols, null, null);
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        Path folder = Files.createTempDirectory("snapshot");
+        String file = folder.resolve("t.snapshot").toString();
+        for (Table t : new Table[] { mixedTable(), TestTables.testTable() }) {
+            new SnapshotFileWriter(file, "key").writeTable(t);
+            SnapshotFileLoader loader = new SnapshotFileLoader(file, "source", "key");
+            Assert.assertTrue(loader.isValid());
+            ITable table = loader.load();
+            Assert.assertEquals(t.getSchema(), table.getSchema());
+            Assert.assertEquals(t.toLongString(300), table.toLongString(300));
+            Assert.assertEquals("source", table.getSourceFile());
+            for (String col : t.getSchema().getColumnNames()) {
+                IColumn expected = t.getLoadedColumn(col);
+                IColumn actual = table.getLoadedColumn(col);
+                for (int i = 0; i < expected.sizeInRows(); i++)
+                    Assert.assertEquals(expected.isMissing(i), actual.isMissing(i));
+                Assert.assertEquals(expected.anyMissing(0, expected.sizeInRows()),
+                        actual.anyMissing(0, actual.sizeInRows()));
+                Assert.assertEquals(expected.anyMissing(4, 7), actual.anyMissing(4, 7));
+            }
+            Assert.assertFalse(new SnapshotFileLoader(file, "source", "other").isValid());
+        }
+        ITable table = new SnapshotFileLoader(file, "source", "key").load();
+        Assert.assertTrue(table.getLoadedColumn("Name") instanceof MappedStringColumn);
+        Assert.assertTrue(table.getLoadedColumn("Age") instanceof MappedIntColumn);
+        Assert.assertFalse(new SnapshotFileLoader(
+                folder.resolve("none").toString(), "source", "key").isValid());
+        deleteFolder(folder);
+    }
+
+    @Test
+    public void blocksTest() throws IOException {
+        Table t = mixedTable();
+        TableBlocks blocks = new TableBlocks(new int[] { 50, 100, 50 });
+        blocks.setStatistics("I", 0, BlockColumnStatistics.numeric(-100, 47, true, false));
+        blocks.setStatistics("I", 2, BlockColumnStatistics.missing());
+        blocks.setStatistics("D", 1, BlockColumnStatistics.numeric(16, 50, false, true));
+        blocks.setStatistics("S", 1, BlockColumnStatistics.strings("v\u00e90", "v\u00e99", true));
+        Table withBlocks = new Table(t.getColumns(), new FullMembershipSet(200), null, null, blocks);
+
+        Path folder = Files.createTempDirectory("snapshot");
+        String file = folder.resolve("t.snapshot").toString();
+        new SnapshotFileWriter(file, "key").writeTable(withBlocks);
+        TableBlocks loaded = new SnapshotFileLoader(file, "source", "key").load().getBlocks();
+        Assert.assertNotNull(loaded);
+        Assert.assertEquals(3, loaded.getBlockCount());
+        Assert.assertEquals(150, loaded.getEnd(1));
+        for (String col : t.getSchema().getColumnNames()) {
+            for (int b = 0; b < 3; b++) {
+                BlockColumnStatistics expected = blocks.getStatistics(col, b);
+                BlockColumnStatistics actual = loaded.getStatistics(col, b);
+                if (expected == null) {
+                    Assert.assertNull(actual);
+                    continue;
+                }
+                Assert.assertNotNull(actual);
+                Assert.assertEquals(expected.allMissing, actual.allMissing);
+                Assert.assertEquals(expected.hasMissing, actual.hasMissing);
+                Assert.assertEquals(expected.mayHaveNaN, actual.mayHaveNaN);
+                Assert.assertEquals(expected.minString, actual.minString);
+                Assert.assertEquals(expected.maxString, actual.maxString);
+                Assert.assertEquals(expected.min, actual.min, 0);
+                Assert.assertEquals(expected.max, actual.max, 0);
+            }
+        }
+
+        new SnapshotFileWriter(file, "key").writeTable(t);
+        Assert.assertNull(new SnapshotFileLoader(file, "source", "key").load().getBlocks());
+        deleteFolder(folder);
+    }
+
+    @Test
+    public void fileSetTest() throws IOException {
+        Path root = Files.createTempDirectory("snapshot");
+        Path folder = Files.createDirectory(root.resolve("data"));
+        System.setProperty(FileSetDescription.SNAPSHOT_ROOT_PROPERTY, root.toString());
+        FileSetDescription desc = new FileSetDescription();
+        desc.fileKind = "csv";
+        desc.headerRow = true;
+        String file = CsvFileTest.ontimeFolder + File.separator + CsvFileTest.csvFile;
+
+        // Folders outside the snapshot root are not used.
+        desc.snapshotFolder = "../outside";
+        desc.createFileReference(file).load();
+        SnapshotFileWriter.awaitBackgroundWrites();
+        Assert.assertFalse(root.resolveSibling("outside").toFile().exists());
+
+        desc.snapshotFolder = "data";
+        IFileReference ref = desc.createFileReference(file);
+        ITable parsed = ref.load();
+        SnapshotFileWriter.awaitBackgroundWrites();
+        File[] snapshots = folder.toFile().listFiles();
+        Assert.assertNotNull(snapshots);
+        Assert.assertEquals(1, snapshots.length);
+
+        ITable mapped = ref.load();
+        Assert.assertEquals(parsed.getSchema(), mapped.getSchema());
+        Assert.assertEquals(parsed.getNumOfRows(), mapped.getNumOfRows());
+        Assert.assertEquals(parsed.toLongString(100), mapped.toLongString(100));
+        String col = parsed.getSchema().getColumnNames().get(0);
+        Assert.assertTrue(mapped.getLoadedColumn(col) instanceof BaseMappedColumn);
+
+        // A different schema must not reuse the snapshot.
+        desc.headerRow = false;
+        ITable other = desc.createFileReference(file).load();
+        Assert.assertEquals(parsed.getNumOfRows() + 1, other.getNumOfRows());
+        SnapshotFileWriter.awaitBackgroundWrites();
+        System.clearProperty(FileSetDescription.SNAPSHOT_ROOT_PROPERTY);
+        deleteFolder(folder);
+        deleteFolder(root);
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.table;
+
+import org.hillview.maps.FilterMap;
+import org.hillview.table.BlockColumnStatistics;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Table;
+import org.hillview.table.TableBlocks;
+import org.hillview.table.api.*;
+import org.hillview.table.columns.DoubleArrayColumn;
+import org.hillview.table.columns.IntArrayColumn;
+import org.hillview.table.columns.StringArrayColumn;
+import org.hillview.table.filters.ComparisonFilterDescription;
+import org.hillview.table.filters.RangeFilterDescription;
+import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.test.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests filtering tables that carry block statistics.
+ */
+public class BlockFilterTest extends BaseTest {
+    private static final int rows = 1000;
+    private static final int blockSize = 100;
+
+    private final ColumnDescription icd = new ColumnDescription("I", ContentsKind.Integer);
+    private final ColumnDescription dcd = new ColumnDescription("D", ContentsKind.Double);
+    private final ColumnDescription scd = new ColumnDescription("S", ContentsKind.String);
+
+    private List<IColumn> getColumns() {
+        IntArrayColumn i = new IntArrayColumn(this.icd, rows);
+        DoubleArrayColumn d = new DoubleArrayColumn(this.dcd, rows);
+        StringArrayColumn s = new StringArrayColumn(this.scd, rows);
+        for (int r = 0; r < rows; r++) {
+            // The last block of I is missing, and some blocks have a few missing values.
+            if (r >= 900 || (r >= 600 && r % 50 == 7))
+                i.setMissing(r);
+            else
+                i.set(r, r / 3);
+            d.set(r, r == 550 ? Double.NaN : r * 0.5);
+            s.set(r, String.format("%04d", r / 10));
+        }
+        return Arrays.asList(i, d, s);
+    }
+
+    private static TableBlocks getBlocks(List<IColumn> columns) {
+        int[] blockRows = new int[rows / blockSize];
+        Arrays.fill(blockRows, blockSize);
+        TableBlocks blocks = new TableBlocks(blockRows);
+        for (IColumn col : columns) {
+            for (int b = 0; b < blocks.getBlockCount(); b++) {
+                boolean missing = false;
+                boolean nan = false;
+                double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                String minString = null, maxString = null;
+                for (int r = blocks.getStart(b); r < blocks.getEnd(b); r++) {
+                    if (col.isMissing(r)) {
+                        missing = true;
+                    } else if (col.getKind().isString()) {
+                        String v = col.getString(r);
+                        assert v != null;
+                        if (minString == null || v.compareTo(minString) < 0)
+                            minString = v;
+                        if (maxString == null || v.compareTo(maxString) > 0)
+                            maxString = v;
+                    } else {
+                        double v = col.asDouble(r);
+                        if (Double.isNaN(v)) {
+                            nan = true;
+                            continue;
+                        }
+                        min = Math.min(min, v);
+                        max = Math.max(max, v);
+                    }
+                }
+                BlockColumnStatistics stats;
+                if (col.getKind().isString())
+                    stats = minString == null ? BlockColumnStatistics.missing() :
+                        BlockColumnStatistics.strings(minString, maxString, missing);
+                else
+                    stats = min > max ? BlockColumnStatistics.missing() :
+                        BlockColumnStatistics.numeric(min, max, missing, nan);
+                blocks.setStatistics(col.getName(), b, stats);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Checks the statistics of a column in each block of a table against the
+     * values of the column.
+     * @param slack  How much the numeric bounds may be wider than the values.
+     */
+    public static void checkStatistics(ITable table, String column, double slack) {
+        TableBlocks blocks = table.getBlocks();
+        Assert.assertNotNull(blocks);
+        Assert.assertEquals(table.getNumOfRows(), blocks.getRowCount());
+        IColumn col = table.getLoadedColumn(column);
+        for (int b = 0; b < blocks.getBlockCount(); b++) {
+            BlockColumnStatistics stats = blocks.getStatistics(column, b);
+            Assert.assertNotNull(stats);
+            boolean missing = false;
+            boolean present = false;
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            String minString = null, maxString = null;
+            for (int r = blocks.getStart(b); r < blocks.getEnd(b); r++) {
+                if (col.isMissing(r)) {
+                    missing = true;
+                    continue;
+                }
+                present = true;
+                if (col.getKind().isString()) {
+                    String v = col.getString(r);
+                    assert v != null;
+                    if (minString == null || v.compareTo(minString) < 0)
+                        minString = v;
+                    if (maxString == null || v.compareTo(maxString) > 0)
+                        maxString = v;
+                } else {
+                    double v = col.asDouble(r);
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+            }
+            Assert.assertEquals(!present, stats.allMissing);
+            if (!present)
+                continue;
+            Assert.assertEquals(missing, stats.hasMissing);
+            if (col.getKind().isString()) {
+                Assert.assertEquals(minString, stats.minString);
+                Assert.assertEquals(maxString, stats.maxString);
+            } else {
+                Assert.assertTrue(stats.min <= min && min - stats.min <= slack);
+                Assert.assertTrue(stats.max >= max && stats.max - max <= slack);
+            }
+        }
+    }
+
+    public static RangeFilterDescription range(
+            ColumnDescription cd, double min, double max, boolean includeMissing) {
+        RangeFilterDescription result = new RangeFilterDescription();
+        result.cd = cd;
+        result.min = min;
+        result.max = max;
+        result.includeMissing = includeMissing;
+        return result;
+    }
+
+    public static RangeFilterDescription range(
+            ColumnDescription cd, String min, String max, boolean includeMissing) {
+        RangeFilterDescription result = new RangeFilterDescription();
+        result.cd = cd;
+        result.minString = min;
+        result.maxString = max;
+        result.includeMissing = includeMissing;
+        return result;
+    }
+
+    private static void assertSameRows(IMembershipSet expected, IMembershipSet actual) {
+        Assert.assertEquals(expected.getSize(), actual.getSize());
+        IRowIterator it = expected.getIterator();
+        for (int r = it.getNextRow(); r >= 0; r = it.getNextRow())
+            Assert.assertTrue(actual.isMember(r));
+    }
+
+    @Test
+    public void filterTest() {
+        List<IColumn> columns = this.getColumns();
+        Table plain = new Table(columns, null, null);
+        Table blocked = new Table(columns, new FullMembershipSet(rows), null, null,
+                getBlocks(columns));
+        List<ITableFilterDescription> filters = new ArrayList<ITableFilterDescription>();
+        for (boolean missing : new boolean[] { false, true }) {
+            filters.add(range(this.icd, 10, 50, missing));
+            filters.add(range(this.icd, 0, 1000, missing));
+            filters.add(range(this.icd, 250, 260, missing));
+            filters.add(range(this.icd, 500, 100, missing));
+            filters.add(range(this.dcd, 100, 200, missing));
+            filters.add(range(this.dcd, 0, 1000, missing));
+            filters.add(range(this.scd, "0020", "0050", missing));
+            filters.add(range(this.scd, "", "1", missing));
+        }
+        for (String op : new String[] { "==", "!=", "<", ">", "<=", ">=" }) {
+            for (double c : new double[] { -1, 50, 200, 400 })
+                filters.add(new ComparisonFilterDescription(this.icd, null, c, null, op));
+            for (double c : new double[] { 100, 275, 1000 })
+                filters.add(new ComparisonFilterDescription(this.dcd, null, c, null, op));
+            for (String c : new String[] { "0030", "9999" })
+                filters.add(new ComparisonFilterDescription(this.scd, c, null, null, op));
+            filters.add(new ComparisonFilterDescription(this.icd, null, null, null, op));
+        }
+        for (ITableFilterDescription filter : filters) {
+            FilterMap map = new FilterMap(filter);
+            ITable expected = map.apply(plain);
+            ITable actual = map.apply(blocked);
+            assertSameRows(expected.getMembershipSet(), actual.getMembershipSet());
+        }
+
+        // Filtering a filtered table.
+        ITable first = new FilterMap(range(this.dcd, 100, 400, false)).apply(blocked);
+        ITable firstPlain = new FilterMap(range(this.dcd, 100, 400, false)).apply(plain);
+        FilterMap second = new FilterMap(range(this.icd, 0, 100, true));
+        assertSameRows(second.apply(firstPlain).getMembershipSet(),
+                second.apply(first).getMembershipSet());
+    }
+
+    @Test
+    public void lazyTest() {
+        List<IColumn> columns = this.getColumns();
+        Table data = new Table(columns, null, null);
+        List<List<String>> requests = new ArrayList<List<String>>();
+        IColumnLoader loader = names -> {
+            requests.add(names);
+            return data.getLoadedColumns(names);
+        };
+        Table lazy = Table.createLazyTable(data.getSchema().getColumnDescriptions(),
+                rows, null, loader, getBlocks(columns));
+
+        // All blocks are decided from the statistics.
+        ITable all = new FilterMap(range(this.icd, 0, 1000, true)).apply(lazy);
+        Assert.assertEquals(rows, all.getNumOfRows());
+        ITable none = new FilterMap(range(this.icd, 2000, 3000, false)).apply(lazy);
+        Assert.assertEquals(0, none.getNumOfRows());
+        Assert.assertEquals(0, requests.size());
+
+        // Blocks 6-8 have a few missing values, so the column has to be loaded once.
+        ITable missing = new FilterMap(range(this.icd, 2000, 3000, true)).apply(lazy);
+        Assert.assertEquals(1, requests.size());
+        ITable expected = new FilterMap(range(this.icd, 2000, 3000, true)).apply(data);
+        assertSameRows(expected.getMembershipSet(), missing.getMembershipSet());
+    }
+}
@@ -21,12 +21,14 @@ import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.IMutableMembershipSet;
 import org.hillview.table.api.IRowIterator;
 import org.hillview.table.api.ISampledRowIterator;
+import org.hillview.table.membership.CompressedMembershipSet;
 import org.hillview.table.membership.DenseMembershipSet;
 import org.hillview.table.membership.EmptyMembershipSet;
 import org.hillview.table.membership.FullMembershipSet;
 import org.hillview.table.membership.MembershipSetFactory;
 import org.hillview.test.BaseTest;
 import org.hillview.utils.IntSet;
+import org.hillview.utils.Randomness;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -155,4 +157,100 @@ public class MembershipTest extends BaseTest {
         Assert.assertTrue( counter > 0.9 * iter.rate() * dms.getSize());
         Assert.assertTrue( counter < 1.1 * iter.rate() * dms.getSize());
     }
+
+    /**
+     * Fills a compressed and a dense set with the same rows.  The rows include
+     * sparse chunks, dense chunks and long runs, so all container kinds are used.
+     */
+    private static IMembershipSet[] makeSets(int max, Randomness random) {
+        CompressedMembershipSet cms = new CompressedMembershipSet(max);
+        DenseMembershipSet dms = new DenseMembershipSet(max, max);
+        for (int i = 0; i < max; i++) {
+            int chunk = i / CompressedMembershipSet.CHUNK_SIZE;
+            boolean add;
+            switch (chunk % 4) {
+                case 0:
+                    add = random.nextInt(100) == 0;
+                    break;
+                case 1:
+                    add = random.nextInt(2) == 0;
+                    break;
+                case 2:
+                    add = (i / 1000) % 2 == 0;
+                    break;
+                default:
+                    add = false;
+                    break;
+            }
+            if (add) {
+                cms.add(i);
+                dms.add(i);
+            }
+        }
+        return new IMembershipSet[] { cms.seal(), dms };
+    }
+
+    private static void assertSameRows(IMembershipSet expected, IMembershipSet actual) {
+        Assert.assertEquals(expected.getSize(), actual.getSize());
+        IRowIterator it = actual.getIterator();
+        IRowIterator exp = expected.getIterator();
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+            Assert.assertEquals(exp.getNextRow(), row);
+        Assert.assertEquals(-1, exp.getNextRow());
+    }
+
+    @Test
+    public void TestCompressedMembership() {
+        final int max = 10 * CompressedMembershipSet.CHUNK_SIZE + 123;
+        Randomness random = new Randomness(1);
+        IMembershipSet[] first = makeSets(max, random);
+        IMembershipSet[] second = makeSets(max, random);
+        assertSameRows(first[1], first[0]);
+        for (int i = 0; i < max; i += 7)
+            Assert.assertEquals(first[1].isMember(i), first[0].isMember(i));
+        assertSameRows(first[1].union(second[1]), first[0].union(second[0]));
+        assertSameRows(first[1].intersection(second[1]), first[0].intersection(second[0]));
+        assertSameRows(first[1].setMinus(second[1]), first[0].setMinus(second[0]));
+        assertSameRows(second[1].setMinus(first[1]), second[0].setMinus(first[0]));
+
+        int start = CompressedMembershipSet.CHUNK_SIZE - 10;
+        int end = 5 * CompressedMembershipSet.CHUNK_SIZE + 10;
+        IRowIterator it = first[0].getIterator(start, end);
+        IRowIterator exp = first[1].getIterator(start, end);
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+            Assert.assertEquals(exp.getNextRow(), row);
+        Assert.assertEquals(-1, exp.getNextRow());
+
+        for (int k : new int[] { 40, first[0].getSize() / 2 }) {
+            IMembershipSet sample = first[0].sample(k, 2);
+            Assert.assertEquals(k, sample.getSize());
+            Assert.assertEquals(k, sample.intersection(first[0]).getSize());
+        }
+        ISampledRowIterator sampled = first[0].getIteratorOverSample(0.05, 3, false);
+        int counter = 0;
+        int previous = -1;
+        for (int row = sampled.getNextRow(); row >= 0; row = sampled.getNextRow()) {
+            Assert.assertTrue(row > previous);
+            Assert.assertTrue(first[0].isMember(row));
+            previous = row;
+            counter++;
+        }
+        Assert.assertTrue(counter > 0.9 * sampled.rate() * first[0].getSize());
+        Assert.assertTrue(counter < 1.1 * sampled.rate() * first[0].getSize());
+    }
+
+    @Test
+    public void TestCompressedFullChunks() {
+        final int max = 3 * CompressedMembershipSet.CHUNK_SIZE;
+        IMembershipSet full = new FullMembershipSet(max);
+        IMembershipSet all = full.filter(row -> true);
+        Assert.assertTrue(all instanceof CompressedMembershipSet);
+        assertSameRows(full, all);
+        IMembershipSet even = full.filter(row -> row % 2 == 0);
+        IMembershipSet odd = all.setMinus(even);
+        Assert.assertEquals(max / 2, odd.getSize());
+        assertSameRows(all, odd.union(even));
+        Assert.assertEquals(0, odd.intersection(even).getSize());
+        Assert.assertSame(even, even.intersection(full));
+    }
 }
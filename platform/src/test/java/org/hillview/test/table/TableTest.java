@@ -17,13 +17,19 @@
 
 package org.hillview.test.table;
 
+import org.hillview.sketches.Histogram2DSketch;
+import org.hillview.sketches.results.Count;
+import org.hillview.sketches.results.DoubleHistogramBuckets;
+import org.hillview.sketches.results.Groups;
 import org.hillview.table.*;
 import org.hillview.table.api.ContentsKind;
 import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IColumnLoader;
 import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.ITable;
 import org.hillview.table.columns.DoubleListColumn;
 import org.hillview.table.columns.IntArrayColumn;
+import org.hillview.table.columns.LazyColumn;
 import org.hillview.table.membership.FullMembershipSet;
 import org.hillview.test.BaseTest;
 import org.hillview.utils.Converters;
@@ -39,6 +45,7 @@ import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hillview.test.table.DoubleArrayTest.generateDoubleArray;
 
@@ -49,6 +56,74 @@ public class TableTest extends BaseTest {
         Assert.assertNotNull(leftTable);
     }
 
+    @Test
+    public void lazyColumnTest() {
+        final SmallTable data = TestTables.getIntTable(100, 2);
+        AtomicInteger loads = new AtomicInteger(0);
+        IColumnLoader loader = names -> {
+            loads.addAndGet(names.size());
+            return data.getLoadedColumns(names);
+        };
+        Table lazy = Table.createLazyTable(
+                data.getSchema().getColumnDescriptions(), 100, null, loader);
+        ITable filtered = lazy.selectRowsFromFullTable(
+                lazy.getMembershipSet().filter(r -> r % 2 == 0));
+        IColumn col = lazy.getLoadedColumn("Column0");
+        Assert.assertFalse(col instanceof LazyColumn);
+        Assert.assertEquals(1, loads.get());
+        // The filtered table shares the lazy column, which is now loaded.
+        IColumn fcol = filtered.getLoadedColumn("Column0");
+        Assert.assertFalse(fcol instanceof LazyColumn);
+        Assert.assertSame(col, fcol);
+        Assert.assertEquals(1, loads.get());
+        LazyColumn lc = filtered.getColumn("Column1").as(LazyColumn.class);
+        Assert.assertNotNull(lc);
+        Assert.assertEquals(data.getColumn("Column1").getInt(3), lc.getInt(3));
+        Assert.assertSame(lc.getLoadedColumn(), filtered.getLoadedColumn("Column1"));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void lazyBatchTest() throws InterruptedException {
+        final SmallTable data = TestTables.getIntTable(100, 3);
+        List<List<String>> requests = new ArrayList<List<String>>();
+        IColumnLoader loader = names -> {
+            synchronized (requests) {
+                requests.add(new ArrayList<String>(names));
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return data.getLoadedColumns(names);
+        };
+        Table lazy = Table.createLazyTable(
+                data.getSchema().getColumnDescriptions(), 100, null, loader);
+        // Both columns of a 2D histogram are loaded with a single request.
+        Histogram2DSketch sketch = new Histogram2DSketch(
+                new DoubleHistogramBuckets("Column0", 0, 100, 10),
+                new DoubleHistogramBuckets("Column1", 0, 100, 10));
+        Groups<Groups<Count>> expected = sketch.create(data);
+        Assert.assertEquals(expected, sketch.create(lazy));
+        Assert.assertEquals(1, requests.size());
+        Assert.assertEquals(2, requests.get(0).size());
+
+        // Concurrent requests from tables sharing a lazy column load it once.
+        ITable even = lazy.selectRowsFromFullTable(
+                lazy.getMembershipSet().filter(r -> r % 2 == 0));
+        ITable odd = lazy.selectRowsFromFullTable(
+                lazy.getMembershipSet().filter(r -> r % 2 == 1));
+        Thread t0 = new Thread(() -> even.getLoadedColumn("Column2"));
+        Thread t1 = new Thread(() -> odd.getLoadedColumn("Column2"));
+        t0.start();
+        t1.start();
+        t0.join();
+        t1.join();
+        Assert.assertEquals(2, requests.size());
+        Assert.assertSame(even.getLoadedColumn("Column2"), odd.getLoadedColumn("Column2"));
+    }
+
     @Test
     public void renameTest0() {
         final SmallTable table = TestTables.getIntTable(100, 2);
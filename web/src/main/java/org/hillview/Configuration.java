@@ -81,4 +81,25 @@ public class Configuration {
     public String getGreenplumDumpDirectory() {
         return this.getProperty("greenplumDumpDirectory", "/tmp");
     }
+
+    /**
+     * Maximum total length in characters of the sketch results cached by the root node.
+     */
+    public long getResultCacheSize() {
+        return Long.parseLong(this.getProperty("resultCacheSize", "100000000"));
+    }
+
+    /**
+     * Time in seconds after which a sketch result cached by the root node is discarded.
+     */
+    public long getResultCacheTimeout() {
+        return Long.parseLong(this.getProperty("resultCacheTimeout", "600"));
+    }
+
+    /**
+     * Maximum number of noise values cached for private histograms.
+     */
+    public int getNoiseCacheSize() {
+        return Integer.parseInt(this.getProperty("noiseCacheSize", "4000000"));
+    }
 }
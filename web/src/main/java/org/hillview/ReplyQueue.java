@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview;
+
+import org.hillview.utils.HillviewLogger;
+
+import javax.annotation.Nullable;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Sends the replies of one web socket session in order, using the
+ * asynchronous remote endpoint, so a slow client only delays its own replies.
+ * At most one message of the session is in flight at any time.
+ * While a message is being sent, a partial reply that follows another partial reply
+ * to the same request replaces it: partial results are cumulative, so only the
+ * latest one needs to be sent.  Large replies are sent as deflate-compressed binary
+ * frames; small ones as text frames.
+ */
+final class ReplyQueue {
+    /**
+     * Replies whose serialized length exceeds this many characters are compressed.
+     */
+    static final int COMPRESSION_THRESHOLD = 32 * 1024;
+
+    private final Session session;
+    /**
+     * Executes the serialization and the start of each send.
+     */
+    private final Executor executor;
+    /**
+     * Replies not yet sent; an item with a null reply closes the session.
+     */
+    private final ArrayDeque<Item> pending;
+    /**
+     * True while a message is being prepared or sent.
+     */
+    private boolean sending;
+    /**
+     * Invoked after the session has been closed.
+     */
+    private final Runnable onClose;
+
+    private static final class Item {
+        @Nullable
+        RpcReply reply;  // null for close
+
+        Item(@Nullable RpcReply reply) {
+            this.reply = reply;
+        }
+    }
+
+    ReplyQueue(Session session, Executor executor, Runnable onClose) {
+        this.session = session;
+        this.executor = executor;
+        this.onClose = onClose;
+        this.pending = new ArrayDeque<Item>();
+        this.sending = false;
+    }
+
+    synchronized void send(RpcReply reply) {
+        Item last = this.pending.peekLast();
+        if (reply.isPartial() && last != null && last.reply != null &&
+                last.reply.isPartial() && last.reply.getRequestId() == reply.getRequestId()) {
+            last.reply = reply;
+            return;
+        }
+        this.enqueue(new Item(reply));
+    }
+
+    /**
+     * Closes the session after all the replies enqueued so far have been sent.
+     */
+    synchronized void close() {
+        this.enqueue(new Item(null));
+    }
+
+    private void enqueue(Item item) {
+        this.pending.add(item);
+        if (!this.sending) {
+            this.sending = true;
+            this.executor.execute(this::sendNext);
+        }
+    }
+
+    @Nullable
+    private synchronized Item next() {
+        Item item = this.pending.poll();
+        if (item == null)
+            this.sending = false;
+        return item;
+    }
+
+    private void sendNext() {
+        while (true) {
+            Item item = this.next();
+            if (item == null)
+                return;
+            RpcReply reply = item.reply;
+            if (reply == null) {
+                this.closeSession();
+                continue;
+            }
+            if (!this.session.isOpen()) {
+                HillviewLogger.instance.warn("Session closed; dropping reply", "{0}", reply);
+                continue;
+            }
+            try {
+                String text = reply.toJson().toString();
+                if (text.length() > COMPRESSION_THRESHOLD)
+                    this.session.getAsyncRemote().sendBinary(compress(text), this::sent);
+                else
+                    this.session.getAsyncRemote().sendText(text, this::sent);
+                // The next reply is sent when this one completes.
+                return;
+            } catch (Exception e) {
+                HillviewLogger.instance.error("Could not send reply", e);
+            }
+        }
+    }
+
+    private void sent(SendResult result) {
+        if (!result.isOK())
+            HillviewLogger.instance.error("Could not send reply", result.getException());
+        // Do not block the thread of the web server.
+        this.executor.execute(this::sendNext);
+    }
+
+    private void closeSession() {
+        try {
+            if (this.session.isOpen())
+                this.session.close();
+            this.onClose.run();
+        } catch (Exception ex) {
+            HillviewLogger.instance.error("Error closing context", ex);
+        }
+    }
+
+    static ByteBuffer compress(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() / 4);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(bytes)) {
+            deflater.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.hillview.utils.HillviewLogger;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the final post-processed results of the sketches run by the web server,
+ * so that repeated requests (redraws, resizes, or several users opening the same view)
+ * are answered without running the distributed computation again.
+ * Results are keyed by the target id, the method, and the canonical JSON encoding of
+ * the arguments.  Since the datasets of targets are immutable the results never become
+ * stale; targets backed by live databases are the exception, and are not cached.
+ * Entries are removed in LRU order when the total size of the cached results
+ * exceeds a bound, when they are older than a time limit, or when the target is deleted.
+ * The statistics of the cache are reported by the resultCacheStatistics RPC.
+ * This is a singleton.
+ */
+public final class ResultCache {
+    public static final ResultCache instance = new ResultCache(
+            Configuration.instance.getResultCacheSize(),
+            Configuration.instance.getResultCacheTimeout() * 1000);
+
+    private static final class Entry {
+        final RpcTarget.Id target;
+        /**
+         * JSON encoding of the result sent to the client.
+         */
+        final String result;
+        final long created;
+
+        Entry(RpcTarget.Id target, String result, long created) {
+            this.target = target;
+            this.result = result;
+            this.created = created;
+        }
+    }
+
+    /**
+     * Maximum total length of the cached results, in characters.
+     */
+    private final long maxSize;
+    /**
+     * Maximum age of a cached result, in milliseconds.
+     */
+    private final long timeout;
+    // Entries in access order.
+    private final LinkedHashMap<String, Entry> entries;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ResultCache(long maxSize, long timeout) {
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+        this.entries = new LinkedHashMap<String, Entry>(100, .75f, true);
+        this.size = 0;
+    }
+
+    /**
+     * The key identifying the result of a request, or null if the
+     * arguments of the request cannot be parsed.
+     */
+    @Nullable
+    static String getKey(RpcTarget.Id target, RpcRequest request) {
+        String args = request.getArguments();
+        String canonical = "";
+        if (args != null) {
+            try {
+                canonical = canonicalJson(JsonParser.parseString(args));
+            } catch (Exception ex) {
+                return null;
+            }
+        }
+        return target + "." + request.method + "(" + canonical + ")";
+    }
+
+    /**
+     * Encodes a JSON value with the fields of all objects sorted by name,
+     * so that equivalent arguments have the same encoding.
+     */
+    static String canonicalJson(JsonElement element) {
+        return canonical(element).toString();
+    }
+
+    private static JsonElement canonical(JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject obj = element.getAsJsonObject();
+            List<String> names = new ArrayList<String>(obj.keySet());
+            Collections.sort(names);
+            JsonObject result = new JsonObject();
+            for (String name : names)
+                result.add(name, canonical(obj.get(name)));
+            return result;
+        } else if (element.isJsonArray()) {
+            JsonArray result = new JsonArray();
+            for (JsonElement e : element.getAsJsonArray())
+                result.add(canonical(e));
+            return result;
+        }
+        return element;
+    }
+
+    /**
+     * Returns the cached result with the specified key, or null if there is none.
+     */
+    @Nullable
+    synchronized String get(String key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.created > this.timeout) {
+            this.remove(key);
+            this.evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        HillviewLogger.instance.info("Result cache hit", "{0}", this);
+        return entry.result;
+    }
+
+    synchronized void put(String key, RpcTarget.Id target, String result) {
+        if (result.length() > this.maxSize)
+            return;
+        this.remove(key);
+        this.entries.put(key, new Entry(target, result, System.currentTimeMillis()));
+        this.size += result.length();
+        Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+        while (this.size > this.maxSize && it.hasNext()) {
+            this.size -= it.next().getValue().result.length();
+            it.remove();
+            this.evictions++;
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = this.entries.remove(key);
+        if (entry != null)
+            this.size -= entry.result.length();
+    }
+
+    /**
+     * Removes all the results computed on the specified target.
+     */
+    synchronized void invalidate(RpcTarget.Id target) {
+        Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.target.equals(target)) {
+                this.size -= entry.result.length();
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void clear() {
+        this.entries.clear();
+        this.size = 0;
+    }
+
+    synchronized long getHits() { return this.hits; }
+
+    synchronized long getMisses() { return this.misses; }
+
+    synchronized long getEvictions() { return this.evictions; }
+
+    @Override
+    public synchronized String toString() {
+        return "ResultCache[entries=" + this.entries.size() + ", size=" + this.size +
+                ", hits=" + this.hits + ", misses=" + this.misses +
+                ", evictions=" + this.evictions + "]";
+    }
+}
@@ -125,6 +125,7 @@ public final class RpcObjectManager {
 
     void deleteObject(RpcTarget.Id id) {
         this.objectLog.deleteObject(id);
+        ResultCache.instance.invalidate(id);
     }
 
     /**
@@ -209,6 +210,7 @@ public final class RpcObjectManager {
      * @return  The number of objects removed.
      */
     public int removeAllObjects() {
+        ResultCache.instance.clear();
         return this.objectLog.removeAllObjects(initialObjectId);
     }
 }
@@ -66,6 +66,18 @@ public final class RpcReply {
         this.isCompleted = true;
     }
 
+    int getRequestId() {
+        return this.requestId;
+    }
+
+    /**
+     * True if this reply carries a (partial) result, which is superseded by
+     * the next result for the same request.
+     */
+    boolean isPartial() {
+        return !this.isError && !this.isCompleted;
+    }
+
     JsonElement toJson() {
         JsonObject result = new JsonObject();
         result.addProperty("requestId", this.requestId);
@@ -75,12 +75,17 @@ public final class RpcRequest implements IJson {
         return new RpcTarget.Id[] { this.objectId };
     }
 
+    @Nullable
+    String getArguments() {
+        return this.arguments;
+    }
+
     @Override
     public String toString() {
         return this.objectId + "." + this.method + "()";
     }
 
-    private RpcReply createReply(String json) {
+    RpcReply createReply(String json) {
         return new RpcReply(this.requestId, json, false);
     }
 
@@ -25,10 +25,12 @@ import org.hillview.utils.HillviewLogger;
 import org.hillview.utils.Utilities;
 import rx.Subscription;
 
+import javax.annotation.Nullable;
 import javax.websocket.*;
 import javax.websocket.server.ServerEndpoint;
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.zip.InflaterInputStream;
@@ -48,21 +50,40 @@ public final class RpcServer {
     /**
      * There seems to be a significant bug in RxJava: when onComplete is called,
      * it may kill the consumer thread, even if that thread may not have finished
-     * processing the previous onNext.  So we use a different thread to do
-     * the actual message sending.  This thread pool must have exactly 1 thread,
-     * because we want all rpc replies to be sent in the same order as they are prepared.
+     * processing the previous onNext.  So we use different threads to do
+     * the actual message sending.  Each session has a queue that sends its
+     * replies in the order they are prepared; different sessions proceed independently.
      */
-    private static final ExecutorService replyExecutor = Executors.newSingleThreadExecutor();
+    private static final ExecutorService replyExecutor = Executors.newCachedThreadPool();
+    private static final ConcurrentHashMap<Session, ReplyQueue> replyQueues =
+            new ConcurrentHashMap<Session, ReplyQueue>();
+
+    /**
+     * Returns the reply queue of a session; a queue is only created for an open
+     * session, so that replies arriving after onClose do not leak a queue.
+     * Returns null if the session is closed and has no queue.
+     */
+    @Nullable
+    private static ReplyQueue getReplyQueue(Session session) {
+        if (!session.isOpen())
+            return replyQueues.get(session);
+        ReplyQueue queue = replyQueues.computeIfAbsent(session, s -> new ReplyQueue(s, replyExecutor, () -> {
+            replyQueues.remove(s);
+            RpcObjectManager.instance.removeSession(s);
+        }));
+        // The session may have been closed, and onClose may have run, meanwhile.
+        if (!session.isOpen())
+            replyQueues.remove(session, queue);
+        return queue;
+    }
 
     public static void sendReply(RpcReply reply, Session session) {
-        replyExecutor.execute(() -> {
-            try {
-                JsonElement json = reply.toJson();
-                session.getBasicRemote().sendText(json.toString());
-            } catch (Exception e) {
-                HillviewLogger.instance.error("Could not send reply", e);
-            }
-        });
+        ReplyQueue queue = getReplyQueue(session);
+        if (queue == null) {
+            HillviewLogger.instance.warn("Session closed; dropping reply", "{0}", reply);
+            return;
+        }
+        queue.send(reply);
     }
 
     public static void requestCompleted(RpcRequest request, Session session) {
@@ -72,17 +93,10 @@ public final class RpcServer {
     }
 
     public static void closeSession(final Session session) {
-        // We use replyExecutor to make sure that the session closing
-        // is performed after all replies on that session have been sent.
-        replyExecutor.execute(() -> {
-            try {
-                if (session.isOpen())
-                    session.close();
-                RpcObjectManager.instance.removeSession(session);
-            } catch (Exception ex) {
-                HillviewLogger.instance.error("Error closing context", ex);
-            }
-        });
+        // The session is closed after all replies on that session have been sent.
+        ReplyQueue queue = getReplyQueue(session);
+        if (queue != null)
+            queue.close();
     }
 
     @SuppressWarnings("unused")
@@ -157,6 +171,7 @@ public final class RpcServer {
             RpcObjectManager.instance.removeSubscription(session);
         }
         RpcObjectManager.instance.removeSession(session);
+        replyQueues.remove(session);
     }
 
     @SuppressWarnings("unused")
@@ -115,14 +115,8 @@ public abstract class RpcTarget implements IJson, IRpcTarget {
      * one of the methods below.
      */
     void execute(RpcRequest request, RpcRequestContext context) {
-        /*
-        HillviewComputation computation = new HillviewComputation(this, request);
-        String resultId = RpcObjectManager.instance.checkCache(computation);
-        if (resultId != null) {
-            RpcObjectManager.instance.getObject(resultId);
-        }
-        TODO: check if computation has happened and just send result back.
-        */
+        // Results of sketches that have already been computed are
+        // sent back from the ResultCache by runSketch and runCompleteSketch.
         try {
             Object[] args = { request, context };
             Statement s = new Statement(this, request.method, args);
@@ -153,6 +147,11 @@ public abstract class RpcTarget implements IJson, IRpcTarget {
         final RpcRequestContext context;
         final String name;
         final RpcTarget target;
+        /**
+         * If not null the final result is saved in the ResultCache with this key.
+         */
+        @Nullable
+        String cacheKey;
 
         ResultObserver(String name, RpcRequest request, RpcTarget target,
                        RpcRequestContext context) {
@@ -160,6 +159,12 @@ public abstract class RpcTarget implements IJson, IRpcTarget {
             this.request = request;
             this.context = context;
             this.target = target;
+            this.cacheKey = null;
+        }
+
+        void cacheResult(String result) {
+            if (this.cacheKey != null)
+                ResultCache.instance.put(this.cacheKey, this.target.getId(), result);
         }
 
         void sendReply(final RpcReply reply) {
@@ -245,12 +250,25 @@ public abstract class RpcTarget implements IJson, IRpcTarget {
      */
     static class SketchResultObserver<R, S extends IJson> extends ResultObserver<R> {
         private final Function<R, S> postprocessing;
+        /**
+         * Last result sent to the client.
+         */
+        @Nullable
+        private String last;
 
         SketchResultObserver(String name, RpcTarget target, RpcRequest request,
                              RpcRequestContext context,
                              Function<R, S> postprocessing) {
             super(name, request, target, context);
             this.postprocessing = postprocessing;
+            this.last = null;
+        }
+
+        @Override
+        public void onCompleted() {
+            if (this.last != null)
+                this.cacheResult(this.last);
+            super.onCompleted();
         }
 
         @Override
@@ -269,7 +287,8 @@ public abstract class RpcTarget implements IJson, IRpcTarget {
                     json.add("data", null);
                 else
                     json.add("data", result.toJsonTree());
-                RpcReply reply = this.request.createReply(json);
+                this.last = json.toString();
+                RpcReply reply = this.request.createReply(this.last);
                 this.sendReply(reply);
             } catch (Exception ex) {
                 HillviewLogger.instance.error("Exception during serialization to JSON", ex);
@@ -351,7 +370,9 @@ public abstract class RpcTarget implements IJson, IRpcTarget {
                 return; // no not send any other replies
             }
 
-            RpcReply reply = this.request.createReply(json);
+            String text = json.toString();
+            this.cacheResult(text);
+            RpcReply reply = this.request.createReply(text);
             this.sendReply(reply);
             super.onCompleted();
         }
@@ -439,13 +460,58 @@ public abstract class RpcTarget implements IJson, IRpcTarget {
         this.saveSubscription(context, sub);
     }
 
+    /**
+     * True if the results of the sketches run on this target can be kept in the
+     * ResultCache.  Targets whose data can change, e.g., tables read from a live
+     * database, override this to return false.
+     */
+    protected boolean cacheResults() {
+        return true;
+    }
+
+    /**
+     * Key of the result of a sketch request in the ResultCache, or null if the
+     * result should not be cached.  The results of the initial object are not cached,
+     * since they depend on the state of the file system.
+     */
+    @Nullable
+    private String getCacheKey(RpcRequest request, RpcRequestContext context) {
+        if (this.objectId.isInitial() || context.session == null || !this.cacheResults())
+            return null;
+        return ResultCache.getKey(this.objectId, request);
+    }
+
+    /**
+     * If the result with the specified key is cached, send it to the client.
+     * @return True if the request has been answered.
+     */
+    private boolean replyFromCache(@Nullable String key, RpcRequest request,
+                                   RpcRequestContext context) {
+        if (key == null)
+            return false;
+        String result = ResultCache.instance.get(key);
+        if (result == null)
+            return false;
+        Session session = context.getSessionIfOpen();
+        if (session == null)
+            return true;
+        RpcServer.sendReply(request.createReply(result), session);
+        RpcServer.requestCompleted(request, session);
+        request.syncCloseSession(session);
+        return true;
+    }
+
     @Override
     public <T, R extends ISketchResult, S extends IJson> void
     runSketch(IDataSet<T> data, PostProcessedSketch<T, R, S> sketch,
               RpcRequest request, RpcRequestContext context) {
+        String key = this.getCacheKey(request, context);
+        if (this.replyFromCache(key, request, context))
+            return;
         SketchResultObserver<R, S> robs =
                 new SketchResultObserver<R, S>(
                         sketch.sketch.asString(), this, request, context, sketch::postProcess);
+        robs.cacheKey = key;
         this.runObservedSketch(data, sketch, robs, context);
     }
 
@@ -453,8 +519,12 @@ public abstract class RpcTarget implements IJson, IRpcTarget {
     public <T, R extends ISketchResult, S extends IJson> void
     runCompleteSketch(IDataSet<T> data, PostProcessedSketch<T, R, S> sketch,
                       RpcRequest request, RpcRequestContext context) {
+        String key = this.getCacheKey(request, context);
+        if (this.replyFromCache(key, request, context))
+            return;
         CompleteSketchResultObserver<R, S> robs = new CompleteSketchResultObserver<R, S>(
                 sketch.sketch.asString(), this, request, context, sketch::postProcess);
+        robs.cacheKey = key;
         this.runObservedSketch(data, sketch, robs, context);
     }
 
@@ -57,14 +57,12 @@ public class DPHeatmapSketch<IG extends IGroup<Count>, OG extends IGroup<IG>>
             double scale,
             double baseVariance,
             /*out*/Noise result) {
+        double[] values = new double[xIntervals.size() * yIntervals.size()];
+        this.laplace.sampleLaplace(this.columnsIndex, scale, xIntervals, yIntervals, values);
         result.clear();
-        for (Pair<Integer, Integer> x : xIntervals) {
-            for (Pair<Integer, Integer> y : yIntervals) {
-                result.add(this.laplace.sampleLaplace(this.columnsIndex, scale, x, y), baseVariance);
-            }
-        }
-
-        return xIntervals.size() * yIntervals.size();
+        for (double v : values)
+            result.add(v, baseVariance);
+        return values.length;
     }
 
     public int noiseForRange(int left, int right, int top, int bot,
@@ -107,11 +105,30 @@ public class DPHeatmapSketch<IG extends IGroup<Count>, OG extends IGroup<IG>>
         for (int i = 0; i < ySize; i++)
             yIntervals.add(this.dy.bucketDecomposition(i, false));
 
-        // Compute the noise.
+        // The y intervals of all buckets, concatenated; the intervals of bucket j
+        // start at firstY[j].
+        List<Pair<Integer, Integer>> allY = new ArrayList<Pair<Integer, Integer>>();
+        int[] firstY = new int[ySize + 1];
+        for (int j = 0; j < ySize; j++) {
+            firstY[j] = allY.size();
+            allY.addAll(yIntervals.get(j));
+        }
+        firstY[ySize] = allY.size();
+
+        // Compute the noise; the noise of all the buckets in a row is sampled at once.
         Noise noise = new Noise();
         for (int i = 0; i < xSize; i++) {
+            List<Pair<Integer, Integer>> x = xIntervals.get(i);
+            double[] rowNoise = new double[x.size() * allY.size()];
+            this.laplace.sampleLaplace(this.columnsIndex, this.scale, x, allY, rowNoise);
             for (int j = 0; j < ySize; j++) {
-                long nIntervals = this.noiseForDecomposition(xIntervals.get(i), yIntervals.get(j), this.scale, this.baseVariance, noise);
+                noise.clear();
+                for (int k = 0; k < x.size(); k++) {
+                    int base = k * allY.size();
+                    for (int l = firstY[j]; l < firstY[j + 1]; l++)
+                        noise.add(rowNoise[base + l], this.baseVariance);
+                }
+                long nIntervals = (long)x.size() * (firstY[j + 1] - firstY[j]);
                 counts[i][j] = Converters.toLong(heatmap.getBucket(i).getBucket(j).count + noise.getNoise());
                 confidences[i][j] = Converters.toInt(
                         PrivacyUtils.laplaceCI(nIntervals, this.scale, PrivacyUtils.DEFAULT_ALPHA).second);
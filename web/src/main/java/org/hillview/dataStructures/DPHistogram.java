@@ -9,6 +9,7 @@ import org.hillview.targets.DPWrapper;
 import org.hillview.utils.*;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -44,10 +45,11 @@ public class DPHistogram<G extends IGroup<Count>> extends
                              /*out*/Noise noise) {
         List<Pair<Integer, Integer>> intervals =
                 IntervalDecomposition.kadicDecomposition(left, right, IntervalDecomposition.BRANCHING_FACTOR);
+        double[] values = new double[intervals.size()];
+        laplace.sampleLaplace(this.columnIndex, scale, intervals, values);
         noise.clear();
-        for (Pair<Integer, Integer> x : intervals) {
-            noise.add(laplace.sampleLaplace(this.columnIndex, scale, x), baseVariance);
-        }
+        for (double v : values)
+            noise.add(v, baseVariance);
         return intervals.size();
     }
 
@@ -93,11 +95,21 @@ public class DPHistogram<G extends IGroup<Count>> extends
         long[] counts = new long[histogram.size()];
         int[]  conf = new int[histogram.size()];
 
+        // The noise of all buckets, from the cache shared by all sessions.
+        List<Pair<Integer, Integer>> ranges = new ArrayList<Pair<Integer, Integer>>(histogram.size());
+        for (int i = 0; i < histogram.size(); i++)
+            ranges.add(this.decomposition.bucketRange(i, this.isCdf));
+        double[] rangeNoise = new double[histogram.size()];
+        int[] rangeIntervals = new int[histogram.size()];
+        DyadicNoiseCache.instance.getNoise(
+                this.laplace, this.columnIndex, scale, ranges, rangeNoise, rangeIntervals);
+
         Noise noise = new Noise();
         long totalIntervals = 0;
         long previous = 0;
         for (int i = 0; i < histogram.size(); i++) {
-            long nIntervals = this.noiseForBucket(i, scale, baseVariance, isCdf, noise, laplace, decomposition);
+            long nIntervals = rangeIntervals[i];
+            noise.set(rangeNoise[i], nIntervals * baseVariance);
             long current;
             if (isCdf) {
                 current = previous + histogram.getBucket(i).count;
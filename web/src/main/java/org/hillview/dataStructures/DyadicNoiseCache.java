@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataStructures;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.hillview.Configuration;
+import org.hillview.security.SecureLaplace;
+import org.hillview.utils.Converters;
+import org.hillview.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches the Laplace noise of the nodes of the k-adic interval trees used by private
+ * histograms, and the total noise of the leaf ranges requested.  The noise is a
+ * deterministic function of the key, the column, the noise scale and the interval,
+ * so cached values never become stale; the scale depends on epsilon and on the number
+ * of leaves of the column quantization.  Once a range has been requested, either as a
+ * bucket or as the [0, right) range of a CDF bucket, its noise is found with a single
+ * lookup.  The cache is shared by all sessions and bounded by the number of cached values.
+ * This is a singleton.
+ */
+public final class DyadicNoiseCache {
+    /**
+     * Maximum number of columns cached.
+     */
+    private static final int MAX_COLUMNS = 16;
+
+    public static final DyadicNoiseCache instance =
+            new DyadicNoiseCache(Configuration.instance.getNoiseCacheSize());
+
+    private static final class ColumnKey {
+        final String keyId;
+        final int columnIndex;
+        final double scale;
+
+        ColumnKey(String keyId, int columnIndex, double scale) {
+            this.keyId = keyId;
+            this.columnIndex = columnIndex;
+            this.scale = scale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ColumnKey other = (ColumnKey) o;
+            return this.columnIndex == other.columnIndex &&
+                    Double.compare(this.scale, other.scale) == 0 &&
+                    this.keyId.equals(other.keyId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.keyId, this.columnIndex, this.scale);
+        }
+    }
+
+    /**
+     * Cached noise values for one column.
+     */
+    private static final class ColumnNoise {
+        private final int capacity;
+        /**
+         * Noise of each k-adic tree node, indexed by pack(start, length).
+         */
+        private final Long2DoubleOpenHashMap nodes;
+        /**
+         * Total noise of each range, indexed by pack(left, right).
+         */
+        private final Long2DoubleOpenHashMap ranges;
+        /**
+         * Number of nodes in the decomposition of each range.
+         */
+        private final Long2IntOpenHashMap rangeIntervals;
+
+        ColumnNoise(int capacity) {
+            this.capacity = capacity;
+            this.nodes = new Long2DoubleOpenHashMap();
+            this.ranges = new Long2DoubleOpenHashMap();
+            this.rangeIntervals = new Long2IntOpenHashMap();
+        }
+
+        synchronized int size() {
+            return this.nodes.size() + this.ranges.size();
+        }
+
+        synchronized void getNoise(SecureLaplace laplace, int columnIndex, double scale,
+                                   List<Pair<Integer, Integer>> ranges,
+                                   /*out*/double[] noise, /*out*/int[] intervals) {
+            if (this.size() + 2 * ranges.size() > this.capacity) {
+                this.nodes.clear();
+                this.ranges.clear();
+                this.rangeIntervals.clear();
+            }
+            // Decompositions of the ranges not cached, indexed like ranges.
+            List<List<Pair<Integer, Integer>>> decompositions =
+                    new ArrayList<List<Pair<Integer, Integer>>>(ranges.size());
+            // Nodes whose noise is not cached.
+            List<Pair<Integer, Integer>> missing = new ArrayList<Pair<Integer, Integer>>();
+            for (int i = 0; i < ranges.size(); i++) {
+                Pair<Integer, Integer> range = ranges.get(i);
+                int left = Converters.checkNull(range.first);
+                int right = Converters.checkNull(range.second);
+                long key = pack(left, right);
+                if (this.ranges.containsKey(key)) {
+                    noise[i] = this.ranges.get(key);
+                    intervals[i] = this.rangeIntervals.get(key);
+                    decompositions.add(null);
+                    continue;
+                }
+                List<Pair<Integer, Integer>> nodes = IntervalDecomposition.kadicDecomposition(
+                        left, right, IntervalDecomposition.BRANCHING_FACTOR);
+                decompositions.add(nodes);
+                for (Pair<Integer, Integer> node : nodes) {
+                    long nodeKey = pack(Converters.checkNull(node.first), Converters.checkNull(node.second));
+                    if (!this.nodes.containsKey(nodeKey)) {
+                        // Mark as present so that it is only sampled once.
+                        this.nodes.put(nodeKey, Double.NaN);
+                        missing.add(node);
+                    }
+                }
+            }
+            if (!missing.isEmpty()) {
+                double[] values = new double[missing.size()];
+                laplace.sampleLaplace(columnIndex, scale, missing, values);
+                for (int i = 0; i < values.length; i++) {
+                    Pair<Integer, Integer> node = missing.get(i);
+                    this.nodes.put(pack(Converters.checkNull(node.first),
+                            Converters.checkNull(node.second)), values[i]);
+                }
+            }
+            for (int i = 0; i < ranges.size(); i++) {
+                List<Pair<Integer, Integer>> nodes = decompositions.get(i);
+                if (nodes == null)
+                    continue;
+                double sum = 0;
+                for (Pair<Integer, Integer> node : nodes)
+                    sum += this.nodes.get(pack(Converters.checkNull(node.first),
+                            Converters.checkNull(node.second)));
+                Pair<Integer, Integer> range = ranges.get(i);
+                long key = pack(Converters.checkNull(range.first), Converters.checkNull(range.second));
+                this.ranges.put(key, sum);
+                this.rangeIntervals.put(key, nodes.size());
+                noise[i] = sum;
+                intervals[i] = nodes.size();
+            }
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<ColumnKey, ColumnNoise> columns;
+
+    DyadicNoiseCache(int capacity) {
+        this.capacity = capacity;
+        this.columns = new LinkedHashMap<ColumnKey, ColumnNoise>(MAX_COLUMNS, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ColumnKey, ColumnNoise> eldest) {
+                return this.size() > MAX_COLUMNS;
+            }
+        };
+    }
+
+    private static long pack(int first, int second) {
+        return ((long)first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private synchronized ColumnNoise getColumn(ColumnKey key) {
+        return this.columns.computeIfAbsent(key, k -> new ColumnNoise(this.capacity / MAX_COLUMNS));
+    }
+
+    /**
+     * Computes the noise of many ranges of leaves.  The noise of a range [left, right)
+     * is the sum of the Laplace noise of the nodes of its k-adic decomposition, in
+     * decomposition order.
+     * @param laplace      Used to sample the noise of nodes that are not cached.
+     * @param columnIndex  Index of the column in the privacy schema.
+     * @param scale        Scale of the Laplace distribution of each node.
+     * @param ranges       Ranges of leaves, right-exclusive.
+     * @param noise        For each range the total noise.
+     * @param intervals    For each range the number of nodes in its decomposition.
+     */
+    public void getNoise(SecureLaplace laplace, int columnIndex, double scale,
+                         List<Pair<Integer, Integer>> ranges,
+                         /*out*/double[] noise, /*out*/int[] intervals) {
+        ColumnNoise column = this.getColumn(new ColumnKey(laplace.getKeyId(), columnIndex, scale));
+        column.getNoise(laplace, columnIndex, scale, ranges, noise, intervals);
+    }
+
+    /**
+     * Number of noise values cached.
+     */
+    public synchronized int size() {
+        int result = 0;
+        for (ColumnNoise c : this.columns.values())
+            result += c.size();
+        return result;
+    }
+
+    public synchronized void clear() {
+        this.columns.clear();
+    }
+}
@@ -35,6 +35,12 @@ import java.util.Set;
 
 public final class ControlPointsTarget extends RpcTarget {
     static final long serialVersionUID = 1;
+    /**
+     * Above this number of control points MDS only compares each point
+     * with a sample of the other points.
+     */
+    static final int exactMDSLimit = 2000;
+    static final int mdsSamples = 200;
 
     final DoubleMatrix highDimData;
     @Nullable
@@ -65,6 +71,8 @@ public final class ControlPointsTarget extends RpcTarget {
 
     TableTarget.ControlPoints2D mds(int seed) {
         MetricMDS mds = new MetricMDS(this.highDimData);
+        if (this.highDimData.rows > exactMDSLimit)
+            mds.setSamples(mdsSamples);
         this.lowDimData = mds.computeEmbedding(seed);
 
         Point2D[] points = new Point2D[this.lowDimData.rows];
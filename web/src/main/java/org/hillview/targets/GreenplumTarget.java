@@ -60,6 +60,12 @@ public class GreenplumTarget extends TableTarget {
         }
     }
 
+    @Override
+    protected boolean cacheResults() {
+        // The columns are read from the database, whose contents may change.
+        return false;
+    }
+
     /**
      * Given a list of columns, find the ones which have not been loaded yet.
      * @param columns  Columns to check.
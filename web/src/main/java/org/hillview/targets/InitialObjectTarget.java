@@ -260,10 +260,49 @@ public class InitialObjectTarget extends RpcTarget {
         this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
     }
 
+    @HillviewRpc
+    public void memoizationStatistics(RpcRequest request, RpcRequestContext context) {
+        MemoizationStatistics tm = new MemoizationStatistics();
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void operationStatistics(RpcRequest request, RpcRequestContext context) {
+        OperationStatistics tm = new OperationStatistics(false);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void startTrace(RpcRequest request, RpcRequestContext context) {
+        OperationTrace tm = new OperationTrace(true);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void stopTrace(RpcRequest request, RpcRequestContext context) {
+        OperationTrace tm = new OperationTrace(false);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
     @HillviewRpc
     public void purgeDatasets(RpcRequest request, RpcRequestContext context) {
         int deleted = RpcObjectManager.instance.removeAllObjects();
-        ControlMessage.Status status = new ControlMessage.Status("Deleted " + deleted + " objects");
+        this.replyWithStatus("Deleted " + deleted + " objects", request, context);
+    }
+
+    /**
+     * Reports the size and the hit rate of the cache of results kept by the web server.
+     */
+    @HillviewRpc
+    public void resultCacheStatistics(RpcRequest request, RpcRequestContext context) {
+        this.replyWithStatus(ResultCache.instance.toString(), request, context);
+    }
+
+    /**
+     * Sends a single status message computed by the web server to the client.
+     */
+    private void replyWithStatus(String message, RpcRequest request, RpcRequestContext context) {
+        ControlMessage.Status status = new ControlMessage.Status(message);
         JsonList<ControlMessage.Status> statusList = new JsonList<ControlMessage.Status>();
         statusList.add(status);
         PartialResult<JsonList<ControlMessage.Status>> pr = new PartialResult<JsonList<ControlMessage.Status>>(statusList);
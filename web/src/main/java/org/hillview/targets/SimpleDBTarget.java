@@ -90,6 +90,12 @@ public class SimpleDBTarget extends TableRpcTarget {
         return "Local database: " + this.jdbc.database;
     }
 
+    @Override
+    protected boolean cacheResults() {
+        // The contents of the database may change.
+        return false;
+    }
+
     @HillviewRpc
     public void getMetadata(RpcRequest request, RpcRequestContext context) {
         GeoFileInformation[] info = this.getGeoFileInformation();
@@ -498,6 +498,13 @@ public class TableTarget extends TableRpcTarget {
         });
     }
 
+    /**
+     * Above this number of control points LAMP maps each row using only
+     * its lampNeighbors nearest control points.
+     */
+    static final int exactLAMPLimit = 1000;
+    static final int lampNeighbors = 100;
+
     @SuppressWarnings("NotNullFieldNotInitialized")
     static class LAMPMapInfo {
         String controlPointsId = "";
@@ -519,7 +526,9 @@ public class TableTarget extends TableRpcTarget {
                 lowDimPoints.put(i, 1, newControlPoints.points[i].y);
             }
             lowDimPoints.print();
-            LAMPMap map = new LAMPMap(highDimPoints, lowDimPoints, info.colNames, info.newColNames);
+            int neighbors = highDimPoints.rows > exactLAMPLimit ? lampNeighbors : 0;
+            LAMPMap map = new LAMPMap(highDimPoints, lowDimPoints, info.colNames,
+                    info.newColNames, neighbors);
             TableTarget.this.runMap(TableTarget.this.table, map, (d, c) -> new TableTarget(d, c, this.metadataDirectory), request, context);
         });
     }
@@ -181,6 +181,7 @@ export interface FileSetDescription {
     startTime?: number | null; // in the same units used by the timestamp column
     endTime?: number | null;
     deleteAfterLoading?: boolean;
+    snapshotFolder?: string; // relative to the snapshot root of the workers
 }
 
 export interface CountWithConfidence {
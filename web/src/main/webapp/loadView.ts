@@ -207,6 +207,27 @@ export class LoadView extends RemoteObject implements IDataView {
                         text: "Memory use",
                         action: () => this.command("memoryUse"),
                         help: "Reports Java memory use for each worker.",
+                    }, {
+                        text: "Memoization statistics",
+                        action: () => this.command("memoizationStatistics"),
+                        help: "Reports the size and hit rate of the memoization cache of each worker.",
+                    }, {
+                        text: "Operation statistics",
+                        action: () => this.command("operationStatistics"),
+                        help: "Reports the time spent by each worker in each kind of operation.",
+                    }, {
+                        text: "Result cache statistics",
+                        action: () => this.command("resultCacheStatistics"),
+                        help: "Reports the size and hit rate of the cache of results kept by the web server.",
+                    }, {
+                        text: "Start trace",
+                        action: () => this.command("startTrace"),
+                        help: "Asks the workers to record a trace of the operations they execute.",
+                    }, {
+                        text: "Stop trace",
+                        action: () => this.command("stopTrace"),
+                        help: "Asks the workers to stop tracing and to save the trace in a file " +
+                            "that can be viewed with chrome://tracing.",
                     }, {
                         text: "Purge memoized",
                         action: () => this.command("purgeMemoization"),
@@ -218,8 +218,11 @@ export class RpcRequest<T> implements ICancellable<T> {
             };
             this.socket.onmessage = (r: MessageEvent) => {
                 // parse json and invoke onReply.onNext
-                console.log(formatDate(new Date()) + " reply received: " + r.data);
-                const reply = JSON.parse(r.data) as RpcReply;
+                // Large replies are sent as compressed binary messages.
+                const data: string = (r.data instanceof ArrayBuffer) ?
+                    pako.inflate(new Uint8Array(r.data), { to: "string" }) : r.data;
+                console.log(formatDate(new Date()) + " reply received: " + data);
+                const reply = JSON.parse(data) as RpcReply;
                 if (this.completed) {
                     console.log("Message received after rpc completed: " + reply);
                     return;
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview;
+
+import org.hillview.dataStructures.DyadicNoiseCache;
+import org.hillview.dataStructures.IntervalDecomposition;
+import org.hillview.security.SecureLaplace;
+import org.hillview.security.TestKeyLoader;
+import org.hillview.utils.Pair;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DyadicNoiseCacheTest {
+    @Test
+    public void testNoise() {
+        SecureLaplace laplace = new SecureLaplace(new TestKeyLoader());
+        double scale = 3.0;
+        List<Pair<Integer, Integer>> ranges = new ArrayList<Pair<Integer, Integer>>();
+        for (int i = 0; i < 50; i++) {
+            ranges.add(new Pair<Integer, Integer>(7 * i, 7 * i + 7));
+            ranges.add(new Pair<Integer, Integer>(0, 7 * i + 7));
+        }
+        DyadicNoiseCache.instance.clear();
+        double[] noise = new double[ranges.size()];
+        int[] intervals = new int[ranges.size()];
+        DyadicNoiseCache.instance.getNoise(laplace, 2, scale, ranges, noise, intervals);
+        int cached = DyadicNoiseCache.instance.size();
+        Assert.assertTrue(cached > ranges.size());
+
+        for (int i = 0; i < ranges.size(); i++) {
+            Pair<Integer, Integer> r = ranges.get(i);
+            List<Pair<Integer, Integer>> nodes = IntervalDecomposition.kadicDecomposition(
+                    r.first, r.second, IntervalDecomposition.BRANCHING_FACTOR);
+            double expected = 0;
+            for (Pair<Integer, Integer> n : nodes)
+                expected += laplace.sampleLaplace(2, scale, n);
+            Assert.assertEquals(expected, noise[i], 0);
+            Assert.assertEquals(nodes.size(), intervals[i]);
+        }
+
+        // A second request with the same key is answered from the cache.
+        SecureLaplace other = new SecureLaplace(new TestKeyLoader());
+        double[] again = new double[ranges.size()];
+        DyadicNoiseCache.instance.getNoise(laplace, 2, scale, ranges, again, intervals);
+        Assert.assertArrayEquals(noise, again, 0);
+        Assert.assertEquals(cached, DyadicNoiseCache.instance.size());
+        // A different key produces different noise.
+        DyadicNoiseCache.instance.getNoise(other, 2, scale, ranges, again, intervals);
+        Assert.assertNotEquals(noise[0], again[0], 0);
+        DyadicNoiseCache.instance.clear();
+        Assert.assertEquals(0, DyadicNoiseCache.instance.size());
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+public class ReplyQueueTest {
+    /**
+     * A session that records the messages sent; each send completes only
+     * when complete() is called.
+     */
+    static class FakeSession {
+        final List<JsonObject> sent = new ArrayList<JsonObject>();
+        boolean open = true;
+        int closed = 0;
+        SendHandler inFlight = null;
+        final Session session;
+
+        FakeSession() {
+            RemoteEndpoint.Async remote = (RemoteEndpoint.Async)Proxy.newProxyInstance(
+                    RemoteEndpoint.Async.class.getClassLoader(),
+                    new Class<?>[] { RemoteEndpoint.Async.class },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "sendText":
+                                this.sending((String)args[0], (SendHandler)args[1]);
+                                return null;
+                            case "sendBinary":
+                                this.sending(inflate((ByteBuffer)args[0]), (SendHandler)args[1]);
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+            this.session = (Session)Proxy.newProxyInstance(
+                    Session.class.getClassLoader(),
+                    new Class<?>[] { Session.class },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "isOpen":
+                                return this.open;
+                            case "getAsyncRemote":
+                                return remote;
+                            case "close":
+                                this.open = false;
+                                return null;
+                            case "getId":
+                                return "fake";
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            case "toString":
+                                return "FakeSession";
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        private void sending(String text, SendHandler handler) {
+            Assert.assertNull("Only one message may be in flight", this.inFlight);
+            this.sent.add(JsonParser.parseString(text).getAsJsonObject());
+            this.inFlight = handler;
+        }
+
+        void complete() {
+            SendHandler handler = this.inFlight;
+            Assert.assertNotNull(handler);
+            this.inFlight = null;
+            handler.onResult(new SendResult());
+        }
+
+        String result(int index) {
+            return this.sent.get(index).get("result").getAsString();
+        }
+    }
+
+    private static String inflate(ByteBuffer buffer) throws IOException {
+        InflaterInputStream stream = new InflaterInputStream(
+                new ByteArrayInputStream(buffer.array()));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] block = new byte[4096];
+        int read;
+        while ((read = stream.read(block)) > 0)
+            bytes.write(block, 0, read);
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A reply queue on the fake session; the executor runs tasks
+     * synchronously, so each step can be checked.
+     */
+    private static ReplyQueue queue(FakeSession fake) {
+        return new ReplyQueue(fake.session, Runnable::run, () -> fake.closed++);
+    }
+
+    private static RpcReply partial(int requestId, String result) {
+        return new RpcReply(requestId, result, false);
+    }
+
+    @Test
+    public void testOrder() {
+        FakeSession fake = new FakeSession();
+        ReplyQueue queue = queue(fake);
+        queue.send(partial(1, "a"));
+        queue.send(partial(2, "b"));
+        queue.send(new RpcReply(1));
+        Assert.assertEquals(1, fake.sent.size());
+        fake.complete();
+        fake.complete();
+        fake.complete();
+        Assert.assertNull(fake.inFlight);
+        Assert.assertEquals(3, fake.sent.size());
+        Assert.assertEquals("a", fake.result(0));
+        Assert.assertEquals("b", fake.result(1));
+        Assert.assertTrue(fake.sent.get(2).get("isCompleted").getAsBoolean());
+        Assert.assertEquals(1, fake.sent.get(2).get("requestId").getAsInt());
+    }
+
+    @Test
+    public void testCoalescing() {
+        FakeSession fake = new FakeSession();
+        ReplyQueue queue = queue(fake);
+        queue.send(partial(1, "a"));
+        // While "a" is in flight the later partial replies replace each other.
+        queue.send(partial(1, "b"));
+        queue.send(partial(1, "c"));
+        // Partial replies to another request are not merged.
+        queue.send(partial(2, "d"));
+        queue.send(new RpcReply(1, "error", true));
+        queue.send(new RpcReply(1, "error", true));
+        while (fake.inFlight != null)
+            fake.complete();
+        Assert.assertEquals(5, fake.sent.size());
+        Assert.assertEquals("a", fake.result(0));
+        Assert.assertEquals("c", fake.result(1));
+        Assert.assertEquals("d", fake.result(2));
+        Assert.assertEquals("error", fake.result(3));
+        Assert.assertEquals("error", fake.result(4));
+    }
+
+    @Test
+    public void testClose() {
+        FakeSession fake = new FakeSession();
+        ReplyQueue queue = queue(fake);
+        queue.send(partial(1, "a"));
+        queue.close();
+        // The session is closed only after the pending reply has been sent.
+        Assert.assertTrue(fake.open);
+        Assert.assertEquals(0, fake.closed);
+        fake.complete();
+        Assert.assertFalse(fake.open);
+        Assert.assertEquals(1, fake.closed);
+        // Replies on a closed session are dropped.
+        queue.send(partial(1, "b"));
+        Assert.assertEquals(1, fake.sent.size());
+        Assert.assertNull(fake.inFlight);
+    }
+
+    @Test
+    public void testCompression() {
+        FakeSession fake = new FakeSession();
+        ReplyQueue queue = queue(fake);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() <= ReplyQueue.COMPRESSION_THRESHOLD)
+            builder.append("0123456789");
+        String large = builder.toString();
+        queue.send(partial(1, large));
+        fake.complete();
+        Assert.assertEquals(large, fake.result(0));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview;
+
+import com.google.gson.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResultCacheTest {
+    private static RpcRequest request(String method, String args) {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("requestId", 1);
+        obj.addProperty("objectId", "target");
+        obj.addProperty("method", method);
+        obj.addProperty("arguments", args);
+        return new RpcRequest(obj);
+    }
+
+    @Test
+    public void testKey() {
+        RpcTarget.Id id = new RpcTarget.Id("target");
+        String k1 = ResultCache.getKey(id, request("histogram", "{\"a\": 1, \"b\": [{\"y\": 2, \"x\": 3}]}"));
+        String k2 = ResultCache.getKey(id, request("histogram", "{\"b\":[{\"x\":3,\"y\":2}],\"a\":1}"));
+        String k3 = ResultCache.getKey(id, request("histogram", "{\"a\": 2, \"b\": [{\"y\": 2, \"x\": 3}]}"));
+        String k4 = ResultCache.getKey(id, request("heatmap", "{\"a\": 1, \"b\": [{\"y\": 2, \"x\": 3}]}"));
+        Assert.assertNotNull(k1);
+        Assert.assertEquals(k1, k2);
+        Assert.assertNotEquals(k1, k3);
+        Assert.assertNotEquals(k1, k4);
+    }
+
+    @Test
+    public void testEviction() {
+        ResultCache cache = new ResultCache(10, 1000000);
+        RpcTarget.Id t1 = new RpcTarget.Id("t1");
+        RpcTarget.Id t2 = new RpcTarget.Id("t2");
+        cache.put("a", t1, "1234");
+        cache.put("b", t2, "1234");
+        Assert.assertEquals("1234", cache.get("a"));
+        // Evicts b, which is the least recently used.
+        cache.put("c", t1, "123");
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("123", cache.get("c"));
+        Assert.assertEquals(1, cache.getEvictions());
+        // Too large to be cached.
+        cache.put("d", t2, "12345678901");
+        Assert.assertNull(cache.get("d"));
+        cache.invalidate(t1);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNull(cache.get("c"));
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(4, cache.getMisses());
+
+        ResultCache expiring = new ResultCache(10, -1);
+        expiring.put("a", t1, "1");
+        Assert.assertNull(expiring.get("a"));
+    }
+}